@@ -84,6 +84,12 @@
     native <methods>;
 }
 
+# Preserve the methods that the native code calls back into.
+
+-keepclassmembers class net.named_data.nfd.service.NfdService {
+    private static void onNfdReady();
+}
+
 # Preserve the special static methods that are required in all enumeration
 # classes.
 
@@ -48,6 +48,7 @@ import com.intel.jndn.management.types.FaceStatus;
 
 import net.named_data.jndn.Name;
 import net.named_data.jndn_xx.util.FaceUri;
+import net.named_data.nfd.utils.FaceStatusCache;
 import net.named_data.nfd.utils.G;
 import net.named_data.nfd.utils.NfdcHelper;
 import net.named_data.nfd.utils.SharedPreferencesManager;
@@ -55,6 +56,7 @@ import net.named_data.nfd.utils.SharedPreferencesManager;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
@@ -403,14 +405,15 @@ public class FaceListFragment extends ListFragment implements
     protected Pair<List<FaceStatus>, Exception>
     doInBackground(Void... params) {
       Exception returnException = null;
-      NfdcHelper nfdcHelper = new NfdcHelper();
       List<FaceStatus> faceStatusList = null;
       try {
-        faceStatusList = nfdcHelper.faceList(getActivity().getApplicationContext());
+        faceStatusList = NfdcHelper.withPermanentFacesMarked(getActivity().getApplicationContext(),
+                                                             FaceStatusCache.getInstance().get(0).get().getFaces());
+      } catch (ExecutionException e) {
+        returnException = (Exception) e.getCause();
       } catch (Exception e) {
         returnException = e;
       }
-      nfdcHelper.shutdown();
       return new Pair<>(faceStatusList, returnException);
     }
 
@@ -455,7 +458,7 @@ public class FaceListFragment extends ListFragment implements
     doInBackground(Set<Integer>... params) {
       Exception retval = null;
 
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         Context context = getActivity().getApplicationContext();
         SparseArray<FaceStatus> faceSparseArray = nfdcHelper.faceListAsSparseArray(context);
@@ -477,7 +480,7 @@ public class FaceListFragment extends ListFragment implements
       } catch (Exception e) {
         retval = e;
       }
-      nfdcHelper.shutdown();
+      nfdcHelper.release();
       return retval;
     }
 
@@ -530,8 +533,8 @@ public class FaceListFragment extends ListFragment implements
     protected String
     doInBackground(Void... params)
     {
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
-        NfdcHelper nfdcHelper = new NfdcHelper();
         Context context = getActivity().getApplicationContext();
         int faceId = nfdcHelper.faceCreate(m_faceUri);
         if (m_isPermanent) {
@@ -541,7 +544,6 @@ public class FaceListFragment extends ListFragment implements
                                          );
           SharedPreferencesManager.addPermanentFaceId(context, faceId);
         }
-        nfdcHelper.shutdown();
         return "OK. Face id: " + String.valueOf(faceId);
       }
       catch (FaceUri.CanonizeError e) {
@@ -553,6 +555,9 @@ public class FaceListFragment extends ListFragment implements
       catch (Exception e) {
         return "Error communicating with NFD (" + e.getMessage() + ")";
       }
+      finally {
+        nfdcHelper.release();
+      }
     }
 
     @Override
@@ -597,7 +602,7 @@ public class FaceListFragment extends ListFragment implements
     @Override
     protected String
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         if (m_isFaceUri) {
           int faceId = nfdcHelper.faceCreate(m_faceUri);
@@ -634,14 +639,13 @@ public class FaceListFragment extends ListFragment implements
                 );
           }
         }
-        nfdcHelper.shutdown();
         return "OK";
       } catch (FaceUri.CanonizeError|FaceUri.Error e) {
         return "Error creating face (" + e.getMessage() + ")";
       } catch (Exception e) {
         return "Error communicating with NFD (" + e.getMessage() + ")";
       } finally {
-        nfdcHelper.shutdown();
+        nfdcHelper.release();
       }
     }
 
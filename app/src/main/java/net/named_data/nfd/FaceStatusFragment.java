@@ -22,6 +22,7 @@ package net.named_data.nfd;
 import android.content.Context;
 import android.content.res.Resources;
 import android.os.Bundle;
+import android.os.Handler;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -35,7 +36,10 @@ import com.intel.jndn.management.types.FaceStatus;
 
 import net.named_data.jndn.encoding.EncodingException;
 import net.named_data.jndn.util.Blob;
+import net.named_data.nfd.utils.FaceRateHistory;
+import net.named_data.nfd.utils.FaceStatusCache;
 import net.named_data.nfd.utils.G;
+import net.named_data.nfd.utils.NfdcFuture;
 
 import org.joda.time.Period;
 import org.joda.time.format.PeriodFormat;
@@ -124,14 +128,33 @@ public class FaceStatusFragment extends ListFragment {
       listItems.add(new ListItem(R.string.face_scope, getScope(faceStatus.getFaceScope())));
       listItems.add(new ListItem(R.string.face_persistency, getPersistency(faceStatus.getFacePersistency())));
       listItems.add(new ListItem(R.string.link_type, getLinkType(faceStatus.getLinkType())));
-      listItems.add(new ListItem(R.string.in_interests, String.valueOf(
-        faceStatus.getNInInterests())));
-      listItems.add(new ListItem(R.string.in_data, String.valueOf(faceStatus.getNInData())));
-      listItems.add(new ListItem(R.string.out_interests, String.valueOf(
-        faceStatus.getNOutInterests())));
-      listItems.add(new ListItem(R.string.out_data, String.valueOf(faceStatus.getNOutData())));
-      listItems.add(new ListItem(R.string.in_bytes, String.valueOf(faceStatus.getNInBytes())));
-      listItems.add(new ListItem(R.string.out_bytes, String.valueOf(faceStatus.getNOutBytes())));
+      m_faceId = faceStatus.getFaceId();
+
+      // Counters and rates are refreshed in place
+      m_inInterestsItem = new ListItem(R.string.in_interests, "");
+      m_inDataItem = new ListItem(R.string.in_data, "");
+      m_outInterestsItem = new ListItem(R.string.out_interests, "");
+      m_outDataItem = new ListItem(R.string.out_data, "");
+      m_inBytesItem = new ListItem(R.string.in_bytes, "");
+      m_outBytesItem = new ListItem(R.string.out_bytes, "");
+      m_interestRateItem = new ListItem(R.string.interest_rate, getString(R.string.not_available));
+      m_dataRateItem = new ListItem(R.string.data_rate, getString(R.string.not_available));
+      m_nackRateItem = new ListItem(R.string.nack_rate, getString(R.string.not_available));
+      m_byteRateItem = new ListItem(R.string.byte_rate, getString(R.string.not_available));
+      m_peakByteRateItem = new ListItem(R.string.peak_byte_rate, getString(R.string.not_available));
+      updateCounters(faceStatus);
+
+      listItems.add(m_inInterestsItem);
+      listItems.add(m_inDataItem);
+      listItems.add(m_outInterestsItem);
+      listItems.add(m_outDataItem);
+      listItems.add(m_inBytesItem);
+      listItems.add(m_outBytesItem);
+      listItems.add(m_interestRateItem);
+      listItems.add(m_dataRateItem);
+      listItems.add(m_nackRateItem);
+      listItems.add(m_byteRateItem);
+      listItems.add(m_peakByteRateItem);
 
       m_faceStatusAdapter = new FaceStatusAdapter(getActivity(), listItems);
     }
@@ -140,6 +163,21 @@ public class FaceStatusFragment extends ListFragment {
     setListAdapter(m_faceStatusAdapter);
   }
 
+  @Override
+  public void onResume()
+  {
+    super.onResume();
+    m_handler.post(m_refreshRunnable);
+  }
+
+  @Override
+  public void onPause()
+  {
+    super.onPause();
+    m_handler.removeCallbacks(m_refreshRunnable);
+    m_isResumed = false;
+  }
+
   @Override
   public void onDestroyView()
   {
@@ -148,6 +186,66 @@ public class FaceStatusFragment extends ListFragment {
   }
   /////////////////////////////////////////////////////////////////////////
 
+  /**
+   * Fetch the face dataset through the shared cache and update counters and rates
+   */
+  private final Runnable m_refreshRunnable = new Runnable() {
+    @Override
+    public void run() {
+      m_isResumed = true;
+      FaceStatusCache.getInstance().get(REFRESH_INTERVAL / 2).addListener(
+        (NfdcFuture<FaceStatusCache.Snapshot> snapshot) -> m_handler.post(() -> onSnapshot(snapshot)));
+    }
+  };
+
+  private void
+  onSnapshot(NfdcFuture<FaceStatusCache.Snapshot> snapshot)
+  {
+    if (!m_isResumed) {
+      return;
+    }
+    m_handler.removeCallbacks(m_refreshRunnable);
+    m_handler.postDelayed(m_refreshRunnable, REFRESH_INTERVAL);
+
+    if (snapshot.getValue() == null) {
+      G.Log("Cannot refresh face status: " + snapshot.getException().getMessage());
+      return;
+    }
+    FaceStatus faceStatus = snapshot.getValue().getFace(m_faceId);
+    if (faceStatus == null) {
+      // face was destroyed, keep its last status
+      return;
+    }
+    updateCounters(faceStatus);
+
+    FaceRateHistory history = FaceStatusCache.getInstance().getHistory(m_faceId);
+    if (history != null && history.getLatestRates(m_rates)) {
+      m_interestRateItem.setValue(getString(R.string.rate_in_out, m_rates[FaceRateHistory.IN_INTERESTS],
+                                            m_rates[FaceRateHistory.OUT_INTERESTS]));
+      m_dataRateItem.setValue(getString(R.string.rate_in_out, m_rates[FaceRateHistory.IN_DATA],
+                                        m_rates[FaceRateHistory.OUT_DATA]));
+      m_nackRateItem.setValue(getString(R.string.rate_in_out, m_rates[FaceRateHistory.IN_NACKS],
+                                        m_rates[FaceRateHistory.OUT_NACKS]));
+      m_byteRateItem.setValue(getString(R.string.rate_in_out, m_rates[FaceRateHistory.IN_BYTES],
+                                        m_rates[FaceRateHistory.OUT_BYTES]));
+      history.getPeakRates(m_rates);
+      m_peakByteRateItem.setValue(getString(R.string.rate_in_out, m_rates[FaceRateHistory.IN_BYTES],
+                                            m_rates[FaceRateHistory.OUT_BYTES]));
+    }
+    m_faceStatusAdapter.notifyDataSetChanged();
+  }
+
+  private void
+  updateCounters(FaceStatus faceStatus)
+  {
+    m_inInterestsItem.setValue(String.valueOf(faceStatus.getNInInterests()));
+    m_inDataItem.setValue(String.valueOf(faceStatus.getNInData()));
+    m_outInterestsItem.setValue(String.valueOf(faceStatus.getNOutInterests()));
+    m_outDataItem.setValue(String.valueOf(faceStatus.getNOutData()));
+    m_inBytesItem.setValue(String.valueOf(faceStatus.getNInBytes()));
+    m_outBytesItem.setValue(String.valueOf(faceStatus.getNOutBytes()));
+  }
+
   private String
   getScope(FaceScope scope)
   {
@@ -249,4 +347,24 @@ public class FaceStatusFragment extends ListFragment {
   private String[] m_scopes;
   private String[] m_persistencies;
   private String[] m_linkTypes;
+
+  /** Interval between refreshes of counters and rates, in milliseconds */
+  private static final long REFRESH_INTERVAL = 1000;
+
+  private final Handler m_handler = new Handler();
+  private boolean m_isResumed = false;
+  private int m_faceId;
+  private final double[] m_rates = new double[FaceRateHistory.N_COUNTERS];
+
+  private ListItem m_inInterestsItem;
+  private ListItem m_inDataItem;
+  private ListItem m_outInterestsItem;
+  private ListItem m_outDataItem;
+  private ListItem m_inBytesItem;
+  private ListItem m_outBytesItem;
+  private ListItem m_interestRateItem;
+  private ListItem m_dataRateItem;
+  private ListItem m_nackRateItem;
+  private ListItem m_byteRateItem;
+  private ListItem m_peakByteRateItem;
 }
@@ -33,10 +33,15 @@ import android.os.Message;
 import android.os.Messenger;
 import android.os.RemoteException;
 import android.preference.PreferenceManager;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.widget.AdapterView;
 import android.widget.CompoundButton;
+import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -48,11 +53,11 @@ import com.android.volley.VolleyError;
 import com.android.volley.toolbox.StringRequest;
 import com.android.volley.toolbox.Volley;
 import com.intel.jndn.management.ManagementException;
-import com.intel.jndn.management.types.ForwarderStatus;
 import com.intel.jndn.management.types.RibEntry;
 
 import net.named_data.jndn.Name;
 import net.named_data.nfd.service.NfdService;
+import net.named_data.nfd.utils.ContentStoreSizer;
 import net.named_data.nfd.utils.G;
 import net.named_data.nfd.utils.NfdcHelper;
 import net.named_data.nfd.utils.SharedPreferencesManager;
@@ -61,6 +66,7 @@ import net.named_data.nfd.wifidirect.utils.NDNController;
 import org.joda.time.Period;
 import org.joda.time.format.PeriodFormat;
 
+import java.util.Arrays;
 import java.util.List;
 
 import androidx.annotation.Nullable;
@@ -129,13 +135,17 @@ public class MainFragment extends Fragment {
     }
     m_enableUnsolicitedDataSwitch.setOnCheckedChangeListener((CompoundButton compoundButton, boolean isOn) -> {
       SharedPreferencesManager.setEnableUnsolicitedCaching(getActivity().getApplicationContext(), isOn);
-      if (m_sharedPreferences.getBoolean(PREF_NFD_SERVICE_STATUS, true)) {
-
-        Toast.makeText(getActivity().getApplicationContext(), "Please restart NFD to update cache preference setting",
-                       Toast.LENGTH_LONG).show();
-      }
+      reconfigureNfdService();
     });
 
+    m_csAutoSizeSwitch = v.findViewById(R.id.cs_auto_size_switch);
+    m_csMaxPacketsView = v.findViewById(R.id.cs_max_packets);
+    m_csPolicySpinner = v.findViewById(R.id.cs_policy);
+    setupContentStoreSettings();
+
+    m_trafficRecorderIntervalView = v.findViewById(R.id.traffic_recorder_interval);
+    setupTrafficRecorderSettings();
+
     m_nfdStatusView = (ViewGroup) v.findViewById(R.id.status_view);
     m_nfdStatusView.setVisibility(View.GONE);
     m_versionView = (TextView) v.findViewById(R.id.version);
@@ -151,10 +161,106 @@ public class MainFragment extends Fragment {
     m_outDataView = (TextView) v.findViewById(R.id.out_data);
     m_inNacksView = (TextView) v.findViewById(R.id.in_nacks);
     m_outNacksView = (TextView) v.findViewById(R.id.out_nacks);
+    m_interestRateView = v.findViewById(R.id.interest_rate);
+    m_dataRateView = v.findViewById(R.id.data_rate);
+    m_pitGrowthView = v.findViewById(R.id.pit_growth);
+    m_csHitRatioView = v.findViewById(R.id.cs_hit_ratio);
+    v.findViewById(R.id.export_traffic_history).setOnClickListener((View view) ->
+      sendNfdServiceMessage(NfdService.EXPORT_TRAFFIC_HISTORY));
 
     return v;
   }
 
+  /**
+   * Show the content store settings and save them as they are edited
+   */
+  private void setupContentStoreSettings() {
+    final Context context = getActivity().getApplicationContext();
+    int maxPackets = SharedPreferencesManager.getCsMaxPackets(context);
+    boolean isAuto = maxPackets == SharedPreferencesManager.CS_MAX_PACKETS_AUTO;
+
+    m_csAutoSizeSwitch.setChecked(isAuto);
+    m_csMaxPacketsView.setEnabled(!isAuto);
+    m_csMaxPacketsView.setText(String.valueOf(ContentStoreSizer.getMaxPackets(context)));
+    m_csAutoSizeSwitch.setOnCheckedChangeListener((CompoundButton compoundButton, boolean isOn) -> {
+      m_csMaxPacketsView.setEnabled(!isOn);
+      if (isOn) {
+        SharedPreferencesManager.setCsMaxPackets(context, SharedPreferencesManager.CS_MAX_PACKETS_AUTO);
+        m_csMaxPacketsView.setText(String.valueOf(ContentStoreSizer.getAutomaticMaxPackets(context)));
+      } else {
+        saveCsMaxPackets();
+      }
+      reconfigureNfdService();
+    });
+    m_csMaxPacketsView.setOnEditorActionListener((TextView textView, int actionId, KeyEvent event) -> {
+      if (actionId == EditorInfo.IME_ACTION_DONE) {
+        saveCsMaxPackets();
+        reconfigureNfdService();
+      }
+      return false;
+    });
+
+    m_csPolicySpinner.setSelection(Math.max(0, Arrays.asList(CS_POLICIES)
+      .indexOf(SharedPreferencesManager.getCsPolicy(context))), false);
+    m_csPolicySpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+      @Override
+      public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+        if (!CS_POLICIES[position].equals(SharedPreferencesManager.getCsPolicy(context))) {
+          SharedPreferencesManager.setCsPolicy(context, CS_POLICIES[position]);
+          reconfigureNfdService();
+        }
+      }
+
+      @Override
+      public void onNothingSelected(AdapterView<?> parent) {
+      }
+    });
+  }
+
+  private void saveCsMaxPackets() {
+    try {
+      int maxPackets = Integer.parseInt(m_csMaxPacketsView.getText().toString());
+      if (maxPackets > 0) {
+        SharedPreferencesManager.setCsMaxPackets(getActivity().getApplicationContext(), maxPackets);
+      }
+    } catch (NumberFormatException e) {
+      // keep the previous setting
+    }
+  }
+
+  /**
+   * Show the traffic sampling interval and save it as it is edited
+   */
+  private void setupTrafficRecorderSettings() {
+    final Context context = getActivity().getApplicationContext();
+    m_trafficRecorderIntervalView.setText(
+      String.valueOf(SharedPreferencesManager.getTrafficRecorderInterval(context)));
+    m_trafficRecorderIntervalView.setOnEditorActionListener((TextView textView, int actionId, KeyEvent event) -> {
+      if (actionId == EditorInfo.IME_ACTION_DONE) {
+        try {
+          int intervalMs = Integer.parseInt(m_trafficRecorderIntervalView.getText().toString());
+          intervalMs = Math.max(MIN_TRAFFIC_RECORDER_INTERVAL, Math.min(MAX_TRAFFIC_RECORDER_INTERVAL, intervalMs));
+          SharedPreferencesManager.setTrafficRecorderInterval(context, intervalMs);
+          reconfigureNfdService();
+        } catch (NumberFormatException e) {
+          // keep the previous setting
+        }
+        m_trafficRecorderIntervalView.setText(
+          String.valueOf(SharedPreferencesManager.getTrafficRecorderInterval(context)));
+      }
+      return false;
+    });
+  }
+
+  /**
+   * Apply changed table settings to the running NFD; otherwise they apply on the next start
+   */
+  private void reconfigureNfdService() {
+    if (m_sharedPreferences.getBoolean(PREF_NFD_SERVICE_STATUS, true)) {
+      sendNfdServiceMessage(NfdService.RECONFIGURE_NFD_SERVICE);
+    }
+  }
+
   /**
    * when the user clicks "connect to the nearest hub automatically", create face and register prefix
    */
@@ -230,6 +336,7 @@ public class MainFragment extends Fragment {
 
     m_nfdStartStopSwitch.setText(R.string.stopping_nfd);
     sendNfdServiceMessage(NfdService.STOP_NFD_SERVICE);
+    NfdcHelper.closeIdleConnections();
 
     // disable status block
     m_nfdStatusView.setVisibility(View.GONE);
@@ -302,6 +409,17 @@ public class MainFragment extends Fragment {
           G.Log("ClientHandler: NFD is Stopped.");
           break;
 
+        case NfdService.NFD_COUNTERS:
+          updateNfdStatus(msg.getData());
+          break;
+
+        case NfdService.TRAFFIC_HISTORY_EXPORTED:
+          String path = msg.getData().getString(NfdService.KEY_PATH);
+          Toast.makeText(getActivity(), path != null ? getString(R.string.traffic_history_exported, path)
+                                                     : getString(R.string.traffic_history_export_failed),
+                         Toast.LENGTH_LONG).show();
+          break;
+
         default:
           super.handleMessage(msg);
           break;
@@ -364,61 +482,58 @@ public class MainFragment extends Fragment {
     }
   };
 
-  private class StatusUpdateTask extends AsyncTask<Void, Void, ForwarderStatus> {
-    /**
-     * @param voids
-     * @return ForwarderStatus if operation succeeded, null if operation failed
-     */
-    @Override
-    protected ForwarderStatus
-    doInBackground(Void... voids) {
-      try {
-        NfdcHelper nfdcHelper = new NfdcHelper();
-        ForwarderStatus fs = nfdcHelper.generalStatus();
-        nfdcHelper.shutdown();
-        return fs;
-      } catch (Exception e) {
-        G.Log("Error communicating with NFD (" + e.getMessage() + ")");
-        return null;
-      }
+  /**
+   * Show a counter snapshot received from the NfdService
+   */
+  private void
+  updateNfdStatus(Bundle data) {
+    long[] counters = data.getLongArray(NfdService.KEY_COUNTERS);
+    if (counters == null) {
+      // NFD is not ready yet, try after 0.5 seconds
+      m_handler.postDelayed(m_statusUpdateRunnable, 500);
+      return;
     }
 
-    @Override
-    protected void
-    onPostExecute(ForwarderStatus fs) {
-      if (fs == null) {
-        // when failed, try after 0.5 seconds
-        m_handler.postDelayed(m_statusUpdateRunnable, 500);
-      } else {
-        m_versionView.setText(fs.getNfdVersion());
-        m_uptimeView.setText(PeriodFormat.getDefault().print(new Period(
-          fs.getCurrentTimestamp() - fs.getStartTimestamp())));
-        m_nameTreeEntriesView.setText(String.valueOf(
-          fs.getNNameTreeEntries()));
-        m_fibEntriesView.setText(String.valueOf(fs.getNFibEntries()));
-        m_pitEntriesView.setText(String.valueOf(fs.getNPitEntries()));
-        m_measurementEntriesView.setText(String.valueOf(
-          fs.getNMeasurementsEntries()));
-        m_csEntriesView.setText(String.valueOf(fs.getNCsEntries()));
-
-        m_inInterestsView.setText(String.valueOf(fs.getNInInterests()));
-        m_outInterestsView.setText(String.valueOf(fs.getNOutInterests()));
-
-        m_inDataView.setText(String.valueOf(fs.getNInData()));
-        m_outDataView.setText(String.valueOf(fs.getNOutData()));
-
-        m_inNacksView.setText(String.valueOf(fs.getNInNacks()));
-        m_outNacksView.setText(String.valueOf(fs.getNOutNacks()));
-
-        m_nfdStatusView.setVisibility(View.VISIBLE);
-
-        // refresh after 5 seconds
-        m_handler.postDelayed(m_statusUpdateRunnable, 5000);
-      }
+    String version = data.getString(NfdService.KEY_NFD_VERSION);
+    if (version != null) {
+      m_versionView.setText(version);
     }
+    m_uptimeView.setText(PeriodFormat.getDefault().print(new Period(
+      counters[NfdService.COUNTER_CURRENT_TIMESTAMP] - counters[NfdService.COUNTER_START_TIMESTAMP])));
+    m_nameTreeEntriesView.setText(String.valueOf(counters[NfdService.COUNTER_N_NAME_TREE_ENTRIES]));
+    m_fibEntriesView.setText(String.valueOf(counters[NfdService.COUNTER_N_FIB_ENTRIES]));
+    m_pitEntriesView.setText(String.valueOf(counters[NfdService.COUNTER_N_PIT_ENTRIES]));
+    m_measurementEntriesView.setText(String.valueOf(counters[NfdService.COUNTER_N_MEASUREMENTS_ENTRIES]));
+    m_csEntriesView.setText(String.valueOf(counters[NfdService.COUNTER_N_CS_ENTRIES]));
+
+    m_inInterestsView.setText(String.valueOf(counters[NfdService.COUNTER_N_IN_INTERESTS]));
+    m_outInterestsView.setText(String.valueOf(counters[NfdService.COUNTER_N_OUT_INTERESTS]));
+
+    m_inDataView.setText(String.valueOf(counters[NfdService.COUNTER_N_IN_DATA]));
+    m_outDataView.setText(String.valueOf(counters[NfdService.COUNTER_N_OUT_DATA]));
+
+    m_inNacksView.setText(String.valueOf(counters[NfdService.COUNTER_N_IN_NACKS]));
+    m_outNacksView.setText(String.valueOf(counters[NfdService.COUNTER_N_OUT_NACKS]));
+
+    double[] rates = data.getDoubleArray(NfdService.KEY_RATES);
+    if (rates != null) {
+      m_interestRateView.setText(getString(R.string.rate_in_out,
+        rates[NfdService.COUNTER_N_IN_INTERESTS], rates[NfdService.COUNTER_N_OUT_INTERESTS]));
+      m_dataRateView.setText(getString(R.string.rate_in_out,
+        rates[NfdService.COUNTER_N_IN_DATA], rates[NfdService.COUNTER_N_OUT_DATA]));
+      m_pitGrowthView.setText(getString(R.string.rate_value, rates[NfdService.COUNTER_N_PIT_ENTRIES]));
+      double csHitRatio = data.getDouble(NfdService.KEY_CS_HIT_RATIO, Double.NaN);
+      m_csHitRatioView.setText(Double.isNaN(csHitRatio) ? getString(R.string.not_available)
+                                                        : getString(R.string.ratio_value, csHitRatio * 100));
+    }
+
+    m_nfdStatusView.setVisibility(View.VISIBLE);
+
+    m_handler.postDelayed(m_statusUpdateRunnable, STATUS_UPDATE_INTERVAL);
   }
 
 
+
   private class ConnectNearestHubAsyncTask extends AsyncTask<Void, Void, String> {
 
     @Override
@@ -427,7 +542,7 @@ public class MainFragment extends Fragment {
       //check whether two prefixes exist or not
       boolean prefix_ndn_exist = false;
       boolean prefix_localhop_nfd_exist = false;
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         List<RibEntry> ribEntries = nfdcHelper.ribList();
         for (RibEntry one : ribEntries) {
@@ -442,7 +557,7 @@ public class MainFragment extends Fragment {
       } catch (ManagementException e) {
         G.Log("Error fetching RIB list from NFD (" + e.getMessage() + ")");
       } finally {
-        nfdcHelper.shutdown();
+        nfdcHelper.release();
       }
       if (prefix_ndn_exist && prefix_localhop_nfd_exist)
         return "";
@@ -485,7 +600,7 @@ public class MainFragment extends Fragment {
     @Override
     protected String
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         G.Log("Try to create route to connect the nearest hub");
         int faceId = nfdcHelper.faceCreate(m_faceUri);
@@ -494,7 +609,7 @@ public class MainFragment extends Fragment {
       } catch (Exception e) {
         G.Log("Error in RouteCreateToConnectNearestHubAsyncTask: " + e.getMessage());
       } finally {
-        nfdcHelper.shutdown();
+        nfdcHelper.release();
       }
       return null;
     }
@@ -520,6 +635,40 @@ public class MainFragment extends Fragment {
    */
   private Switch m_enableUnsolicitedDataSwitch;
 
+  /**
+   * Switch that selects automatic content store sizing
+   */
+  private Switch m_csAutoSizeSwitch;
+
+  /**
+   * Content store capacity in packets
+   */
+  private EditText m_csMaxPacketsView;
+
+  /**
+   * Content store replacement policy, in the order of CS_POLICIES
+   */
+  private Spinner m_csPolicySpinner;
+
+  /**
+   * Interval between traffic samples in milliseconds
+   */
+  private EditText m_trafficRecorderIntervalView;
+
+  /**
+   * Bounds of the traffic sampling interval, in milliseconds
+   */
+  private static final int MIN_TRAFFIC_RECORDER_INTERVAL = 100;
+  private static final int MAX_TRAFFIC_RECORDER_INTERVAL = 60000;
+
+  /**
+   * Content store policies in the order of the cs_policies string array
+   */
+  private static final String[] CS_POLICIES = {
+    SharedPreferencesManager.CS_POLICY_PRIORITY_FIFO,
+    SharedPreferencesManager.CS_POLICY_LRU,
+  };
+
   /**
    * Flag that marks that application is connected to the NfdService
    */
@@ -555,12 +704,22 @@ public class MainFragment extends Fragment {
   private TextView m_outDataView;
   private TextView m_inNacksView;
   private TextView m_outNacksView;
+  private TextView m_interestRateView;
+  private TextView m_dataRateView;
+  private TextView m_pitGrowthView;
+  private TextView m_csHitRatioView;
 
   private Handler m_handler;
+
+  /**
+   * Interval between counter snapshots, in milliseconds
+   */
+  private static final long STATUS_UPDATE_INTERVAL = 1000;
+
   private Runnable m_statusUpdateRunnable = new Runnable() {
     @Override
     public void run() {
-      new StatusUpdateTask().execute();
+      sendNfdServiceMessage(NfdService.GET_NFD_COUNTERS);
     }
   };
 
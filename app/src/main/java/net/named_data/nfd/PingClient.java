@@ -30,7 +30,7 @@ import net.named_data.jndn.NetworkNack;
 import net.named_data.jndn.OnData;
 import net.named_data.jndn.OnNetworkNack;
 import net.named_data.jndn.OnTimeout;
-import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.nfd.utils.FaceEventLoop;
 import net.named_data.nfd.utils.G;
 
 import java.io.IOException;
@@ -109,8 +109,16 @@ class PingClient {
   }
 
   public void stop() {
-    m_isRunning.set(false);
-    // thread will be killed shorty, but don't wait to so we not going to block UI
+    if (m_isRunning.getAndSet(false)) {
+      // thread will be killed shorty, but don't wait to so we not going to block UI
+      m_handler.post(new Runnable() {
+        @Override
+        public void run()
+        {
+          terminate();
+        }
+      });
+    }
   }
 
   /////////////////////////////////////////////////////////////////////////
@@ -179,38 +187,15 @@ class PingClient {
     m_isRunning.set(true);
     m_pingSeq = Math.abs(new Random().nextLong());
 
-    m_face = new Face();
+    // responses are dispatched by the shared event loop as soon as they arrive
+    m_face = FaceEventLoop.getInstance().createFace();
     requestNextPing(0);
-    processEvents();
-  }
-
-  private void processEvents() {
-    try {
-      if (m_isRunning.get()) {
-        try {
-          m_face.processEvents();
-        }
-        catch (EncodingException e) {
-          G.Log("Encoding error: " + e.getMessage());
-        }
-        m_handler.postDelayed(new Runnable() {
-          @Override
-          public void run()
-          {
-            processEvents();
-          }
-        }, 100);
-      }
-      else {
-        terminate();
-      }
-    }
-    catch (IOException e) {
-      G.Log("Face error: " + e.getMessage());
-    }
   }
 
   private void terminate() {
+    if (m_face == null) {
+      return;
+    }
     G.Log("TERMINATE ping, " + m_face.hashCode());
     calculateStatistics();
     notifyPingFinish();
@@ -243,43 +228,46 @@ class PingClient {
 
     final long startTime = System.nanoTime();
     try {
+      // callbacks come on the event loop thread; statistics are only touched on m_handler's
       m_face.expressInterest(interest,
                              new OnData() {
                                @Override
                                public void onData(Interest interest, Data data)
                                {
-                                 double elapsedTime = (System.nanoTime() - startTime) / 1000000.0;
-                                 ++m_pingStats.dataCount;
-                                 m_pingStats.timeSum += elapsedTime;
-                                 m_pingStats.timeSquareSum += elapsedTime * elapsedTime;
-                                 if (elapsedTime > m_pingStats.timeMax)
-                                   m_pingStats.timeMax = elapsedTime;
-                                 if (elapsedTime < m_pingStats.timeMin)
-                                   m_pingStats.timeMin = elapsedTime;
-
-                                 // Send a result to Screen
-                                 notifyPingResponse(m_pingPrefix, m_pingSeq, elapsedTime);
-                                 requestNextPing(1000);
+                                 final double elapsedTime = (System.nanoTime() - startTime) / 1000000.0;
+                                 m_handler.post(new Runnable() {
+                                   @Override
+                                   public void run()
+                                   {
+                                     onPingData(elapsedTime);
+                                   }
+                                 });
                                }
                              },
                              new OnTimeout() {
                                @Override
                                public void onTimeout(Interest interest)
                                {
-                                 ++m_pingStats.timeoutCount;
-
-                                 notifyPingTimeout(m_pingPrefix, m_pingSeq);
-                                 requestNextPing(0);
+                                 m_handler.post(new Runnable() {
+                                   @Override
+                                   public void run()
+                                   {
+                                     onPingTimeout();
+                                   }
+                                 });
                                }
                              },
                              new OnNetworkNack() {
                                @Override
-                               public void onNetworkNack(Interest interest, NetworkNack networkNack)
+                               public void onNetworkNack(Interest interest, final NetworkNack networkNack)
                                {
-                                 ++m_pingStats.nackCount;
-
-                                 notifyPingNack(m_pingPrefix, m_pingSeq, networkNack.getReason());
-                                 requestNextPing(1000);
+                                 m_handler.post(new Runnable() {
+                                   @Override
+                                   public void run()
+                                   {
+                                     onPingNack(networkNack.getReason());
+                                   }
+                                 });
                                }
                              });
     }
@@ -287,4 +275,44 @@ class PingClient {
       G.Log("Error expressing the interest: " + e.getMessage());
     }
   }
+
+  private void onPingData(double elapsedTime)
+  {
+    if (m_face == null) {
+      return;
+    }
+    ++m_pingStats.dataCount;
+    m_pingStats.timeSum += elapsedTime;
+    m_pingStats.timeSquareSum += elapsedTime * elapsedTime;
+    if (elapsedTime > m_pingStats.timeMax)
+      m_pingStats.timeMax = elapsedTime;
+    if (elapsedTime < m_pingStats.timeMin)
+      m_pingStats.timeMin = elapsedTime;
+
+    // Send a result to Screen
+    notifyPingResponse(m_pingPrefix, m_pingSeq, elapsedTime);
+    requestNextPing(1000);
+  }
+
+  private void onPingTimeout()
+  {
+    if (m_face == null) {
+      return;
+    }
+    ++m_pingStats.timeoutCount;
+
+    notifyPingTimeout(m_pingPrefix, m_pingSeq);
+    requestNextPing(0);
+  }
+
+  private void onPingNack(NetworkNack.Reason reason)
+  {
+    if (m_face == null) {
+      return;
+    }
+    ++m_pingStats.nackCount;
+
+    notifyPingNack(m_pingPrefix, m_pingSeq, reason);
+    requestNextPing(1000);
+  }
 }
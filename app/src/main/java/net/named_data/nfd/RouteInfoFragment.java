@@ -393,14 +393,14 @@ public class RouteInfoFragment extends ListFragment {
     protected Pair<List<FaceStatus>, Exception>
     doInBackground(Void... params) {
       Exception returnException = null;
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       List<FaceStatus> faceStatusList = null;
       try {
         faceStatusList = nfdcHelper.faceList(getActivity().getApplicationContext());
       } catch (Exception e) {
         returnException = e;
       }
-      nfdcHelper.shutdown();
+      nfdcHelper.release();
       return new Pair<>(faceStatusList, returnException);
     }
 
@@ -439,7 +439,7 @@ public class RouteInfoFragment extends ListFragment {
     @Override
     protected Pair<List<RibEntry>, Exception>
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       Exception returnException = null;
       List<RibEntry> routes = null;
       try {
@@ -448,7 +448,7 @@ public class RouteInfoFragment extends ListFragment {
       catch (Exception e) {
         returnException = e;
       }
-      nfdcHelper.shutdown();
+      nfdcHelper.release();
       return new Pair<>(routes, returnException);
     }
 
@@ -507,17 +507,16 @@ public class RouteInfoFragment extends ListFragment {
     protected String
     doInBackground(Void... params)
     {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         for (int routeFaceId : m_routeFaceList) {
           nfdcHelper.ribUnregisterPrefix(m_prefix, routeFaceId);
         }
-        nfdcHelper.shutdown();
         return "OK";
       } catch (ManagementException e) {
         return "Error removing face: " + e.toString();
       } finally {
-        nfdcHelper.shutdown();
+        nfdcHelper.release();
       }
     }
 
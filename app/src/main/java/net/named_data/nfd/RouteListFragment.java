@@ -246,9 +246,9 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
   removeRouteSyncs(Context applicationContext,
                    Name prefix,
                    Iterable<Integer> faceIds) throws Exception {
-    NfdcHelper nfdcHelper = new NfdcHelper();
-    SparseArray<FaceStatus> faceSparseArray = nfdcHelper.faceListAsSparseArray(applicationContext);
+    NfdcHelper nfdcHelper = NfdcHelper.acquire();
     try {
+      SparseArray<FaceStatus> faceSparseArray = nfdcHelper.faceListAsSparseArray(applicationContext);
       for (int faceId : faceIds) {
         removeOneRouteSync(
           applicationContext,
@@ -257,7 +257,7 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
           prefix);
       }
     } finally {
-      nfdcHelper.shutdown();
+      nfdcHelper.release();
     }
   }
 
@@ -265,9 +265,9 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
   removeRouteSyncs(Context applicationContext,
                    Integer faceId,
                    Iterable<Name> prefixes) throws ManagementException {
-    NfdcHelper nfdcHelper = new NfdcHelper();
-    SparseArray<FaceStatus> faceSparseArray = nfdcHelper.faceListAsSparseArray(applicationContext);
+    NfdcHelper nfdcHelper = NfdcHelper.acquire();
     try {
+      SparseArray<FaceStatus> faceSparseArray = nfdcHelper.faceListAsSparseArray(applicationContext);
       for (Name prefix : prefixes) {
         removeOneRouteSync(
           applicationContext,
@@ -276,7 +276,7 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
           prefix);
       }
     } finally {
-      nfdcHelper.shutdown();
+      nfdcHelper.release();
     }
   }
 
@@ -417,7 +417,7 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
     @Override
     protected Pair<List<RibEntry>, Exception>
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       Exception returnException = null;
       List<RibEntry> routes = null;
       try {
@@ -425,7 +425,7 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
       } catch (Exception e) {
         returnException = e;
       }
-      nfdcHelper.shutdown();
+      nfdcHelper.release();
       return new Pair<>(routes, returnException);
     }
 
@@ -462,7 +462,7 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
     @Override
     protected String
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         if (m_isFaceUri) {
           int faceId = nfdcHelper.faceCreate(m_faceUri);
@@ -498,14 +498,13 @@ public class RouteListFragment extends ListFragment implements RouteCreateDialog
                 );
           }
         }
-        nfdcHelper.shutdown();
         return "OK";
       } catch (FaceUri.CanonizeError|FaceUri.Error e) {
         return "Error creating face (" + e.getMessage() + ")";
       } catch (Exception e) {
         return "Error communicating with NFD (" + e.getMessage() + ")";
       } finally {
-        nfdcHelper.shutdown();
+        nfdcHelper.release();
       }
     }
 
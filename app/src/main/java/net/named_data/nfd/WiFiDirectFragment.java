@@ -28,23 +28,30 @@ import android.net.wifi.p2p.WifiP2pDevice;
 import android.net.wifi.p2p.WifiP2pManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 import android.util.Log;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.CompoundButton;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import net.named_data.nfd.utils.SharedPreferencesManager;
 import net.named_data.nfd.wifidirect.model.Peer;
 import net.named_data.nfd.wifidirect.utils.NDNController;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 
 import androidx.fragment.app.Fragment;
@@ -125,10 +132,32 @@ public class WiFiDirectFragment extends Fragment {
       }
     });
 
+    m_wdGroupTransportSwitch = (Switch) view.findViewById(R.id.wd_group_transport_switch);
+    m_wdGroupTransportSwitch.setChecked(SharedPreferencesManager.getWifiDirectGroupTransport(getActivity()));
+    m_wdGroupTransportSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+      @Override
+      public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+        SharedPreferencesManager.setWifiDirectGroupTransport(getActivity(), isChecked);
+        NDNController.getInstance().setGroupTransportEnabled(isChecked);
+      }
+    });
+
+    m_wdWantedPrefixes = (EditText) view.findViewById(R.id.wd_wanted_prefixes);
+    m_wdWantedPrefixes.setText(TextUtils.join(" ", SharedPreferencesManager.getWifiDirectWantedPrefixes(getActivity())));
+    m_wdWantedPrefixes.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+      @Override
+      public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
+        if (actionId == EditorInfo.IME_ACTION_DONE) {
+          saveWantedPrefixes();
+        }
+        return false;
+      }
+    });
+
     // list view for displaying peers
     m_wdConnectedPeerListview = (ListView) view.findViewById(R.id.wd_connected_peers_listview);
     m_ConnectedPeers = new ArrayList<>(NDNController.getInstance().getConnectedPeers());
-    m_DicoveredPeers = new ArrayList<>(NDNController.getInstance().getDiscoveredPeers());
+    m_DicoveredPeers = new ArrayList<>(NDNController.getInstance().getDiscoveredPeersByRelevance());
 
     m_ConnectedPeersAdapter = new ConnectPeerListAdapter(getActivity(), R.layout.row_devices, m_ConnectedPeers);
     m_wdConnectedPeerListview.setAdapter(m_ConnectedPeersAdapter);
@@ -146,7 +175,7 @@ public class WiFiDirectFragment extends Fragment {
           String peerInfo = selectedPeer.getNumProbeTimeouts() == 0 ?
             getResources().getString(R.string.fragment_wifidirect_toast_connection_works_well) :
             getResources().getString(R.string.fragment_wifidirect_toast_didnt_get_response) +
-            (selectedPeer.getNumProbeTimeouts() * NDNController.PROBE_DELAY / 1000) +
+            ((SystemClock.elapsedRealtime() - selectedPeer.getLastResponseTime()) / 1000) +
               getResources().getString(R.string.fragment_wifidirect_toast_seconds);
           Toast.makeText(getActivity(), peerInfo, Toast.LENGTH_LONG).show();
         }
@@ -301,6 +330,24 @@ public class WiFiDirectFragment extends Fragment {
     m_DiscoveredPeersAdapter.notifyDataSetChanged();
   }
 
+  private void saveWantedPrefixes() {
+    // namespace URIs separated by white space; anything that is not a URI is dropped
+    LinkedHashSet<String> prefixes = new LinkedHashSet<>();
+    for (String prefix : m_wdWantedPrefixes.getText().toString().trim().split("\\s+")) {
+      if (prefix.startsWith("/")) {
+        prefixes.add(prefix);
+      }
+    }
+    SharedPreferencesManager.setWifiDirectWantedPrefixes(getActivity(), prefixes);
+    NDNController.getInstance().setWantedPrefixes(prefixes);
+    m_wdWantedPrefixes.setText(TextUtils.join(" ", prefixes));
+
+    // rank the discovered devices by the new namespaces
+    m_DicoveredPeers.clear();
+    m_DicoveredPeers.addAll(NDNController.getInstance().getDiscoveredPeersByRelevance());
+    m_DiscoveredPeersAdapter.notifyDataSetChanged();
+  }
+
   /**
    * Array adapter for ListFragment that maintains WifiP2pDevice list.
    */
@@ -389,6 +436,8 @@ public class WiFiDirectFragment extends Fragment {
   private ListView m_wdConnectedPeerListview;
   private ListView m_wdDiscoveredPeerListview;
   private Switch m_wdSwitch;
+  private Switch m_wdGroupTransportSwitch;
+  private EditText m_wdWantedPrefixes;
   private TextView m_wdGroupConnStatus;
   private TextView m_wdIpAddress;
   private TextView m_wdDeviceName;
@@ -433,7 +482,7 @@ public class WiFiDirectFragment extends Fragment {
       m_ConnectedPeers.clear();
       m_DicoveredPeers.clear();
       m_ConnectedPeers.addAll(NDNController.getInstance().getConnectedPeers());
-      m_DicoveredPeers.addAll(NDNController.getInstance().getDiscoveredPeers());
+      m_DicoveredPeers.addAll(NDNController.getInstance().getDiscoveredPeersByRelevance());
       m_ConnectedPeersAdapter.notifyDataSetChanged();
       m_DiscoveredPeersAdapter.notifyDataSetChanged();
 
@@ -28,8 +28,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.AsyncTask;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
 import android.os.Messenger;
 import android.os.RemoteException;
@@ -41,18 +44,25 @@ import com.android.volley.VolleyError;
 import com.android.volley.toolbox.StringRequest;
 import com.android.volley.toolbox.Volley;
 import com.intel.jndn.management.ManagementException;
-import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.ForwarderStatus;
 import com.intel.jndn.management.types.RibEntry;
 
 import net.named_data.jndn.Name;
+import net.named_data.jndn_xx.util.FaceUri;
 import net.named_data.nfd.MainActivity;
 import net.named_data.nfd.MainFragment;
 import net.named_data.nfd.R;
+import net.named_data.nfd.utils.AsyncNfdcHelper;
+import net.named_data.nfd.utils.ContentStoreSizer;
 import net.named_data.nfd.utils.G;
+import net.named_data.nfd.utils.NfdcFuture;
 import net.named_data.nfd.utils.NfdcHelper;
 import net.named_data.nfd.utils.SharedPreferencesManager;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -109,11 +119,101 @@ public class NfdService extends Service {
   /**
    * Native API for getting NFD status
    *
-   * @return if NFD is running return true; otherwise false.
+   * @return true if NFD is initialized and its event loop is running, i.e., management
+   *         commands can be sent to it; otherwise false.
    */
   public native static boolean
   isNfdRunning();
 
+  /**
+   * Native API for applying a partial configuration to the running NFD.
+   * <p/>
+   * The parameters are merged into the configuration used to start NFD, which is then reloaded
+   * in place without touching existing faces, routes, and PIT entries.  The update is applied
+   * asynchronously on the NFD thread; an invalid configuration is logged and rolled back.
+   *
+   * @param params Configuration paths and values, e.g., 'tables.cs_max_packets'.  A strategy
+   *               choice is given as 'tables.strategy_choice./prefix' with the strategy name as
+   *               value.
+   * @return false if NFD is not running
+   */
+  public native static boolean
+  reconfigureNfd(Map<String, String> params);
+
+  /**
+   * Native API for taking a snapshot of the forwarder counters.
+   * <p/>
+   * The counters are read on the NFD thread and copied into the given array without any
+   * allocation on the Java side.
+   *
+   * @param counters Array of at least N_COUNTERS elements, filled at the COUNTER_* indices
+   * @return false if NFD is not running
+   */
+  public native static boolean
+  getNfdCounters(long[] counters);
+
+  /**
+   * Indices of the counter snapshot; must match the enum in nfd-wrapper.cpp
+   */
+  public static final int COUNTER_START_TIMESTAMP = 0;
+  public static final int COUNTER_CURRENT_TIMESTAMP = 1;
+  public static final int COUNTER_N_NAME_TREE_ENTRIES = 2;
+  public static final int COUNTER_N_FIB_ENTRIES = 3;
+  public static final int COUNTER_N_PIT_ENTRIES = 4;
+  public static final int COUNTER_N_MEASUREMENTS_ENTRIES = 5;
+  public static final int COUNTER_N_CS_ENTRIES = 6;
+  public static final int COUNTER_N_IN_INTERESTS = 7;
+  public static final int COUNTER_N_OUT_INTERESTS = 8;
+  public static final int COUNTER_N_IN_DATA = 9;
+  public static final int COUNTER_N_OUT_DATA = 10;
+  public static final int COUNTER_N_IN_NACKS = 11;
+  public static final int COUNTER_N_OUT_NACKS = 12;
+  public static final int COUNTER_N_SATISFIED_INTERESTS = 13;
+  public static final int COUNTER_N_UNSATISFIED_INTERESTS = 14;
+  public static final int COUNTER_N_CS_HITS = 15;
+  public static final int COUNTER_N_CS_MISSES = 16;
+  public static final int N_COUNTERS = 17;
+
+  /**
+   * Native API for taking a snapshot of the counters of every face.
+   *
+   * @param counters Array filled with FACE_COUNTER_STRIDE elements per face, at the
+   *                 FACE_COUNTER_* offsets; faces that do not fit are left out
+   * @return number of faces in the snapshot, or -1 if NFD is not running
+   */
+  public native static int
+  getFaceCounters(long[] counters);
+
+  /**
+   * Layout of one face in the face counter snapshot; must match the enum in nfd-wrapper.cpp
+   */
+  public static final int FACE_COUNTER_FACE_ID = 0;
+  public static final int FACE_COUNTER_N_IN_INTERESTS = 1;
+  public static final int FACE_COUNTER_N_OUT_INTERESTS = 2;
+  public static final int FACE_COUNTER_N_IN_DATA = 3;
+  public static final int FACE_COUNTER_N_OUT_DATA = 4;
+  public static final int FACE_COUNTER_N_IN_NACKS = 5;
+  public static final int FACE_COUNTER_N_OUT_NACKS = 6;
+  public static final int FACE_COUNTER_N_IN_BYTES = 7;
+  public static final int FACE_COUNTER_N_OUT_BYTES = 8;
+  public static final int FACE_COUNTER_STRIDE = 9;
+
+  /**
+   * Called by the native code on the NFD thread once NFD is ready to accept commands
+   */
+  @SuppressWarnings("unused")
+  private static void
+  onNfdReady() {
+    s_mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (s_instance != null) {
+          s_instance.runPostStartTasks();
+        }
+      }
+    });
+  }
+
   /**
    * Message to start NFD Service
    */
@@ -134,6 +234,46 @@ public class NfdService extends Service {
    */
   public static final int NFD_SERVICE_STOPPED = 4;
 
+  /**
+   * Message to apply the current table settings to the running NFD
+   */
+  public static final int RECONFIGURE_NFD_SERVICE = 5;
+
+  /**
+   * Message to request a snapshot of the forwarder counters
+   */
+  public static final int GET_NFD_COUNTERS = 6;
+
+  /**
+   * Reply to GET_NFD_COUNTERS; the data has the counters under KEY_COUNTERS, if NFD is running,
+   * the NFD version under KEY_NFD_VERSION, once known, and per-second rates of the counters
+   * under KEY_RATES together with KEY_CS_HIT_RATIO, once enough traffic samples are recorded
+   */
+  public static final int NFD_COUNTERS = 7;
+
+  /**
+   * Message to export the recorded traffic history to a CSV file
+   */
+  public static final int EXPORT_TRAFFIC_HISTORY = 8;
+
+  /**
+   * Reply to EXPORT_TRAFFIC_HISTORY; the data has the file path under KEY_PATH, unless the
+   * export failed
+   */
+  public static final int TRAFFIC_HISTORY_EXPORTED = 9;
+
+  /**
+   * Intent action to reload the face system of the running NFD, so that it creates the
+   * multicast faces of network interfaces that appeared since it started, e.g. Wi-Fi Direct's
+   */
+  public static final String ACTION_RELOAD_FACE_SYSTEM = "net.named_data.nfd.RELOAD_FACE_SYSTEM";
+
+  public static final String KEY_COUNTERS = "counters";
+  public static final String KEY_NFD_VERSION = "nfdVersion";
+  public static final String KEY_RATES = "rates";
+  public static final String KEY_CS_HIT_RATIO = "csHitRatio";
+  public static final String KEY_PATH = "path";
+
   /**
    * debug tag
    */
@@ -144,6 +284,10 @@ public class NfdService extends Service {
   public void onCreate() {
     G.Log(TAG, "NFDService::onCreate()");
     m_nfdServiceMessenger = new Messenger(new NfdServiceMessageHandler());
+    m_counterThread = new HandlerThread("NfdServiceCounters");
+    m_counterThread.start();
+    m_counterHandler = new Handler(m_counterThread.getLooper());
+    s_instance = this;
   }
 
   @Override
@@ -151,9 +295,21 @@ public class NfdService extends Service {
   onStartCommand(Intent intent, int flags, int startId) {
     G.Log(TAG, "NFDService::onStartCommand()");
 
+    if (intent != null && ACTION_RELOAD_FACE_SYSTEM.equals(intent.getAction())) {
+      if (m_isNfdStarted) {
+        serviceReconfigureNfd();
+        return START_STICKY;
+      }
+      // a reload never starts NFD, which creates its faces anyway when it is started; the
+      // service stops again unless a client is bound, and the system must not restart it
+      stopSelf(startId);
+      return START_NOT_STICKY;
+    }
+
     serviceStartNfd();
     createPermanentFaceUriAndRoute();
     connectToNearestHub();
+    startTrafficRecorder();
 
     // Service is restarted when killed.
     // Pending intents delivered; null intent redelivered otherwise.
@@ -180,7 +336,11 @@ public class NfdService extends Service {
     G.Log("NFDService::onDestroy()");
 
     serviceStopNfd();
+    m_counterThread.quitSafely();
+    m_counterThread = null;
+    m_counterHandler = null;
     m_nfdServiceMessenger = null;
+    s_instance = null;
   }
 
   /**
@@ -209,11 +369,13 @@ public class NfdService extends Service {
       m_isNfdStarted = true;
       HashMap<String, String> params = new HashMap<>();
       params.put("homePath", getFilesDir().getAbsolutePath());
-      params.put("tables.cs_unsolicited_policy",
-                 SharedPreferencesManager.getEnableUnsolicitedCaching(getApplicationContext()) ? "admit-all" : "drop-all");
+      params.putAll(getTablesConfig());
+      params.putAll(getFaceSystemConfig());
       Set<Map.Entry<String, String>> e = params.entrySet();
 
+      m_startupTimer.restart();
       startNfd(params);
+      m_startupTimer.mark("start NFD");
 
       // TODO: Reload NFD and NRD in memory structures (if any)
 
@@ -227,39 +389,204 @@ public class NfdService extends Service {
     }
   }
 
-  private void createPermanentFaceUriAndRoute() {
-    final long checkInterval = 1000;
-    if (isNfdRunning()) {
-      G.Log(TAG, "createPermanentFaceUriAndRoute: NFD is running, start executing task.");
-      new FaceCreateAsyncTask(getApplicationContext()).execute();
-      new RouteCreateAsyncTask(getApplicationContext()).execute();
+  /**
+   * Table settings that can be changed by the user
+   */
+  private HashMap<String, String>
+  getTablesConfig() {
+    HashMap<String, String> params = new HashMap<>();
+    params.put("tables.cs_unsolicited_policy",
+               SharedPreferencesManager.getEnableUnsolicitedCaching(getApplicationContext()) ? "admit-all" : "drop-all");
+    params.put("tables.cs_max_packets", Integer.toString(ContentStoreSizer.getMaxPackets(getApplicationContext())));
+    params.put("tables.cs_policy", SharedPreferencesManager.getCsPolicy(getApplicationContext()));
+    return params;
+  }
+
+  /**
+   * Face system settings that can be changed by the user
+   * <p>
+   * Wi-Fi Direct group transport needs UDP multicast faces, which NFD enables by default.
+   */
+  private HashMap<String, String>
+  getFaceSystemConfig() {
+    HashMap<String, String> params = new HashMap<>();
+    if (SharedPreferencesManager.getWifiDirectGroupTransport(getApplicationContext())) {
+      params.put("face_system.udp.mcast", "yes");
+    }
+    return params;
+  }
+
+  /**
+   * Apply the current table, face system and traffic sampling settings without restarting NFD
+   * <p>
+   * Reloading the face system also creates multicast faces on new network interfaces.
+   */
+  private void
+  serviceReconfigureNfd() {
+    HashMap<String, String> params = getTablesConfig();
+    params.putAll(getFaceSystemConfig());
+    m_trafficRecorder.setInterval(SharedPreferencesManager.getTrafficRecorderInterval(getApplicationContext()));
+    if (reconfigureNfd(params)) {
+      G.Log(TAG, "serviceReconfigureNfd()");
     } else {
-      G.Log(TAG, "createPermanentFaceUriAndRoute: NFD is not started yet, delay " + String.valueOf(checkInterval) + " ms.");
-      m_handler.postDelayed(new Runnable() {
-        @Override
-        public void run() {
-          createPermanentFaceUriAndRoute();
-        }
-      }, checkInterval);
+      G.Log(TAG, "serviceReconfigureNfd(): NFD is not running, settings apply on next start");
     }
   }
 
-  private void connectToNearestHub() {
-    final long checkInterval = 1000;
+  /**
+   * Reply with a snapshot of the forwarder counters
+   * <p>
+   * Reading the counters waits for the NFD thread, so the reply is prepared on the counter
+   * thread rather than on the main thread.
+   */
+  private void
+  replyWithCounters(Message message) {
+    final Messenger replyTo = message.replyTo;
+    m_counterHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        sendCounters(replyTo);
+      }
+    });
+  }
+
+  /**
+   * Send a snapshot of the forwarder counters; runs on the counter thread
+   * <p>
+   * The NFD version does not change while NFD runs, so it is fetched once through the status
+   * dataset and then sent along with the counters.
+   */
+  private void
+  sendCounters(Messenger replyTo) {
+    Bundle data = m_counterData;
+    if (getNfdCounters(m_counters)) {
+      data.putLongArray(KEY_COUNTERS, m_counters);
+      if (m_nfdVersion == null && !m_isNfdVersionRequested) {
+        m_isNfdVersionRequested = true;
+        AsyncNfdcHelper.getInstance().generalStatus().addListener(new NfdcFuture.Listener<ForwarderStatus>() {
+          @Override
+          public void onComplete(NfdcFuture<ForwarderStatus> status) {
+            if (status.getValue() != null) {
+              m_nfdVersion = status.getValue().getNfdVersion();
+            }
+            else {
+              m_isNfdVersionRequested = false;
+            }
+          }
+        });
+      }
+    }
+    else {
+      data.remove(KEY_COUNTERS);
+    }
+    if (m_nfdVersion != null) {
+      data.putString(KEY_NFD_VERSION, m_nfdVersion);
+    }
+    else {
+      data.remove(KEY_NFD_VERSION);
+    }
+    if (m_trafficRecorder.getRates(RATE_WINDOW, m_rates)) {
+      data.putDoubleArray(KEY_RATES, m_rates);
+      data.putDouble(KEY_CS_HIT_RATIO, m_trafficRecorder.getCsHitRatio(RATE_WINDOW));
+    }
+    else {
+      data.remove(KEY_RATES);
+      data.remove(KEY_CS_HIT_RATIO);
+    }
+
+    try {
+      Message reply = Message.obtain(null, NFD_COUNTERS);
+      reply.setData(data);
+      replyTo.send(reply);
+    } catch (RemoteException e) {
+      // Nothing to do here; It means that client end has been terminated.
+    }
+  }
+
+  /**
+   * Export the recorded traffic history and reply with the path of the exported file
+   */
+  private void
+  exportTrafficHistory(Message message) {
+    final Messenger replyTo = message.replyTo;
+    File directory = getExternalFilesDir(null);
+    if (directory == null) {
+      directory = getFilesDir();
+    }
+    File file = new File(directory, "traffic-" + System.currentTimeMillis() + ".csv");
+    m_trafficRecorder.export(file, new TrafficRecorder.ExportListener() {
+      @Override
+      public void onExported(File file) {
+        Bundle data = new Bundle();
+        if (file != null) {
+          data.putString(KEY_PATH, file.getAbsolutePath());
+        }
+        try {
+          Message reply = Message.obtain(null, TRAFFIC_HISTORY_EXPORTED);
+          reply.setData(data);
+          replyTo.send(reply);
+        } catch (RemoteException e) {
+          // Nothing to do here; It means that client end has been terminated.
+        }
+      }
+    });
+  }
+
+  /**
+   * Run a task on the main thread once NFD is ready, or right away if it is ready already
+   */
+  private void
+  runWhenNfdReady(Runnable task) {
     if (isNfdRunning()) {
-      G.Log(TAG, "connectToNearestHub: NFD is running, start executing task.");
-      new ConnectNearestHubAsyncTask(getApplicationContext()).execute();
+      task.run();
     } else {
-      G.Log(TAG, "connectToNearestHub: NFD is not started yet, delay " + String.valueOf(checkInterval) + " ms.");
-      m_handler.postDelayed(new Runnable() {
-        @Override
-        public void run() {
-          connectToNearestHub();
-        }
-      }, checkInterval);
+      m_postStartTasks.add(task);
+    }
+  }
+
+  private void
+  runPostStartTasks() {
+    if (!isNfdRunning()) {
+      return;
+    }
+    m_startupTimer.mark("wait for NFD");
+    List<Runnable> tasks = new ArrayList<>(m_postStartTasks);
+    m_postStartTasks.clear();
+    for (Runnable task : tasks) {
+      task.run();
     }
   }
 
+  private void createPermanentFaceUriAndRoute() {
+    runWhenNfdReady(new Runnable() {
+      @Override
+      public void run() {
+        G.Log(TAG, "createPermanentFaceUriAndRoute: NFD is running, start executing task.");
+        new PermanentStateRestoreAsyncTask(getApplicationContext(), m_startupTimer)
+          .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      }
+    });
+  }
+
+  private void startTrafficRecorder() {
+    runWhenNfdReady(new Runnable() {
+      @Override
+      public void run() {
+        m_trafficRecorder.start(SharedPreferencesManager.getTrafficRecorderInterval(getApplicationContext()));
+      }
+    });
+  }
+
+  private void connectToNearestHub() {
+    runWhenNfdReady(new Runnable() {
+      @Override
+      public void run() {
+        G.Log(TAG, "connectToNearestHub: NFD is running, start executing task.");
+        new ConnectNearestHubAsyncTask(getApplicationContext()).execute();
+      }
+    });
+  }
+
   /**
    * Thread safe way of stopping the NFD and updating the
    * started flag.
@@ -268,8 +595,13 @@ public class NfdService extends Service {
   serviceStopNfd() {
     if (m_isNfdStarted) {
       m_isNfdStarted = false;
+      m_postStartTasks.clear();
+      m_nfdVersion = null;
+      m_isNfdVersionRequested = false;
+      m_trafficRecorder.stop();
 
       // TODO: Save NFD and NRD in memory data structures.
+      NfdcHelper.closeIdleConnections();
       stopNfd();
       SharedPreferencesManager.clearFaceIds(getApplicationContext());
       stopSelf();
@@ -280,75 +612,56 @@ public class NfdService extends Service {
 
 
   /**
-   * Create all permanent faces in the background
+   * Restore all permanent faces and routes in the background
+   * <p>
+   * FaceUris are canonized here, because canonization may need a DNS lookup which must not run
+   * on the management event thread.  The commands themselves are scheduled by
+   * {@link PermanentStateRestorer}.
    */
-  private static class FaceCreateAsyncTask extends AsyncTask<Void, Void, String> {
+  private static class PermanentStateRestoreAsyncTask extends AsyncTask<Void, Void, String> {
     Context context;
+    StartupTimer startupTimer;
 
-    FaceCreateAsyncTask(Context ctx) {
+    PermanentStateRestoreAsyncTask(Context ctx, StartupTimer timer) {
       this.context = ctx;
+      this.startupTimer = timer;
     }
 
     @Override
     protected String
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
-      try {
-        G.Log(TAG, "Try to create permanent face");
-        Set<String> permanentFace = SharedPreferencesManager.getPermanentFaceUris(this.context);
-        G.Log(TAG, "Permanent face list has " + permanentFace.size() + " item(s)");
-        for (String one : permanentFace) {
-          int faceId = nfdcHelper.faceCreate(one);
-          SharedPreferencesManager.addPermanentFaceId(this.context, faceId);
-          G.Log(TAG, "Create permanent face " + one);
+      G.Log(TAG, "Try to restore permanent faces and routes");
+      Set<String> permanentFaceUris = new HashSet<>();
+      for (String faceUri : SharedPreferencesManager.getPermanentFaceUris(this.context)) {
+        try {
+          permanentFaceUris.add(NfdcHelper.formatFaceUri(faceUri));
+        } catch (FaceUri.CanonizeError e) {
+          G.Log(TAG, "Cannot canonize permanent face " + faceUri + ": " + e.getMessage());
         }
-      } catch (Exception e) {
-        G.Log(TAG, "Error in FaceCreateAsyncTask: " + e.getMessage());
-      } finally {
-        nfdcHelper.shutdown();
       }
-      return null;
-    }
-  }
-
-  /**
-   * Create all permanent routes in the background
-   */
-  private static class RouteCreateAsyncTask extends AsyncTask<Void, Void, String> {
-    Context context;
-
-    RouteCreateAsyncTask(Context ctx) {
-      this.context = ctx;
-    }
+      List<String[]> routes = new ArrayList<>();
+      for (String[] prefixAndFaceUri : SharedPreferencesManager.getPermanentRoutes(this.context)) {
+        try {
+          routes.add(new String[]{prefixAndFaceUri[0], NfdcHelper.formatFaceUri(prefixAndFaceUri[1])});
+        } catch (FaceUri.CanonizeError e) {
+          G.Log(TAG, "Cannot canonize FaceUri of permanent route " + prefixAndFaceUri[0] + " - " +
+                     prefixAndFaceUri[1] + ": " + e.getMessage());
+        }
+      }
+      G.Log(TAG, "Permanent face list has " + permanentFaceUris.size() + " item(s), " +
+                 "permanent route list has " + routes.size() + " item(s)");
+      startupTimer.mark("restore: canonize FaceUris");
 
-    @Override
-    protected String
-    doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      PermanentStateRestorer restorer = new PermanentStateRestorer(permanentFaceUris, routes, startupTimer);
       try {
-        G.Log(TAG, "Try to create permanent route");
-        Set<String[]> prefixAndFacePairs = SharedPreferencesManager.getPermanentRoutes(this.context);
-        G.Log(TAG, "Permanent face list has " + prefixAndFacePairs.size() + " item(s)");
-        for (String[] prefixAndFaceUri : prefixAndFacePairs) {
-          List<FaceStatus> faceStatuses = nfdcHelper.faceList();
-          int faceId = -1;
-          for (int i = 0; i < faceStatuses.size(); i++) {
-            if (prefixAndFaceUri[1].equals(faceStatuses.get(i).getRemoteUri())) {
-              faceId = faceStatuses.get(i).getFaceId();
-              break;
-            }
-          }
-          if (faceId == -1) {
-            faceId = nfdcHelper.faceCreate(prefixAndFaceUri[1]);
-          }
-          nfdcHelper.ribRegisterPrefix(new Name(prefixAndFaceUri[0]), faceId, 10, true, false);
-          G.Log(TAG, "Create permanent route" + prefixAndFaceUri[0] + " - " + prefixAndFaceUri[1]);
-        }
+        restorer.start().get();
       } catch (Exception e) {
-        G.Log(TAG, "Error in RouteCreateAsyncTask: " + e.getMessage());
-      } finally {
-        nfdcHelper.shutdown();
+        G.Log(TAG, "Error in PermanentStateRestoreAsyncTask: " + e.getMessage());
+      }
+      for (int faceId : restorer.getPermanentFaceIds()) {
+        SharedPreferencesManager.addPermanentFaceId(this.context, faceId);
       }
+      G.Log(TAG, "Startup finished:\n" + startupTimer.getReport());
       return null;
     }
   }
@@ -362,7 +675,7 @@ public class NfdService extends Service {
     @Override
     protected String
     doInBackground(Void... params) {
-      NfdcHelper nfdcHelper = new NfdcHelper();
+      NfdcHelper nfdcHelper = NfdcHelper.acquire();
       try {
         G.Log(TAG, "Try to create route to connect the nearest hub");
         int faceId = nfdcHelper.faceCreate(m_faceUri);
@@ -371,7 +684,7 @@ public class NfdService extends Service {
       } catch (Exception e) {
         G.Log(TAG, "Error in RouteCreateToConnectNearestHubAsyncTask: " + e.getMessage());
       } finally {
-        nfdcHelper.shutdown();
+        nfdcHelper.release();
       }
       return null;
     }
@@ -392,7 +705,7 @@ public class NfdService extends Service {
     doInBackground(Void... params) {
       G.Log(TAG, "Try to connect to the nearest hub");
       if (SharedPreferencesManager.getConnectNearestHubAutomatically(context)) {
-        NfdcHelper nfdcHelper = new NfdcHelper();
+        NfdcHelper nfdcHelper = NfdcHelper.acquire();
         try {
           //check whether two prefixes exist or not
           boolean prefix_ndn_exist = false;
@@ -440,7 +753,7 @@ public class NfdService extends Service {
         } catch (ManagementException e) {
           G.Log(TAG, "Error in ConnectNearestHubAsyncTask: " + e.getMessage());
         } finally {
-          nfdcHelper.shutdown();
+          nfdcHelper.release();
         }
       }
       return null;
@@ -465,6 +778,18 @@ public class NfdService extends Service {
           replyToClient(message, NfdService.NFD_SERVICE_STOPPED);
           break;
 
+        case NfdService.RECONFIGURE_NFD_SERVICE:
+          serviceReconfigureNfd();
+          break;
+
+        case NfdService.GET_NFD_COUNTERS:
+          replyWithCounters(message);
+          break;
+
+        case NfdService.EXPORT_TRAFFIC_HISTORY:
+          exportTrafficHistory(message);
+          break;
+
         default:
           super.handleMessage(message);
           break;
@@ -532,9 +857,52 @@ public class NfdService extends Service {
   private boolean m_isNfdStarted = false;
 
   /**
-   * Handler to deal with timeout behaviors
+   * Per-phase timings of the most recent NFD bring-up
    */
-  private Handler m_handler = new Handler();
+  private final StartupTimer m_startupTimer = new StartupTimer();
+
+  /**
+   * Thread on which counter snapshots are read for clients
+   */
+  private HandlerThread m_counterThread = null;
+  private Handler m_counterHandler = null;
+
+  /**
+   * Counter replies, reused for every reply; only accessed on the counter thread
+   * <p>
+   * Clients run in another process, so a reply is copied into a parcel when it is sent.
+   */
+  private final Bundle m_counterData = new Bundle();
+  private final long[] m_counters = new long[N_COUNTERS];
+  private final double[] m_rates = new double[N_COUNTERS];
+
+  /**
+   * Time series of forwarder and per-face counters, about 700 KB
+   */
+  private final TrafficRecorder m_trafficRecorder = new TrafficRecorder(300, 32);
+
+  /**
+   * Window over which rates are reported, in milliseconds
+   */
+  private static final long RATE_WINDOW = 10000;
+
+  /**
+   * NFD version reported by the running NFD, or null if not known yet
+   */
+  private volatile String m_nfdVersion = null;
+  private volatile boolean m_isNfdVersionRequested = false;
+
+  /**
+   * Work to be done once NFD is ready; only accessed on the main thread
+   */
+  private final List<Runnable> m_postStartTasks = new ArrayList<>();
+
+  /**
+   * Service instance that receives the readiness notification from the native code
+   */
+  private static NfdService s_instance = null;
+
+  private static final Handler s_mainHandler = new Handler(Looper.getMainLooper());
 
   /**
    * Unique notification ID
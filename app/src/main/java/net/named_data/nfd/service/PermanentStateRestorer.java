@@ -0,0 +1,242 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.service;
+
+import com.intel.jndn.management.types.FaceStatus;
+
+import net.named_data.jndn.ControlParameters;
+import net.named_data.jndn.Name;
+import net.named_data.nfd.utils.AsyncNfdcHelper;
+import net.named_data.nfd.utils.G;
+import net.named_data.nfd.utils.NfdcFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Restores permanent faces and routes, following the dependencies between them
+ * <p>
+ * The only dependency is that a route needs its face.  After one face dataset fetch, routes over
+ * faces that already exist are registered right away, and missing faces are created concurrently,
+ * at most {@link #MAX_CONCURRENT_FACE_CREATIONS} at a time.  The routes of a face are registered
+ * as soon as that face has been created, without waiting for other faces.
+ * <p>
+ * All FaceUris must be canonical, so that they can be matched against the face dataset.  All
+ * callbacks run on the {@link AsyncNfdcHelper} event thread.
+ */
+class PermanentStateRestorer {
+  /**
+   * @param permanentFaceUris canonical FaceUris of permanent faces
+   * @param routes            pairs of route prefix and canonical FaceUri
+   */
+  PermanentStateRestorer(Set<String> permanentFaceUris, List<String[]> routes, StartupTimer timer) {
+    m_permanentFaceUris = permanentFaceUris;
+    m_startupTimer = timer;
+    for (String faceUri : permanentFaceUris) {
+      m_routesByFaceUri.put(faceUri, new ArrayList<Name>());
+    }
+    for (String[] prefixAndFaceUri : routes) {
+      List<Name> prefixes = m_routesByFaceUri.get(prefixAndFaceUri[1]);
+      if (prefixes == null) {
+        prefixes = new ArrayList<>();
+        m_routesByFaceUri.put(prefixAndFaceUri[1], prefixes);
+      }
+      prefixes.add(new Name(prefixAndFaceUri[0]));
+    }
+  }
+
+  /**
+   * Start restoring
+   *
+   * @return future that is completed once every face creation and route registration has
+   *         either succeeded or failed
+   */
+  NfdcFuture<Void>
+  start() {
+    if (m_routesByFaceUri.isEmpty()) {
+      m_done.complete(null);
+      return m_done;
+    }
+
+    m_nfdc.faceList().addListener(new NfdcFuture.Listener<List<FaceStatus>>() {
+      @Override
+      public void onComplete(NfdcFuture<List<FaceStatus>> faceList) {
+        onFaceList(faceList);
+      }
+    });
+    return m_done;
+  }
+
+  /**
+   * @return IDs of the permanent faces restored so far
+   */
+  synchronized Set<Integer>
+  getPermanentFaceIds() {
+    return new HashSet<>(m_permanentFaceIds);
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private void
+  onFaceList(NfdcFuture<List<FaceStatus>> faceList) {
+    // remote FaceUri => FaceId
+    Map<String, Integer> existingFaces = new HashMap<>();
+    if (faceList.getException() != null) {
+      // not fatal: every face will be created, and creating an existing face reports its ID
+      G.Log(TAG, "Cannot fetch face dataset: " + faceList.getException().getMessage());
+    }
+    else {
+      for (FaceStatus faceStatus : faceList.getValue()) {
+        existingFaces.put(faceStatus.getRemoteUri(), faceStatus.getFaceId());
+      }
+    }
+    m_startupTimer.mark("restore: face dataset");
+
+    synchronized (this) {
+      for (Map.Entry<String, List<Name>> entry : m_routesByFaceUri.entrySet()) {
+        Integer faceId = existingFaces.get(entry.getKey());
+        ++m_nOutstanding;
+        if (faceId != null) {
+          onFaceReady(entry.getKey(), faceId);
+        }
+        else {
+          m_faceCreationQueue.add(entry.getKey());
+        }
+      }
+      m_startupTimer.mark("restore: " + m_faceCreationQueue.size() + " face(s) to create");
+      startFaceCreations();
+      finishOne();
+    }
+  }
+
+  private synchronized void
+  startFaceCreations() {
+    while (m_nFaceCreationsInProgress < MAX_CONCURRENT_FACE_CREATIONS && !m_faceCreationQueue.isEmpty()) {
+      final String faceUri = m_faceCreationQueue.poll();
+      ++m_nFaceCreationsInProgress;
+      m_nfdc.faceCreate(faceUri).addListener(new NfdcFuture.Listener<Integer>() {
+        @Override
+        public void onComplete(NfdcFuture<Integer> creation) {
+          synchronized (PermanentStateRestorer.this) {
+            --m_nFaceCreationsInProgress;
+            if (creation.getException() != null) {
+              G.Log(TAG, "Cannot create face " + faceUri + ": " + creation.getException().getMessage());
+              ++m_nFailures;
+              finishOne();
+            }
+            else {
+              G.Log(TAG, "Create permanent face " + faceUri);
+              onFaceReady(faceUri, creation.getValue());
+            }
+            startFaceCreations();
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Register all routes over a face that exists now
+   */
+  private synchronized void
+  onFaceReady(final String faceUri, int faceId) {
+    if (m_permanentFaceUris.contains(faceUri)) {
+      m_permanentFaceIds.add(faceId);
+    }
+    if (m_isFirstFaceReady) {
+      m_isFirstFaceReady = false;
+      m_startupTimer.mark("restore: first face ready");
+    }
+
+    for (final Name prefix : m_routesByFaceUri.get(faceUri)) {
+      ++m_nOutstanding;
+      m_nfdc.ribRegisterPrefix(prefix, faceId, 10, true, false)
+        .addListener(new NfdcFuture.Listener<ControlParameters>() {
+          @Override
+          public void onComplete(NfdcFuture<ControlParameters> registration) {
+            synchronized (PermanentStateRestorer.this) {
+              if (registration.getException() != null) {
+                G.Log(TAG, "Cannot create permanent route " + prefix + " - " + faceUri + ": " +
+                           registration.getException().getMessage());
+                ++m_nFailures;
+              }
+              else {
+                G.Log(TAG, "Create permanent route " + prefix + " - " + faceUri);
+                if (m_isFirstRouteReady) {
+                  m_isFirstRouteReady = false;
+                  m_startupTimer.mark("restore: first route ready");
+                }
+              }
+              finishOne();
+            }
+          }
+        });
+    }
+    finishOne();
+  }
+
+  private synchronized void
+  finishOne() {
+    if (--m_nOutstanding > 0) {
+      return;
+    }
+    m_startupTimer.mark("restore: finished with " + m_nFailures + " failure(s)");
+    m_done.complete(null);
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = PermanentStateRestorer.class.getSimpleName();
+
+  /**
+   * Maximum number of face creation commands outstanding at the same time
+   * <p>
+   * Creating a UDP or TCP face may wait for a connection, so unbounded fan-out would only move
+   * the queue into the forwarder.
+   */
+  private static final int MAX_CONCURRENT_FACE_CREATIONS = 4;
+
+  private final AsyncNfdcHelper m_nfdc = AsyncNfdcHelper.getInstance();
+  private final StartupTimer m_startupTimer;
+  private final Set<String> m_permanentFaceUris;
+  private final NfdcFuture<Void> m_done = new NfdcFuture<>();
+
+  /**
+   * FaceUri => prefixes to be registered on it; permanent faces without routes map to empty lists
+   */
+  private final Map<String, List<Name>> m_routesByFaceUri = new LinkedHashMap<>();
+  private final ArrayDeque<String> m_faceCreationQueue = new ArrayDeque<>();
+  private final Set<Integer> m_permanentFaceIds = new HashSet<>();
+
+  /**
+   * Number of faces and routes not finished yet, plus one while the dataset is being processed
+   */
+  private int m_nOutstanding = 1;
+  private int m_nFaceCreationsInProgress = 0;
+  private int m_nFailures = 0;
+  private boolean m_isFirstFaceReady = true;
+  private boolean m_isFirstRouteReady = true;
+}
@@ -0,0 +1,78 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.service;
+
+import android.os.SystemClock;
+
+import net.named_data.nfd.utils.G;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each phase of the NFD bring-up takes
+ * <p>
+ * Every {@link #mark(String)} closes the current phase and logs its duration together with the
+ * time elapsed since the timer was (re)started.
+ */
+class StartupTimer {
+  /**
+   * Restart the timer, discarding all recorded phases
+   */
+  synchronized void
+  restart() {
+    m_startTime = SystemClock.elapsedRealtime();
+    m_lastMarkTime = m_startTime;
+    m_phases.clear();
+  }
+
+  /**
+   * Close the current phase under the given name
+   */
+  synchronized void
+  mark(String phase) {
+    long now = SystemClock.elapsedRealtime();
+    m_phases.add(phase + ": " + (now - m_lastMarkTime) + " ms");
+    G.Log(TAG, "Startup phase " + phase + " took " + (now - m_lastMarkTime) + " ms (" +
+               (now - m_startTime) + " ms since start)");
+    m_lastMarkTime = now;
+  }
+
+  /**
+   * @return human readable summary of all recorded phases
+   */
+  synchronized String
+  getReport() {
+    StringBuilder report = new StringBuilder();
+    for (String phase : m_phases) {
+      report.append(phase).append("\n");
+    }
+    report.append("total: ").append(m_lastMarkTime - m_startTime).append(" ms");
+    return report.toString();
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = StartupTimer.class.getSimpleName();
+
+  private long m_startTime = SystemClock.elapsedRealtime();
+  private long m_lastMarkTime = m_startTime;
+  private final List<String> m_phases = new ArrayList<>();
+}
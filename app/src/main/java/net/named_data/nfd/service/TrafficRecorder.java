@@ -0,0 +1,363 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import net.named_data.nfd.utils.G;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Time series of forwarder and per-face counters
+ * <p>
+ * Samples are taken on a dedicated thread at a fixed interval and stored in preallocated ring
+ * buffers of primitives, so recording does not allocate.  The most recent samples can be turned
+ * into rates, and the whole history can be exported as CSV.
+ */
+class TrafficRecorder {
+  interface ExportListener {
+    /**
+     * @param file exported file, or null if the export failed
+     */
+    void onExported(File file);
+  }
+
+  /**
+   * @param capacity number of samples kept
+   * @param maxFaces number of faces kept per sample; further faces are not recorded
+   */
+  TrafficRecorder(int capacity, int maxFaces) {
+    m_capacity = capacity;
+    m_maxFaces = maxFaces;
+    m_timestamps = new long[capacity];
+    m_counters = new long[capacity * NfdService.N_COUNTERS];
+    m_nFaces = new int[capacity];
+    m_faceCounters = new long[capacity * maxFaces * NfdService.FACE_COUNTER_STRIDE];
+    m_counterScratch = new long[NfdService.N_COUNTERS];
+    m_faceCounterScratch = new long[maxFaces * NfdService.FACE_COUNTER_STRIDE];
+  }
+
+  /**
+   * Start sampling, discarding previously recorded samples
+   */
+  void
+  start(long intervalMs) {
+    stop();
+    synchronized (this) {
+      m_head = 0;
+      m_size = 0;
+      m_intervalMs = intervalMs;
+      m_thread = new HandlerThread(TAG);
+      m_thread.start();
+      m_handler = new Handler(m_thread.getLooper());
+      m_handler.post(m_sampleRunnable);
+    }
+    G.Log(TAG, "Recording traffic every " + intervalMs + " ms");
+  }
+
+  /**
+   * Stop sampling and wait for a sample in progress to finish; the recorded samples are kept
+   * <p>
+   * Once this returns, the recorder no longer calls into NFD, so NFD can be stopped.
+   */
+  void
+  stop() {
+    HandlerThread thread;
+    synchronized (this) {
+      if (m_thread == null) {
+        return;
+      }
+      thread = m_thread;
+      m_handler.removeCallbacks(m_sampleRunnable);
+      thread.quitSafely();
+      m_thread = null;
+      m_handler = null;
+    }
+
+    // not holding the lock, which sample() needs to finish
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Change the sampling interval, starting with the next sample
+   * <p>
+   * Recorded samples are kept; rates use the sample timestamps, so they stay correct.
+   */
+  synchronized void
+  setInterval(long intervalMs) {
+    m_intervalMs = intervalMs;
+  }
+
+  /**
+   * Per-second rates of all counters over the most recent samples
+   * <p>
+   * For table sizes, which are not cumulative, the rate is the growth per second.
+   *
+   * @param windowMs how far back to look
+   * @param rates    array of NfdService.N_COUNTERS elements, indexed by NfdService.COUNTER_*
+   * @return false if fewer than two samples are in the window
+   */
+  synchronized boolean
+  getRates(long windowMs, double[] rates) {
+    int oldest = findOldestInWindow(windowMs);
+    if (oldest < 0) {
+      return false;
+    }
+    int newest = index(m_size - 1);
+    double seconds = (m_timestamps[newest] - m_timestamps[oldest]) / 1000.0;
+    for (int i = 0; i < NfdService.N_COUNTERS; ++i) {
+      rates[i] = (counter(newest, i) - counter(oldest, i)) / seconds;
+    }
+    rates[NfdService.COUNTER_START_TIMESTAMP] = 0;
+    rates[NfdService.COUNTER_CURRENT_TIMESTAMP] = 0;
+    return true;
+  }
+
+  /**
+   * Fraction of content store lookups that were hits over the most recent samples
+   *
+   * @return hit ratio in [0, 1], or NaN if there were no lookups in the window
+   */
+  synchronized double
+  getCsHitRatio(long windowMs) {
+    int oldest = findOldestInWindow(windowMs);
+    if (oldest < 0) {
+      return Double.NaN;
+    }
+    int newest = index(m_size - 1);
+    long hits = counter(newest, NfdService.COUNTER_N_CS_HITS) - counter(oldest, NfdService.COUNTER_N_CS_HITS);
+    long misses = counter(newest, NfdService.COUNTER_N_CS_MISSES) - counter(oldest, NfdService.COUNTER_N_CS_MISSES);
+    if (hits + misses == 0) {
+      return Double.NaN;
+    }
+    return (double) hits / (hits + misses);
+  }
+
+  /**
+   * Write all recorded samples as CSV on a background thread
+   * <p>
+   * The samples are copied under the lock and written without it, so sampling and rate
+   * queries do not wait for the file I/O.  The listener is called on the background thread.
+   */
+  void
+  export(final File file, final ExportListener listener) {
+    final Samples samples = copySamples();
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        listener.onExported(writeCsv(samples, file) ? file : null);
+      }
+    }, TAG + "Export").start();
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private void
+  sample() {
+    long now = SystemClock.elapsedRealtime();
+    if (!NfdService.getNfdCounters(m_counterScratch)) {
+      return;
+    }
+    int nFaces = Math.max(0, NfdService.getFaceCounters(m_faceCounterScratch));
+
+    synchronized (this) {
+      int slot = index(m_size);
+      m_timestamps[slot] = now;
+      System.arraycopy(m_counterScratch, 0, m_counters, slot * NfdService.N_COUNTERS,
+                       NfdService.N_COUNTERS);
+      m_nFaces[slot] = nFaces;
+      System.arraycopy(m_faceCounterScratch, 0,
+                       m_faceCounters, slot * m_maxFaces * NfdService.FACE_COUNTER_STRIDE,
+                       nFaces * NfdService.FACE_COUNTER_STRIDE);
+      if (m_size < m_capacity) {
+        ++m_size;
+      } else {
+        m_head = (m_head + 1) % m_capacity;
+      }
+    }
+  }
+
+  /**
+   * @return ring index of the i-th oldest sample
+   */
+  private int
+  index(int i) {
+    return (m_head + i) % m_capacity;
+  }
+
+  private long
+  counter(int slot, int counter) {
+    return m_counters[slot * NfdService.N_COUNTERS + counter];
+  }
+
+  /**
+   * @return ring index of the oldest sample within the window, or -1 if the window does not
+   *         contain at least two samples
+   */
+  private int
+  findOldestInWindow(long windowMs) {
+    if (m_size < 2) {
+      return -1;
+    }
+    long newestTime = m_timestamps[index(m_size - 1)];
+    int oldest = m_size - 1;
+    while (oldest > 0 && newestTime - m_timestamps[index(oldest - 1)] <= windowMs) {
+      --oldest;
+    }
+    return oldest == m_size - 1 ? -1 : index(oldest);
+  }
+
+  /**
+   * Recorded samples in chronological order, copied out of the ring buffers for export
+   */
+  private static class Samples {
+    Samples(int size, int maxFaces) {
+      this.maxFaces = maxFaces;
+      timestamps = new long[size];
+      counters = new long[size * NfdService.N_COUNTERS];
+      nFaces = new int[size];
+      faceCounters = new long[size * maxFaces * NfdService.FACE_COUNTER_STRIDE];
+    }
+
+    final int maxFaces;
+    final long[] timestamps;
+    final long[] counters;
+    final int[] nFaces;
+    final long[] faceCounters;
+  }
+
+  private synchronized Samples
+  copySamples() {
+    Samples samples = new Samples(m_size, m_maxFaces);
+    int faceStride = m_maxFaces * NfdService.FACE_COUNTER_STRIDE;
+    for (int i = 0; i < m_size; ++i) {
+      int slot = index(i);
+      samples.timestamps[i] = m_timestamps[slot];
+      System.arraycopy(m_counters, slot * NfdService.N_COUNTERS,
+                       samples.counters, i * NfdService.N_COUNTERS, NfdService.N_COUNTERS);
+      samples.nFaces[i] = m_nFaces[slot];
+      System.arraycopy(m_faceCounters, slot * faceStride, samples.faceCounters, i * faceStride,
+                       m_nFaces[slot] * NfdService.FACE_COUNTER_STRIDE);
+    }
+    return samples;
+  }
+
+  private static boolean
+  writeCsv(Samples samples, File file) {
+    try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+      writer.write("# forwarder\ntime_ms");
+      for (String name : COUNTER_NAMES) {
+        writer.write("," + name);
+      }
+      writer.write("\n");
+      for (int i = 0; i < samples.timestamps.length; ++i) {
+        writer.write(Long.toString(samples.timestamps[i]));
+        for (int c = 0; c < NfdService.N_COUNTERS; ++c) {
+          writer.write("," + samples.counters[i * NfdService.N_COUNTERS + c]);
+        }
+        writer.write("\n");
+      }
+
+      writer.write("# faces\ntime_ms");
+      for (String name : FACE_COUNTER_NAMES) {
+        writer.write("," + name);
+      }
+      writer.write("\n");
+      for (int i = 0; i < samples.timestamps.length; ++i) {
+        for (int f = 0; f < samples.nFaces[i]; ++f) {
+          int offset = (i * samples.maxFaces + f) * NfdService.FACE_COUNTER_STRIDE;
+          writer.write(Long.toString(samples.timestamps[i]));
+          for (int c = 0; c < NfdService.FACE_COUNTER_STRIDE; ++c) {
+            writer.write("," + samples.faceCounters[offset + c]);
+          }
+          writer.write("\n");
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      G.Log(TAG, "Cannot export traffic history to " + file + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  private final Runnable m_sampleRunnable = new Runnable() {
+    @Override
+    public void run() {
+      sample();
+      synchronized (TrafficRecorder.this) {
+        if (m_handler != null) {
+          m_handler.postDelayed(this, m_intervalMs);
+        }
+      }
+    }
+  };
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = TrafficRecorder.class.getSimpleName();
+
+  /**
+   * CSV column names, in the order of NfdService.COUNTER_*
+   */
+  private static final String[] COUNTER_NAMES = {
+    "start_timestamp", "current_timestamp",
+    "name_tree_entries", "fib_entries", "pit_entries", "measurements_entries", "cs_entries",
+    "in_interests", "out_interests", "in_data", "out_data", "in_nacks", "out_nacks",
+    "satisfied_interests", "unsatisfied_interests", "cs_hits", "cs_misses",
+  };
+
+  /**
+   * CSV column names, in the order of NfdService.FACE_COUNTER_*
+   */
+  private static final String[] FACE_COUNTER_NAMES = {
+    "face_id", "in_interests", "out_interests", "in_data", "out_data", "in_nacks", "out_nacks",
+    "in_bytes", "out_bytes",
+  };
+
+  private final int m_capacity;
+  private final int m_maxFaces;
+
+  // ring buffers, indexed by slot = (m_head + i) % m_capacity
+  private final long[] m_timestamps;
+  private final long[] m_counters;
+  private final int[] m_nFaces;
+  private final long[] m_faceCounters;
+  private int m_head = 0;
+  private int m_size = 0;
+
+  // only used on the recorder thread
+  private final long[] m_counterScratch;
+  private final long[] m_faceCounterScratch;
+
+  private long m_intervalMs;
+  private HandlerThread m_thread;
+  private Handler m_handler;
+}
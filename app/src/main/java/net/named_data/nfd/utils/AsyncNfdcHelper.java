@@ -0,0 +1,677 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import com.intel.jndn.management.ManagementException;
+import com.intel.jndn.management.helpers.StatusDatasetHelper;
+import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.FibEntry;
+import com.intel.jndn.management.types.ForwarderStatus;
+import com.intel.jndn.management.types.RibEntry;
+
+import net.named_data.jndn.ControlParameters;
+import net.named_data.jndn.ControlResponse;
+import net.named_data.jndn.Data;
+import net.named_data.jndn.Face;
+import net.named_data.jndn.ForwardingFlags;
+import net.named_data.jndn.Interest;
+import net.named_data.jndn.Name;
+import net.named_data.jndn.NetworkNack;
+import net.named_data.jndn.OnData;
+import net.named_data.jndn.OnNetworkNack;
+import net.named_data.jndn.OnTimeout;
+import net.named_data.jndn.encoding.tlv.TlvEncoder;
+import net.named_data.jndn.util.Blob;
+import net.named_data.jndn_xx.util.FaceUri;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking variant of {@link NfdcHelper}
+ * <p>
+ * All operations return immediately with an {@link NfdcFuture}.  Commands are signed and
+ * expressed on a single event thread that owns one connection to the local forwarder, so any
+ * number of ControlCommand Interests can be outstanding at the same time.  Each expressed
+ * Interest gets its own token, so concurrent requests for the same name (e.g., two fetches of
+ * the face dataset) are answered independently.
+ * <p>
+ * Future listeners run on the event thread and must not block on other futures.
+ */
+public class AsyncNfdcHelper implements ForwarderManagement
+{
+  public static synchronized AsyncNfdcHelper
+  getInstance()
+  {
+    if (s_instance == null) {
+      s_instance = new AsyncNfdcHelper();
+    }
+    return s_instance;
+  }
+
+  /**
+   * Get general NFD status
+   */
+  public NfdcFuture<ForwarderStatus>
+  generalStatus()
+  {
+    final NfdcFuture<ForwarderStatus> future = new NfdcFuture<>();
+    fetchDataset(DATASET_STATUS_GENERAL, future, new DatasetDecoder<ForwarderStatus>() {
+      @Override
+      public ForwarderStatus
+      decode(List<Data> segments) throws Exception
+      {
+        return new ForwarderStatus(combineSegments(segments));
+      }
+    });
+    return future;
+  }
+
+  /**
+   * List all faces
+   */
+  @Override
+  public NfdcFuture<List<FaceStatus>>
+  faceList()
+  {
+    final NfdcFuture<List<FaceStatus>> future = new NfdcFuture<>();
+    fetchDataset(DATASET_FACE_LIST, future, new DatasetDecoder<List<FaceStatus>>() {
+      @Override
+      public List<FaceStatus>
+      decode(List<Data> segments) throws Exception
+      {
+        return StatusDatasetHelper.wireDecode(segments, FaceStatus.class);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * List all FIB entries
+   */
+  @Override
+  public NfdcFuture<List<FibEntry>>
+  fibList()
+  {
+    final NfdcFuture<List<FibEntry>> future = new NfdcFuture<>();
+    fetchDataset(DATASET_FIB_LIST, future, new DatasetDecoder<List<FibEntry>>() {
+      @Override
+      public List<FibEntry>
+      decode(List<Data> segments) throws Exception
+      {
+        return StatusDatasetHelper.wireDecode(segments, FibEntry.class);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * List all of routes (RIB entries)
+   */
+  @Override
+  public NfdcFuture<List<RibEntry>>
+  ribList()
+  {
+    final NfdcFuture<List<RibEntry>> future = new NfdcFuture<>();
+    fetchDataset(DATASET_RIB_LIST, future, new DatasetDecoder<List<RibEntry>>() {
+      @Override
+      public List<RibEntry>
+      decode(List<Data> segments) throws Exception
+      {
+        return StatusDatasetHelper.wireDecode(segments, RibEntry.class);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Creates new face
+   *
+   * @return future that is completed with the ID of the created (or already existing) face
+   */
+  @Override
+  public NfdcFuture<Integer>
+  faceCreate(String faceUri)
+  {
+    return faceCreate(faceUri, false);
+  }
+
+  /**
+   * Creates new face, optionally with NDNLP reliability enabled
+   * <p>
+   * Flags only apply to a newly created face; an already existing face is reported as is.
+   *
+   * @return future that is completed with the ID of the created (or already existing) face
+   */
+  @Override
+  public NfdcFuture<Integer>
+  faceCreate(String faceUri, boolean isLpReliabilityEnabled)
+  {
+    final NfdcFuture<Integer> future = new NfdcFuture<>();
+    String canonicalUri;
+    try {
+      canonicalUri = NfdcHelper.formatFaceUri(faceUri);
+    }
+    catch (FaceUri.CanonizeError e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+
+    Blob parameters;
+    if (isLpReliabilityEnabled) {
+      parameters = encodeFaceCreateParameters(canonicalUri, FACE_FLAG_LP_RELIABILITY_ENABLED);
+    }
+    else {
+      parameters = new ControlParameters().setUri(canonicalUri).wireEncode();
+    }
+    sendCommand("faces", "create", parameters)
+      .addListener(new NfdcFuture.Listener<ControlParameters>() {
+        @Override
+        public void
+        onComplete(NfdcFuture<ControlParameters> response)
+        {
+          ControlParameters body = response.getValue();
+          if (response.getException() != null) {
+            future.completeExceptionally(response.getException());
+          }
+          else if (body == null) {
+            future.completeExceptionally(new ManagementException("Face creation response has no FaceId"));
+          }
+          else {
+            future.complete(body.getFaceId());
+          }
+        }
+      });
+    return future;
+  }
+
+  /**
+   * Destroys face
+   */
+  @Override
+  public NfdcFuture<ControlParameters>
+  faceDestroy(int faceId)
+  {
+    return sendCommand("faces", "destroy", new ControlParameters().setFaceId(faceId));
+  }
+
+  /**
+   * Registers name to the given faceId
+   */
+  @Override
+  public NfdcFuture<ControlParameters>
+  ribRegisterPrefix(Name prefix,
+                    int faceId,
+                    int cost,
+                    boolean isChildInherit,
+                    boolean isCapture)
+  {
+    ForwardingFlags flags = new ForwardingFlags();
+    flags.setChildInherit(isChildInherit);
+    flags.setCapture(isCapture);
+    return sendCommand("rib", "register", new ControlParameters()
+      .setName(prefix)
+      .setFaceId(faceId)
+      .setCost(cost)
+      .setForwardingFlags(flags));
+  }
+
+  /**
+   * Unregisters name from the given faceId
+   */
+  @Override
+  public NfdcFuture<ControlParameters>
+  ribUnregisterPrefix(Name prefix, int faceId)
+  {
+    return sendCommand("rib", "unregister", new ControlParameters()
+      .setName(prefix)
+      .setFaceId(faceId));
+  }
+
+  /**
+   * Close the connection to the local forwarder, failing all outstanding requests
+   * <p>
+   * The next request opens a new connection.
+   */
+  public void
+  closeConnection()
+  {
+    m_eventThread.execute(new Runnable() {
+      @Override
+      public void
+      run()
+      {
+        resetConnection(new ManagementException("Connection to NFD closed"));
+      }
+    });
+  }
+
+  /**
+   * Close the connection of the shared instance, if it was ever created
+   */
+  static synchronized void
+  closeSharedConnection()
+  {
+    if (s_instance != null) {
+      s_instance.closeConnection();
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private AsyncNfdcHelper()
+  {
+    m_eventThread.setRemoveOnCancelPolicy(true);
+  }
+
+  private interface DatasetDecoder<T>
+  {
+    T
+    decode(List<Data> segments) throws Exception;
+  }
+
+  /**
+   * Outstanding Interest; callbacks are invoked on the event thread
+   */
+  private interface PendingRequest
+  {
+    void
+    onData(Data data);
+
+    void
+    onFailure(Exception error);
+  }
+
+  private static ByteBuffer
+  combineSegments(List<Data> segments)
+  {
+    int size = 0;
+    for (Data segment : segments) {
+      size += segment.getContent().size();
+    }
+    ByteBuffer combined = ByteBuffer.allocate(size);
+    for (Data segment : segments) {
+      combined.put(segment.getContent().buf());
+    }
+    combined.flip();
+    return combined;
+  }
+
+  /**
+   * Encode ControlParameters of a faces/create command that sets face flags, which
+   * jndn's ControlParameters cannot carry
+   */
+  private static Blob
+  encodeFaceCreateParameters(String canonicalUri, int flags)
+  {
+    // TlvEncoder writes backwards, so the last element goes first
+    TlvEncoder encoder = new TlvEncoder(256);
+    int saveLength = encoder.getLength();
+    encoder.writeNonNegativeIntegerTlv(TLV_MASK, flags);
+    encoder.writeNonNegativeIntegerTlv(TLV_FLAGS, flags);
+    encoder.writeBlobTlv(TLV_URI, new Blob(canonicalUri).buf());
+    encoder.writeTypeAndLength(TLV_CONTROL_PARAMETERS, encoder.getLength() - saveLength);
+    return new Blob(encoder.getOutput(), false);
+  }
+
+  private NfdcFuture<ControlParameters>
+  sendCommand(String module, String verb, ControlParameters parameters)
+  {
+    return sendCommand(module, verb, parameters.wireEncode());
+  }
+
+  private NfdcFuture<ControlParameters>
+  sendCommand(String module, String verb, Blob parameters)
+  {
+    final NfdcFuture<ControlParameters> future = new NfdcFuture<>();
+    final boolean isCreate = "create".equals(verb);
+    final Interest interest = new Interest(new Name(COMMAND_PREFIX)
+                                             .append(module)
+                                             .append(verb)
+                                             .append(parameters),
+                                           COMMAND_LIFETIME);
+
+    m_eventThread.execute(new Runnable() {
+      @Override
+      public void
+      run()
+      {
+        try {
+          getFace().makeCommandInterest(interest);
+        }
+        catch (Exception e) {
+          future.completeExceptionally(e);
+          return;
+        }
+
+        express(interest, new PendingRequest() {
+          @Override
+          public void
+          onData(Data data)
+          {
+            ControlResponse response = new ControlResponse();
+            try {
+              response.wireDecode(data.getContent());
+            }
+            catch (Exception e) {
+              future.completeExceptionally(e);
+              return;
+            }
+
+            int statusCode = response.getStatusCode();
+            // creation of an already existing face reports the existing face
+            if (statusCode == STATUS_OK || (isCreate && statusCode == STATUS_CONFLICT)) {
+              future.complete(response.getBodyAsControlParameters());
+            }
+            else {
+              future.completeExceptionally(new ManagementException(
+                "Command " + interest.getName().getPrefix(COMMAND_PREFIX_SIZE + 2).toUri() +
+                  " failed: " + statusCode + " " + response.getStatusText()));
+            }
+          }
+
+          @Override
+          public void
+          onFailure(Exception error)
+          {
+            future.completeExceptionally(error);
+          }
+        });
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Fetch all segments of a status dataset and decode them
+   * <p>
+   * The first segment discovers the dataset version; all remaining segments are then requested
+   * at once.
+   */
+  private <T> void
+  fetchDataset(final Name prefix, final NfdcFuture<T> future, final DatasetDecoder<T> decoder)
+  {
+    // bounds the whole fetch, including segments that are lost with a dropped connection
+    final ScheduledFuture<?> timeout = m_eventThread.schedule(new Runnable() {
+      @Override
+      public void
+      run()
+      {
+        future.completeExceptionally(new ManagementException("Timeout fetching " + prefix.toUri()));
+      }
+    }, DATASET_TIMEOUT, TimeUnit.MILLISECONDS);
+    future.addListener(new NfdcFuture.Listener<T>() {
+      @Override
+      public void
+      onComplete(NfdcFuture<T> f)
+      {
+        timeout.cancel(false);
+      }
+    });
+
+    m_eventThread.execute(new Runnable() {
+      @Override
+      public void
+      run()
+      {
+        Interest interest = new Interest(prefix, DATASET_LIFETIME);
+        interest.setCanBePrefix(true);
+        interest.setMustBeFresh(true);
+
+        express(interest, new PendingRequest() {
+          @Override
+          public void
+          onData(Data first)
+          {
+            try {
+              if (!first.getName().get(-1).isSegment() || first.getName().get(-1).toSegment() != 0) {
+                throw new ManagementException("Unexpected dataset segment " + first.getName().toUri());
+              }
+              int nSegments = 1;
+              if (first.getMetaInfo().getFinalBlockId().getValue().size() > 0) {
+                nSegments = (int) first.getMetaInfo().getFinalBlockId().toSegment() + 1;
+              }
+              fetchRemainingSegments(first, nSegments, future, decoder);
+            }
+            catch (Exception e) {
+              future.completeExceptionally(e);
+            }
+          }
+
+          @Override
+          public void
+          onFailure(Exception error)
+          {
+            future.completeExceptionally(error);
+          }
+        });
+      }
+    });
+  }
+
+  private <T> void
+  fetchRemainingSegments(Data first, int nSegments,
+                         final NfdcFuture<T> future, final DatasetDecoder<T> decoder)
+  {
+    final Data[] segments = new Data[nSegments];
+    segments[0] = first;
+    final int[] nRemaining = {nSegments - 1};
+
+    if (nRemaining[0] == 0) {
+      decodeDataset(segments, future, decoder);
+      return;
+    }
+
+    Name versionedName = first.getName().getPrefix(-1);
+    for (int i = 1; i < nSegments; ++i) {
+      final int segmentNo = i;
+      Interest interest = new Interest(new Name(versionedName).appendSegment(segmentNo), DATASET_LIFETIME);
+      express(interest, new PendingRequest() {
+        @Override
+        public void
+        onData(Data data)
+        {
+          segments[segmentNo] = data;
+          if (--nRemaining[0] == 0) {
+            decodeDataset(segments, future, decoder);
+          }
+        }
+
+        @Override
+        public void
+        onFailure(Exception error)
+        {
+          future.completeExceptionally(error);
+        }
+      });
+    }
+  }
+
+  private static <T> void
+  decodeDataset(Data[] segments, NfdcFuture<T> future, DatasetDecoder<T> decoder)
+  {
+    try {
+      future.complete(decoder.decode(Arrays.asList(segments)));
+    }
+    catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Express an Interest on the event thread and remember it under a new token
+   */
+  private void
+  express(Interest interest, PendingRequest request)
+  {
+    long token = m_nextToken++;
+    m_pending.put(token, request);
+    ResponseDispatcher dispatcher = new ResponseDispatcher(token);
+    try {
+      getFace().expressInterest(interest, dispatcher, dispatcher, dispatcher);
+    }
+    catch (Exception e) {
+      m_pending.remove(token);
+      G.Log(TAG, "Failed to express " + interest.getName().toUri() + " (" + e.getMessage() + ")");
+      request.onFailure(e);
+      resetConnection(e);
+    }
+  }
+
+  private Face
+  getFace()
+  {
+    if (m_face == null) {
+      m_face = NfdcHelper.createFace();
+    }
+    return m_face;
+  }
+
+  /**
+   * Drop the current connection after an error; the next request reconnects
+   */
+  private void
+  resetConnection(Exception reason)
+  {
+    if (m_face != null) {
+      m_face.shutdown();
+      m_face = null;
+    }
+
+    List<PendingRequest> failed = new ArrayList<>(m_pending.values());
+    m_pending.clear();
+    for (PendingRequest request : failed) {
+      request.onFailure(reason);
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Callbacks of one outstanding Interest, which dispatch to the request of its token
+   * <p>
+   * The connection is served by the shared {@link FaceEventLoop}, so the callbacks come on the
+   * loop thread and are handed over to the event thread.  A request that has already failed
+   * (e.g., because the connection was reset) is no longer pending and its callbacks are ignored.
+   */
+  private class ResponseDispatcher implements OnData, OnTimeout, OnNetworkNack
+  {
+    ResponseDispatcher(long token)
+    {
+      m_token = token;
+    }
+
+    @Override
+    public void
+    onData(final Interest interest, final Data data)
+    {
+      m_eventThread.execute(new Runnable() {
+        @Override
+        public void
+        run()
+        {
+          PendingRequest request = m_pending.remove(m_token);
+          if (request != null) {
+            request.onData(data);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void
+    onTimeout(final Interest interest)
+    {
+      m_eventThread.execute(new Runnable() {
+        @Override
+        public void
+        run()
+        {
+          PendingRequest request = m_pending.remove(m_token);
+          if (request != null) {
+            request.onFailure(new ManagementException("Timeout for " + interest.getName().toUri()));
+          }
+        }
+      });
+    }
+
+    @Override
+    public void
+    onNetworkNack(final Interest interest, final NetworkNack networkNack)
+    {
+      m_eventThread.execute(new Runnable() {
+        @Override
+        public void
+        run()
+        {
+          PendingRequest request = m_pending.remove(m_token);
+          if (request != null) {
+            request.onFailure(new ManagementException("Nack (" + networkNack.getReason() + ") for " +
+                                                      interest.getName().toUri()));
+          }
+        }
+      });
+    }
+
+    private final long m_token;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = AsyncNfdcHelper.class.getSimpleName();
+
+  private static final Name COMMAND_PREFIX = new Name("/localhost/nfd");
+  private static final int COMMAND_PREFIX_SIZE = COMMAND_PREFIX.size();
+  private static final Name DATASET_STATUS_GENERAL = new Name("/localhost/nfd/status/general");
+  private static final Name DATASET_FACE_LIST = new Name("/localhost/nfd/faces/list");
+  private static final Name DATASET_FIB_LIST = new Name("/localhost/nfd/fib/list");
+  private static final Name DATASET_RIB_LIST = new Name("/localhost/nfd/rib/list");
+
+  private static final int STATUS_OK = 200;
+  private static final int STATUS_CONFLICT = 409;
+
+  // ControlParameters elements used by encodeFaceCreateParameters()
+  private static final int TLV_CONTROL_PARAMETERS = 104;
+  private static final int TLV_URI = 114;
+  private static final int TLV_FLAGS = 108;
+  private static final int TLV_MASK = 112;
+  private static final int FACE_FLAG_LP_RELIABILITY_ENABLED = 1 << 1; // bit 2 is CongestionMarkingEnabled
+
+  private static final double COMMAND_LIFETIME = 4000; // in ms
+  private static final double DATASET_LIFETIME = 2000; // in ms
+  private static final long DATASET_TIMEOUT = 5000; // in ms, for all segments together
+
+  private static AsyncNfdcHelper s_instance = null;
+
+  /**
+   * The only thread that touches m_face, m_pending and m_nextToken
+   */
+  private final ScheduledThreadPoolExecutor m_eventThread = new ScheduledThreadPoolExecutor(1);
+  private final Map<Long, PendingRequest> m_pending = new HashMap<>();
+  private long m_nextToken = 0;
+  private Face m_face = null;
+}
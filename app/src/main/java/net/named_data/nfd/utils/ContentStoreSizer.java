@@ -0,0 +1,75 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+/**
+ * Content store capacity, either as configured or sized from the device memory
+ */
+public class ContentStoreSizer {
+  /**
+   * @return configured capacity, or the automatic capacity if none is configured
+   */
+  public static int
+  getMaxPackets(Context context) {
+    int maxPackets = SharedPreferencesManager.getCsMaxPackets(context);
+    if (maxPackets != SharedPreferencesManager.CS_MAX_PACKETS_AUTO) {
+      return maxPackets;
+    }
+    return getAutomaticMaxPackets(context);
+  }
+
+  /**
+   * Capacity that gives the content store 1/32 of the device RAM, but not more than half of the
+   * per-app memory class
+   */
+  public static int
+  getAutomaticMaxPackets(Context context) {
+    ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+    activityManager.getMemoryInfo(memoryInfo);
+
+    long budget = Math.min(memoryInfo.totalMem / 32,
+                           activityManager.getMemoryClass() * 1024L * 1024L / 2);
+    int maxPackets = (int) Math.max(MIN_AUTO_MAX_PACKETS,
+                                    Math.min(MAX_AUTO_MAX_PACKETS, budget / AVERAGE_PACKET_SIZE));
+    G.Log(TAG, "Automatic content store capacity: " + maxPackets + " packets (" +
+               (memoryInfo.totalMem >> 20) + " MB RAM, memory class " +
+               activityManager.getMemoryClass() + " MB)");
+    return maxPackets;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = ContentStoreSizer.class.getSimpleName();
+
+  /**
+   * Assumed memory footprint of a cached packet, including table overhead
+   */
+  private static final long AVERAGE_PACKET_SIZE = 5 * 1024;
+
+  /**
+   * Bounds of the automatic capacity
+   */
+  private static final int MIN_AUTO_MAX_PACKETS = 100;
+  private static final int MAX_AUTO_MAX_PACKETS = 65536;
+}
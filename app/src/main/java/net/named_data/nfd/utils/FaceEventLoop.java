@@ -0,0 +1,453 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import android.os.SystemClock;
+
+import net.named_data.jndn.Face;
+import net.named_data.jndn.encoding.ElementListener;
+import net.named_data.jndn.encoding.ElementReader;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.jndn.transport.TcpTransport;
+import net.named_data.jndn.transport.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Process-wide event loop for Faces connected to the local forwarder
+ * <p>
+ * A single thread blocks in a {@link Selector} until one of its Faces has data to read or a timer
+ * is due, so no thread wakes up while the Faces are idle, and incoming packets are dispatched as
+ * soon as they arrive.  Sending never blocks: what the socket does not accept right away is
+ * queued and written by the loop once the socket is writable.  Faces created with {@link #createFace()} need no processEvents() calls:
+ * received packets and Interest timeouts are both delivered on the loop thread.
+ * <p>
+ * Callbacks of these Faces run on the loop thread and must not block, in particular not on a
+ * synchronous {@link NfdcHelper} command, whose responses are delivered by the same thread.
+ */
+public class FaceEventLoop
+{
+  public static synchronized FaceEventLoop
+  getInstance()
+  {
+    if (s_instance == null) {
+      s_instance = new FaceEventLoop();
+    }
+    return s_instance;
+  }
+
+  /**
+   * Create a Face to the local forwarder served by this loop
+   */
+  public Face
+  createFace()
+  {
+    return new LoopFace(new LoopTransport(),
+                        new TcpTransport.ConnectionInfo(NFD_HOST, NFD_PORT));
+  }
+
+  /**
+   * Run a task on the loop thread
+   */
+  public void
+  post(Runnable task)
+  {
+    schedule(0, task);
+  }
+
+  /**
+   * Run a task on the loop thread after a delay
+   */
+  public void
+  schedule(double delayMs, Runnable task)
+  {
+    Timer timer = new Timer(SystemClock.elapsedRealtime() + (long) Math.ceil(delayMs), task);
+    boolean isEarliest;
+    synchronized (m_timers) {
+      timer.m_sequence = m_nextTimerSequence++;
+      m_timers.add(timer);
+      isEarliest = m_timers.peek() == timer;
+    }
+    if (isEarliest && Thread.currentThread() != m_thread) {
+      m_selector.wakeup();
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Face whose delayed calls, including Interest timeouts, are run by the loop
+   */
+  private class LoopFace extends Face
+  {
+    LoopFace(Transport transport, Transport.ConnectionInfo connectionInfo)
+    {
+      super(transport, connectionInfo);
+    }
+
+    @Override
+    public void
+    callLater(double delayMilliseconds, Runnable callback)
+    {
+      schedule(delayMilliseconds, callback);
+    }
+  }
+
+  /**
+   * TCP transport whose socket is read by the loop when it becomes readable
+   */
+  private class LoopTransport extends Transport
+  {
+    @Override
+    public boolean
+    isLocal(ConnectionInfo connectionInfo)
+    {
+      return true;
+    }
+
+    @Override
+    public boolean
+    isAsync()
+    {
+      return false;
+    }
+
+    @Override
+    public void
+    connect(ConnectionInfo connectionInfo, ElementListener elementListener, Runnable onConnected)
+      throws IOException
+    {
+      close();
+      TcpTransport.ConnectionInfo tcpInfo = (TcpTransport.ConnectionInfo) connectionInfo;
+      // connecting to the local forwarder does not take long enough to be worth doing async
+      SocketChannel channel = SocketChannel.open(new InetSocketAddress(tcpInfo.getHost(), tcpInfo.getPort()));
+      channel.configureBlocking(false);
+      m_elementReader = new ElementReader(elementListener);
+      m_channel = channel;
+      m_pendingRegistrations.add(this);
+      m_selector.wakeup();
+
+      if (onConnected != null) {
+        onConnected.run();
+      }
+    }
+
+    @Override
+    public void
+    send(ByteBuffer data) throws IOException
+    {
+      SocketChannel channel = m_channel;
+      if (channel == null) {
+        throw new IOException("Cannot send because the socket is not open. Use connect.");
+      }
+      synchronized (this) {
+        if (m_pendingWrites.isEmpty()) {
+          channel.write(data);
+          if (!data.hasRemaining()) {
+            return;
+          }
+        }
+        // the send buffer is full: the loop writes the rest once the socket is writable
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data);
+        copy.flip();
+        m_pendingWrites.add(copy);
+        if (m_pendingWrites.size() == 1) {
+          m_pendingInterestUpdates.add(this);
+          m_selector.wakeup();
+        }
+      }
+    }
+
+    @Override
+    public void
+    processEvents()
+    {
+      // reading is done by the loop
+    }
+
+    @Override
+    public boolean
+    getIsConnected()
+    {
+      SocketChannel channel = m_channel;
+      return channel != null && channel.isConnected();
+    }
+
+    @Override
+    public void
+    close()
+    {
+      SocketChannel channel = m_channel;
+      m_channel = null;
+      synchronized (this) {
+        m_pendingWrites.clear();
+      }
+      if (channel != null) {
+        try {
+          // also cancels its selection key
+          channel.close();
+        }
+        catch (IOException e) {
+          G.Log(TAG, "Error closing socket: " + e.getMessage());
+        }
+        m_selector.wakeup();
+      }
+    }
+
+    /**
+     * Called on the loop thread when the socket is readable
+     */
+    void
+    onReadable(SocketChannel channel)
+    {
+      m_readBuffer.clear();
+      int nRead;
+      try {
+        nRead = channel.read(m_readBuffer);
+      }
+      catch (IOException e) {
+        nRead = -1;
+      }
+      if (nRead < 0) {
+        G.Log(TAG, "Connection to NFD closed");
+        close();
+        return;
+      }
+      m_readBuffer.flip();
+      try {
+        m_elementReader.onReceivedData(m_readBuffer);
+      }
+      catch (EncodingException e) {
+        G.Log(TAG, "Cannot decode incoming packet: " + e.getMessage());
+      }
+    }
+
+    /**
+     * Called on the loop thread when the socket is writable
+     */
+    void
+    onWritable(SelectionKey key)
+    {
+      try {
+        synchronized (this) {
+          ByteBuffer data;
+          while ((data = m_pendingWrites.peek()) != null) {
+            ((SocketChannel) key.channel()).write(data);
+            if (data.hasRemaining()) {
+              return;
+            }
+            m_pendingWrites.poll();
+          }
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      }
+      catch (IOException e) {
+        G.Log(TAG, "Cannot send to NFD: " + e.getMessage());
+        close();
+      }
+    }
+
+    /**
+     * @return the operations the loop should wait for on the socket
+     */
+    synchronized int
+    getInterestOps()
+    {
+      return m_pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+    }
+
+    private volatile SocketChannel m_channel;
+    private ElementReader m_elementReader;
+    // data not yet accepted by the socket, guarded by this
+    private final ArrayDeque<ByteBuffer> m_pendingWrites = new ArrayDeque<>();
+    // only used on the loop thread
+    private final ByteBuffer m_readBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+  }
+
+  private static class Timer implements Comparable<Timer>
+  {
+    Timer(long dueTime, Runnable task)
+    {
+      m_dueTime = dueTime;
+      m_task = task;
+    }
+
+    @Override
+    public int
+    compareTo(Timer other)
+    {
+      if (m_dueTime != other.m_dueTime) {
+        return m_dueTime < other.m_dueTime ? -1 : 1;
+      }
+      // tasks due at the same time run in the order they were scheduled
+      return Long.compare(m_sequence, other.m_sequence);
+    }
+
+    final long m_dueTime;
+    final Runnable m_task;
+    long m_sequence;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private FaceEventLoop()
+  {
+    try {
+      m_selector = Selector.open();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Cannot open selector", e);
+    }
+    m_thread = new Thread(new Runnable() {
+      @Override
+      public void
+      run()
+      {
+        loop();
+      }
+    }, TAG);
+    m_thread.setDaemon(true);
+    m_thread.start();
+  }
+
+  private void
+  loop()
+  {
+    while (true) {
+      registerPendingTransports();
+
+      long timeout = 0; // 0 blocks until woken up
+      synchronized (m_timers) {
+        Timer next = m_timers.peek();
+        if (next != null) {
+          timeout = Math.max(1, next.m_dueTime - SystemClock.elapsedRealtime());
+        }
+      }
+
+      try {
+        m_selector.select(timeout);
+      }
+      catch (IOException e) {
+        G.Log(TAG, "Select failed: " + e.getMessage());
+      }
+
+      Iterator<SelectionKey> keys = m_selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        if (key.isValid() && key.isWritable()) {
+          ((LoopTransport) key.attachment()).onWritable(key);
+        }
+        if (key.isValid() && key.isReadable()) {
+          try {
+            ((LoopTransport) key.attachment()).onReadable((SocketChannel) key.channel());
+          }
+          catch (RuntimeException e) {
+            G.Log(TAG, "Uncaught exception in callback: " + e);
+          }
+        }
+      }
+
+      runDueTimers();
+    }
+  }
+
+  private void
+  registerPendingTransports()
+  {
+    LoopTransport transport;
+    while ((transport = m_pendingRegistrations.poll()) != null) {
+      SocketChannel channel = transport.m_channel;
+      if (channel == null) {
+        continue;
+      }
+      try {
+        channel.register(m_selector, transport.getInterestOps(), transport);
+      }
+      catch (ClosedChannelException e) {
+        // closed before the loop got to it
+      }
+    }
+
+    // interest in OP_WRITE is only changed on the loop thread, which is not blocked in select()
+    while ((transport = m_pendingInterestUpdates.poll()) != null) {
+      SocketChannel channel = transport.m_channel;
+      SelectionKey key = channel == null ? null : channel.keyFor(m_selector);
+      if (key != null && key.isValid()) {
+        key.interestOps(transport.getInterestOps());
+      }
+    }
+  }
+
+  private void
+  runDueTimers()
+  {
+    long now = SystemClock.elapsedRealtime();
+    while (true) {
+      Timer timer;
+      synchronized (m_timers) {
+        timer = m_timers.peek();
+        if (timer == null || timer.m_dueTime > now) {
+          return;
+        }
+        m_timers.poll();
+      }
+      try {
+        timer.m_task.run();
+      }
+      catch (RuntimeException e) {
+        G.Log(TAG, "Uncaught exception in callback: " + e);
+      }
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = FaceEventLoop.class.getSimpleName();
+
+  private static final String NFD_HOST = "localhost";
+  private static final int NFD_PORT = 6363;
+
+  /**
+   * Largest NDN packet, so that one read never leaves a partial buffer behind in the reader
+   * unnecessarily
+   */
+  private static final int MAX_PACKET_SIZE = 8800;
+
+  private static FaceEventLoop s_instance;
+
+  private final Selector m_selector;
+  private final Thread m_thread;
+  private final ConcurrentLinkedQueue<LoopTransport> m_pendingRegistrations = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<LoopTransport> m_pendingInterestUpdates = new ConcurrentLinkedQueue<>();
+  private final PriorityQueue<Timer> m_timers = new PriorityQueue<>();
+  private long m_nextTimerSequence = 0;
+}
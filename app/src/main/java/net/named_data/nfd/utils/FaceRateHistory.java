@@ -0,0 +1,160 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import com.intel.jndn.management.types.FaceStatus;
+
+/**
+ * Bounded history of the traffic counters of one face
+ * <p>
+ * Counters are kept in a ring of primitives; rates are computed from successive samples.
+ */
+public class FaceRateHistory {
+  public static final int IN_INTERESTS = 0;
+  public static final int OUT_INTERESTS = 1;
+  public static final int IN_DATA = 2;
+  public static final int OUT_DATA = 3;
+  public static final int IN_NACKS = 4;
+  public static final int OUT_NACKS = 5;
+  public static final int IN_BYTES = 6;
+  public static final int OUT_BYTES = 7;
+  public static final int N_COUNTERS = 8;
+
+  FaceRateHistory(int capacity) {
+    m_capacity = capacity;
+    m_timestamps = new long[capacity];
+    m_counters = new long[capacity * N_COUNTERS];
+  }
+
+  /**
+   * Record the counters of a face status sample
+   *
+   * @param timestamp time of the sample in milliseconds
+   */
+  synchronized void
+  add(long timestamp, FaceStatus faceStatus) {
+    if (m_size > 0 && timestamp <= m_timestamps[index(m_size - 1)]) {
+      // same dataset seen again
+      return;
+    }
+
+    int slot = index(m_size);
+    int offset = slot * N_COUNTERS;
+    m_timestamps[slot] = timestamp;
+    m_counters[offset + IN_INTERESTS] = faceStatus.getNInInterests();
+    m_counters[offset + OUT_INTERESTS] = faceStatus.getNOutInterests();
+    m_counters[offset + IN_DATA] = faceStatus.getNInData();
+    m_counters[offset + OUT_DATA] = faceStatus.getNOutData();
+    m_counters[offset + IN_NACKS] = faceStatus.getNInNacks();
+    m_counters[offset + OUT_NACKS] = faceStatus.getNOutNacks();
+    m_counters[offset + IN_BYTES] = faceStatus.getNInBytes();
+    m_counters[offset + OUT_BYTES] = faceStatus.getNOutBytes();
+
+    if (m_size > 0 && isReset(index(m_size - 1), slot)) {
+      // the face was recreated with the same ID, or NFD restarted: counters started over
+      // from zero, so earlier samples cannot be compared with this one
+      m_head = slot;
+      m_size = 0;
+    }
+
+    if (m_size < m_capacity) {
+      ++m_size;
+    } else {
+      m_head = (m_head + 1) % m_capacity;
+    }
+  }
+
+  /**
+   * Per-second rates between the two most recent samples
+   *
+   * @param rates array of N_COUNTERS elements
+   * @return false if there are fewer than two samples
+   */
+  public synchronized boolean
+  getLatestRates(double[] rates) {
+    if (m_size < 2) {
+      return false;
+    }
+    computeRates(index(m_size - 2), index(m_size - 1), rates);
+    return true;
+  }
+
+  /**
+   * Highest per-second rates between any two successive samples in the history
+   *
+   * @param rates array of N_COUNTERS elements
+   * @return false if there are fewer than two samples
+   */
+  public synchronized boolean
+  getPeakRates(double[] rates) {
+    if (m_size < 2) {
+      return false;
+    }
+    for (int c = 0; c < N_COUNTERS; ++c) {
+      rates[c] = 0;
+    }
+    for (int i = 1; i < m_size; ++i) {
+      computeRates(index(i - 1), index(i), m_scratch);
+      for (int c = 0; c < N_COUNTERS; ++c) {
+        rates[c] = Math.max(rates[c], m_scratch[c]);
+      }
+    }
+    return true;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private int
+  index(int i) {
+    return (m_head + i) % m_capacity;
+  }
+
+  /**
+   * @return whether any counter of the sample in slot to is lower than in slot from
+   */
+  private boolean
+  isReset(int from, int to) {
+    for (int c = 0; c < N_COUNTERS; ++c) {
+      if (m_counters[to * N_COUNTERS + c] < m_counters[from * N_COUNTERS + c]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void
+  computeRates(int from, int to, double[] rates) {
+    double seconds = (m_timestamps[to] - m_timestamps[from]) / 1000.0;
+    for (int c = 0; c < N_COUNTERS; ++c) {
+      // successive samples never decrease, add() drops the history on a reset
+      long delta = m_counters[to * N_COUNTERS + c] - m_counters[from * N_COUNTERS + c];
+      rates[c] = delta / seconds;
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private final int m_capacity;
+  private final long[] m_timestamps;
+  private final long[] m_counters;
+  private final double[] m_scratch = new double[N_COUNTERS];
+  private int m_head = 0;
+  private int m_size = 0;
+}
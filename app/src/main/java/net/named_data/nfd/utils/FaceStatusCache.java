@@ -0,0 +1,166 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.intel.jndn.management.types.FaceStatus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Face dataset shared by all screens of the app process
+ * <p>
+ * Concurrent requests are served by a single dataset fetch, and a recent enough dataset is
+ * returned without fetching at all.  Every fetched dataset also feeds a bounded
+ * {@link FaceRateHistory} for each face.
+ */
+public class FaceStatusCache {
+  /**
+   * Face dataset at one point in time
+   */
+  public static class Snapshot {
+    Snapshot(long timestamp, List<FaceStatus> faces) {
+      m_timestamp = timestamp;
+      m_faces = Collections.unmodifiableList(faces);
+      for (FaceStatus face : faces) {
+        m_facesById.put(face.getFaceId(), face);
+      }
+    }
+
+    /**
+     * @return time of the fetch, in SystemClock.elapsedRealtime() milliseconds
+     */
+    public long
+    getTimestamp() {
+      return m_timestamp;
+    }
+
+    public List<FaceStatus>
+    getFaces() {
+      return m_faces;
+    }
+
+    /**
+     * @return status of the face, or null if the face does not exist
+     */
+    public FaceStatus
+    getFace(int faceId) {
+      return m_facesById.get(faceId);
+    }
+
+    private final long m_timestamp;
+    private final List<FaceStatus> m_faces;
+    private final SparseArray<FaceStatus> m_facesById = new SparseArray<>();
+  }
+
+  public static synchronized FaceStatusCache
+  getInstance() {
+    if (s_instance == null) {
+      s_instance = new FaceStatusCache();
+    }
+    return s_instance;
+  }
+
+  /**
+   * Get the face dataset
+   *
+   * @param maxAgeMs age up to which the last dataset is returned instead of fetching a new one;
+   *                 0 always fetches (or joins a fetch in progress)
+   */
+  public synchronized NfdcFuture<Snapshot>
+  get(long maxAgeMs) {
+    if (m_fetch != null) {
+      return m_fetch;
+    }
+    if (m_snapshot != null && SystemClock.elapsedRealtime() - m_snapshot.getTimestamp() <= maxAgeMs) {
+      NfdcFuture<Snapshot> cached = new NfdcFuture<>();
+      cached.complete(m_snapshot);
+      return cached;
+    }
+
+    final NfdcFuture<Snapshot> fetch = new NfdcFuture<>();
+    m_fetch = fetch;
+    AsyncNfdcHelper.getInstance().faceList().addListener(new NfdcFuture.Listener<List<FaceStatus>>() {
+      @Override
+      public void onComplete(NfdcFuture<List<FaceStatus>> faceList) {
+        if (faceList.getException() != null) {
+          synchronized (FaceStatusCache.this) {
+            m_fetch = null;
+          }
+          fetch.completeExceptionally(faceList.getException());
+          return;
+        }
+
+        Snapshot snapshot = new Snapshot(SystemClock.elapsedRealtime(), faceList.getValue());
+        synchronized (FaceStatusCache.this) {
+          m_fetch = null;
+          m_snapshot = snapshot;
+          updateHistories(snapshot);
+        }
+        fetch.complete(snapshot);
+      }
+    });
+    return fetch;
+  }
+
+  /**
+   * @return traffic history of the face, or null if the face has not been seen
+   */
+  public synchronized FaceRateHistory
+  getHistory(int faceId) {
+    return m_histories.get(faceId);
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private FaceStatusCache() {
+  }
+
+  private void
+  updateHistories(Snapshot snapshot) {
+    SparseArray<FaceRateHistory> histories = new SparseArray<>();
+    for (FaceStatus face : snapshot.getFaces()) {
+      FaceRateHistory history = m_histories.get(face.getFaceId());
+      if (history == null) {
+        history = new FaceRateHistory(HISTORY_CAPACITY);
+      }
+      history.add(snapshot.getTimestamp(), face);
+      histories.put(face.getFaceId(), history);
+    }
+    // histories of destroyed faces are dropped
+    m_histories = histories;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Number of samples kept per face
+   */
+  private static final int HISTORY_CAPACITY = 120;
+
+  private static FaceStatusCache s_instance;
+
+  private Snapshot m_snapshot;
+  private NfdcFuture<Snapshot> m_fetch;
+  private SparseArray<FaceRateHistory> m_histories = new SparseArray<>();
+}
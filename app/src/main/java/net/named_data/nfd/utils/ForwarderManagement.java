@@ -0,0 +1,69 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.FibEntry;
+import com.intel.jndn.management.types.RibEntry;
+
+import net.named_data.jndn.ControlParameters;
+import net.named_data.jndn.Name;
+
+import java.util.List;
+
+/**
+ * Asynchronous management operations of a forwarder
+ * <p>
+ * {@link AsyncNfdcHelper} implements them on the local NFD; simulations implement them in
+ * memory, so that code issuing commands through this interface can run without a forwarder.
+ */
+public interface ForwarderManagement
+{
+  NfdcFuture<List<FaceStatus>>
+  faceList();
+
+  NfdcFuture<List<FibEntry>>
+  fibList();
+
+  NfdcFuture<List<RibEntry>>
+  ribList();
+
+  /**
+   * @return future that is completed with the ID of the created (or already existing) face
+   */
+  NfdcFuture<Integer>
+  faceCreate(String faceUri);
+
+  /**
+   * @param isLpReliabilityEnabled whether NDNLP reliability is enabled on a newly created face
+   * @return future that is completed with the ID of the created (or already existing) face
+   */
+  NfdcFuture<Integer>
+  faceCreate(String faceUri, boolean isLpReliabilityEnabled);
+
+  NfdcFuture<ControlParameters>
+  faceDestroy(int faceId);
+
+  NfdcFuture<ControlParameters>
+  ribRegisterPrefix(Name prefix, int faceId, int cost, boolean isChildInherit, boolean isCapture);
+
+  NfdcFuture<ControlParameters>
+  ribUnregisterPrefix(Name prefix, int faceId);
+}
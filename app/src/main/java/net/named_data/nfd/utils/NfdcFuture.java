@@ -0,0 +1,271 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/*
+ * Copyright (c) 2015-2021 Regents of the University of California
+ * <p/>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p/>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p/>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of an asynchronous management operation issued through {@link AsyncNfdcHelper}
+ * <p>
+ * This is a small subset of java.util.concurrent.CompletableFuture, which is not available
+ * on all API levels supported by the app.  Listeners are invoked on the thread that
+ * completes the future (the management event thread), or immediately on the calling thread
+ * if the future has already completed, so they should not block.
+ */
+public class NfdcFuture<T> implements Future<T>
+{
+  public interface Listener<T>
+  {
+    void onComplete(NfdcFuture<T> future);
+  }
+
+  /**
+   * Create a future that completes when all of the given futures complete
+   * <p>
+   * The returned future fails with the first error reported by any of the given futures,
+   * but only after all of them have completed.
+   */
+  public static NfdcFuture<Void>
+  allOf(List<? extends NfdcFuture<?>> futures)
+  {
+    final NfdcFuture<Void> all = new NfdcFuture<>();
+    if (futures.isEmpty()) {
+      all.complete(null);
+      return all;
+    }
+
+    AtomicInteger remaining = new AtomicInteger(futures.size());
+    Exception[] firstError = new Exception[1];
+    for (NfdcFuture<?> future : futures) {
+      joinInto(all, future, remaining, firstError);
+    }
+    return all;
+  }
+
+  /**
+   * Complete the future with a value
+   *
+   * @return false if the future has already been completed
+   */
+  public boolean
+  complete(T value)
+  {
+    List<Listener<T>> listeners;
+    synchronized (this) {
+      if (m_isDone) {
+        return false;
+      }
+      m_value = value;
+      m_isDone = true;
+      listeners = m_listeners;
+      m_listeners = null;
+      notifyAll();
+    }
+    notifyListeners(listeners);
+    return true;
+  }
+
+  /**
+   * Complete the future with an error
+   *
+   * @return false if the future has already been completed
+   */
+  public boolean
+  completeExceptionally(Exception error)
+  {
+    List<Listener<T>> listeners;
+    synchronized (this) {
+      if (m_isDone) {
+        return false;
+      }
+      m_exception = error;
+      m_isDone = true;
+      listeners = m_listeners;
+      m_listeners = null;
+      notifyAll();
+    }
+    notifyListeners(listeners);
+    return true;
+  }
+
+  /**
+   * Register a listener to be called once the future is completed
+   */
+  public void
+  addListener(Listener<T> listener)
+  {
+    synchronized (this) {
+      if (!m_isDone) {
+        if (m_listeners == null) {
+          m_listeners = new ArrayList<>(1);
+        }
+        m_listeners.add(listener);
+        return;
+      }
+    }
+    listener.onComplete(this);
+  }
+
+  /**
+   * @return the value the future was completed with, or null if it is not completed or failed
+   */
+  public synchronized T
+  getValue()
+  {
+    return m_value;
+  }
+
+  /**
+   * @return the error the future was completed with, or null if it is not completed or succeeded
+   */
+  public synchronized Exception
+  getException()
+  {
+    return m_exception;
+  }
+
+  /**
+   * Cancelling only marks the future as completed; the command may still be executed by NFD
+   */
+  @Override
+  public boolean
+  cancel(boolean mayInterruptIfRunning)
+  {
+    return completeExceptionally(new CancellationException());
+  }
+
+  @Override
+  public synchronized boolean
+  isCancelled()
+  {
+    return m_exception instanceof CancellationException;
+  }
+
+  @Override
+  public synchronized boolean
+  isDone()
+  {
+    return m_isDone;
+  }
+
+  @Override
+  public synchronized T
+  get() throws InterruptedException, ExecutionException
+  {
+    while (!m_isDone) {
+      wait();
+    }
+    return getResult();
+  }
+
+  @Override
+  public synchronized T
+  get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+  {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!m_isDone) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        throw new TimeoutException();
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    }
+    return getResult();
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Count the completion of one of the futures of {@link #allOf}
+   */
+  private static <U> void
+  joinInto(final NfdcFuture<Void> all, NfdcFuture<U> future,
+           final AtomicInteger remaining, final Exception[] firstError)
+  {
+    future.addListener(new Listener<U>() {
+      @Override
+      public void
+      onComplete(NfdcFuture<U> f)
+      {
+        if (f.getException() != null) {
+          synchronized (firstError) {
+            if (firstError[0] == null) {
+              firstError[0] = f.getException();
+            }
+          }
+        }
+        if (remaining.decrementAndGet() == 0) {
+          synchronized (firstError) {
+            if (firstError[0] != null) {
+              all.completeExceptionally(firstError[0]);
+            }
+            else {
+              all.complete(null);
+            }
+          }
+        }
+      }
+    });
+  }
+
+  private T
+  getResult() throws ExecutionException
+  {
+    if (m_exception instanceof CancellationException) {
+      throw (CancellationException) m_exception;
+    }
+    if (m_exception != null) {
+      throw new ExecutionException(m_exception);
+    }
+    return m_value;
+  }
+
+  private void
+  notifyListeners(List<Listener<T>> listeners)
+  {
+    if (listeners == null) {
+      return;
+    }
+    for (Listener<T> listener : listeners) {
+      try {
+        listener.onComplete(this);
+      }
+      catch (RuntimeException e) {
+        G.Log(TAG, "Listener failed: " + e.getMessage());
+      }
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final String TAG = NfdcFuture.class.getSimpleName();
+
+  private boolean m_isDone = false;
+  private T m_value;
+  private Exception m_exception;
+  private List<Listener<T>> m_listeners;
+}
@@ -35,6 +35,7 @@ import net.named_data.jndn.ControlParameters;
 import net.named_data.jndn.Face;
 import net.named_data.jndn.ForwardingFlags;
 import net.named_data.jndn.Name;
+import net.named_data.jndn.encoding.EncodingException;
 import net.named_data.jndn.security.KeyChain;
 import net.named_data.jndn.security.SecurityException;
 import net.named_data.jndn.security.identity.IdentityManager;
@@ -43,6 +44,9 @@ import net.named_data.jndn.security.identity.MemoryPrivateKeyStorage;
 import net.named_data.jndn.security.policy.SelfVerifyPolicyManager;
 import net.named_data.jndn_xx.util.FaceUri;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -53,14 +57,65 @@ public class NfdcHelper
 {
   public NfdcHelper()
   {
-    m_face = new Face("localhost");
-    try {
-      m_face.setCommandSigningInfo(s_keyChain, s_keyChain.getDefaultCertificateName());
+    m_face = createFace();
+  }
+
+  /**
+   * Borrow a management connection from the process-wide pool
+   * <p>
+   * The returned helper is owned by the caller until it is handed back with {@link #release()}.
+   * Its connection to the local forwarder stays open while it sits in the pool, so the next
+   * status, face or route operation does not pay for connection setup again.
+   */
+  public static NfdcHelper
+  acquire()
+  {
+    NfdcHelper helper;
+    synchronized (s_idleHelpers) {
+      helper = s_idleHelpers.pollFirst();
     }
-    catch (SecurityException e) {
-      // shouldn't really happen
-      /// @todo add logging
+    if (helper == null) {
+      helper = new NfdcHelper();
     }
+    helper.m_isReleased = false;
+    return helper;
+  }
+
+  /**
+   * Return a helper obtained with {@link #acquire()} to the pool
+   * <p>
+   * Calling this more than once is harmless.  Helpers are not used after they are released.
+   */
+  public void
+  release()
+  {
+    if (m_isReleased) {
+      return;
+    }
+    m_isReleased = true;
+
+    synchronized (s_idleHelpers) {
+      if (s_idleHelpers.size() < MAX_IDLE_HELPERS) {
+        s_idleHelpers.addFirst(this);
+        return;
+      }
+    }
+    m_face.shutdown();
+  }
+
+  /**
+   * Close all pooled connections, e.g., when the local forwarder is about to be stopped
+   */
+  public static void
+  closeIdleConnections()
+  {
+    synchronized (s_idleHelpers) {
+      for (NfdcHelper helper : s_idleHelpers) {
+        helper.m_face.shutdown();
+      }
+      s_idleHelpers.clear();
+    }
+    AsyncNfdcHelper.closeSharedConnection();
   }
 
   public void
@@ -75,7 +130,7 @@ public class NfdcHelper
   public ForwarderStatus
   generalStatus() throws Exception
   {
-    return Nfdc.getForwarderStatus(m_face);
+    return execute(() -> Nfdc.getForwarderStatus(m_face));
   }
 
   /**
@@ -91,12 +146,15 @@ public class NfdcHelper
     ForwardingFlags flags = new ForwardingFlags();
     flags.setChildInherit(isChildInherit);
     flags.setCapture(isCapture);
-    Nfdc.register(m_face,
-                  new ControlParameters()
-                    .setName(prefix)
-                    .setFaceId(faceId)
-                    .setCost(cost)
-                    .setForwardingFlags(flags));
+    final ControlParameters parameters = new ControlParameters()
+      .setName(prefix)
+      .setFaceId(faceId)
+      .setCost(cost)
+      .setForwardingFlags(flags);
+    execute(() -> {
+      Nfdc.register(m_face, parameters);
+      return null;
+    });
   }
 
   /**
@@ -104,18 +162,24 @@ public class NfdcHelper
    */
   public void
   ribUnregisterPrefix(Name prefix, int faceId) throws ManagementException {
-    Nfdc.unregister(m_face,
-                    new ControlParameters()
-                      .setName(prefix)
-                      .setFaceId(faceId));
+    final ControlParameters parameters = new ControlParameters()
+      .setName(prefix)
+      .setFaceId(faceId);
+    execute(() -> {
+      Nfdc.unregister(m_face, parameters);
+      return null;
+    });
   }
 
   /**
    * Unregisters prefix
    */
   public void
-  ribUnregisterPrefix(Name prefix) throws ManagementException {
-    Nfdc.unregister(m_face, prefix);
+  ribUnregisterPrefix(final Name prefix) throws ManagementException {
+    execute(() -> {
+      Nfdc.unregister(m_face, prefix);
+      return null;
+    });
   }
 
   /**
@@ -123,11 +187,11 @@ public class NfdcHelper
    */
   public List<RibEntry>
   ribList() throws ManagementException {
-    return Nfdc.getRouteList(m_face);
+    return execute(() -> Nfdc.getRouteList(m_face));
   }
 
   public List<FibEntry> fibList() throws ManagementException {
-    return Nfdc.getFibList(m_face);
+    return execute(() -> Nfdc.getFibList(m_face));
   }
 
   public SparseArray<Set<Name>>
@@ -156,16 +220,20 @@ public class NfdcHelper
   public int
   faceCreate(String faceUri) throws ManagementException, FaceUri.Error, FaceUri.CanonizeError
   {
-    return Nfdc.createFace(m_face, formatFaceUri(faceUri));
+    final String canonicalUri = formatFaceUri(faceUri);
+    return execute(() -> Nfdc.createFace(m_face, canonicalUri));
   }
 
   /**
    * Destroys face
    */
   public void
-  faceDestroy(int faceId) throws Exception
+  faceDestroy(final int faceId) throws Exception
   {
-    Nfdc.destroyFace(m_face, faceId);
+    execute(() -> {
+      Nfdc.destroyFace(m_face, faceId);
+      return null;
+    });
   }
 
   /**
@@ -174,12 +242,45 @@ public class NfdcHelper
   public List<FaceStatus>
   faceList(Context context) throws ManagementException
   {
-    List<FaceStatus> result = Nfdc.getFaceList(m_face);
-    for(FaceStatus one : result) {
+    List<FaceStatus> result = faceList();
+    markPermanentFaces(context, result);
+    return result;
+  }
+
+  /**
+   * Show faces that are restored by the app as permanent
+   */
+  public static void
+  markPermanentFaces(Context context, List<FaceStatus> faces)
+  {
+    for(FaceStatus one : faces) {
       if(SharedPreferencesManager.isPermanentFace(context, one.getFaceId())) {
         one.setFacePersistency(FacePersistency.PERMANENT);
       }
     }
+  }
+
+  /**
+   * Show faces that are restored by the app as permanent, without modifying shared statuses
+   * <p>
+   * Faces of a {@link FaceStatusCache} snapshot are shared by all screens, so permanent faces
+   * are replaced by marked copies instead.
+   *
+   * @return new list with the faces in the same order
+   */
+  public static List<FaceStatus>
+  withPermanentFacesMarked(Context context, List<FaceStatus> faces) throws EncodingException
+  {
+    List<FaceStatus> result = new ArrayList<>(faces.size());
+    for (FaceStatus face : faces) {
+      if (SharedPreferencesManager.isPermanentFace(context, face.getFaceId())) {
+        FaceStatus copy = new FaceStatus();
+        copy.wireDecode(face.wireEncode().buf());
+        copy.setFacePersistency(FacePersistency.PERMANENT);
+        face = copy;
+      }
+      result.add(face);
+    }
     return result;
   }
 
@@ -191,7 +292,7 @@ public class NfdcHelper
   public List<FaceStatus>
   faceList() throws ManagementException
   {
-    return Nfdc.getFaceList(m_face);
+    return execute(() -> Nfdc.getFaceList(m_face));
   }
 
   public SparseArray<FaceStatus>
@@ -239,6 +340,56 @@ public class NfdcHelper
 
   /////////////////////////////////////////////////////////////////////////////
 
+  private interface Command<T>
+  {
+    T
+    run() throws ManagementException;
+  }
+
+  /**
+   * Run a management command, reconnecting once if the connection went away
+   * <p>
+   * A pooled connection outlives the forwarder it was opened to (e.g., when NFD is restarted),
+   * in which case the first command on it fails with an I/O error.  Such a command is retried
+   * over a fresh connection before the error is reported to the caller.
+   */
+  private <T> T
+  execute(Command<T> command) throws ManagementException
+  {
+    try {
+      return command.run();
+    }
+    catch (ManagementException e) {
+      if (!(e.getCause() instanceof IOException)) {
+        throw e;
+      }
+      G.Log(TAG, "Connection to NFD lost (" + e.getMessage() + "), reconnecting");
+      m_face.shutdown();
+      m_face = createFace();
+      return command.run();
+    }
+  }
+
+  /**
+   * Create a connection served by the shared {@link FaceEventLoop}
+   * <p>
+   * Responses are dispatched by the loop thread as they arrive, so the synchronous commands only
+   * wait for completion instead of polling the connection themselves.
+   */
+  static Face
+  createFace()
+  {
+    Face face = FaceEventLoop.getInstance().createFace();
+    try {
+      face.setCommandSigningInfo(s_keyChain, s_keyChain.getDefaultCertificateName());
+    }
+    catch (SecurityException e) {
+      // shouldn't really happen
+      /// @todo add logging
+    }
+    return face;
+  }
+
   private static KeyChain
   configureKeyChain() {
     final MemoryIdentityStorage identityStorage = new MemoryIdentityStorage();
@@ -267,6 +418,16 @@ public class NfdcHelper
 
   /////////////////////////////////////////////////////////////////////////////
 
+  private static final String TAG = NfdcHelper.class.getSimpleName();
+
+  /**
+   * Maximum number of connections kept open in the pool
+   */
+  private static final int MAX_IDLE_HELPERS = 2;
+
   final static KeyChain s_keyChain = configureKeyChain();
+  private static final ArrayDeque<NfdcHelper> s_idleHelpers = new ArrayDeque<>();
+
   private Face m_face;
+  private boolean m_isReleased = false;
 }
@@ -36,6 +36,11 @@ public class SharedPreferencesManager {
   private static final String PERMANENT_FACEID = "permanentFaceId";
   private static final String CONNECT_NEAREST_HUB = "connectNearestHub";
   private static final String ENABLE_UNSOLICITED_CACHING = "enableUnsolicitedCaching";
+  private static final String CS_MAX_PACKETS = "csMaxPackets";
+  private static final String CS_POLICY = "csPolicy";
+  private static final String TRAFFIC_RECORDER_INTERVAL = "trafficRecorderInterval";
+  private static final String WIFI_DIRECT_GROUP_TRANSPORT = "wifiDirectGroupTransport";
+  private static final String WIFI_DIRECT_WANTED_PREFIXES = "wifiDirectWantedPrefixes";
   private static final String PREFIX_FACEURI_DELIMITER = "\t";
   // We need to cache permanent face IDs in order to display whether a face is permanent face or not.
 
@@ -191,4 +196,87 @@ public class SharedPreferencesManager {
     return setting.getBoolean(ENABLE_UNSOLICITED_CACHING, false);
   }
 
+  /**
+   * Content store capacity that selects automatic sizing from the device memory
+   */
+  public static final int CS_MAX_PACKETS_AUTO = 0;
+
+  public static final String CS_POLICY_LRU = "lru";
+  public static final String CS_POLICY_PRIORITY_FIFO = "priority_fifo";
+
+  /**
+   * @param maxPackets content store capacity in packets, or CS_MAX_PACKETS_AUTO
+   */
+  @SuppressWarnings("deprecation")
+  public static void setCsMaxPackets(Context context, int maxPackets) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    setting.edit().putInt(CS_MAX_PACKETS, maxPackets).commit();
+  }
+
+  @SuppressWarnings("deprecation")
+  public static int getCsMaxPackets(Context context) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    return setting.getInt(CS_MAX_PACKETS, CS_MAX_PACKETS_AUTO);
+  }
+
+  /**
+   * @param policy CS_POLICY_LRU or CS_POLICY_PRIORITY_FIFO
+   */
+  @SuppressWarnings("deprecation")
+  public static void setCsPolicy(Context context, String policy) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    setting.edit().putString(CS_POLICY, policy).commit();
+  }
+
+  @SuppressWarnings("deprecation")
+  public static String getCsPolicy(Context context) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    return setting.getString(CS_POLICY, CS_POLICY_PRIORITY_FIFO);
+  }
+
+  /**
+   * @param intervalMs interval between traffic samples in milliseconds
+   */
+  @SuppressWarnings("deprecation")
+  public static void setTrafficRecorderInterval(Context context, int intervalMs) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    setting.edit().putInt(TRAFFIC_RECORDER_INTERVAL, intervalMs).commit();
+  }
+
+  @SuppressWarnings("deprecation")
+  public static int getTrafficRecorderInterval(Context context) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    return setting.getInt(TRAFFIC_RECORDER_INTERVAL, 1000);
+  }
+
+  /**
+   * @param isOn whether Wi-Fi Direct peers are reached over one multicast face for the group
+   */
+  @SuppressWarnings("deprecation")
+  public static void setWifiDirectGroupTransport(Context context, boolean isOn) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    setting.edit().putBoolean(WIFI_DIRECT_GROUP_TRANSPORT, isOn).commit();
+  }
+
+  @SuppressWarnings("deprecation")
+  public static boolean getWifiDirectGroupTransport(Context context) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    return setting.getBoolean(WIFI_DIRECT_GROUP_TRANSPORT, false);
+  }
+
+  /**
+   * @param prefixes URIs of the namespaces to look for in nearby Wi-Fi Direct devices
+   */
+  @SuppressWarnings("deprecation")
+  public static void setWifiDirectWantedPrefixes(Context context, Set<String> prefixes) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    setting.edit().putStringSet(WIFI_DIRECT_WANTED_PREFIXES, new HashSet<>(prefixes)).commit();
+  }
+
+  @SuppressWarnings("deprecation")
+  public static Set<String> getWifiDirectWantedPrefixes(Context context) {
+    SharedPreferences setting = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+    return new HashSet<>(setting.getStringSet(WIFI_DIRECT_WANTED_PREFIXES, new HashSet<String>()));
+  }
+
 }
@@ -21,18 +21,20 @@ package net.named_data.nfd.wifidirect.callback;
 
 import android.util.Log;
 
-import com.intel.jndn.management.types.FibEntry;
-import com.intel.jndn.management.types.NextHopRecord;
-
 import net.named_data.jndn.Data;
 import net.named_data.jndn.Face;
 import net.named_data.jndn.Interest;
 import net.named_data.jndn.Name;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
 import net.named_data.nfd.wifidirect.utils.NDNController;
+import net.named_data.nfd.wifidirect.utils.ProbeExchange;
 
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Handle OnData events for outgoing probe interests.
@@ -45,81 +47,41 @@ public class ProbeOnData implements NDNCallbackOnData {
 
   @Override
   public void doJob(Interest interest, Data data) {
-    // interest name = /localhop/wifidirect/<toIp>/<fromIp>/probe%timestamp
+    // interest name = /localhop/wifidirect/<toIp>/<fromIp>/probe/<knownVersion>
     Log.d(TAG, "Got data for interest: " + interest.getName().toString());
 
-    String[] nameArr = interest.getName().toString().split("/");
-    String peerIp = nameArr[nameArr.length - 3];
-    int peerFaceId = mController.getFaceIdForPeer(peerIp);
-
-    // parse the data, update controller prefix map
-    /**
-     * Data is in form:
-     * {numPrefixes}\n
-     * prefix1\n
-     * prefix2\n
-     * ...
-     */
-    String[] responseArr = data.getContent().toString().split("\n");
+    String peerIp = ProbeExchange.getResponderIp(interest.getName());
+    Peer peer = mController.getPeerByIp(peerIp);
 
     // validation
-    if (peerFaceId == -1) {
+    if (peer == null || peer.getFaceId() == -1) {
       Log.e(TAG, "Undocumented peer.");
       return;
     }
 
-    int numPrefixes = Integer.parseInt(responseArr[0]);
-    HashSet<String> prefixesInResp = new HashSet<>(numPrefixes);
-    for (int i = 1; i <= numPrefixes; i++) {
-      prefixesInResp.add(responseArr[i]);
-    }
-
-    // enumerate FIB entries, and collect the set of data prefixes towards this peer
-    HashSet<String> prefixesRegisteredForPeer = new HashSet<>();
+    // parse the data
+    ProbeResponse response;
     try {
-      List<FibEntry> fibEntries = mController.getNfdcHelper().fibList();
-      for (FibEntry fibEntry : fibEntries) {
-        //if (fibEntry.getPrefix().toString().startsWith(NDNController.DATA_PREFIX)) {
-        String fibEntryPrefix = fibEntry.getPrefix().toString();
-        if (!fibEntryPrefix.startsWith("/localhop") && !fibEntryPrefix.startsWith("/localhost")) {
-          List<NextHopRecord> nextHopRecords = fibEntry.getNextHopRecords();
-          for (NextHopRecord nextHopRecord : nextHopRecords) {
-            if (nextHopRecord.getFaceId() == peerFaceId) {
-              prefixesRegisteredForPeer.add(fibEntryPrefix);
-            }
-          }
-        }
-      }
-
-      // iterate through prefixes found in response,
-      // removing any already registered prefixes for this peer
-      // any prefix remaining in prefixesRegisteredForPeer after this
-      // is no longer advertised by peer
-      Iterator<String> it = prefixesInResp.iterator();
-      while (it.hasNext()) {
-        String prefix = it.next();
-        if (prefixesRegisteredForPeer.contains(prefix)) {
-          it.remove();
-          prefixesRegisteredForPeer.remove(prefix);
-        }
-      }
-
-      // register new prefixes in response
-      if (prefixesInResp.size() > 0) {
-        Log.d(TAG, prefixesInResp.size() + " new prefixes to add.");
-        mController.ribRegisterPrefix(peerFaceId, prefixesInResp.toArray(new String[0]));
-      } else {
-        Log.d(TAG, "No new prefixes to register.");
-      }
-
-      // unregister all prefixes that no longer are supported via this face
-      for (String toRemovePrefix : prefixesRegisteredForPeer) {
-        Log.d(TAG, "Removing from FIB: " + toRemovePrefix + " " + peerFaceId);
-        mController.getNfdcHelper().ribUnregisterPrefix(new Name(toRemovePrefix), peerFaceId);
-      }
+      response = ProbeResponse.wireDecode(data.getContent().buf());
+    } catch (EncodingException e) {
+      Log.e(TAG, "Malformed probe response from " + peerIp + ": " + e.getMessage());
+      return;
+    }
 
-    } catch (Exception e) {
-      e.printStackTrace();
+    Map<Name, Integer> toRegister = new LinkedHashMap<>();
+    List<Name> toUnregister = new ArrayList<>();
+    if (!ProbeExchange.onResponse(peer, response, toRegister, toUnregister)) {
+      Log.d(TAG, "Delta from " + peerIp + " does not apply, asking for a full snapshot next time");
+      return;
     }
+    if (toRegister.isEmpty() && toUnregister.isEmpty()) {
+      Log.d(TAG, "No change in routes towards " + peerIp);
+      return;
+    }
+
+    // all sent as one batch, in order with the other commands for this peer
+    Log.d(TAG, "Registering " + toRegister.size() + " and removing " + toUnregister.size() +
+      " prefixes on face " + peer.getFaceId());
+    mController.updatePeerRoutes(peer, toRegister, toUnregister);
   }
 }
@@ -21,21 +21,18 @@ package net.named_data.nfd.wifidirect.callback;
 
 import android.util.Log;
 
-import com.intel.jndn.management.types.FaceStatus;
-import com.intel.jndn.management.types.FibEntry;
-import com.intel.jndn.management.types.NextHopRecord;
-
 import net.named_data.jndn.Data;
 import net.named_data.jndn.Face;
 import net.named_data.jndn.Interest;
 import net.named_data.jndn.InterestFilter;
 import net.named_data.jndn.MetaInfo;
 import net.named_data.jndn.Name;
-import net.named_data.jndn.util.Blob;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
 import net.named_data.nfd.wifidirect.utils.NDNController;
+import net.named_data.nfd.wifidirect.utils.ProbeExchange;
 
-import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Handle OnInterest events for incoming probe interests.
@@ -52,82 +49,51 @@ public class ProbeOnInterest implements NDNCallBackOnInterest {
   public void doJob(Name prefix, Interest interest, Face face, long interestFilterId, InterestFilter filter) {
     Log.d(TAG, "Got an interest for: " + interest.getName().toString());
 
-    // /localhop/wifidirect/192.168.49.x/192.168.49.y/probe?mustBeFresh=1
-    String[] prefixArr = interest.getName().toString().split("/");
+    // /localhop/wifidirect/192.168.49.x/192.168.49.y/probe/<knownVersion>?mustBeFresh=1
+    Name interestName = interest.getName();
 
     // validate
-    if (prefixArr.length != 6) {
+    long knownVersion;
+    try {
+      knownVersion = ProbeExchange.getKnownVersion(interestName);
+    } catch (EncodingException e) {
       Log.e(TAG, "Error with this interest, skipping...");
+      return;
     }
 
-    final String peerIp = prefixArr[prefixArr.length - 2];
+    final String peerIp = ProbeExchange.getRequesterIp(interestName);
 
     // if not logged (a face created for this probing peer), should then create a face (mainly for GO)
     if (mController.getFaceIdForPeer(peerIp) == -1) {
 
+      // does nothing if an earlier probe of this peer already triggered the creation
       mController.createFace(peerIp, NDNController.URI_TRANSPORT_PREFIX, new GenericCallback() {
         @Override
         public void doJob() {
           Log.d(TAG, "Registering localhop for: " + peerIp);
-          String[] prefixes = new String[1];
-          prefixes[0] = NDNController.PROBE_PREFIX + "/" + peerIp;
-          mController.ribRegisterPrefix(mController.getFaceIdForPeer(peerIp),
-            prefixes);
+          mController.registerPeerLocalhop(peerIp);
         }
       });
     }
 
-    // enumerate RIB, look for all /ndn/wifidirect/* data prefixes, return to user as described in slides
+    // look for all data prefixes in the cached FIB, return to user as described in slides
     try {
-      // set of prefixes to return to interest sender
-      HashSet<String> prefixesToReturn = new HashSet<>();
-      String response = "";
-      int num = 0;
-
-      // consult NFD to get all entries in FIB
-      List<FibEntry> fibEntries = mController.getNfdcHelper().fibList();
-
-      // enumerate all faces
-      List<FaceStatus> faceStatuses = mController.getNfdcHelper().faceList();
-      HashSet<Integer> faceIds = new HashSet<>();
-      for (FaceStatus faceStatus : faceStatuses) {
-        faceIds.add(faceStatus.getFaceId());
-      }
-
-      // remove the interest incomming face id
-      faceIds.remove(mController.getFaceIdForPeer(peerIp));
-
-      // return only those prefixes that are handled by faces except for the interest incomming face
-      for (FibEntry fibEntry : fibEntries) {
-        if (!fibEntry.getPrefix().toString().startsWith("/localhop") &&
-          !fibEntry.getPrefix().toString().startsWith("/localhost")) {
-          // added constraint that the prefix must be served from devices except for the interest
-          // incomming device (e.g. by an upper layer application)
-          List<NextHopRecord> nextHopRecords = fibEntry.getNextHopRecords();
-          for (NextHopRecord nextHopRecord : nextHopRecords) {
-            if (faceIds.contains(nextHopRecord.getFaceId())) {
-              prefixesToReturn.add(fibEntry.getPrefix().toString());
-              num++;
-              break;
-            }
-          }
-        }
-      }
+      // prefixes to return to interest sender, i.e. those handled by faces except for
+      // the interest incomming face
+      Map<Name, ProbeResponse.PrefixEntry> prefixesToReturn = mController.getForwarderSnapshotCache().get()
+        .getAdvertisedPrefixes(mController.getFaceIdForPeer(peerIp));
+
+      // answer with what changed since the version the sender has
+      ProbeResponse response = ProbeExchange.respond(mController.getPeerByIp(peerIp), prefixesToReturn,
+        knownVersion);
 
       Data data = new Data();
-      data.setName(new Name(interest.getName().toUri()));
+      data.setName(new Name(interest.getName()));
       MetaInfo metaInfo = new MetaInfo();
       metaInfo.setFreshnessPeriod(DATA_LIFE_TIME);
       data.setMetaInfo(metaInfo);
 
-      // format payload, for now ignore hopcount as it is not clear whether
-      // it is useful
-      for (String pre : prefixesToReturn) {
-        response += ("\n" + pre);
-      }
-
-      Blob payload = new Blob(num + response); // num + ("\nprefix1\nprefix2...")
-      data.setContent(payload);
+      data.setContent(response.wireEncode());
 
       face.putData(data);
       Log.d(TAG, "Send data for: " + interest.getName().toString());
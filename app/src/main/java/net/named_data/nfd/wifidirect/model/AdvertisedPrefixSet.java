@@ -0,0 +1,186 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.model;
+
+import net.named_data.jndn.Name;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Versioned set of prefixes advertised between two peers in probe responses.
+ * <p>
+ * The responder keeps one per requester, holding what it last advertised to it, and uses
+ * it to answer with a delta against the version the requester reports to have. The requester
+ * keeps one per responder, holding what it learned so far, and applies the responses to it.
+ * A responder only keeps its latest version, so a requester that is on any other version
+ * (e.g. after a lost response) gets a full snapshot.
+ * <p>
+ * Not thread-safe: on a device, the sets of all peers are only accessed on the FaceEventLoop
+ * thread, which sends the probes and receives both the probes and their responses.
+ */
+public class AdvertisedPrefixSet {
+
+  /**
+   * Version of an empty set that was never advertised.
+   */
+  public static final long NO_VERSION = 0;
+
+  private static final Random defaultRandom = new Random();
+
+  private final Random random;
+  private long version = NO_VERSION;
+  private final HashMap<Name, ProbeResponse.PrefixEntry> prefixes = new HashMap<>();
+  // map last passed to advertise(), which is known to be equal to prefixes
+  private Map<Name, ProbeResponse.PrefixEntry> lastAdvertised = null;
+
+  public AdvertisedPrefixSet() {
+    this(defaultRandom);
+  }
+
+  /**
+   * @param random source of the initial version, e.g. seeded to make a simulation repeatable
+   */
+  public AdvertisedPrefixSet(Random random) {
+    this.random = random;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the entry of the prefix, or null if the set does not hold it
+   */
+  public ProbeResponse.PrefixEntry get(Name prefix) {
+    return prefixes.get(prefix);
+  }
+
+  /**
+   * @return an unmodifiable view of the prefixes in the set
+   */
+  public Set<Name> getPrefixes() {
+    return Collections.unmodifiableSet(prefixes.keySet());
+  }
+
+  /**
+   * Empties the set and forgets its version, e.g. because the routes installed from it are
+   * gone. Requester side, the next probe asks for a full snapshot, and applying it reports
+   * every prefix as added.
+   */
+  public void reset() {
+    version = NO_VERSION;
+    prefixes.clear();
+    lastAdvertised = null;
+  }
+
+  /**
+   * Responder side: advertises the current set of prefixes to a requester.
+   *
+   * @param current      prefixes currently advertised to the requester; passing the same
+   *                     unmodifiable instance again skips the comparison with the previous set
+   * @param knownVersion version of the set the requester has
+   * @return a "no change" response, a delta against knownVersion, or a full snapshot
+   */
+  public ProbeResponse advertise(Map<Name, ProbeResponse.PrefixEntry> current, long knownVersion) {
+    ProbeResponse response = new ProbeResponse();
+
+    boolean isChanged = version == NO_VERSION || (current != lastAdvertised && !prefixes.equals(current));
+    lastAdvertised = current;
+    if (isChanged) {
+      if (knownVersion == version && version != NO_VERSION) {
+        response.setBaseVersion(version);
+        for (ProbeResponse.PrefixEntry entry : current.values()) {
+          if (!entry.equals(prefixes.get(entry.getPrefix()))) {
+            response.addPrefix(entry);
+          }
+        }
+        for (Name prefix : prefixes.keySet()) {
+          if (!current.containsKey(prefix)) {
+            response.addRemovedPrefix(prefix);
+          }
+        }
+      } else {
+        for (ProbeResponse.PrefixEntry entry : current.values()) {
+          response.addPrefix(entry);
+        }
+      }
+
+      // versions start at a random point, so that a requester still holding a version from
+      // before this set was created does not mistake it for the current one
+      version = version == NO_VERSION ? 1 + random.nextInt(Integer.MAX_VALUE) : version + 1;
+      prefixes.clear();
+      prefixes.putAll(current);
+    } else if (knownVersion == version) {
+      response.setBaseVersion(version);
+    } else {
+      for (ProbeResponse.PrefixEntry entry : current.values()) {
+        response.addPrefix(entry);
+      }
+    }
+
+    response.setAdvertisementVersion(version);
+    return response;
+  }
+
+  /**
+   * Requester side: applies a response received from the responder.
+   *
+   * @param response the response
+   * @param added    receives the added or updated prefixes
+   * @param removed  receives the withdrawn prefixes
+   * @return false if the response is a delta against another version than ours; it is then
+   * not applied, and the version is forgotten so that the next probe asks for a full snapshot.
+   * The prefixes are kept, so that the full snapshot is compared against them
+   */
+  public boolean apply(ProbeResponse response, List<ProbeResponse.PrefixEntry> added, List<Name> removed) {
+    if (response.isFullSnapshot()) {
+      HashMap<Name, ProbeResponse.PrefixEntry> previous = new HashMap<>(prefixes);
+      prefixes.clear();
+      for (ProbeResponse.PrefixEntry entry : response.getPrefixes()) {
+        prefixes.put(entry.getPrefix(), entry);
+        if (!entry.equals(previous.remove(entry.getPrefix()))) {
+          added.add(entry);
+        }
+      }
+      removed.addAll(previous.keySet());
+    } else if (response.getBaseVersion() != version) {
+      version = NO_VERSION;
+      return false;
+    } else {
+      for (ProbeResponse.PrefixEntry entry : response.getPrefixes()) {
+        prefixes.put(entry.getPrefix(), entry);
+        added.add(entry);
+      }
+      for (Name prefix : response.getRemovedPrefixes()) {
+        if (prefixes.remove(prefix) != null) {
+          removed.add(prefix);
+        }
+      }
+    }
+
+    version = response.getAdvertisementVersion();
+    return true;
+  }
+}
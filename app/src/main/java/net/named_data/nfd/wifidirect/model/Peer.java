@@ -20,19 +20,124 @@
 package net.named_data.nfd.wifidirect.model;
 
 import android.net.wifi.p2p.WifiP2pDevice;
+import android.os.SystemClock;
+
+import net.named_data.nfd.wifidirect.utils.NDNController;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents a WifiDirect Peer.
+ * <p>
+ * Also holds the state of probing this peer. Probes are sent quickly after the peer joins or
+ * its prefixes change, and exponentially less often while they stay the same. The probe
+ * Interest lifetime follows the measured round-trip time (as TCP's RTO does), and the peer is
+ * considered failed only after several consecutive timeouts spanning a minimum silence.
+ * Probe state is updated on the FaceEventLoop thread, and read from other threads.
+ * <p>
+ * The provisioning state only moves forward through atomic transitions (see State), so that
+ * concurrent tasks cannot both create a face for, or both route, the same peer.
+ * <p>
+ * The face of a peer starts on UDP with NDNLP reliability and may later move to another
+ * transport (see TransportPolicy). Changes are spaced out, more so after failed ones, so that
+ * a link whose quality hovers around a threshold does not make the face flap.
  */
 public class Peer {
 
+  /**
+   * Provisioning state of a peer, in the order it is reached.
+   */
+  public enum State {
+    DISCOVERED,   // known by IP address, no face requested yet
+    CONNECTED,    // face creation claimed by one task
+    FACE_READY,   // face created, face id set
+    ROUTED        // /localhop prefix of the peer registered towards its face
+  }
+
+  /**
+   * Transport of the face towards a peer.
+   */
+  public enum Transport {
+    UDP(NDNController.URI_UDP_PREFIX),    // with NDNLP reliability
+    TCP(NDNController.URI_TCP_PREFIX);
+
+    private final String uriPrefix;
+
+    Transport(String uriPrefix) {
+      this.uriPrefix = uriPrefix;
+    }
+
+    public String getUriPrefix() {
+      return uriPrefix;
+    }
+  }
+
+  public static final int MIN_PROBE_INTERVAL = 500;        // in ms
+  public static final int MAX_PROBE_INTERVAL = 16000;      // in ms
+  private static final int MIN_PROBE_LIFETIME = 200;       // in ms
+  private static final int MAX_PROBE_LIFETIME = 8000;      // in ms
+  private static final int MAX_CONSECUTIVE_TIMEOUTS = 6;
+  private static final int MIN_SILENCE_BEFORE_FAILURE = 30000; // in ms
+  private static final int MIN_TRANSPORT_DWELL = 30000;      // in ms, between transport changes
+  private static final int MAX_TRANSPORT_DWELL = 600000;     // in ms, after repeated failed changes
+  private static final double PROBE_LOSS_GAIN = 0.125;       // weight of the latest probe in the loss rate
+
   // members
-  private WifiP2pDevice device;
-  private String ipAddress;
-  private int faceId;
-  private int numProbeTimeouts = 0;   // number of timeouts while probing prefixes from this peer
+  private volatile WifiP2pDevice device;
+  private volatile String ipAddress;
+  private volatile int faceId = -1;
+  private final AtomicReference<State> state = new AtomicReference<>(State.DISCOVERED);
+  // time from the face request to the /localhop route, in ms
+  private volatile long provisioningStartTime = -1;
+  private volatile long timeToRoutable = -1;
+  private int numProbeTimeouts = 0;   // number of consecutive timeouts while probing prefixes from this peer
+
+  // probe scheduling, in SystemClock.elapsedRealtime() ms (or simulated time)
+  private int probeInterval = MIN_PROBE_INTERVAL;
+  private long nextProbeTime = 0;
+  private long probeSentTime = -1;    // -1 when no probe is outstanding
+  private long lastResponseTime;
+  private boolean hasPrefixChange = false;
+  // smoothed round-trip time and its variation, -1 until measured
+  private double srtt = -1;
+  private double rttVar = -1;
+  private int probeLifetime = NDNController.PROBE_INTEREST_LIFETIME;
+  private double probeLossRate = 0;   // moving average of probe timeouts per probe
+  // transport of the face, and when it may change next
+  private volatile Transport transport = Transport.UDP;
+  private boolean isTransportChanging = false;
+  private long nextTransportChangeTime;
+  private int numTransportChangeFailures = 0;
+  // prefixes learned from this peer, and prefixes advertised to it
+  private final AdvertisedPrefixSet prefixesAdvertisedByPeer;
+  private final AdvertisedPrefixSet prefixesAdvertisedToPeer;
 
   public Peer() {
+    this(null);
+  }
+
+  public Peer(String ipAddress) {
+    this(ipAddress, SystemClock.elapsedRealtime(), new AdvertisedPrefixSet(), new AdvertisedPrefixSet());
+  }
+
+  /**
+   * Creates a peer outside of a device, e.g. in a simulation.
+   *
+   * @param now    current time, in the clock later passed to the probe methods
+   * @param random source of the versions of the prefixes advertised to the peer
+   */
+  public Peer(String ipAddress, long now, Random random) {
+    this(ipAddress, now, new AdvertisedPrefixSet(random), new AdvertisedPrefixSet(random));
+  }
+
+  private Peer(String ipAddress, long now, AdvertisedPrefixSet prefixesAdvertisedByPeer,
+               AdvertisedPrefixSet prefixesAdvertisedToPeer) {
+    this.ipAddress = ipAddress;
+    this.lastResponseTime = now;
+    this.nextTransportChangeTime = now + MIN_TRANSPORT_DWELL;
+    this.prefixesAdvertisedByPeer = prefixesAdvertisedByPeer;
+    this.prefixesAdvertisedToPeer = prefixesAdvertisedToPeer;
   }
 
   public WifiP2pDevice getDevice() {
@@ -59,12 +164,200 @@ public class Peer {
     this.faceId = faceId;
   }
 
-  public int getNumProbeTimeouts() {
+  public State getState() {
+    return state.get();
+  }
+
+  /**
+   * Atomically moves the peer from one provisioning state to another.
+   *
+   * @return false if the peer was not in the expected state, in which case nothing changed
+   */
+  public boolean compareAndSetState(State expected, State next) {
+    return state.compareAndSet(expected, next);
+  }
+
+  /**
+   * @return whether the face of this peer exists, i.e. it is FACE_READY or ROUTED
+   */
+  public boolean hasFace() {
+    return state.get().compareTo(State.FACE_READY) >= 0;
+  }
+
+  public void onProvisioningStarted(long now) {
+    provisioningStartTime = now;
+  }
+
+  /**
+   * Moves the peer from FACE_READY to ROUTED, and measures its time to routable the first time.
+   *
+   * @return false if the peer was not FACE_READY
+   */
+  public boolean onRouted(long now) {
+    if (!compareAndSetState(State.FACE_READY, State.ROUTED)) {
+      return false;
+    }
+    if (timeToRoutable == -1 && provisioningStartTime != -1) {
+      timeToRoutable = now - provisioningStartTime;
+    }
+    return true;
+  }
+
+  /**
+   * @return time from the face request until the peer first became ROUTED, in ms, or -1
+   */
+  public long getTimeToRoutable() {
+    return timeToRoutable;
+  }
+
+  public synchronized int getNumProbeTimeouts() {
     return numProbeTimeouts;
   }
 
-  public void setNumProbeTimeouts(int numProbeTimeouts) {
-    this.numProbeTimeouts = numProbeTimeouts;
+  /**
+   * @return time of the last probe response, or of the creation of this peer if it never
+   * responded
+   */
+  public synchronized long getLastResponseTime() {
+    return lastResponseTime;
+  }
+
+  /**
+   * @return whether a probe should be sent now: none is outstanding and the interval elapsed
+   */
+  public synchronized boolean isProbeDue(long now) {
+    if (probeSentTime != -1) {
+      // a probe whose callbacks were lost with its Face does not block probing forever
+      return now - probeSentTime > 2 * MAX_PROBE_LIFETIME;
+    }
+    return now >= nextProbeTime;
+  }
+
+  /**
+   * @return time from which isProbeDue() holds, unless a probe response or timeout comes first
+   */
+  public synchronized long getNextProbeTime() {
+    if (probeSentTime != -1) {
+      return probeSentTime + 2 * MAX_PROBE_LIFETIME + 1;
+    }
+    return nextProbeTime;
+  }
+
+  /**
+   * @return lifetime for the next probe Interest, derived from the measured RTT
+   */
+  public synchronized int getProbeLifetime() {
+    return probeLifetime;
+  }
+
+  public synchronized void onProbeSent(long now) {
+    probeSentTime = now;
+  }
+
+  /**
+   * Notes that the last response changed this peer's prefixes, so that it is probed
+   * quickly again.
+   */
+  public synchronized void onPrefixesChanged() {
+    hasPrefixChange = true;
+  }
+
+  /**
+   * Updates the RTT estimate and schedules the next probe: soon after a change, otherwise
+   * after twice the previous interval.
+   */
+  public synchronized void onProbeResponse(long now) {
+    if (probeSentTime != -1) {
+      double rtt = now - probeSentTime;
+      if (srtt < 0) {
+        srtt = rtt;
+        rttVar = rtt / 2;
+      } else {
+        rttVar = 0.75 * rttVar + 0.25 * Math.abs(srtt - rtt);
+        srtt = 0.875 * srtt + 0.125 * rtt;
+      }
+      probeLifetime = (int) Math.max(MIN_PROBE_LIFETIME, Math.min(MAX_PROBE_LIFETIME, srtt + 4 * rttVar));
+    }
+
+    probeInterval = hasPrefixChange ? MIN_PROBE_INTERVAL : Math.min(MAX_PROBE_INTERVAL, probeInterval * 2);
+    hasPrefixChange = false;
+    numProbeTimeouts = 0;
+    probeLossRate = (1 - PROBE_LOSS_GAIN) * probeLossRate;
+    lastResponseTime = now;
+    probeSentTime = -1;
+    nextProbeTime = now + probeInterval;
+  }
+
+  /**
+   * Backs off the probe lifetime and retries without waiting for the probe interval, so that
+   * a failure is confirmed or ruled out quickly.
+   */
+  public synchronized void onProbeTimeout(long now) {
+    numProbeTimeouts++;
+    probeLossRate = (1 - PROBE_LOSS_GAIN) * probeLossRate + PROBE_LOSS_GAIN;
+    probeLifetime = Math.min(MAX_PROBE_LIFETIME, probeLifetime * 2);
+    probeSentTime = -1;
+    nextProbeTime = now + MIN_PROBE_INTERVAL;
+  }
+
+  /**
+   * @return whether the peer should be considered gone: it missed several probes in a row,
+   * with backed-off lifetimes, and has been silent for a while
+   */
+  public synchronized boolean isFailed(long now) {
+    return numProbeTimeouts >= MAX_CONSECUTIVE_TIMEOUTS &&
+      now - lastResponseTime >= MIN_SILENCE_BEFORE_FAILURE;
+  }
+
+  /**
+   * @return fraction of recent probes that timed out, weighted towards the latest ones
+   */
+  public synchronized double getProbeLossRate() {
+    return probeLossRate;
+  }
+
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Claims a change of the transport of this peer's face, if none is in progress and the
+   * last change (or the creation of the peer) is long enough ago.
+   *
+   * @return whether the caller got the claim; it then calls onTransportChanged() or
+   * onTransportChangeFailed()
+   */
+  public synchronized boolean claimTransportChange(long now) {
+    if (isTransportChanging || now < nextTransportChangeTime) {
+      return false;
+    }
+    isTransportChanging = true;
+    return true;
+  }
+
+  public synchronized void onTransportChanged(Transport transport, long now) {
+    this.transport = transport;
+    isTransportChanging = false;
+    numTransportChangeFailures = 0;
+    nextTransportChangeTime = now + MIN_TRANSPORT_DWELL;
+  }
+
+  /**
+   * Keeps the current transport, and backs off before trying to change it again.
+   */
+  public synchronized void onTransportChangeFailed(long now) {
+    isTransportChanging = false;
+    numTransportChangeFailures = Math.min(numTransportChangeFailures + 1, 16);
+    nextTransportChangeTime = now +
+      Math.min(MAX_TRANSPORT_DWELL, (long) MIN_TRANSPORT_DWELL << numTransportChangeFailures);
+  }
+
+  public AdvertisedPrefixSet getPrefixesAdvertisedByPeer() {
+    return prefixesAdvertisedByPeer;
+  }
+
+  public AdvertisedPrefixSet getPrefixesAdvertisedToPeer() {
+    return prefixesAdvertisedToPeer;
   }
 
   @Override
@@ -74,6 +367,7 @@ public class Peer {
       ", macAddress=\"" + device.deviceAddress + "\"" +
       ", ipAddress=\"" + ipAddress + "\"" +
       ", faceId=" + faceId +
+      ", state=" + state.get() +
       ", numProbeTimeouts=" + numProbeTimeouts +
       '}';
   }
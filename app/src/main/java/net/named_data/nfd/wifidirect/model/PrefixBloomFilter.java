@@ -0,0 +1,162 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.model;
+
+import net.named_data.jndn.Name;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Bloom filter of the data prefixes a device can serve, small enough for a Wi-Fi P2P DNS-SD
+ * TXT record, so that devices can tell what a peer serves before connecting to it.
+ * <p>
+ * For each served prefix, the filter holds the prefix itself as an exact entry and the prefix
+ * and all its ancestors as subtree entries. A wanted namespace may then be served if it is a
+ * subtree entry (something at or under it is served) or if any of its ancestors is an exact
+ * entry (something above it is served). As with any Bloom filter, false positives are
+ * possible but false negatives are not.
+ */
+public class PrefixBloomFilter {
+
+  public static final int SIZE_IN_BYTES = 128;
+  private static final int SIZE_IN_BITS = SIZE_IN_BYTES * 8;
+  private static final int N_HASHES = 3;
+
+  // distinguishes the two kinds of entries of the same name
+  private static final byte TAG_EXACT = 0;
+  private static final byte TAG_SUBTREE = 1;
+
+  private final byte[] bits;
+
+  public PrefixBloomFilter() {
+    bits = new byte[SIZE_IN_BYTES];
+  }
+
+  /**
+   * @param prefixes the served prefixes
+   */
+  public PrefixBloomFilter(Collection<Name> prefixes) {
+    this();
+    for (Name prefix : prefixes) {
+      add(prefix);
+    }
+  }
+
+  /**
+   * @param bytes filter as returned by toBytes()
+   * @throws IllegalArgumentException if the length is not SIZE_IN_BYTES
+   */
+  public static PrefixBloomFilter fromBytes(byte[] bytes) {
+    if (bytes.length != SIZE_IN_BYTES) {
+      throw new IllegalArgumentException("Prefix filter must be " + SIZE_IN_BYTES + " bytes, got " + bytes.length);
+    }
+    PrefixBloomFilter filter = new PrefixBloomFilter();
+    System.arraycopy(bytes, 0, filter.bits, 0, SIZE_IN_BYTES);
+    return filter;
+  }
+
+  public byte[] toBytes() {
+    return Arrays.copyOf(bits, SIZE_IN_BYTES);
+  }
+
+  public void add(Name prefix) {
+    set(prefix, prefix.size(), TAG_EXACT);
+    for (int length = 0; length <= prefix.size(); length++) {
+      set(prefix, length, TAG_SUBTREE);
+    }
+  }
+
+  /**
+   * @return false if the device certainly serves nothing at, under, or above the namespace
+   */
+  public boolean mayServe(Name namespace) {
+    if (test(namespace, namespace.size(), TAG_SUBTREE)) {
+      return true;
+    }
+    for (int length = 0; length < namespace.size(); length++) {
+      if (test(namespace, length, TAG_EXACT)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isEmpty() {
+    for (byte b : bits) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof PrefixBloomFilter && Arrays.equals(bits, ((PrefixBloomFilter) o).bits);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bits);
+  }
+
+  private void set(Name name, int length, byte tag) {
+    long hash = hash(name, length, tag);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < N_HASHES; i++) {
+      int bit = ((h1 + i * h2) & 0x7fffffff) % SIZE_IN_BITS;
+      bits[bit >> 3] |= 1 << (bit & 7);
+    }
+  }
+
+  private boolean test(Name name, int length, byte tag) {
+    long hash = hash(name, length, tag);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < N_HASHES; i++) {
+      int bit = ((h1 + i * h2) & 0x7fffffff) % SIZE_IN_BITS;
+      if ((bits[bit >> 3] & (1 << (bit & 7))) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 64-bit FNV-1a over the tag and the length-prefixed values of the first length components,
+   * whose halves seed the double hashing. The bytes are the same on every device, unlike the
+   * hash codes of jndn objects.
+   */
+  private static long hash(Name name, int length, byte tag) {
+    long hash = 0xcbf29ce484222325L;
+    hash = (hash ^ tag) * 0x100000001b3L;
+    for (int i = 0; i < length; i++) {
+      ByteBuffer component = name.get(i).getValue().buf();
+      hash = (hash ^ component.remaining()) * 0x100000001b3L;
+      for (int j = component.position(); j < component.limit(); j++) {
+        hash = (hash ^ (component.get(j) & 0xff)) * 0x100000001b3L;
+      }
+    }
+    return hash;
+  }
+}
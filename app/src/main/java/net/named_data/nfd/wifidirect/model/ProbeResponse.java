@@ -0,0 +1,280 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.model;
+
+import net.named_data.jndn.Name;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.jndn.encoding.tlv.Tlv;
+import net.named_data.jndn.encoding.tlv.TlvDecoder;
+import net.named_data.jndn.encoding.tlv.TlvEncoder;
+import net.named_data.jndn.util.Blob;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Payload of the Data answering a probe interest: the data prefixes a peer can reach.
+ * <p>
+ * Wire format:
+ * <pre>
+ * ProbeResponse        = PROBE-RESPONSE-TYPE TLV-LENGTH
+ *                          ProtocolVersion
+ *                          AdvertisementVersion
+ *                          [BaseVersion]
+ *                          *PrefixEntry
+ *                          *RemovedPrefix
+ * ProtocolVersion      = PROTOCOL-VERSION-TYPE TLV-LENGTH NonNegativeInteger
+ * AdvertisementVersion = ADVERTISEMENT-VERSION-TYPE TLV-LENGTH NonNegativeInteger
+ * BaseVersion          = BASE-VERSION-TYPE TLV-LENGTH NonNegativeInteger
+ * PrefixEntry          = PREFIX-ENTRY-TYPE TLV-LENGTH
+ *                          Name
+ *                          Cost
+ *                          HopCount
+ * Cost                 = COST-TYPE TLV-LENGTH NonNegativeInteger
+ * HopCount             = HOP-COUNT-TYPE TLV-LENGTH NonNegativeInteger ; INFINITE_HOP_COUNT if poisoned
+ * RemovedPrefix        = REMOVED-PREFIX-TYPE TLV-LENGTH Name
+ * </pre>
+ * Without BaseVersion, the PrefixEntry elements are the full advertised set. With BaseVersion,
+ * the response is a delta that turns the set of that version into the set of
+ * AdvertisementVersion: PrefixEntry elements are added or updated prefixes, and RemovedPrefix
+ * elements are withdrawn ones. A delta whose BaseVersion equals its AdvertisementVersion means
+ * that nothing changed.
+ * <p>
+ * Names are carried in their regular TLV encoding, so no conversion to and from URIs is needed.
+ * <p>
+ * The exchange is distance-vector: the requester routes each prefix towards the responder at a
+ * cost of HopCount + 1, its own distance to the producer. A responder does not advertise the
+ * routes it learned from the requester (split horizon), except that a prefix it only reaches
+ * through the requester is advertised with INFINITE_HOP_COUNT (poisoned reverse), so that the
+ * requester drops its route back through the responder at once instead of counting up to
+ * infinity. Prefixes further than MAX_RADIUS hops away are neither advertised nor routed.
+ */
+public class ProbeResponse {
+
+  public static final int PROTOCOL_VERSION = 3;
+
+  /**
+   * Largest distance, in WiFi Direct hops, at which a prefix is routed.
+   */
+  public static final int MAX_RADIUS = 8;
+
+  /**
+   * Hop count of a poisoned prefix, which the requester must not route through the responder.
+   */
+  public static final int INFINITE_HOP_COUNT = MAX_RADIUS;
+
+  // application-specific TLV types
+  private static final int TLV_PROBE_RESPONSE = 200;
+  private static final int TLV_PROTOCOL_VERSION = 201;
+  private static final int TLV_PREFIX_ENTRY = 202;
+  private static final int TLV_COST = 203;
+  private static final int TLV_HOP_COUNT = 204;
+  private static final int TLV_ADVERTISEMENT_VERSION = 205;
+  private static final int TLV_BASE_VERSION = 206;
+  private static final int TLV_REMOVED_PREFIX = 207;
+
+  /**
+   * One advertised data prefix.
+   */
+  public static class PrefixEntry {
+    private final Name prefix;
+    private final int cost;
+    private final int hopCount;
+
+    public PrefixEntry(Name prefix, int cost, int hopCount) {
+      this.prefix = prefix;
+      this.cost = cost;
+      this.hopCount = hopCount;
+    }
+
+    public Name getPrefix() {
+      return prefix;
+    }
+
+    /**
+     * @return the lowest cost of the advertising peer's nexthops for this prefix
+     */
+    public int getCost() {
+      return cost;
+    }
+
+    /**
+     * @return number of WiFi Direct hops from the advertising peer to the producer, 0 if the
+     * prefix is served by the advertising peer itself
+     */
+    public int getHopCount() {
+      return hopCount;
+    }
+
+    /**
+     * @return cost of the route towards the advertising peer, i.e. the distance from the
+     * requester to the producer, or -1 if the prefix is poisoned or beyond MAX_RADIUS
+     */
+    public int getRouteCost() {
+      return hopCount + 1 > MAX_RADIUS ? -1 : hopCount + 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PrefixEntry)) {
+        return false;
+      }
+      PrefixEntry other = (PrefixEntry) o;
+      return cost == other.cost && hopCount == other.hopCount && prefix.equals(other.prefix);
+    }
+
+    @Override
+    public int hashCode() {
+      return (prefix.hashCode() * 31 + cost) * 31 + hopCount;
+    }
+  }
+
+  private long advertisementVersion = 0;
+  private long baseVersion = -1;      // -1 for a full snapshot
+  private final List<PrefixEntry> prefixes = new ArrayList<>();
+  private final List<Name> removedPrefixes = new ArrayList<>();
+
+  public long getAdvertisementVersion() {
+    return advertisementVersion;
+  }
+
+  public void setAdvertisementVersion(long advertisementVersion) {
+    this.advertisementVersion = advertisementVersion;
+  }
+
+  /**
+   * @return version the delta applies to, or -1 if this is a full snapshot
+   */
+  public long getBaseVersion() {
+    return baseVersion;
+  }
+
+  public void setBaseVersion(long baseVersion) {
+    this.baseVersion = baseVersion;
+  }
+
+  public boolean isFullSnapshot() {
+    return baseVersion < 0;
+  }
+
+  public boolean isUnchanged() {
+    return baseVersion == advertisementVersion;
+  }
+
+  public void addRemovedPrefix(Name prefix) {
+    removedPrefixes.add(prefix);
+  }
+
+  public List<Name> getRemovedPrefixes() {
+    return Collections.unmodifiableList(removedPrefixes);
+  }
+
+  public void addPrefix(Name prefix, int cost, int hopCount) {
+    prefixes.add(new PrefixEntry(prefix, cost, hopCount));
+  }
+
+  public void addPrefix(PrefixEntry entry) {
+    prefixes.add(entry);
+  }
+
+  public List<PrefixEntry> getPrefixes() {
+    return Collections.unmodifiableList(prefixes);
+  }
+
+  public Blob wireEncode() {
+    // TlvEncoder writes backwards, so the innermost and last elements go first
+    TlvEncoder encoder = new TlvEncoder(256);
+    int saveLength = encoder.getLength();
+
+    for (int i = removedPrefixes.size() - 1; i >= 0; i--) {
+      int saveRemovedLength = encoder.getLength();
+      encoder.writeBuffer(removedPrefixes.get(i).wireEncode().buf());
+      encoder.writeTypeAndLength(TLV_REMOVED_PREFIX, encoder.getLength() - saveRemovedLength);
+    }
+    for (int i = prefixes.size() - 1; i >= 0; i--) {
+      PrefixEntry entry = prefixes.get(i);
+      int saveEntryLength = encoder.getLength();
+      encoder.writeNonNegativeIntegerTlv(TLV_HOP_COUNT, entry.hopCount);
+      encoder.writeNonNegativeIntegerTlv(TLV_COST, entry.cost);
+      encoder.writeBuffer(entry.prefix.wireEncode().buf());
+      encoder.writeTypeAndLength(TLV_PREFIX_ENTRY, encoder.getLength() - saveEntryLength);
+    }
+    if (baseVersion >= 0) {
+      encoder.writeNonNegativeIntegerTlv(TLV_BASE_VERSION, baseVersion);
+    }
+    encoder.writeNonNegativeIntegerTlv(TLV_ADVERTISEMENT_VERSION, advertisementVersion);
+    encoder.writeNonNegativeIntegerTlv(TLV_PROTOCOL_VERSION, PROTOCOL_VERSION);
+    encoder.writeTypeAndLength(TLV_PROBE_RESPONSE, encoder.getLength() - saveLength);
+
+    return new Blob(encoder.getOutput(), false);
+  }
+
+  /**
+   * @param input encoded ProbeResponse, from its position to its limit
+   * @throws EncodingException if the input is not a ProbeResponse of PROTOCOL_VERSION
+   */
+  public static ProbeResponse wireDecode(ByteBuffer input) throws EncodingException {
+    ProbeResponse response = new ProbeResponse();
+    TlvDecoder decoder = new TlvDecoder(input);
+
+    int endOffset = decoder.readNestedTlvsStart(TLV_PROBE_RESPONSE);
+    long version = decoder.readNonNegativeIntegerTlv(TLV_PROTOCOL_VERSION);
+    if (version != PROTOCOL_VERSION) {
+      throw new EncodingException("Unsupported probe protocol version " + version);
+    }
+    response.setAdvertisementVersion(decoder.readNonNegativeIntegerTlv(TLV_ADVERTISEMENT_VERSION));
+    response.setBaseVersion(decoder.readOptionalNonNegativeIntegerTlv(TLV_BASE_VERSION, endOffset));
+
+    while (decoder.peekType(TLV_PREFIX_ENTRY, endOffset)) {
+      int entryEndOffset = decoder.readNestedTlvsStart(TLV_PREFIX_ENTRY);
+      Name prefix = decodeName(decoder, input);
+      int cost = (int) decoder.readNonNegativeIntegerTlv(TLV_COST);
+      int hopCount = (int) decoder.readNonNegativeIntegerTlv(TLV_HOP_COUNT);
+      decoder.finishNestedTlvs(entryEndOffset);
+
+      response.addPrefix(prefix, cost, hopCount);
+    }
+    while (decoder.peekType(TLV_REMOVED_PREFIX, endOffset)) {
+      int removedEndOffset = decoder.readNestedTlvsStart(TLV_REMOVED_PREFIX);
+      response.addRemovedPrefix(decodeName(decoder, input));
+      decoder.finishNestedTlvs(removedEndOffset);
+    }
+    decoder.finishNestedTlvs(endOffset);
+
+    return response;
+  }
+
+  /**
+   * Decodes the Name element at the decoder's offset in place: skips over it, then decodes
+   * the bytes it spans.
+   */
+  private static Name decodeName(TlvDecoder decoder, ByteBuffer input) throws EncodingException {
+    int nameBeginOffset = decoder.getOffset();
+    decoder.readBlobTlv(Tlv.Name);
+    ByteBuffer nameWire = input.duplicate();
+    nameWire.limit(decoder.getOffset());
+    nameWire.position(nameBeginOffset);
+    Name name = new Name();
+    name.wireDecode(nameWire);
+    return name;
+  }
+}
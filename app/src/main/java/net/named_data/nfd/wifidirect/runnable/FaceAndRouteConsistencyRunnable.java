@@ -25,14 +25,10 @@ import com.intel.jndn.management.ManagementException;
 import com.intel.jndn.management.types.FaceStatus;
 import com.intel.jndn.management.types.RibEntry;
 
-import net.named_data.nfd.wifidirect.callback.GenericCallback;
-import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.utils.FaceRouteTable;
 import net.named_data.nfd.wifidirect.utils.NDNController;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Checks for the consistency between NDNController's view of
@@ -40,89 +36,42 @@ import java.util.Map;
  * out by comparing views on active Faces.
  * <p>
  * This case occurs when the user delete the face manually. May be some other cases.
+ * <p>
+ * Normally NFD's view is NDNController's FaceRouteTable, which face event notifications
+ * keep up to date, so a check costs no dataset fetch. A full resync first reseeds the table
+ * from the face and RIB datasets; it runs rarely, and whenever notifications were missed.
+ * The comparison itself is PeerConsistency's.
  */
 public class FaceAndRouteConsistencyRunnable implements Runnable {
   private static final String TAG = "FaceAndRouteConsistency";
 
-  @Override
-  public void run() {
-
-    Log.d(TAG, "Running periodic Face and route consistency check...");
-
-    // first, let's retrieve a set of active FaceIds from NFD.
-    // then, let's compare this set with what NDNController has
-    try {
-      List<FaceStatus> faceStatuses = NDNController.getInstance().getNfdcHelper().faceList();
-
-      List<RibEntry> routeStatus = NDNController.getInstance().getNfdcHelper().ribList();
-
-      // put face ids in an easy to access manner
-      HashSet<Integer> nfdActiveFaceIds = new HashSet<>(faceStatuses.size());
-      for (FaceStatus faceStatus : faceStatuses) {
-        nfdActiveFaceIds.add(faceStatus.getFaceId());
-      }
-
-      List<String> peersWithoutFace = new ArrayList<>();
+  private final boolean isFullResync;
 
-      Map<String, Peer> connectedPeers = NDNController.getInstance().getConnectedPeersMap();
-
-      // create faces if needed
-      for (final String ip : connectedPeers.keySet()) {
-        int peerFaceId = connectedPeers.get(ip).getFaceId();
-        if ((peerFaceId != -1) && (!nfdActiveFaceIds.contains(peerFaceId))) {
-          // create the face but not destroy the logged peers
-          peersWithoutFace.add(ip);
-          Log.d(TAG, "create face for IP " + ip);
-          NDNController.getInstance().createFace(ip, NDNController.URI_TRANSPORT_PREFIX, new GenericCallback() {
-            @Override
-            public void doJob() {
-              Log.d(TAG, "Registering localhop for: " + ip);
-              String[] prefixes = new String[1];
-              prefixes[0] = NDNController.PROBE_PREFIX + "/" + ip;
-              NDNController.getInstance().ribRegisterPrefix(NDNController.getInstance().getFaceIdForPeer(ip),
-                prefixes);
-            }
-          });
-        }
-      }
-
-      //create routes if needed
-      for (final String ip : connectedPeers.keySet()) {
-        if (peersWithoutFace.contains(ip)) {
-          continue;
-        }
-        String prefix = NDNController.PROBE_PREFIX + "/" + ip;
-        boolean exist = false;
-        for (RibEntry oneRoute : routeStatus) {
-          if (prefix.equals(oneRoute.getName().toUri())) {
-            exist = true;
-            break;
-          }
-        }
-        if (!exist) {
-          Log.d(TAG, "create route " + prefix);
-          NDNController.getInstance().ribRegisterPrefix(NDNController.getInstance().getFaceIdForPeer(ip),
-            new String[]{prefix});
-        }
-      }
+  public FaceAndRouteConsistencyRunnable(boolean isFullResync) {
+    this.isFullResync = isFullResync;
+  }
 
-      //register own prefix if needed
-      if (NDNController.myAddress != null) {
-        String myPrefix = NDNController.PROBE_PREFIX + "/" + NDNController.myAddress;
-        boolean exist = false;
-        for (RibEntry oneRoute : routeStatus) {
-          if (myPrefix.equals(oneRoute.getName().toUri())) {
-            exist = true;
-            break;
-          }
-        }
-        if (!exist) {
-          NDNController.getInstance().registerOwnLocalhop();
-        }
+  @Override
+  public void run() {
+    NDNController controller = NDNController.getInstance();
+    FaceRouteTable table = controller.getFaceRouteTable();
+
+    if (isFullResync) {
+      Log.d(TAG, "Running full Face and route resync...");
+      try {
+        List<FaceStatus> faceStatuses = controller.getNfdcHelper().faceList();
+        List<RibEntry> routeStatus = controller.getNfdcHelper().ribList();
+        table.reset(faceStatuses, routeStatus);
+        // also picks up a group face whose creation event was missed
+        controller.updateGroupFace(faceStatuses);
+      } catch (ManagementException me) {
+        Log.e(TAG, "There was an issue retrieving FaceList from NFD");
+        return;
       }
-
-    } catch (ManagementException me) {
-      Log.e(TAG, "There was an issue retrieving FaceList from NFD");
+    } else {
+      Log.d(TAG, "Running Face and route consistency check...");
     }
+
+    controller.getPeerConsistency().checkFacesAndRoutes(NDNController.myAddress, isFullResync);
   }
 }
@@ -25,32 +25,17 @@ import net.named_data.nfd.wifidirect.utils.NDNController;
 
 /**
  * If connected peers list keeps empty, while myaddress keeps un-empty for 1 minute, remove the group
+ * <p>
+ * The count of empty checks is kept by PeerConsistency.
  */
 
 public class GroupStatusConsistencyRunnable implements Runnable {
 
   private static final String TAG = "GroupStatusConsistency";
 
-
-  //Notice: (this number) * (running interval) should equal to 1 minute
-  public static final int MAX_TIMEOUTS_ALLOWED = 6;
-  public static int TIME_OUT_TIMES = 0;
-
-  public static void resetTimeoutTimes() {
-    TIME_OUT_TIMES = 0;
-  }
-
   @Override
   public void run() {
     Log.d(TAG, "Check GroupStatusConsistency");
-    if(NDNController.getInstance().isNumOfConnectedPeersZero() && NDNController.myAddress != null) {
-      TIME_OUT_TIMES ++;
-    } else {
-      TIME_OUT_TIMES = 0;
-    }
-    if(TIME_OUT_TIMES >= MAX_TIMEOUTS_ALLOWED) {
-      NDNController.getInstance().disconnect();
-      TIME_OUT_TIMES = 0;
-    }
+    NDNController.getInstance().getPeerConsistency().checkGroupStatus(NDNController.myAddress);
   }
 }
@@ -30,18 +30,24 @@ import net.named_data.nfd.wifidirect.callback.ProbeOnData;
 import net.named_data.nfd.wifidirect.model.Peer;
 import net.named_data.nfd.wifidirect.utils.IPAddress;
 import net.named_data.nfd.wifidirect.utils.NDNController;
+import net.named_data.nfd.wifidirect.utils.ProbeExchange;
+import net.named_data.nfd.wifidirect.utils.ProbeScheduler;
 
 import java.io.IOException;
+import java.util.List;
 
 import static net.named_data.nfd.wifidirect.utils.NDNController.myAddress;
 
 /**
  * Probes network for data prefixes, as specified in protocol.
+ * <p>
+ * Sends the probes that ProbeScheduler finds due, according to the adaptive schedule of each
+ * peer (see Peer), and reports their responses and timeouts back to it. Runs on the
+ * FaceEventLoop thread, like the callbacks of the probes, so it reads the versions of the
+ * learned prefixes where they are updated.
  */
-public class ProbeRunnable implements Runnable {
+public class ProbeRunnable implements ProbeScheduler.Prober {
   private static final String TAG = "ProbeRunnable";
-  //Notice: (this number) * (running interval) should equal to 1 minute
-  private static final int MAX_TIMEOUTS_ALLOWED = 60;
   private NDNController mController = NDNController.getInstance();
 
   private OnData onData = new OnData() {
@@ -51,11 +57,12 @@ public class ProbeRunnable implements Runnable {
     public void onData(Interest interest, Data data) {
       Name interestName = interest.getName();
       Log.d(TAG, "Got data for interest " + interestName);
-      String peerIp = interestName.get(interestName.size() - 3).toEscapedString();
+      String peerIp = ProbeExchange.getResponderIp(interestName);
       probeOnData.doJob(interest, data);
       Peer peer = NDNController.getInstance().getPeerByIp(peerIp);
-      if (peer != null)
-        peer.setNumProbeTimeouts(0);    // peer responded, so reset timeout counter
+      ProbeScheduler scheduler = mController.getProbeScheduler();
+      if (peer != null && scheduler != null)
+        scheduler.onProbeResponse(peer);    // peer responded, schedule the next probe
     }
   };
 
@@ -64,69 +71,81 @@ public class ProbeRunnable implements Runnable {
     public void onTimeout(Interest interest) {
       Name interestName = interest.getName();
       Log.d(TAG, "interest " + interestName + " times out");
-      String peerIp = interestName.get(interestName.size() - 3).toEscapedString();
+      String peerIp = ProbeExchange.getResponderIp(interestName);
       Peer peer = NDNController.getInstance().getPeerByIp(peerIp);
-      if (peer == null) {
+      ProbeScheduler scheduler = mController.getProbeScheduler();
+      if (peer == null || scheduler == null) {
         Log.d(TAG, "No peer information available to track timeout.");
         return;
       }
 
+      boolean isFailed = scheduler.onProbeTimeout(peer);
       Log.d(TAG, "Timeout for interest: " + interest.getName().toString() +
-        " Attempts: " + (peer.getNumProbeTimeouts() + 1));
+        " Attempts: " + peer.getNumProbeTimeouts());
 
-      if (peer.getNumProbeTimeouts() + 1 >= MAX_TIMEOUTS_ALLOWED) {
+      if (isFailed) {
         // This case means, remove a peer which
         // (1) is indicatated connected by Wifi-Direct
         // (2) but doesn't response to probeInterest
         // so remove it (disconnect it and remove saved states)
-        NDNController.getInstance().removePeer(peerIp);
-      } else {
-        peer.setNumProbeTimeouts(peer.getNumProbeTimeouts() + 1);
+        NDNController.getInstance().removePeer(peer);
       }
     }
   };
 
   @Override
-  public void run() {
-    Log.d(TAG, "start to probe");
-    try {
-      if (IPAddress.getLocalIPAddress() == null) {
-
-        // this means that a disconnect has recently occurred and this device
-        // is no longer a part of a group (WDBroadcastReceiver.myAddress is this
-        // device's previous WD IP)
-        if (myAddress != null) {
-          Log.d(TAG, "A disconnect has been detected, refreshing state...");
-
-          // unregister the previous "/localhop/wifidirect/..." prefix
-          mController.cleanUpConnections();
-          // recreateFace for future connection
-          mController.recreateFace();
-
-          // most likely will have a new IP to register "/localhop/wifidirect/<IP>"
-          // call this so that the next time a group is joined a new local prefix
-          // registration will occur
-          mController.setHasRegisteredOwnLocalhop(false);
-
-          // ensure that peer diiscovery is running, if it had not been before
-          mController.startDiscoveringPeers();
-        } else {
-          Log.d(TAG, "Skip this iteration due to null WD ip.");
-        }
+  public List<Peer> getPeers() {
+    // an immutable snapshot, peers may come and go while probing
+    return mController.getConnectedPeers();
+  }
 
+  @Override
+  public void sendProbes(List<Peer> duePeers, long now) {
+    Log.d(TAG, "start to probe");
+    if (IPAddress.getLocalIPAddress() == null) {
+
+      // this means that a disconnect has recently occurred and this device
+      // is no longer a part of a group (WDBroadcastReceiver.myAddress is this
+      // device's previous WD IP)
+      if (myAddress != null) {
+        Log.d(TAG, "A disconnect has been detected, refreshing state...");
+
+        // unregister the previous "/localhop/wifidirect/..." prefix
+        mController.cleanUpConnections();
+        // recreateFace for future connection
+        mController.recreateFace();
+
+        // most likely will have a new IP to register "/localhop/wifidirect/<IP>"
+        // call this so that the next time a group is joined a new local prefix
+        // registration will occur
+        mController.setHasRegisteredOwnLocalhop(false);
+
+        // ensure that peer diiscovery is running, if it had not been before
+        mController.startDiscoveringPeers();
       } else {
-        for(String ip : NDNController.getInstance().getIpsOfConnectedPeers()) {
-          //send interest to this peer
-          Interest interest = new Interest(new Name(NDNController.PROBE_PREFIX + "/" + ip + "/" + myAddress + "/probe"));
-          interest.setMustBeFresh(true);
-          interest.setInterestLifetimeMilliseconds(NDNController.PROBE_INTEREST_LIFETIME);
-          Log.d(TAG, "Sending interest: " + interest.getName().toString());
+        Log.d(TAG, "Skip this iteration due to null WD ip.");
+      }
+
+    } else {
+      for (Peer peer : duePeers) {
+        String ip = peer.getIpAddress();
+
+        //send interest to this peer, with the version of its prefixes we have, so that
+        //it only answers with what changed since
+        long knownVersion = peer.getPrefixesAdvertisedByPeer().getVersion();
+        Interest interest = new Interest(ProbeExchange.makeProbeName(ip, myAddress, knownVersion));
+        interest.setMustBeFresh(true);
+        interest.setInterestLifetimeMilliseconds(peer.getProbeLifetime());
+        Log.d(TAG, "Sending interest: " + interest.getName().toString());
+        peer.onProbeSent(now);
+        try {
           NDNController.getInstance().getLocalHostFace().expressInterest(interest, onData, onTimeout);
+        } catch (IOException ioe) {
+          Log.e(TAG, "Something went wrong with sending a probe interest.");
+          ioe.printStackTrace();
+          peer.onProbeTimeout(now);
         }
       }
-    } catch (IOException ioe) {
-      Log.e(TAG, "Something went wrong with sending a probe interest.");
-      ioe.printStackTrace();
     }
   }
 
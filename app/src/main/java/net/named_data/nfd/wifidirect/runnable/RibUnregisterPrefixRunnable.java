@@ -34,16 +34,30 @@ public class RibUnregisterPrefixRunnable implements Runnable {
 
   private static final String TAG = "RibUnregisterTask";
 
-  private String prefixToUnregister;
+  private Name prefixToUnregister;
+  private int faceId = -1;
 
   public RibUnregisterPrefixRunnable(String prefixToUnregister) {
+    this.prefixToUnregister = new Name(prefixToUnregister);
+  }
+
+  /**
+   * Unregisters the prefix from the given face only.
+   */
+  public RibUnregisterPrefixRunnable(Name prefixToUnregister, int faceId) {
     this.prefixToUnregister = prefixToUnregister;
+    this.faceId = faceId;
   }
 
   @Override
   public void run() {
     try {
-      NDNController.getInstance().getNfdcHelper().ribUnregisterPrefix(new Name(prefixToUnregister));
+      if (faceId == -1) {
+        NDNController.getInstance().getNfdcHelper().ribUnregisterPrefix(prefixToUnregister);
+      } else {
+        NDNController.getInstance().getNfdcHelper().ribUnregisterPrefix(prefixToUnregister, faceId);
+        NDNController.getInstance().getForwarderSnapshotCache().requestRefresh();
+      }
 
       Log.d(TAG, "Unregistered rib prefix: " + prefixToUnregister);
     } catch (Exception e) {
@@ -0,0 +1,87 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.runnable;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import net.named_data.nfd.utils.FaceRateHistory;
+import net.named_data.nfd.utils.FaceStatusCache;
+import net.named_data.nfd.utils.NfdcFuture;
+import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.utils.NDNController;
+import net.named_data.nfd.wifidirect.utils.TransportPolicy;
+
+import java.util.List;
+
+/**
+ * Chooses the transport of the face of each routed peer, from the peer's probe loss rate and
+ * the traffic on its face, and moves the peers whose transport should change.
+ * <p>
+ * The traffic is sampled from the shared FaceStatusCache, so a run costs at most one face
+ * dataset fetch, and none while a screen of the app keeps the dataset fresh.
+ */
+public class TransportSelectionRunnable implements Runnable {
+  private static final String TAG = "TransportSelection";
+
+  @Override
+  public void run() {
+    final List<Peer> peers = NDNController.getInstance().getConnectedPeers();
+    if (peers.isEmpty()) {
+      return;
+    }
+
+    // a dataset fetched by the previous run is too old, so every run adds a sample
+    FaceStatusCache.getInstance().get(NDNController.TRANSPORT_SELECTION_DELAY / 2)
+      .addListener(new NfdcFuture.Listener<FaceStatusCache.Snapshot>() {
+        @Override
+        public void onComplete(NfdcFuture<FaceStatusCache.Snapshot> snapshot) {
+          if (snapshot.getException() != null) {
+            Log.e(TAG, "Unable to sample the traffic of peer faces: " + snapshot.getException().getMessage());
+            return;
+          }
+          selectTransports(peers);
+        }
+      });
+  }
+
+  private void selectTransports(List<Peer> peers) {
+    long now = SystemClock.elapsedRealtime();
+    double[] rates = new double[FaceRateHistory.N_COUNTERS];
+    for (Peer peer : peers) {
+      if (peer.getState() != Peer.State.ROUTED) {
+        continue;
+      }
+
+      double throughput = -1;
+      FaceRateHistory history = FaceStatusCache.getInstance().getHistory(peer.getFaceId());
+      if (history != null && history.getLatestRates(rates)) {
+        throughput = rates[FaceRateHistory.IN_BYTES] + rates[FaceRateHistory.OUT_BYTES];
+      }
+
+      Peer.Transport transport = TransportPolicy.select(peer.getTransport(), peer.getProbeLossRate(), throughput);
+      if (transport != peer.getTransport() && peer.claimTransportChange(now)) {
+        Log.d(TAG, "Peer " + peer.getIpAddress() + " at " + throughput + " B/s should use " + transport);
+        NDNController.getInstance().switchPeerTransport(peer, transport);
+      }
+    }
+  }
+}
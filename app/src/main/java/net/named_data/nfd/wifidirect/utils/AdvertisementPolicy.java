@@ -0,0 +1,80 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.utils;
+
+import net.named_data.jndn.Name;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which data prefixes a node advertises to a peer in its probe responses.
+ * <p>
+ * Pure function of the node's FIB, without Android or NFD dependencies, so that the same
+ * policy is used on devices (through ForwarderSnapshotCache) and in simulations.
+ */
+public class AdvertisementPolicy {
+  /**
+   * Namespaces that never leave the device or the link, so are not advertised.
+   */
+  public static final List<Name> SCOPE_PREFIXES = Arrays.asList(new Name("/localhop"), new Name("/localhost"));
+
+  private AdvertisementPolicy() {
+  }
+
+  /**
+   * Returns the data prefixes to advertise to the peer on the given face, i.e. those
+   * served by any other face within ProbeResponse.MAX_RADIUS, each with its cheapest such
+   * nexthop (split horizon). Prefixes only served through the peer's face or the group face,
+   * which every peer already hears, are advertised as unreachable (poisoned reverse), so
+   * that the peer drops any route it has back through us.
+   *
+   * @param fibTrie        the node's FIB
+   * @param peerFaceIds    faces towards peers, including the group face; routes on them are
+   *                       registered with their distance as cost
+   * @param excludedFaceId face of the peer the prefixes are advertised to
+   * @param groupFaceId    multicast face of the group, or -1
+   * @return a modifiable map of prefix to advertised entry
+   */
+  public static Map<Name, ProbeResponse.PrefixEntry> computeAdvertisedPrefixes(
+    FibTrie fibTrie, final IntSet peerFaceIds, int excludedFaceId, int groupFaceId) {
+    final HashMap<Name, ProbeResponse.PrefixEntry> map = new HashMap<>();
+    IntSet excludedFaceIds = new IntSet(new int[]{excludedFaceId, groupFaceId}, 2);
+    fibTrie.walk(SCOPE_PREFIXES, excludedFaceIds, new FibTrie.Visitor() {
+      @Override
+      public void visit(Name prefix, int faceId, int cost) {
+        int hopCount = peerFaceIds.contains(faceId) ? cost : 0;
+        if (hopCount < ProbeResponse.MAX_RADIUS) {
+          map.put(prefix, new ProbeResponse.PrefixEntry(prefix, cost, hopCount));
+        }
+      }
+
+      @Override
+      public void visitExcluded(Name prefix) {
+        map.put(prefix, new ProbeResponse.PrefixEntry(prefix, 0, ProbeResponse.INFINITE_HOP_COUNT));
+      }
+    });
+    return map;
+  }
+}
@@ -0,0 +1,186 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import android.util.Log;
+
+import net.named_data.jndn.Data;
+import net.named_data.jndn.Face;
+import net.named_data.jndn.Interest;
+import net.named_data.jndn.Name;
+import net.named_data.jndn.OnData;
+import net.named_data.jndn.OnTimeout;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.jndn.encoding.tlv.TlvDecoder;
+import net.named_data.jndn.util.Blob;
+
+import java.io.IOException;
+
+/**
+ * Subscribes to NFD's face event notification stream (/localhost/nfd/faces/events).
+ * <p>
+ * One Interest is kept pending at a time, for the next sequence number of the stream, so
+ * in steady state the only cost is one Interest per INTEREST_LIFETIME. Callbacks run on
+ * the thread processing events of the given Face, and must not block.
+ */
+public class FaceEventSubscriber {
+
+  /**
+   * Receives the decoded notifications.
+   */
+  public interface Listener {
+    void onFaceCreated(int faceId, String remoteUri);
+
+    void onFaceDestroyed(int faceId, String remoteUri);
+
+    /**
+     * Called when notifications may have been missed, so the receiver's view of the faces
+     * should be rebuilt from the face dataset.
+     */
+    void onNotificationGap();
+  }
+
+  private static final String TAG = "FaceEventSubscriber";
+  private static final Name FACE_EVENTS_PREFIX = new Name("/localhost/nfd/faces/events");
+  private static final int INTEREST_LIFETIME = 60000; // in ms
+
+  // FaceEventNotification TLV types
+  private static final int TLV_FACE_EVENT_NOTIFICATION = 0xC0;
+  private static final int TLV_FACE_EVENT_KIND = 0xC1;
+  private static final int TLV_FACE_ID = 0x69;
+  private static final int TLV_URI = 0x72;
+
+  private static final int FACE_EVENT_CREATED = 1;
+  private static final int FACE_EVENT_DESTROYED = 2;
+
+  private final Face face;
+  private final Listener listener;
+  private long lastSequenceNumber = -1;
+  private volatile boolean isRunning = false;
+
+  private final OnData onData = new OnData() {
+    @Override
+    public void onData(Interest interest, Data data) {
+      if (!isRunning) {
+        return;
+      }
+
+      Name name = data.getName();
+      long sequenceNumber;
+      try {
+        sequenceNumber = name.get(-1).toSequenceNumber();
+      } catch (EncodingException e) {
+        Log.e(TAG, "Unexpected notification name: " + name.toUri());
+        expressNext();
+        return;
+      }
+
+      if (lastSequenceNumber >= 0 && sequenceNumber != lastSequenceNumber + 1) {
+        Log.d(TAG, "Notifications " + (lastSequenceNumber + 1) + " to " + (sequenceNumber - 1) + " missed");
+        listener.onNotificationGap();
+      }
+      lastSequenceNumber = sequenceNumber;
+
+      try {
+        decodeAndDispatch(data.getContent());
+      } catch (EncodingException e) {
+        Log.e(TAG, "Unable to decode face event notification: " + e.getMessage());
+      }
+      expressNext();
+    }
+  };
+
+  private final OnTimeout onTimeout = new OnTimeout() {
+    @Override
+    public void onTimeout(Interest interest) {
+      // no face event during the lifetime, just ask again
+      if (isRunning) {
+        expressNext();
+      }
+    }
+  };
+
+  public FaceEventSubscriber(Face face, Listener listener) {
+    this.face = face;
+    this.listener = listener;
+  }
+
+  /**
+   * Starts listening; notifications published before this call are not delivered.
+   */
+  public void start() {
+    isRunning = true;
+    lastSequenceNumber = -1;
+    expressNext();
+  }
+
+  /**
+   * Stops re-expressing Interests. The pending Interest, if any, is dropped with the Face.
+   */
+  public void stop() {
+    isRunning = false;
+  }
+
+  private void expressNext() {
+    Interest interest;
+    if (lastSequenceNumber < 0) {
+      // the first notification to come, whatever its sequence number
+      interest = new Interest(FACE_EVENTS_PREFIX);
+      interest.setCanBePrefix(true);
+      interest.setMustBeFresh(true);
+    } else {
+      interest = new Interest(new Name(FACE_EVENTS_PREFIX).appendSequenceNumber(lastSequenceNumber + 1));
+      interest.setCanBePrefix(false);
+      interest.setMustBeFresh(false);
+    }
+    interest.setInterestLifetimeMilliseconds(INTEREST_LIFETIME);
+
+    try {
+      face.expressInterest(interest, onData, onTimeout);
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to express face event interest: " + e.getMessage());
+      // events cannot be followed anymore, rely on the full resync
+      isRunning = false;
+      listener.onNotificationGap();
+    }
+  }
+
+  private void decodeAndDispatch(Blob content) throws EncodingException {
+    TlvDecoder decoder = new TlvDecoder(content.buf());
+    decoder.readNestedTlvsStart(TLV_FACE_EVENT_NOTIFICATION);
+    int kind = (int) decoder.readNonNegativeIntegerTlv(TLV_FACE_EVENT_KIND);
+    int faceId = (int) decoder.readNonNegativeIntegerTlv(TLV_FACE_ID);
+    String remoteUri = new Blob(decoder.readBlobTlv(TLV_URI), true).toString();
+    // the remaining fields (LocalUri, scope, persistency, ...) are not needed
+
+    Log.d(TAG, "Face event " + kind + " for face " + faceId + " (" + remoteUri + ")");
+    switch (kind) {
+      case FACE_EVENT_CREATED:
+        listener.onFaceCreated(faceId, remoteUri);
+        break;
+      case FACE_EVENT_DESTROYED:
+        listener.onFaceDestroyed(faceId, remoteUri);
+        break;
+      default:
+        // FACE_EVENT_UP/DOWN do not change the set of faces
+        break;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.RibEntry;
+import com.intel.jndn.management.types.Route;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NDNController's incremental view of the forwarder's faces and routes.
+ * <p>
+ * The face table is kept up to date from face event notifications, and the prefix index
+ * from the routes NDNController registers; NFD removes the routes of a face when the face
+ * is destroyed, so the index drops them at the same time. Both are reseeded from the face
+ * and RIB datasets by the occasional full resync.
+ */
+public class FaceRouteTable {
+
+  // { faceId : remoteUri }
+  private final HashMap<Integer, String> faces = new HashMap<>();
+  // { prefix : faceIds of its nexthops }
+  private final HashMap<String, Set<Integer>> routes = new HashMap<>();
+
+  /**
+   * Replaces the whole view with the given datasets.
+   */
+  public synchronized void reset(List<FaceStatus> faceStatuses, List<RibEntry> ribEntries) {
+    faces.clear();
+    routes.clear();
+    for (FaceStatus faceStatus : faceStatuses) {
+      faces.put(faceStatus.getFaceId(), faceStatus.getRemoteUri());
+    }
+    for (RibEntry ribEntry : ribEntries) {
+      Set<Integer> faceIds = new HashSet<>();
+      for (Route route : ribEntry.getRoutes()) {
+        faceIds.add(route.getFaceId());
+      }
+      routes.put(ribEntry.getName().toUri(), faceIds);
+    }
+  }
+
+  public synchronized void clear() {
+    faces.clear();
+    routes.clear();
+  }
+
+  public synchronized void addFace(int faceId, String remoteUri) {
+    faces.put(faceId, remoteUri);
+  }
+
+  /**
+   * Removes the face and every route towards it.
+   */
+  public synchronized void removeFace(int faceId) {
+    faces.remove(faceId);
+    Iterator<Map.Entry<String, Set<Integer>>> it = routes.entrySet().iterator();
+    while (it.hasNext()) {
+      Set<Integer> faceIds = it.next().getValue();
+      faceIds.remove(faceId);
+      if (faceIds.isEmpty()) {
+        it.remove();
+      }
+    }
+  }
+
+  public synchronized boolean hasFace(int faceId) {
+    return faces.containsKey(faceId);
+  }
+
+  public synchronized void addRoute(String prefix, int faceId) {
+    Set<Integer> faceIds = routes.get(prefix);
+    if (faceIds == null) {
+      faceIds = new HashSet<>();
+      routes.put(prefix, faceIds);
+    }
+    faceIds.add(faceId);
+  }
+
+  /**
+   * @param prefix prefix in URI form, as returned by Name.toUri()
+   * @return true if the prefix has a route towards any face
+   */
+  public synchronized boolean hasRoute(String prefix) {
+    return routes.containsKey(prefix);
+  }
+}
@@ -0,0 +1,185 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import com.intel.jndn.management.types.FibEntry;
+import com.intel.jndn.management.types.NextHopRecord;
+
+import net.named_data.jndn.Name;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Component-wise name trie over a FIB dataset.
+ * <p>
+ * Names are compared component by component, never as URI strings, so whole namespaces (e.g.
+ * /localhop) are skipped by not descending into them. Nexthops are kept as parallel int
+ * arrays, only for faces that exist. The trie is immutable once built.
+ */
+public class FibTrie {
+
+  public interface Visitor {
+    /**
+     * @param prefix  the FIB entry's prefix
+     * @param faceId  face of the cheapest nexthop that is not on an excluded face
+     * @param cost    cost of that nexthop
+     */
+    void visit(Name prefix, int faceId, int cost);
+
+    /**
+     * @param prefix the FIB entry's prefix, all of whose nexthops are on excluded faces
+     */
+    void visitExcluded(Name prefix);
+  }
+
+  private static class Node {
+    HashMap<Name.Component, Node> children = null;
+    Name prefix = null;         // non-null if there is a FIB entry at this node
+    int[] faceIds = null;
+    int[] costs = null;
+    int nEntriesInSubtree = 0;
+
+    Node child(Name.Component component) {
+      return children == null ? null : children.get(component);
+    }
+  }
+
+  private final Node root = new Node();
+
+  /**
+   * @param fibEntries  the FIB dataset
+   * @param liveFaceIds faces that exist; nexthops on other faces are dropped, as are entries
+   *                    left without nexthops
+   */
+  public FibTrie(List<FibEntry> fibEntries, IntSet liveFaceIds) {
+    for (FibEntry fibEntry : fibEntries) {
+      List<NextHopRecord> nextHopRecords = fibEntry.getNextHopRecords();
+      int[] faceIds = new int[nextHopRecords.size()];
+      int[] costs = new int[nextHopRecords.size()];
+      int nNextHops = 0;
+      for (NextHopRecord nextHopRecord : nextHopRecords) {
+        if (liveFaceIds.contains(nextHopRecord.getFaceId())) {
+          faceIds[nNextHops] = nextHopRecord.getFaceId();
+          costs[nNextHops] = nextHopRecord.getCost();
+          nNextHops++;
+        }
+      }
+      if (nNextHops > 0) {
+        insert(fibEntry.getPrefix(), trim(faceIds, nNextHops), trim(costs, nNextHops));
+      }
+    }
+  }
+
+  /**
+   * @return whether the FIB has an entry for the prefix or for any name under it
+   */
+  public boolean hasEntryUnder(Name prefix) {
+    Node node = find(prefix);
+    return node != null && node.nEntriesInSubtree > 0;
+  }
+
+  /**
+   * Visits, in a single depth-first walk, every entry outside the skipped namespaces, with its
+   * cheapest nexthop on a face other than the excluded ones if there is any.
+   *
+   * @param skippedSubtrees namespaces not to descend into
+   * @param excludedFaceIds faces whose nexthops are ignored
+   */
+  public void walk(List<Name> skippedSubtrees, IntSet excludedFaceIds, Visitor visitor) {
+    IdentityHashMap<Node, Boolean> skipped = new IdentityHashMap<>();
+    for (Name subtree : skippedSubtrees) {
+      Node node = find(subtree);
+      if (node != null) {
+        skipped.put(node, Boolean.TRUE);
+      }
+    }
+
+    ArrayDeque<Node> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      Node node = stack.pop();
+      if (skipped.containsKey(node)) {
+        continue;
+      }
+      if (node.prefix != null) {
+        int best = -1;
+        for (int i = 0; i < node.faceIds.length; i++) {
+          if (!excludedFaceIds.contains(node.faceIds[i]) && (best == -1 || node.costs[i] < node.costs[best])) {
+            best = i;
+          }
+        }
+        if (best != -1) {
+          visitor.visit(node.prefix, node.faceIds[best], node.costs[best]);
+        } else {
+          visitor.visitExcluded(node.prefix);
+        }
+      }
+      if (node.children != null) {
+        for (Map.Entry<Name.Component, Node> child : node.children.entrySet()) {
+          if (child.getValue().nEntriesInSubtree > 0) {
+            stack.push(child.getValue());
+          }
+        }
+      }
+    }
+  }
+
+  private void insert(Name prefix, int[] faceIds, int[] costs) {
+    Node node = root;
+    node.nEntriesInSubtree++;
+    for (int i = 0; i < prefix.size(); i++) {
+      Name.Component component = prefix.get(i);
+      Node child = node.child(component);
+      if (child == null) {
+        if (node.children == null) {
+          node.children = new HashMap<>();
+        }
+        child = new Node();
+        node.children.put(component, child);
+      }
+      node = child;
+      node.nEntriesInSubtree++;
+    }
+    node.prefix = prefix;
+    node.faceIds = faceIds;
+    node.costs = costs;
+  }
+
+  private Node find(Name prefix) {
+    Node node = root;
+    for (int i = 0; i < prefix.size() && node != null; i++) {
+      node = node.child(prefix.get(i));
+    }
+    return node;
+  }
+
+  private static int[] trim(int[] array, int length) {
+    if (array.length == length) {
+      return array;
+    }
+    int[] trimmed = new int[length];
+    System.arraycopy(array, 0, trimmed, 0, length);
+    return trimmed;
+  }
+}
@@ -0,0 +1,225 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.FibEntry;
+
+import net.named_data.jndn.Name;
+import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Cached view of NFD's FIB and faces, shared by all probe callbacks.
+ * <p>
+ * Reads never block and never issue management commands: they return the latest snapshot and,
+ * if it is older than MAX_AGE, request a refresh. Refreshes run on the given executor, and
+ * requests made while one is queued or running are coalesced into at most one more refresh.
+ * The prefixes advertised to each peer are computed once per snapshot, by walking a name trie
+ * of the FIB.
+ */
+public class ForwarderSnapshotCache {
+
+  /**
+   * FIB and faces of NFD at one point in time.
+   */
+  public static class Snapshot {
+    private final long timestamp;
+    private final List<FibEntry> fibEntries;
+    private final IntSet faceIds;
+    private final IntSet peerFaceIds;
+    private final int groupFaceId;
+    private final FibTrie fibTrie;
+    // { excluded faceId : prefixes advertised to the peer on that face }
+    private final HashMap<Integer, Map<Name, ProbeResponse.PrefixEntry>> advertisedPrefixes = new HashMap<>();
+
+    /**
+     * @param peerFaceIds faces towards peers, including the group face
+     * @param groupFaceId multicast face of the group, or -1
+     */
+    Snapshot(long timestamp, List<FibEntry> fibEntries, IntSet faceIds, IntSet peerFaceIds,
+             int groupFaceId) {
+      this.timestamp = timestamp;
+      this.fibEntries = Collections.unmodifiableList(fibEntries);
+      this.faceIds = faceIds;
+      this.peerFaceIds = peerFaceIds;
+      this.groupFaceId = groupFaceId;
+      // only nexthops on existing faces are kept
+      this.fibTrie = new FibTrie(fibEntries, faceIds);
+    }
+
+    /**
+     * Builds a snapshot from the FIB and face datasets and the current peers. Has no Android
+     * dependencies, so that simulated devices build their snapshots the same way.
+     *
+     * @param timestamp   time of the fetch
+     * @param peers       connected peers; those without a face yet are skipped
+     * @param groupFaceId multicast face of the group, or -1
+     */
+    public static Snapshot create(long timestamp, List<FibEntry> fibEntries, List<FaceStatus> faceStatuses,
+                                  Collection<Peer> peers, int groupFaceId) {
+      int[] faceIds = new int[faceStatuses.size()];
+      for (int i = 0; i < faceIds.length; i++) {
+        faceIds[i] = faceStatuses.get(i).getFaceId();
+      }
+      int[] peerFaceIds = new int[peers.size() + 1];
+      int nPeerFaceIds = 0;
+      for (Peer peer : peers) {
+        if (peer.hasFace()) {
+          peerFaceIds[nPeerFaceIds++] = peer.getFaceId();
+        }
+      }
+      if (groupFaceId != -1) {
+        peerFaceIds[nPeerFaceIds++] = groupFaceId;
+      }
+      return new Snapshot(timestamp, fibEntries, new IntSet(faceIds, faceIds.length),
+        new IntSet(peerFaceIds, nPeerFaceIds), groupFaceId);
+    }
+
+    /**
+     * @return time of the fetch, in SystemClock.elapsedRealtime() milliseconds
+     */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public List<FibEntry> getFibEntries() {
+      return fibEntries;
+    }
+
+    public IntSet getFaceIds() {
+      return faceIds;
+    }
+
+    public FibTrie getFibTrie() {
+      return fibTrie;
+    }
+
+    /**
+     * Returns the data prefixes to advertise to the peer on the given face, as decided by
+     * AdvertisementPolicy. The map is computed with one walk of the FIB trie per snapshot and
+     * face, so as long as the snapshot does not change, the same instance is returned.
+     *
+     * @param excludedFaceId face of the peer the prefixes are advertised to
+     * @return an unmodifiable map of prefix to advertised entry
+     */
+    public synchronized Map<Name, ProbeResponse.PrefixEntry> getAdvertisedPrefixes(int excludedFaceId) {
+      Map<Name, ProbeResponse.PrefixEntry> prefixes = advertisedPrefixes.get(excludedFaceId);
+      if (prefixes == null) {
+        prefixes = Collections.unmodifiableMap(AdvertisementPolicy.computeAdvertisedPrefixes(
+          fibTrie, peerFaceIds, excludedFaceId, groupFaceId));
+        advertisedPrefixes.put(excludedFaceId, prefixes);
+      }
+      return prefixes;
+    }
+  }
+
+  private static final String TAG = "ForwarderSnapshotCache";
+
+  /**
+   * Age in ms after which a read requests a refresh.
+   */
+  public static final int MAX_AGE = 1000;
+
+  private final Executor executor;
+  private volatile Snapshot snapshot = new Snapshot(0, new ArrayList<FibEntry>(),
+    IntSet.EMPTY, IntSet.EMPTY, -1);
+  // refresh state, guarded by this
+  private boolean isRefreshQueued = false;
+  private boolean isRefreshRunning = false;
+  private boolean isRefreshPending = false;
+
+  private final Runnable refreshRunnable = new Runnable() {
+    @Override
+    public void run() {
+      synchronized (ForwarderSnapshotCache.this) {
+        isRefreshQueued = false;
+        isRefreshRunning = true;
+      }
+      refresh();
+      synchronized (ForwarderSnapshotCache.this) {
+        isRefreshRunning = false;
+        if (isRefreshPending) {
+          // requested while this refresh was already running, so it may have missed the change
+          isRefreshPending = false;
+          isRefreshQueued = true;
+          executor.execute(this);
+        }
+      }
+    }
+  };
+
+  /**
+   * @param executor executor on which NFD management commands are issued
+   */
+  public ForwarderSnapshotCache(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the latest snapshot, requesting a refresh if it is older than MAX_AGE. Before the
+   * first refresh completes, the snapshot is empty.
+   */
+  public Snapshot get() {
+    Snapshot current = snapshot;
+    if (SystemClock.elapsedRealtime() - current.getTimestamp() > MAX_AGE) {
+      requestRefresh();
+    }
+    return current;
+  }
+
+  /**
+   * Requests a refresh, e.g. because faces or routes are known to have changed.
+   */
+  public synchronized void requestRefresh() {
+    if (isRefreshQueued) {
+      return;
+    }
+    if (isRefreshRunning) {
+      isRefreshPending = true;
+      return;
+    }
+    isRefreshQueued = true;
+    executor.execute(refreshRunnable);
+  }
+
+  private void refresh() {
+    try {
+      NDNController controller = NDNController.getInstance();
+      List<FibEntry> fibEntries = controller.getNfdcHelper().fibList();
+      List<FaceStatus> faceStatuses = controller.getNfdcHelper().faceList();
+      snapshot = Snapshot.create(SystemClock.elapsedRealtime(), fibEntries, faceStatuses,
+        controller.getConnectedPeers(), controller.getGroupFaceId());
+    } catch (Exception e) {
+      Log.e(TAG, "Unable to refresh FIB and face snapshot: " + e.getMessage());
+    }
+  }
+}
@@ -19,9 +19,6 @@
 
 package net.named_data.nfd.wifidirect.utils;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
@@ -69,90 +66,44 @@ public class IPAddress {
     return null;
   }
 
-  private static String getDottedDecimalIP(byte[] ipAddr) {
-    //convert to dotted decimal notation:
-    String ipAddrStr = "";
-    for (int i = 0; i < ipAddr.length; i++) {
-      if (i > 0) {
-        ipAddrStr += ".";
-      }
-      ipAddrStr += ipAddr[i] & 0xFF;
-    }
-    return ipAddrStr;
-  }
-
   /**
-   * Try to extract a hardware MAC address from a given IP address using the
-   * ARP cache (/proc/net/arp).<br>
-   * <br>
-   * We assume that the file has this structure:<br>
-   * <br>
-   * IP address       HW type     Flags       HW address            Mask     Device
-   * 192.168.18.11    0x1         0x2         00:04:20:06:55:1a     *        eth0
-   * 192.168.18.36    0x1         0x2         00:22:43:ab:2a:5b     *        eth0
+   * Returns the host part of a face URI, e.g. 192.168.49.1 for udp4://192.168.49.1:6363.
    *
-   * @param ip
-   * @return the MAC from the ARP cache
+   * @param faceUri an IPv4 face URI with a port
+   * @return the host, or null if the URI does not have that form
    */
-  public static String getMacFromArpCache(String ip) {
-    if (ip == null)
+  public static String getHostOfFaceUri(String faceUri) {
+    int start = faceUri.indexOf("://");
+    int end = faceUri.lastIndexOf(':');
+    if (start == -1 || end <= start + 3) {
       return null;
-    BufferedReader br = null;
-    try {
-      br = new BufferedReader(new FileReader("/proc/net/arp"));
-      String line;
-      while ((line = br.readLine()) != null) {
-        String[] splitted = line.split(" +");
-        if (splitted != null && splitted.length >= 4 && ip.equals(splitted[0])) {
-          // Basic sanity check
-          String mac = splitted[3];
-          if (mac.matches("..:..:..:..:..:..")) {
-            return mac;
-          } else {
-            return null;
-          }
-        }
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    } finally {
-      try {
-        br.close();
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
     }
-    return null;
+    return faceUri.substring(start + 3, end);
   }
 
-  public static String getIPFromMac(String MAC) {
-    BufferedReader br = null;
+  /**
+   * @param ip dotted decimal IPv4 address
+   * @return true if the address is in 224.0.0.0/4
+   */
+  public static boolean isMulticast(String ip) {
+    int end = ip.indexOf('.');
     try {
-      br = new BufferedReader(new FileReader("/proc/net/arp"));
-      String line;
-      while ((line = br.readLine()) != null) {
+      int firstOctet = Integer.parseInt(end == -1 ? ip : ip.substring(0, end));
+      return firstOctet >= 224 && firstOctet <= 239;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
 
-        String[] splitted = line.split(" +");
-        if (splitted != null && splitted.length >= 4) {
-          // Basic sanity check
-          String device = splitted[5];
-          if (device.matches(".*p2p-p2p0.*")) {
-            String mac = splitted[3];
-            if (mac.matches(MAC)) {
-              return splitted[0];
-            }
-          }
-        }
-      }
-    } catch (Exception e) {
-      e.printStackTrace();
-    } finally {
-      try {
-        br.close();
-      } catch (IOException e) {
-        e.printStackTrace();
+  private static String getDottedDecimalIP(byte[] ipAddr) {
+    //convert to dotted decimal notation:
+    String ipAddrStr = "";
+    for (int i = 0; i < ipAddr.length; i++) {
+      if (i > 0) {
+        ipAddrStr += ".";
       }
+      ipAddrStr += ipAddr[i] & 0xFF;
     }
-    return null;
+    return ipAddrStr;
   }
 }
@@ -0,0 +1,60 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of ints, e.g. face ids, kept as a sorted array without boxing.
+ */
+public final class IntSet {
+
+  public static final IntSet EMPTY = new IntSet(new int[0], 0);
+
+  private final int[] values;   // sorted, without duplicates
+
+  /**
+   * @param values  array holding the elements, in any order and possibly repeated; the set
+   *                takes ownership of it
+   * @param nValues number of elements at the start of the array
+   */
+  public IntSet(int[] values, int nValues) {
+    Arrays.sort(values, 0, nValues);
+    int size = 0;
+    for (int i = 0; i < nValues; i++) {
+      if (size == 0 || values[size - 1] != values[i]) {
+        values[size++] = values[i];
+      }
+    }
+    this.values = size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  public boolean contains(int value) {
+    return Arrays.binarySearch(values, value) >= 0;
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  public int get(int index) {
+    return values[index];
+  }
+}
@@ -21,15 +21,15 @@ package net.named_data.nfd.wifidirect.utils;
 
 import android.content.Context;
 import android.content.Intent;
-import android.net.wifi.WpsInfo;
-import android.net.wifi.p2p.WifiP2pConfig;
 import android.net.wifi.p2p.WifiP2pDevice;
 import android.net.wifi.p2p.WifiP2pDeviceList;
 import android.net.wifi.p2p.WifiP2pInfo;
 import android.net.wifi.p2p.WifiP2pManager;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.intel.jndn.management.ManagementException;
+import com.intel.jndn.management.types.FaceStatus;
 
 import net.named_data.jndn.Face;
 import net.named_data.jndn.Interest;
@@ -41,30 +41,39 @@ import net.named_data.jndn.security.SecurityException;
 import net.named_data.jndn.security.identity.IdentityManager;
 import net.named_data.jndn.security.identity.MemoryIdentityStorage;
 import net.named_data.jndn.security.identity.MemoryPrivateKeyStorage;
+import net.named_data.nfd.service.NfdService;
+import net.named_data.nfd.utils.AsyncNfdcHelper;
+import net.named_data.nfd.utils.FaceEventLoop;
+import net.named_data.nfd.utils.NfdcFuture;
 import net.named_data.nfd.utils.NfdcHelper;
+import net.named_data.nfd.utils.SharedPreferencesManager;
 import net.named_data.nfd.wifidirect.callback.GenericCallback;
 import net.named_data.nfd.wifidirect.callback.ProbeOnInterest;
+import net.named_data.nfd.wifidirect.model.AdvertisedPrefixSet;
 import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.model.PrefixBloomFilter;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
 import net.named_data.nfd.wifidirect.runnable.DiscoverPeersRunnable;
 import net.named_data.nfd.wifidirect.runnable.FaceAndRouteConsistencyRunnable;
 import net.named_data.nfd.wifidirect.runnable.GroupStatusConsistencyRunnable;
 import net.named_data.nfd.wifidirect.runnable.ProbeRunnable;
+import net.named_data.nfd.wifidirect.runnable.TransportSelectionRunnable;
 import net.named_data.nfd.wifidirect.service.WDBroadcastReceiverService;
-import net.named_data.nfd.wifidirect.runnable.FaceCreateRunnable;
-import net.named_data.nfd.wifidirect.runnable.FaceDestroyRunnable;
-import net.named_data.nfd.wifidirect.runnable.FaceEventProcessRunnable;
 import net.named_data.nfd.wifidirect.runnable.RegisterPrefixRunnable;
-import net.named_data.nfd.wifidirect.runnable.RibRegisterPrefixRunnable;
 import net.named_data.nfd.wifidirect.runnable.RibUnregisterPrefixRunnable;
 import net.named_data.nfd.wifidirect.runnable.UnregisterPrefixRunnable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -85,52 +94,149 @@ public class NDNController implements WifiP2pManager.PeerListListener,
 
   public static final String URI_UDP_PREFIX = "udp://";
   public static final String URI_TCP_PREFIX = "tcp://";
-  public static final String URI_TRANSPORT_PREFIX = URI_UDP_PREFIX;   // transport portion of uri that rest of project should use
+  public static final String URI_TRANSPORT_PREFIX = URI_UDP_PREFIX;   // initial transport of peer faces, see TransportPolicy
   public static final String PROBE_PREFIX = "/localhop/wifidirect";   // prefix of prefix used in probing
 
   private static final String TAG = "NDNController";
-  private static final int DISCOVER_PEERS_DELAY = 5000;  // in ms
-  public static final int PROBE_DELAY = 1000;           // in ms
-  public static final int PROBE_INTEREST_LIFETIME = 1000; // in ms (the network delay should not be large)
-  private static final int FACE_AND_ROUTE_CONSISTENCY_CHECK_DELAY = 5000;
-  private static final int GROUP_STATUS_CONSISTENCY_CHECK_DELAY = 10000;
+  public static final int DISCOVER_PEERS_DELAY = 5000;   // in ms
+  public static final int PROBE_INTEREST_LIFETIME = 1000; // in ms, until a peer's RTT is measured
+  // face events trigger consistency checks, so the full resync only covers missed events
+  public static final int FACE_AND_ROUTE_FULL_RESYNC_DELAY = 60000;
+  public static final int GROUP_STATUS_CONSISTENCY_CHECK_DELAY = 10000;
+  public static final int TRANSPORT_SELECTION_DELAY = 10000;  // in ms, between samples of the peer faces' traffic
+
+  // probing runs on the event loop thread, where the probe callbacks run
+  private static final TaskScheduler EVENT_LOOP_SCHEDULER = new TaskScheduler() {
+    @Override
+    public long now() {
+      return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void schedule(long delay, Runnable task) {
+      FaceEventLoop.getInstance().schedule(delay, task);
+    }
+  };
 
   // Singleton
   private static NDNController mController = null;
   private static KeyChain mKeyChain = null;
 
   // WiFi Direct related resources
-  private WifiP2pManager wifiP2pManager = null;
-  private WifiP2pManager.Channel channel = null;
+  private P2pGroupManager p2pGroupManager = null;
   private Context wifiDirectContext = null;       // context in which WiFi direct operations begin (an activity/fragment)
-  private List<WifiP2pDevice> discoverdPeers = new ArrayList<>();
+  private List<WifiP2pDevice> discoverdPeers = new CopyOnWriteArrayList<>();
 
   // Relevant tasks, services, etc.
   private WDBroadcastReceiverService brService = null;
   private Future discoverPeersFuture = null;
-  private Future probeFuture = null;
+  // wakes up for the probes of the peers, null while probing is stopped
+  private volatile ProbeScheduler probeScheduler = null;
   private Future faceAndRouteConsistencyFuture = null;
   private Future groupStatusConsistencyFuture = null;
+  private Future transportSelectionFuture = null;
   // keep 1 thread to serialize all the tasks
-  private ScheduledThreadPoolExecutor faceEventProcessExecutor = new ScheduledThreadPoolExecutor(1);
   private ScheduledThreadPoolExecutor localFaceCommandExecutor = new ScheduledThreadPoolExecutor(1);
   private ScheduledThreadPoolExecutor nfdcFaceCommandExecutor = new ScheduledThreadPoolExecutor(1);
   private ScheduledThreadPoolExecutor generalExecutor = new ScheduledThreadPoolExecutor(1);
 
   // Useful flags
-  private boolean hasRegisteredOwnLocalhop = false;
-  private boolean isGroupOwner;    // set in broadcast receiver, used primarily in ProbeOnInterest
+  private volatile boolean hasRegisteredOwnLocalhop = false;
+  private volatile boolean isGroupOwner;    // set in broadcast receiver, used primarily in ProbeOnInterest
+
+  // group transport: routes learned from peers go over one multicast face on the p2p interface
+  // instead of the per-peer unicast faces, which are kept for probes and /localhop routes
+  private volatile boolean isGroupTransportEnabled = false;
+  private volatile int groupFaceId = -1;      // only changed on the event loop thread
+  private volatile boolean hasRequestedFaceSystemReload = false;
 
   // we have some redundancy here in data, but difficult to avoid given WiFi Direct API
-  private HashMap<String, Peer> ipPeerMapOfConnectedPeers = new HashMap<>();                  // { peerIp : PeerInstance }, contains at least Face id info
+  private final PeerTable peerTable = new PeerTable();    // { peerIp : PeerInstance }, shared by all threads
+  private final NeighborResolver neighborTable = new NeighborTable();   // cached ARP table
+  // prefix filters published by nearby devices, known before connecting to them
+  private final PrefixServiceDirectory prefixServiceDirectory = new PrefixServiceDirectory();
+  private volatile List<Name> wantedPrefixes = Collections.emptyList();
 
   // single shared Face instance at localhost
   private Face mFace = null;
   private final NfdcHelper nfdcHelper = new NfdcHelper();
   long registeredPrefixId = -1;
 
-  private FaceEventProcessRunnable faceEventProcessRunnable = null;
-  private Future faceEventProcessFuture = null;
+  // incremental view of NFD's faces and routes, fed by face event notifications
+  private final FaceRouteTable faceRouteTable = new FaceRouteTable();
+  private FaceEventSubscriber faceEventSubscriber = null;
+  // FIB and faces as seen by the probe callbacks, which never query NFD themselves
+  private final ForwarderSnapshotCache forwarderSnapshotCache = new ForwarderSnapshotCache(nfdcFaceCommandExecutor);
+  // faces and routes of peers, in order per peer but concurrently across peers
+  private final PeerProvisioner peerProvisioner = new PeerProvisioner(AsyncNfdcHelper.getInstance(),
+    peerTable, faceRouteTable, forwarderSnapshotCache);
+  // what the consistency checks and peer removals decide, carried out here
+  private final PeerConsistency peerConsistency = new PeerConsistency(peerTable, faceRouteTable,
+    new PeerConsistency.Actions() {
+      @Override
+      public void createFace(final String peerIp) {
+        Log.d(TAG, "create face for IP " + peerIp);
+        NDNController.this.createFace(peerIp, URI_TRANSPORT_PREFIX, new GenericCallback() {
+          @Override
+          public void doJob() {
+            NDNController.this.registerPeerLocalhop(peerIp);
+          }
+        });
+      }
+
+      @Override
+      public void registerPeerLocalhop(String peerIp) {
+        NDNController.this.registerPeerLocalhop(peerIp);
+      }
+
+      @Override
+      public void registerOwnLocalhop() {
+        NDNController.this.registerOwnLocalhop();
+      }
+
+      @Override
+      public void destroyFace(Peer peer) {
+        peerProvisioner.destroyFace(peer);
+      }
+
+      @Override
+      public void withdrawGroupRoutes(Peer peer) {
+        NDNController.this.withdrawGroupRoutes(peer);
+      }
+
+      @Override
+      public void disconnect() {
+        NDNController.this.disconnect();
+      }
+    });
+  private final FaceEventSubscriber.Listener faceEventListener = new FaceEventSubscriber.Listener() {
+    @Override
+    public void onFaceCreated(int faceId, String remoteUri) {
+      faceRouteTable.addFace(faceId, remoteUri);
+      forwarderSnapshotCache.requestRefresh();
+      if (isGroupTransportEnabled && groupFaceId == -1 && isMulticastFaceUri(remoteUri)) {
+        // may be the group face NFD created on the p2p interface, the local URI tells
+        locateGroupFace();
+      }
+    }
+
+    @Override
+    public void onFaceDestroyed(int faceId, String remoteUri) {
+      faceRouteTable.removeFace(faceId);
+      forwarderSnapshotCache.requestRefresh();
+      if (faceId == groupFaceId) {
+        Log.d(TAG, "Group face " + faceId + " was destroyed");
+        switchGroupFace(-1, false);
+      }
+      // the face may belong to a connected peer; checking runs where the peers are managed
+      nfdcFaceCommandExecutor.execute(new FaceAndRouteConsistencyRunnable(false));
+    }
+
+    @Override
+    public void onNotificationGap() {
+      nfdcFaceCommandExecutor.execute(new FaceAndRouteConsistencyRunnable(true));
+    }
+  };
 
 
   /**
@@ -178,64 +284,52 @@ public class NDNController implements WifiP2pManager.PeerListListener,
 
 
   /**
-   * Logs the peer with the corresponding WD IP address. If a previous logging of
-   * the peer exists, this will replace it.
+   * Returns the registry of known peers.
    *
-   * @param peerIp The peer's WD IP address
-   * @param peer   A Peer instance with at least FaceId set.
+   * @return the PeerTable instance.
    */
-  public void logPeer(String peerIp, Peer peer) {
-    ipPeerMapOfConnectedPeers.put(peerIp, peer);
+  public PeerTable getPeerTable() {
+    return peerTable;
+  }
+
+  /**
+   * Returns the cached view of the ARP table, mapping peer IP and MAC addresses.
+   *
+   * @return the NeighborResolver instance.
+   */
+  public NeighborResolver getNeighborTable() {
+    return neighborTable;
   }
 
   /**
    * Returns the Face id associated with the given peer, denoted by IP address.
    *
    * @param peerIp The WiFi Direct IP address of the peer
-   * @return the Face id of the peer or -1 if no mapping exists.
+   * @return the Face id of the peer or -1 if the peer has no face.
    */
   public int getFaceIdForPeer(String peerIp) {
-    if (ipPeerMapOfConnectedPeers.containsKey(peerIp)) {
-      return ipPeerMapOfConnectedPeers.get(peerIp).getFaceId();
-    }
-
-    return -1;
+    return peerTable.getFaceId(peerIp);
   }
 
   /**
-   * Returns the logged peer instance (via logPeer()) by its
-   * WiFi Direct IP address.
+   * Returns the known peer instance by its WiFi Direct IP address.
    *
    * @param ip WiFi Direct IP address of peer
-   * @return the peer instance logged earlier by a call to logPeer(), or null
-   * if none.
+   * @return the peer instance, in whatever provisioning state, or null if none.
    */
   public Peer getPeerByIp(String ip) {
-    return ipPeerMapOfConnectedPeers.get(ip);
+    return peerTable.get(ip);
   }
 
   /**
-   * Similar to getConnectPeers, except this returns the IP addresses
-   * of the currently logged peers.
-   *
-   * @return A set backed by the underlying map of logged peers. Thus,
-   * be advised that changes to the returned set will be reflected in
-   * the underlying map.
+   * @return an immutable snapshot of the peers that have a face.
    */
-  public Set<String> getIpsOfConnectedPeers() {
-    return ipPeerMapOfConnectedPeers.keySet();
-  }
-
-  public Collection<Peer> getConnectedPeers() {
-    return ipPeerMapOfConnectedPeers.values();
+  public List<Peer> getConnectedPeers() {
+    return peerTable.getPeersWithFace();
   }
 
   public boolean isNumOfConnectedPeersZero() {
-    return ipPeerMapOfConnectedPeers.isEmpty();
-  }
-
-  public Map<String, Peer> getConnectedPeersMap() {
-    return ipPeerMapOfConnectedPeers;
+    return peerTable.isEmpty();
   }
 
   /**
@@ -245,19 +339,24 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    * @param ip WiFi Direct IP address of peer
    */
   public void removePeer(String ip) {
-    // for now, if the current device is not group owner, it only has one connection, so simply disconnect
-    if (!isGroupOwner) {
-      disconnect();
-    }
-    // if the current device is the group owner, we cannot disconnect the group, but simply remove the
-    // group member.
-    else {
-      FaceDestroyRunnable runnable = new FaceDestroyRunnable(ipPeerMapOfConnectedPeers.get(ip).getFaceId());
-      nfdcFaceCommandExecutor.execute(runnable);
-      ipPeerMapOfConnectedPeers.remove(ip);
+    Peer peer = peerTable.get(ip);
+    if (peer != null) {
+      removePeer(peer);
     }
   }
 
+  /**
+   * Same as removePeer(String), but does nothing if the peer was replaced by a newer instance
+   * meanwhile, e.g. because its face was recreated.
+   *
+   * @param peer the peer instance to remove
+   */
+  public void removePeer(Peer peer) {
+    // a client only has one connection, so it simply disconnects; the group owner cannot
+    // disconnect the group, but simply removes the group member
+    peerConsistency.removePeer(peer, isGroupOwner);
+  }
+
   /**
    * Returns whether this device is the group owner
    *
@@ -284,8 +383,67 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    * @param channel        the WifiP2p Channel
    */
   public void recordWifiP2pResources(WifiP2pManager wifiP2pManager, WifiP2pManager.Channel channel) {
-    this.wifiP2pManager = wifiP2pManager;
-    this.channel = channel;
+    this.p2pGroupManager = new WifiP2pGroupManager(wifiP2pManager, channel, this);
+    prefixServiceDirectory.start(wifiP2pManager, channel);
+  }
+
+  /**
+   * Sets the namespaces this device wants to reach, which getDiscoveredPeersByRelevance()
+   * favors. They are set by the user on the Wi-Fi Direct screen, and loaded from the
+   * preferences by start().
+   *
+   * @param prefixes URIs of the wanted namespaces
+   */
+  public void setWantedPrefixes(Collection<String> prefixes) {
+    List<Name> names = new ArrayList<>();
+    for (String prefix : prefixes) {
+      names.add(new Name(prefix));
+    }
+    wantedPrefixes = Collections.unmodifiableList(names);
+  }
+
+  /**
+   * Returns how many of the wanted namespaces a discovered device may serve, according to the
+   * prefix filter it published. False positives are possible, false negatives are not.
+   *
+   * @param device a discovered device
+   * @return the number of wanted namespaces, or -1 if the device published no filter (e.g. it
+   * does not run NDN)
+   */
+  public int getNumWantedPrefixesServed(WifiP2pDevice device) {
+    PrefixBloomFilter filter = prefixServiceDirectory.getFilter(device.deviceAddress);
+    if (filter == null) {
+      return -1;
+    }
+    int count = 0;
+    for (Name prefix : wantedPrefixes) {
+      if (filter.mayServe(prefix)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the discovered devices, those that may serve the most wanted namespaces first,
+   * then those that published a prefix filter, then the others. The order is otherwise kept.
+   *
+   * @return a new list of the discovered devices
+   */
+  public List<WifiP2pDevice> getDiscoveredPeersByRelevance() {
+    List<WifiP2pDevice> devices = new ArrayList<>(discoverdPeers);
+    final HashMap<String, Integer> scores = new HashMap<>();
+    for (WifiP2pDevice device : devices) {
+      scores.put(device.deviceAddress, getNumWantedPrefixesServed(device));
+    }
+    // stable sort
+    Collections.sort(devices, new Comparator<WifiP2pDevice>() {
+      @Override
+      public int compare(WifiP2pDevice a, WifiP2pDevice b) {
+        return scores.get(b.deviceAddress) - scores.get(a.deviceAddress);
+      }
+    });
+    return devices;
   }
 
   /**
@@ -309,20 +467,30 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    * @param callback  An implementation of GenericCallback, or null. Is called AFTER face
    *                  creation succeeds.
    */
-  public void createFace(String peerIp, String uriPrefix, GenericCallback callback) {
+  public void createFace(String peerIp, String uriPrefix, final GenericCallback callback) {
 
     if (peerIp.equals(IPAddress.getLocalIPAddress())) {
       return; //never add yourself as a face
     }
 
-    // need to create a new face for this peer
-    FaceCreateRunnable runnable = new FaceCreateRunnable(peerIp, uriPrefix + peerIp);
-
-    if (callback != null) {
-      runnable.setCallback(callback);
+    // only one task creates the face of a peer, however many probes or checks ask for it
+    Peer peer = peerTable.claimFaceCreation(peerIp);
+    if (peer == null) {
+      Log.d(TAG, "Face towards " + peerIp + " already exists or is being created");
+      return;
     }
 
-    nfdcFaceCommandExecutor.execute(runnable);
+    // need to create a new face for this peer
+    peerProvisioner.createFace(peer, uriPrefix + peerIp, new GenericCallback() {
+      @Override
+      public void doJob() {
+        // a new peer is probed right away
+        rescheduleProbes();
+        if (callback != null) {
+          callback.doJob();
+        }
+      }
+    });
   }
 
   /**
@@ -335,18 +503,232 @@ public class NDNController implements WifiP2pManager.PeerListListener,
   public void ribRegisterPrefix(int faceId, String[] prefixes) {
     Log.d(TAG, "ribRegisterPrefix called with: " + faceId + " and " + prefixes.length + " prefixes");
 
-    HashSet<Integer> faceIds = new HashSet<>(ipPeerMapOfConnectedPeers.size());
-    for (Peer p : ipPeerMapOfConnectedPeers.values()) {
-      faceIds.add(p.getFaceId());
-    }
-
-    if (faceIds.contains(faceId)) {
+    Peer peer = peerTable.getByFaceId(faceId);
+    if (peer != null) {
+      Map<Name, Integer> routes = new LinkedHashMap<>();
       for (String prefix : prefixes) {
         Log.d(TAG, "ribRegisterPrefix() with prefix: " + prefix);
-        RibRegisterPrefixRunnable runnable = new RibRegisterPrefixRunnable(prefix, faceId,
-          0, true, false);
-        nfdcFaceCommandExecutor.execute(runnable);
+        routes.put(new Name(prefix), 0);
       }
+      peerProvisioner.updateRoutes(peer, routes, Collections.<Name>emptyList(), null);
+    }
+  }
+
+  /**
+   * Registers a single prefix with the given Face, denoted by its face id,
+   * with the given route cost.
+   *
+   * @param faceId The Face Id to register the prefix to.
+   * @param prefix prefix to register.
+   * @param cost   cost of the route.
+   */
+  public void ribRegisterPrefix(int faceId, Name prefix, int cost) {
+    Log.d(TAG, "ribRegisterPrefix called with: " + faceId + " and prefix " + prefix + ", cost " + cost);
+
+    Peer peer = peerTable.getByFaceId(faceId);
+    if (peer != null) {
+      peerProvisioner.updateRoutes(peer, Collections.singletonMap(prefix, cost),
+        Collections.<Name>emptyList(), null);
+    }
+  }
+
+  /**
+   * Registers and unregisters routes towards the face of a peer. The commands are all sent
+   * at once, after any face or route command requested earlier for the same peer.
+   *
+   * @param peer         the peer
+   * @param toRegister   { prefix : cost } of the routes to register
+   * @param toUnregister prefixes to unregister from the face of the peer
+   */
+  public void updatePeerRoutes(Peer peer, Map<Name, Integer> toRegister, List<Name> toUnregister) {
+    int faceId = groupFaceId;
+    if (faceId == -1) {
+      peerProvisioner.updateRoutes(peer, toRegister, toUnregister, null);
+      return;
+    }
+
+    // on the group face, a route stays as long as any peer advertises its prefix
+    Set<Name> changed = new LinkedHashSet<>(toRegister.keySet());
+    changed.addAll(toUnregister);
+    Map<Name, Integer> groupRoutes = new LinkedHashMap<>();
+    List<Name> withdrawn = new ArrayList<>();
+    computeGroupRoutes(changed, groupRoutes, withdrawn);
+    peerProvisioner.updateGroupRoutes(faceId, groupRoutes, withdrawn, null);
+  }
+
+  /**
+   * Moves a peer, whose transport change was claimed through Peer.claimTransportChange(), to a
+   * face of the given transport. The routes of its current face are registered on the new face
+   * before the current face is destroyed.
+   *
+   * @param peer      the peer
+   * @param transport the transport of the new face
+   */
+  public void switchPeerTransport(final Peer peer, final Peer.Transport transport) {
+    // the learned prefixes are only accessed on the event loop thread
+    FaceEventLoop.getInstance().post(new Runnable() {
+      @Override
+      public void run() {
+        Map<Name, Integer> routes = new LinkedHashMap<>();
+        routes.put(new Name(PROBE_PREFIX + "/" + peer.getIpAddress()), 0);
+        // with a group face, learned routes are not on the faces of the peers
+        if (groupFaceId == -1) {
+          AdvertisedPrefixSet learned = peer.getPrefixesAdvertisedByPeer();
+          for (Name prefix : learned.getPrefixes()) {
+            int cost = learned.get(prefix).getRouteCost();
+            if (cost != -1) {
+              routes.put(prefix, cost);
+            }
+          }
+        }
+        Log.i(TAG, "Moving " + peer.getIpAddress() + " from " + peer.getTransport() + " to " + transport +
+          " (probe loss rate " + peer.getProbeLossRate() + ")");
+        peerProvisioner.switchTransport(peer, transport, routes);
+      }
+    });
+  }
+
+  /**
+   * Returns whether routes learned from peers go over the group's multicast face.
+   *
+   * @return true if group transport is enabled
+   */
+  public boolean isGroupTransportEnabled() {
+    return isGroupTransportEnabled;
+  }
+
+  /**
+   * Enables or disables group transport. While enabled and once NFD has a UDP multicast face
+   * on the p2p interface, the data prefixes learned from peers are registered on that face
+   * instead of on the unicast face of each peer. Existing routes are moved over.
+   *
+   * @param enabled whether to use group transport
+   */
+  public void setGroupTransportEnabled(boolean enabled) {
+    isGroupTransportEnabled = enabled;
+    if (enabled) {
+      locateGroupFace();
+    } else {
+      FaceEventLoop.getInstance().post(new Runnable() {
+        @Override
+        public void run() {
+          switchGroupFace(-1, true);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns the multicast face of the group that learned routes are registered on.
+   *
+   * @return the Face id, or -1 if group transport is disabled or the face is not known yet.
+   */
+  public int getGroupFaceId() {
+    return groupFaceId;
+  }
+
+  /**
+   * Looks for the group face in the face dataset. If NFD has no multicast face on the p2p
+   * interface yet, which is the case when the group formed after NFD started, NFD is asked
+   * once per group to reload its face system; the face created then is picked up from its
+   * face event.
+   *
+   * @param faceStatuses the face dataset
+   */
+  public void updateGroupFace(List<FaceStatus> faceStatuses) {
+    String localIp = myAddress;
+    int faceId = -1;
+    if (isGroupTransportEnabled && localIp != null) {
+      for (FaceStatus faceStatus : faceStatuses) {
+        if (isMulticastFaceUri(faceStatus.getRemoteUri()) &&
+          localIp.equals(IPAddress.getHostOfFaceUri(faceStatus.getLocalUri()))) {
+          faceId = faceStatus.getFaceId();
+          break;
+        }
+      }
+      if (faceId == -1 && !hasRequestedFaceSystemReload && wifiDirectContext != null) {
+        hasRequestedFaceSystemReload = true;
+        Log.d(TAG, "No multicast face on " + localIp + ", asking NFD to reload its face system");
+        Intent intent = new Intent(wifiDirectContext, NfdService.class);
+        intent.setAction(NfdService.ACTION_RELOAD_FACE_SYSTEM);
+        wifiDirectContext.startService(intent);
+      }
+    }
+
+    final int newGroupFaceId = faceId;
+    FaceEventLoop.getInstance().post(new Runnable() {
+      @Override
+      public void run() {
+        switchGroupFace(newGroupFaceId, true);
+      }
+    });
+  }
+
+  /**
+   * Withdraws from the group face the routes of a peer that is gone, unless other peers still
+   * advertise their prefixes. Does nothing without a group face.
+   *
+   * @param peer the peer that was removed or replaced
+   */
+  public void withdrawGroupRoutes(final Peer peer) {
+    if (groupFaceId == -1) {
+      return;
+    }
+    // the learned prefixes are only accessed on the event loop thread
+    FaceEventLoop.getInstance().post(new Runnable() {
+      @Override
+      public void run() {
+        int faceId = groupFaceId;
+        Set<Name> prefixes = peer.getPrefixesAdvertisedByPeer().getPrefixes();
+        if (faceId == -1 || prefixes.isEmpty()) {
+          return;
+        }
+        Map<Name, Integer> groupRoutes = new LinkedHashMap<>();
+        List<Name> withdrawn = new ArrayList<>();
+        computeGroupRoutes(prefixes, groupRoutes, withdrawn);
+        peerProvisioner.updateGroupRoutes(faceId, groupRoutes, withdrawn, null);
+      }
+    });
+  }
+
+  /**
+   * Registers /localhop/wifidirect/&lt;peerIp&gt; towards the face of the peer, so that probes
+   * can reach it, and marks the peer ROUTED once the registration succeeds.
+   *
+   * @param peerIp The WiFi Direct IP address of the peer
+   */
+  public void registerPeerLocalhop(String peerIp) {
+    final Peer peer = peerTable.get(peerIp);
+    if (peer == null || !peer.hasFace()) {
+      return;
+    }
+
+    Name prefix = new Name(PROBE_PREFIX + "/" + peerIp);
+    Log.d(TAG, "registering " + prefix);
+    peerProvisioner.updateRoutes(peer, Collections.singletonMap(prefix, 0),
+      Collections.<Name>emptyList(), new GenericCallback() {
+        @Override
+        public void doJob() {
+          if (peer.onRouted(SystemClock.elapsedRealtime()) && peer.getTimeToRoutable() != -1) {
+            Log.i(TAG, "Peer " + peer.getIpAddress() + " routable after " + peer.getTimeToRoutable() + "ms");
+          }
+        }
+      });
+  }
+
+  /**
+   * Unregisters a prefix from the given Face, denoted by its face id.
+   *
+   * @param faceId The Face Id to unregister the prefix from.
+   * @param prefix prefix to unregister.
+   */
+  public void ribUnregisterPrefix(int faceId, Name prefix) {
+    Peer peer = peerTable.getByFaceId(faceId);
+    if (peer != null) {
+      peerProvisioner.updateRoutes(peer, Collections.<Name, Integer>emptyMap(),
+        Collections.singletonList(prefix), null);
+    } else {
+      nfdcFaceCommandExecutor.execute(new RibUnregisterPrefixRunnable(prefix, faceId));
     }
   }
 
@@ -376,13 +758,22 @@ public class NDNController implements WifiP2pManager.PeerListListener,
   }
 
   /**
-   * Begins probing the network for data prefixes.
+   * Begins probing the network for data prefixes. Probes are sent on the event loop thread,
+   * where their responses are processed, so that the probe state and the prefixes learned
+   * from peers are only accessed there. The thread only wakes up when a probe is due, and
+   * not at all while there are no peers.
    */
   public void startProbing() {
-    if (probeFuture == null) {
-      Log.d(TAG, "Start probing for data prefixes every " + PROBE_DELAY + "ms");
-      ProbeRunnable runnable = new ProbeRunnable();
-      probeFuture = localFaceCommandExecutor.scheduleWithFixedDelay(runnable, 200, PROBE_DELAY, TimeUnit.MILLISECONDS);
+    if (probeScheduler == null) {
+      Log.d(TAG, "Start probing for data prefixes");
+      final ProbeScheduler scheduler = new ProbeScheduler(EVENT_LOOP_SCHEDULER, new ProbeRunnable());
+      probeScheduler = scheduler;
+      FaceEventLoop.getInstance().post(new Runnable() {
+        @Override
+        public void run() {
+          scheduler.start();
+        }
+      });
     } else {
       Log.d(TAG, "Probing task already running!");
     }
@@ -392,15 +783,72 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    * Stops probing the network for data prefixes.
    */
   public void stopProbing() {
-    if (probeFuture != null) {
-      probeFuture.cancel(true);
-      probeFuture = null;
+    final ProbeScheduler scheduler = probeScheduler;
+    if (scheduler != null) {
+      probeScheduler = null;
+      FaceEventLoop.getInstance().post(new Runnable() {
+        @Override
+        public void run() {
+          scheduler.stop();
+        }
+      });
       Log.d(TAG, "Stopped probing.");
     } else {
       Log.d(TAG, "Pprobing already stopped");
     }
   }
 
+  /**
+   * Returns the probe schedule, to be used on the event loop thread only.
+   *
+   * @return the ProbeScheduler, or null if probing is stopped
+   */
+  public ProbeScheduler getProbeScheduler() {
+    return probeScheduler;
+  }
+
+  /**
+   * Re-arms the probe wakeup, e.g. after a peer got its face. May be called on any thread.
+   */
+  public void rescheduleProbes() {
+    final ProbeScheduler scheduler = probeScheduler;
+    if (scheduler == null) {
+      return;
+    }
+    FaceEventLoop.getInstance().post(new Runnable() {
+      @Override
+      public void run() {
+        scheduler.reschedule();
+      }
+    });
+  }
+
+  /**
+   * Begins periodically choosing the transport of the face of each peer, from its probe loss
+   * rate and the traffic on its face.
+   */
+  public void startTransportSelection() {
+    if (transportSelectionFuture == null) {
+      Log.d(TAG, "Start selecting peer transports every " + TRANSPORT_SELECTION_DELAY + "ms");
+      TransportSelectionRunnable runnable = new TransportSelectionRunnable();
+      transportSelectionFuture = generalExecutor.scheduleWithFixedDelay(runnable,
+        TRANSPORT_SELECTION_DELAY, TRANSPORT_SELECTION_DELAY, TimeUnit.MILLISECONDS);
+    } else {
+      Log.d(TAG, "Transport selection already running!");
+    }
+  }
+
+  /**
+   * Stops choosing the transport of the peer faces; they keep their current transport.
+   */
+  public void stopTransportSelection() {
+    if (transportSelectionFuture != null) {
+      transportSelectionFuture.cancel(false);
+      transportSelectionFuture = null;
+      Log.d(TAG, "Stopped selecting peer transports.");
+    }
+  }
+
   /**
    * Starts service that registers the broadcast receiver for handling peer discovery
    */
@@ -427,21 +875,23 @@ public class NDNController implements WifiP2pManager.PeerListListener,
       }
 
       brService = null;
+      prefixServiceDirectory.stop();
       Log.d(TAG, "Stopped WDBR service.");
     }
   }
 
   /**
-   * Starts periodically checking for consistency between NFD and NDNController's view of
-   * active faces.
+   * Starts checking for consistency between NFD and NDNController's view of
+   * active faces. Checks are triggered by face events; a full resync against NFD's
+   * datasets runs right away and then every FACE_AND_ROUTE_FULL_RESYNC_DELAY.
    */
   public void startFaceAndRouteConsistencyChecker() {
     if (faceAndRouteConsistencyFuture == null) {
-      Log.d(TAG, "Start checking consistency of logged Faces every " +
-        FACE_AND_ROUTE_CONSISTENCY_CHECK_DELAY + "ms");
-      FaceAndRouteConsistencyRunnable runnable = new FaceAndRouteConsistencyRunnable();
+      Log.d(TAG, "Start full resync of logged Faces every " +
+        FACE_AND_ROUTE_FULL_RESYNC_DELAY + "ms");
+      FaceAndRouteConsistencyRunnable runnable = new FaceAndRouteConsistencyRunnable(true);
       faceAndRouteConsistencyFuture = nfdcFaceCommandExecutor.scheduleWithFixedDelay(runnable,
-        300, FACE_AND_ROUTE_CONSISTENCY_CHECK_DELAY, TimeUnit.MILLISECONDS);
+        300, FACE_AND_ROUTE_FULL_RESYNC_DELAY, TimeUnit.MILLISECONDS);
     } else {
       Log.d(TAG, "Face consistency checker already running!");
     }
@@ -470,7 +920,7 @@ public class NDNController implements WifiP2pManager.PeerListListener,
     if (groupStatusConsistencyFuture == null) {
       Log.d(TAG, "Start checking consistency of group status every " +
         GROUP_STATUS_CONSISTENCY_CHECK_DELAY + "ms");
-      GroupStatusConsistencyRunnable.resetTimeoutTimes();
+      peerConsistency.resetGroupStatus();
       GroupStatusConsistencyRunnable runnable = new GroupStatusConsistencyRunnable();
       groupStatusConsistencyFuture = generalExecutor.scheduleWithFixedDelay(runnable,
         300, GROUP_STATUS_CONSISTENCY_CHECK_DELAY, TimeUnit.MILLISECONDS);
@@ -487,7 +937,7 @@ public class NDNController implements WifiP2pManager.PeerListListener,
     if (groupStatusConsistencyFuture != null) {
       groupStatusConsistencyFuture.cancel(false);    // do not interrupt if running, but cancel further execution
       groupStatusConsistencyFuture = null;
-      GroupStatusConsistencyRunnable.resetTimeoutTimes();
+      peerConsistency.resetGroupStatus();
       Log.d(TAG, "Stopped checking for Face consistency.");
     } else {
       Log.d(TAG, "Group status consistency checker is already stopped");
@@ -499,12 +949,17 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    * tasks/services for this protocol.
    */
   public void start() {
+    if (wifiDirectContext != null) {
+      isGroupTransportEnabled = SharedPreferencesManager.getWifiDirectGroupTransport(wifiDirectContext);
+      setWantedPrefixes(SharedPreferencesManager.getWifiDirectWantedPrefixes(wifiDirectContext));
+    }
     recreateFace();
     startDiscoveringPeers();
     startProbing();
     startBroadcastReceiverService();
     startFaceAndRouteConsistencyChecker();
     startGroupConsistencyChecker();
+    startTransportSelection();
   }
 
   /**
@@ -513,6 +968,7 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    */
   public void stop() {
     cleanUp();
+    stopTransportSelection();
     stopGroupConsistencyChecker();
     stopFaceAndRouteConsistencyChecker();
     stopBroadcastReceiverService();
@@ -583,25 +1039,25 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    */
   public void discoverPeers() throws Exception {
 
-    if (wifiP2pManager == null || channel == null) {
+    if (p2pGroupManager == null) {
       Log.e(TAG, "Unable to discover peers, did you recordWifiP2pResources() yet?");
       return;
     }
 
-    wifiP2pManager.discoverPeers(channel, new WifiP2pManager.ActionListener() {
-      @Override
-      public void onSuccess() {
-        // WIFI_P2P_PEERS_CHANGED_ACTION intent sent!!
-        Log.d(TAG, "Success on discovering peers");
+    // let nearby devices know what we serve, and learn what they serve, before any connection
+    List<Name> advertisable = new ArrayList<>();
+    for (ProbeResponse.PrefixEntry entry : forwarderSnapshotCache.get().getAdvertisedPrefixes(-1).values()) {
+      if (entry.getHopCount() < ProbeResponse.MAX_RADIUS) {
+        advertisable.add(entry.getPrefix());
       }
+    }
+    // these share the P2P find with peer discovery, which would fail with BUSY next to them
+    if (prefixServiceDirectory.update(discoverdPeers, advertisable, SystemClock.elapsedRealtime())) {
+      return;
+    }
 
-      @Override
-      public void onFailure(int reasonCode) {
-        String reasonString = WDBroadcastReceiver
-          .getWifiP2pManagerMessageFromReasonCode(reasonCode);
-        Log.d(TAG, "Fail discover peers, reason: " + reasonString);
-      }
-    });
+    // on success, WIFI_P2P_PEERS_CHANGED_ACTION intent is sent
+    p2pGroupManager.discoverPeers();
   }
 
   /**
@@ -618,6 +1074,34 @@ public class NDNController implements WifiP2pManager.PeerListListener,
     return nfdcHelper;
   }
 
+  /**
+   * Returns the checks that keep the peers in line with NFD and the group.
+   *
+   * @return the PeerConsistency instance.
+   */
+  public PeerConsistency getPeerConsistency() {
+    return peerConsistency;
+  }
+
+  /**
+   * Returns NDNController's incremental view of NFD's faces and routes.
+   *
+   * @return the FaceRouteTable instance.
+   */
+  public FaceRouteTable getFaceRouteTable() {
+    return faceRouteTable;
+  }
+
+  /**
+   * Returns the cached view of NFD's FIB and faces, to be used instead of querying NFD
+   * from probe callbacks.
+   *
+   * @return the ForwarderSnapshotCache instance.
+   */
+  public ForwarderSnapshotCache getForwarderSnapshotCache() {
+    return forwarderSnapshotCache;
+  }
+
   /**
    * Resets all state. (including disconnecting group, and reseting saved states)
    */
@@ -632,20 +1116,8 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    */
   public void cancelConnect() {
     // if you are negotiating with others, cancel the connection
-    if (wifiP2pManager != null) {
-      wifiP2pManager.cancelConnect(channel, new WifiP2pManager.ActionListener() {
-        @Override
-        public void onSuccess() {
-          Log.d(TAG, "Successfully removed self from WifiP2p group.");
-        }
-
-        @Override
-        public void onFailure(int reason) {
-          String reasonString = WDBroadcastReceiver
-            .getWifiP2pManagerMessageFromReasonCode(reason);
-          Log.e(TAG, "Unable to remove self from WifiP2p group, reason: " + reasonString);
-        }
-      });
+    if (p2pGroupManager != null) {
+      p2pGroupManager.cancelConnect();
     }
   }
 
@@ -656,20 +1128,8 @@ public class NDNController implements WifiP2pManager.PeerListListener,
     // if you are in a group, remove yourself from it
     // note that if you are the group owner, this will cause a disruption in connectivity
     // for the other peers
-    if (wifiP2pManager != null) {
-      wifiP2pManager.removeGroup(channel, new WifiP2pManager.ActionListener() {
-        @Override
-        public void onSuccess() {
-          Log.d(TAG, "Successfully removed self from WifiP2p group.");
-        }
-
-        @Override
-        public void onFailure(int reason) {
-          String reasonString = WDBroadcastReceiver
-            .getWifiP2pManagerMessageFromReasonCode(reason);
-          Log.e(TAG, "Unable to remove self from WifiP2p group, reason: " + reasonString);
-        }
-      });
+    if (p2pGroupManager != null) {
+      p2pGroupManager.removeGroup();
     }
   }
 
@@ -681,12 +1141,14 @@ public class NDNController implements WifiP2pManager.PeerListListener,
     startProbing();
     startFaceAndRouteConsistencyChecker();
     startGroupConsistencyChecker();
+    startTransportSelection();
   }
 
   /**
    * stop all runnable, keep saved Wifi-Direct states unchanged
    */
   public void stopRunnables() {
+    stopTransportSelection();
     startGroupConsistencyChecker();
     stopFaceAndRouteConsistencyChecker();
     stopProbing();
@@ -705,12 +1167,13 @@ public class NDNController implements WifiP2pManager.PeerListListener,
     Runnable cleanUpRunnable = new Runnable() {
       @Override
       public void run() {
-        Log.d(TAG, "before cleaning up connected peers, the size of ipPeerMapOfConnectedPeers is " + ipPeerMapOfConnectedPeers.size());
+        Log.d(TAG, "before cleaning up connected peers, the size of peerTable is " + peerTable.size());
 
-        for (String peerIp : ipPeerMapOfConnectedPeers.keySet()) {
+        for (Peer peer : peerTable.getPeersWithFace()) {
+          String peerIp = peer.getIpAddress();
           try {
             Log.d(TAG, "Cleaning up face towards peer: " + peerIp);
-            nfdcHelper.faceDestroy(ipPeerMapOfConnectedPeers.get(peerIp).getFaceId());
+            nfdcHelper.faceDestroy(peer.getFaceId());
           } catch (ManagementException me) {
             Log.e(TAG, "Unable to destroy face to: " + peerIp);
           } catch (Exception e) {
@@ -722,17 +1185,22 @@ public class NDNController implements WifiP2pManager.PeerListListener,
         groupOwnerAddress = null;
         hasRegisteredOwnLocalhop = false;
         isGroupOwner = false;
-        ipPeerMapOfConnectedPeers.clear();
+        groupFaceId = -1;
+        hasRequestedFaceSystemReload = false;
+        peerTable.clear();
+        neighborTable.invalidate();
         discoverdPeers.clear();
+        faceRouteTable.clear();
       }
     };
 
     nfdcFaceCommandExecutor.execute(cleanUpRunnable);
 
-    if (faceEventProcessFuture != null) {
-      faceEventProcessFuture.cancel(false);
-      faceEventProcessFuture = null;
+    if (faceEventSubscriber != null) {
+      faceEventSubscriber.stop();
+      faceEventSubscriber = null;
     }
+
     if (mFace != null) {
       mFace.shutdown();
       mFace = null;
@@ -740,24 +1208,25 @@ public class NDNController implements WifiP2pManager.PeerListListener,
   }
 
   public void recreateFace() {
-    if (faceEventProcessFuture != null) {
-      faceEventProcessFuture.cancel(false);
-      faceEventProcessFuture = null;
+    if (faceEventSubscriber != null) {
+      faceEventSubscriber.stop();
+      faceEventSubscriber = null;
     }
     if (mFace != null) {
       mFace.shutdown();
       mFace = null;
     }
-    mFace = new Face();
-    faceEventProcessRunnable = new FaceEventProcessRunnable();
+    // served by the shared event loop, which dispatches packets as they arrive,
+    // so no processEvents() polling is needed
+    mFace = FaceEventLoop.getInstance().createFace();
     try {
       mFace.setCommandSigningInfo(mKeyChain, mKeyChain.getDefaultCertificateName());
     } catch (SecurityException e) {
       Log.e(TAG, "Unable to set command signing info for localhost face.");
     }
-    faceEventProcessFuture = faceEventProcessExecutor.scheduleWithFixedDelay(
-      faceEventProcessRunnable, 0, 5, TimeUnit.MILLISECONDS);
-    Log.d(TAG, "create face and start to process event");
+    faceEventSubscriber = new FaceEventSubscriber(mFace, faceEventListener);
+    faceEventSubscriber.start();
+    Log.d(TAG, "create face on the shared event loop");
   }
 
   /**
@@ -784,27 +1253,151 @@ public class NDNController implements WifiP2pManager.PeerListListener,
   }
 
   public void requestConnectionInfo() {
-    wifiP2pManager.requestConnectionInfo(channel, this);
+    if (p2pGroupManager != null) {
+      p2pGroupManager.requestConnectionInfo();
+    }
+  }
+
+  private void locateGroupFace() {
+    AsyncNfdcHelper.getInstance().faceList().addListener(new NfdcFuture.Listener<List<FaceStatus>>() {
+      @Override
+      public void onComplete(NfdcFuture<List<FaceStatus>> faceList) {
+        if (faceList.getException() != null) {
+          Log.e(TAG, "Unable to look for the group face: " + faceList.getException().getMessage());
+          return;
+        }
+        updateGroupFace(faceList.getValue());
+      }
+    });
+  }
+
+  /**
+   * Moves the routes learned from peers to the new group face, or back to the faces of the
+   * peers if there is none. Routes are registered on the new face before they are unregistered
+   * from the old one. Must run on the event loop thread, where the learned prefixes are updated.
+   *
+   * @param newFaceId      the new group face, or -1
+   * @param isOldFaceAlive false if the old group face is destroyed, along with its routes
+   */
+  private void switchGroupFace(int newFaceId, boolean isOldFaceAlive) {
+    final int oldFaceId = groupFaceId;
+    if (newFaceId == oldFaceId) {
+      return;
+    }
+    groupFaceId = newFaceId;
+    forwarderSnapshotCache.requestRefresh();
+    Log.d(TAG, "Group face changed from " + oldFaceId + " to " + newFaceId);
+
+    final List<Peer> peers = peerTable.getAllPeers();
+    final Set<Name> learned = new LinkedHashSet<>();
+    for (Peer peer : peers) {
+      learned.addAll(peer.getPrefixesAdvertisedByPeer().getPrefixes());
+    }
+    if (learned.isEmpty()) {
+      return;
+    }
+    final List<Name> toRemoveFromOld = isOldFaceAlive && oldFaceId != -1 ?
+      new ArrayList<>(learned) : Collections.<Name>emptyList();
+
+    if (newFaceId != -1) {
+      // read here, the callback below runs on another thread
+      final Map<Peer, List<Name>> toRemoveFromPeers = new LinkedHashMap<>();
+      if (oldFaceId == -1) {
+        for (Peer peer : peers) {
+          List<Name> prefixes = new ArrayList<>(peer.getPrefixesAdvertisedByPeer().getPrefixes());
+          if (!prefixes.isEmpty()) {
+            toRemoveFromPeers.put(peer, prefixes);
+          }
+        }
+      }
+      Map<Name, Integer> groupRoutes = new LinkedHashMap<>();
+      computeGroupRoutes(learned, groupRoutes, new ArrayList<Name>());
+      peerProvisioner.updateGroupRoutes(newFaceId, groupRoutes, Collections.<Name>emptyList(),
+        new GenericCallback() {
+          @Override
+          public void doJob() {
+            if (oldFaceId != -1) {
+              if (!toRemoveFromOld.isEmpty()) {
+                peerProvisioner.updateGroupRoutes(oldFaceId, Collections.<Name, Integer>emptyMap(),
+                  toRemoveFromOld, null);
+              }
+              return;
+            }
+            for (Map.Entry<Peer, List<Name>> peerPrefixes : toRemoveFromPeers.entrySet()) {
+              peerProvisioner.updateRoutes(peerPrefixes.getKey(), Collections.<Name, Integer>emptyMap(),
+                peerPrefixes.getValue(), null);
+            }
+          }
+        });
+    } else {
+      for (Peer peer : peers) {
+        Map<Name, Integer> routes = new LinkedHashMap<>();
+        for (Name prefix : peer.getPrefixesAdvertisedByPeer().getPrefixes()) {
+          int cost = peer.getPrefixesAdvertisedByPeer().get(prefix).getRouteCost();
+          if (cost != -1) {
+            routes.put(prefix, cost);
+          }
+        }
+        if (!routes.isEmpty()) {
+          peerProvisioner.updateRoutes(peer, routes, Collections.<Name>emptyList(), null);
+        }
+      }
+      // sent after all the registrations above
+      if (!toRemoveFromOld.isEmpty()) {
+        peerProvisioner.updateGroupRoutes(oldFaceId, Collections.<Name, Integer>emptyMap(),
+          toRemoveFromOld, null);
+      }
+    }
+  }
+
+  /**
+   * Computes the routes of the given prefixes on the group face: each one is one more hop away
+   * than from the closest peer that advertises it within radius, and is withdrawn if no peer
+   * does anymore.
+   */
+  private void computeGroupRoutes(Collection<Name> prefixes, Map<Name, Integer> toRegister,
+                                  List<Name> toUnregister) {
+    List<Peer> peers = peerTable.getAllPeers();
+    for (Name prefix : prefixes) {
+      int cost = -1;
+      for (Peer peer : peers) {
+        ProbeResponse.PrefixEntry entry = peer.getPrefixesAdvertisedByPeer().get(prefix);
+        int peerCost = entry == null ? -1 : entry.getRouteCost();
+        if (peerCost != -1 && (cost == -1 || peerCost < cost)) {
+          cost = peerCost;
+        }
+      }
+      if (cost == -1) {
+        toUnregister.add(prefix);
+      } else {
+        toRegister.put(prefix, cost);
+      }
+    }
+  }
+
+  private static boolean isMulticastFaceUri(String faceUri) {
+    String host = faceUri == null ? null : IPAddress.getHostOfFaceUri(faceUri);
+    return host != null && IPAddress.isMulticast(host);
   }
 
   /**
    * update the connected peers info
    */
-  private void updateIpPeerMapOfConnectedPeers() {
-    Log.d(TAG, "update IpPeerMapOfConnectedPeers");
-    for (String peerIp : ipPeerMapOfConnectedPeers.keySet()) {
-      Peer peer = ipPeerMapOfConnectedPeers.get(peerIp);
-      String macAddress = IPAddress.getMacFromArpCache(peerIp);
+  private void updateDevicesOfPeers() {
+    Log.d(TAG, "update devices of peers");
+    // the ARP table is read at most once per cycle, and devices are matched by key, not by scan
+    HashMap<String, WifiP2pDevice> devicesByKey = new HashMap<>();
+    for (WifiP2pDevice one : discoverdPeers) {
+      devicesByKey.put(NeighborTable.toDeviceKey(one.deviceAddress), one);
+    }
+    for (Peer peer : peerTable.getAllPeers()) {
+      String macAddress = neighborTable.getMac(peer.getIpAddress());
       if (macAddress == null) {
         continue;
       }
-      for (WifiP2pDevice one : discoverdPeers) {
-        // TODO: figure out why the 13th char in arp table is 8 smaller than that in device info
-        if (one.deviceAddress.startsWith(macAddress.substring(0, 12))
-          && one.deviceAddress.endsWith(macAddress.substring(13))) {
-          peer.setDevice(one);
-          break;
-        }
+      WifiP2pDevice device = devicesByKey.get(NeighborTable.toDeviceKey(macAddress));
+      if (device != null) {
+        peer.setDevice(device);
       }
     }
   }
@@ -813,18 +1406,17 @@ public class NDNController implements WifiP2pManager.PeerListListener,
    * Remove the unconnected peers (those peers are not removed by the user, but disconnected for
    * some other reasons, e.g., shut down or out of range) from connected peers map.
    */
-  private void removeDisconnectedPeersFromIpPeerMapOfConnectedPeers() {
-    Log.d(TAG, "remove unconnected peers from IpPeerMapOfConnectedPeers");
-    Log.d(TAG, "before removing, the size of IpPeerMapOfConnectedPeers is " + ipPeerMapOfConnectedPeers.size());
-    for (String peerIp : ipPeerMapOfConnectedPeers.keySet()) {
-      WifiP2pDevice peer = ipPeerMapOfConnectedPeers.get(peerIp).getDevice();
-      if (peer != null && (!discoverdPeers.contains(peer) || peer.status != WifiP2pDevice.CONNECTED)) {
-        FaceDestroyRunnable runnable = new FaceDestroyRunnable(ipPeerMapOfConnectedPeers.get(peerIp).getFaceId());
-        nfdcFaceCommandExecutor.execute(runnable);
-        ipPeerMapOfConnectedPeers.remove(peerIp);
+  private void removeDisconnectedPeers() {
+    Log.d(TAG, "remove unconnected peers from peerTable");
+    Log.d(TAG, "before removing, the size of peerTable is " + peerTable.size());
+    for (Peer peer : peerTable.getAllPeers()) {
+      WifiP2pDevice device = peer.getDevice();
+      if (device != null && (!discoverdPeers.contains(device) || device.status != WifiP2pDevice.CONNECTED)) {
+        // removing this very instance, a peer re-added meanwhile is kept
+        peerConsistency.dropPeer(peer);
       }
     }
-    Log.d(TAG, "after removing, the size of IpPeerMapOfConnectedPeers is " + ipPeerMapOfConnectedPeers.size());
+    Log.d(TAG, "after removing, the size of peerTable is " + peerTable.size());
   }
 
   /**
@@ -859,9 +1451,10 @@ public class NDNController implements WifiP2pManager.PeerListListener,
 
     discoverdPeers.clear();
     discoverdPeers.addAll(peerList.getDeviceList());
+    prefixServiceDirectory.retainDevices(discoverdPeers);
 
-    updateIpPeerMapOfConnectedPeers();
-    removeDisconnectedPeersFromIpPeerMapOfConnectedPeers();
+    updateDevicesOfPeers();
+    removeDisconnectedPeers();
     checkConnectionConsistency();
 
     // If an AdapterView is backed by this data, notify it
@@ -910,20 +1503,21 @@ public class NDNController implements WifiP2pManager.PeerListListener,
         setIsGroupOwner(false);
 
         // create a callback that will register the /localhop/wifidirect/<go-addr> prefix
+        final String goAddress = groupOwnerAddress;
         GenericCallback cb = new GenericCallback() {
           @Override
           public void doJob() {
-            Log.d(TAG, "registering " + NDNController.PROBE_PREFIX + "/" + groupOwnerAddress);
-            String[] prefixes = new String[1];
-            prefixes[0] = NDNController.PROBE_PREFIX + "/" + groupOwnerAddress;
-            ribRegisterPrefix(getFaceIdForPeer(groupOwnerAddress),
-              prefixes);
+            registerPeerLocalhop(goAddress);
           }
         };
 
         // create face towards GO, with callback to register /localhop/... prefix
         createFace(groupOwnerAddress, NDNController.URI_TRANSPORT_PREFIX, cb);
       }
+
+      if (isGroupTransportEnabled) {
+        locateGroupFace();
+      }
     }
 
   }
@@ -935,23 +1529,10 @@ public class NDNController implements WifiP2pManager.PeerListListener,
   }
 
   public void connect(WifiP2pDevice peerDevice) {
-    WifiP2pConfig config = new WifiP2pConfig();
-    config.deviceAddress = peerDevice.deviceAddress;
-    config.wps.setup = WpsInfo.PBC;
-    wifiP2pManager.connect(channel, config, new WifiP2pManager.ActionListener() {
-      @Override
-      public void onSuccess() {
-        // onReceive() in WDBroadcastReceiver will receive an intent
-      }
-
-      @Override
-      public void onFailure(int reason) {
-
-        String reasonString = WDBroadcastReceiver
-          .getWifiP2pManagerMessageFromReasonCode(reason);
-
-        Log.e(TAG, "There was an issue with initiating connection reason: " + reasonString);
-      }
-    });
+    if (p2pGroupManager == null) {
+      Log.e(TAG, "Unable to connect, did you recordWifiP2pResources() yet?");
+      return;
+    }
+    p2pGroupManager.connect(peerDevice.deviceAddress);
   }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+/**
+ * Resolves IP addresses of Wi-Fi Direct neighbors to MAC addresses and back.
+ * <p>
+ * NeighborTable reads the kernel's ARP cache; simulations resolve from their own state.
+ */
+public interface NeighborResolver {
+  /**
+   * @return the MAC address of the neighbor, or null if the neighbor is not (yet) resolved
+   */
+  String getMac(String ip);
+
+  /**
+   * @param deviceAddress a MAC address, e.g. a WifiP2pDevice's deviceAddress
+   * @return the IP address of the P2P neighbor with that MAC address, or null
+   */
+  String getP2pIp(String deviceAddress);
+
+  /**
+   * Forgets any cached mappings, so that the next lookup resolves again.
+   */
+  void invalidate();
+}
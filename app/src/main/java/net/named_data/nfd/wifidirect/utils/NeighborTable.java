@@ -0,0 +1,165 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * IP to MAC address mappings of the neighbors of this device, from the kernel's ARP cache
+ * (/proc/net/arp).
+ * <p>
+ * The file is read and parsed at most once per TTL, into maps in both directions, so that
+ * looking up any number of peers costs one read. We assume that the file has this structure:
+ * <pre>
+ * IP address       HW type     Flags       HW address            Mask     Device
+ * 192.168.49.11    0x1         0x2         00:04:20:06:55:1a     *        p2p-p2p0-0
+ * </pre>
+ * MAC addresses of the P2P interface differ from the device addresses reported by
+ * WifiP2pManager in the 13th character (see toDeviceKey()), so reverse lookups and device
+ * matching ignore it.
+ */
+public class NeighborTable implements NeighborResolver {
+  private static final String TAG = "NeighborTable";
+  private static final String ARP_TABLE = "/proc/net/arp";
+  private static final String P2P_DEVICE_PREFIX = "p2p-";
+  private static final int TTL = 2000;    // in ms
+
+  private static final int COLUMN_IP = 0;
+  private static final int COLUMN_FLAGS = 2;
+  private static final int COLUMN_MAC = 3;
+  private static final int COLUMN_DEVICE = 5;
+  private static final String FLAGS_INCOMPLETE = "0x0";
+
+  private static class Snapshot {
+    final long timestamp;
+    final Map<String, String> macByIp;
+    // { device key of the MAC : IP }, P2P interfaces only
+    final Map<String, String> p2pIpByDeviceKey;
+
+    Snapshot(long timestamp, Map<String, String> macByIp, Map<String, String> p2pIpByDeviceKey) {
+      this.timestamp = timestamp;
+      this.macByIp = macByIp;
+      this.p2pIpByDeviceKey = p2pIpByDeviceKey;
+    }
+  }
+
+  private volatile Snapshot snapshot = null;
+
+  @Override
+  public String getMac(String ip) {
+    if (ip == null) {
+      return null;
+    }
+    return get().macByIp.get(ip);
+  }
+
+  @Override
+  public String getP2pIp(String deviceAddress) {
+    return get().p2pIpByDeviceKey.get(toDeviceKey(deviceAddress));
+  }
+
+  /**
+   * Forgets the cached table, so that the next lookup reads it again.
+   */
+  @Override
+  public void invalidate() {
+    snapshot = null;
+  }
+
+  /**
+   * Maps a MAC address to the key under which the device address and the P2P interface
+   * address of the same device are equal: lower case, with the 13th character (the high
+   * nibble of the 5th octet) masked out.
+   * <p>
+   * The P2P interface address, which is what the ARP table lists, is derived from the device
+   * address by toggling bit 0x80 of the 5th octet, so the two differ by 8 in the 13th character.
+   */
+  public static String toDeviceKey(String mac) {
+    if (mac == null || mac.length() < 13) {
+      return mac;
+    }
+    String lower = mac.toLowerCase();
+    return lower.substring(0, 12) + '?' + lower.substring(13);
+  }
+
+  private Snapshot get() {
+    Snapshot current = snapshot;
+    long now = SystemClock.elapsedRealtime();
+    if (current == null || now - current.timestamp > TTL) {
+      // concurrent readers may both parse the file; the result is the same
+      current = read(now);
+      snapshot = current;
+    }
+    return current;
+  }
+
+  private static Snapshot read(long now) {
+    HashMap<String, String> macByIp = new HashMap<>();
+    HashMap<String, String> p2pIpByDeviceKey = new HashMap<>();
+
+    try (BufferedReader br = new BufferedReader(new FileReader(ARP_TABLE))) {
+      String line = br.readLine();  // header
+      String[] columns = new String[COLUMN_DEVICE + 1];
+      while ((line = br.readLine()) != null) {
+        StringTokenizer tokenizer = new StringTokenizer(line);
+        int nColumns = 0;
+        while (nColumns < columns.length && tokenizer.hasMoreTokens()) {
+          columns[nColumns++] = tokenizer.nextToken();
+        }
+        // Basic sanity check; incomplete entries have no usable MAC
+        if (nColumns < columns.length || FLAGS_INCOMPLETE.equals(columns[COLUMN_FLAGS]) ||
+          !isMac(columns[COLUMN_MAC])) {
+          continue;
+        }
+        macByIp.put(columns[COLUMN_IP], columns[COLUMN_MAC]);
+        if (columns[COLUMN_DEVICE].startsWith(P2P_DEVICE_PREFIX)) {
+          p2pIpByDeviceKey.put(toDeviceKey(columns[COLUMN_MAC]), columns[COLUMN_IP]);
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to read " + ARP_TABLE + ": " + e.getMessage());
+    }
+
+    return new Snapshot(now, Collections.unmodifiableMap(macByIp),
+      Collections.unmodifiableMap(p2pIpByDeviceKey));
+  }
+
+  // xx:xx:xx:xx:xx:xx
+  private static boolean isMac(String s) {
+    if (s.length() != 17) {
+      return false;
+    }
+    for (int i = 2; i < 17; i += 3) {
+      if (s.charAt(i) != ':') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,58 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.utils;
+
+/**
+ * Wi-Fi Direct group operations that NDNController issues.
+ * <p>
+ * WifiP2pGroupManager forwards them to the platform's WifiP2pManager; simulations form
+ * groups in memory. Results of the operations arrive asynchronously, the same way they do on
+ * a device (peer list and connection changes), so implementations only report failures.
+ */
+public interface P2pGroupManager {
+  /**
+   * Starts scanning for nearby Wi-Fi Direct devices.
+   */
+  void discoverPeers();
+
+  /**
+   * Starts group negotiation with a device.
+   *
+   * @param deviceAddress the MAC address of the device, as in WifiP2pDevice.deviceAddress
+   */
+  void connect(String deviceAddress);
+
+  /**
+   * Cancels an ongoing group negotiation.
+   */
+  void cancelConnect();
+
+  /**
+   * Leaves the current group; if this device is the group owner, the group is torn down.
+   */
+  void removeGroup();
+
+  /**
+   * Requests the current group's connection info, which is delivered to the connection info
+   * listener of the implementation.
+   */
+  void requestConnectionInfo();
+}
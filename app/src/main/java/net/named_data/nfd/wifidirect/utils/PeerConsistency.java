@@ -0,0 +1,179 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import net.named_data.nfd.wifidirect.model.Peer;
+
+/**
+ * Keeps the peers in line with the forwarder and the group: recreates the faces and localhop
+ * routes that went missing, removes peers that are gone, and leaves a group that stayed empty.
+ * <p>
+ * Like ProbeExchange, it only decides, without Android or NFD dependencies, and leaves the
+ * commands to an Actions implementation: NDNController and the consistency runnables on a
+ * device, and VirtualPeer in simulations.
+ */
+public class PeerConsistency {
+
+  /**
+   * Commands issued by the checks; they may complete asynchronously.
+   */
+  public interface Actions {
+    /**
+     * Creates the face of the peer, unless it exists or is being created, then registers the
+     * peer's localhop prefix towards it.
+     */
+    void createFace(String peerIp);
+
+    /**
+     * Registers the localhop prefix of the peer towards its face.
+     */
+    void registerPeerLocalhop(String peerIp);
+
+    /**
+     * Registers the localhop prefix of this device.
+     */
+    void registerOwnLocalhop();
+
+    /**
+     * Destroys the face of a peer that was removed.
+     */
+    void destroyFace(Peer peer);
+
+    /**
+     * Withdraws from the group face the routes learned from a peer that was removed or
+     * replaced.
+     */
+    void withdrawGroupRoutes(Peer peer);
+
+    /**
+     * Leaves the group.
+     */
+    void disconnect();
+  }
+
+  /**
+   * Checks in a row finding no peer, while this device is in a group, after which the group
+   * is left; (this number) * (interval of the checks) should be 1 minute.
+   */
+  public static final int MAX_EMPTY_GROUP_CHECKS = 6;
+
+  private final PeerTable peerTable;
+  private final FaceRouteTable faceRouteTable;
+  private final Actions actions;
+  private int nEmptyGroupChecks = 0;
+
+  public PeerConsistency(PeerTable peerTable, FaceRouteTable faceRouteTable, Actions actions) {
+    this.peerTable = peerTable;
+    this.faceRouteTable = faceRouteTable;
+    this.actions = actions;
+  }
+
+  /**
+   * Compares the peers with the FaceRouteTable: creates the faces of the peers that have none
+   * or whose face is gone, and registers the localhop prefixes that are missing.
+   *
+   * @param myAddress    this device's address in the group, or null
+   * @param isFullResync whether the table was just reseeded from the RIB dataset, which is the
+   *                     only way to tell that the route of this device's own localhop prefix
+   *                     is gone: it is towards the localhost face, which outlives any face
+   *                     event that could be missed
+   */
+  public void checkFacesAndRoutes(String myAddress, boolean isFullResync) {
+    // a snapshot of all peers, including those whose face creation failed earlier
+    for (Peer peer : peerTable.getAllPeers()) {
+      String peerIp = peer.getIpAddress();
+
+      if (peer.getState() == Peer.State.DISCOVERED ||
+        (peer.hasFace() && !faceRouteTable.hasFace(peer.getFaceId()))) {
+        // start over with a fresh peer, but do not destroy the logged peer's device info
+        if (peer.hasFace()) {
+          if (peerTable.onFaceLost(peer) == null) {
+            continue;   // removed or reset by another task meanwhile
+          }
+          // what was learned from the old instance is gone with it
+          actions.withdrawGroupRoutes(peer);
+        }
+        actions.createFace(peerIp);
+        continue;
+      }
+
+      if (peer.hasFace() && !faceRouteTable.hasRoute(NDNController.PROBE_PREFIX + "/" + peerIp)) {
+        peer.compareAndSetState(Peer.State.ROUTED, Peer.State.FACE_READY);
+        actions.registerPeerLocalhop(peerIp);
+      }
+    }
+
+    if (isFullResync && myAddress != null &&
+      !faceRouteTable.hasRoute(NDNController.PROBE_PREFIX + "/" + myAddress)) {
+      actions.registerOwnLocalhop();
+    }
+  }
+
+  /**
+   * Removes a peer that is gone, e.g. whose probes keep failing. A client's only peer is the
+   * group owner, so a client leaves the group instead.
+   */
+  public void removePeer(Peer peer, boolean isGroupOwner) {
+    if (!isGroupOwner) {
+      actions.disconnect();
+    } else {
+      dropPeer(peer);
+    }
+  }
+
+  /**
+   * Removes the peer, its face and the group routes learned from it, unless it was replaced
+   * by a newer instance meanwhile.
+   *
+   * @return whether this call removed it
+   */
+  public boolean dropPeer(Peer peer) {
+    if (!peerTable.remove(peer)) {
+      return false;
+    }
+    actions.destroyFace(peer);
+    actions.withdrawGroupRoutes(peer);
+    return true;
+  }
+
+  /**
+   * Counts the checks in a row that find no peer while this device is in a group, and leaves
+   * the group after MAX_EMPTY_GROUP_CHECKS of them. To be called periodically.
+   *
+   * @param myAddress this device's address in the group, or null
+   */
+  public void checkGroupStatus(String myAddress) {
+    boolean isLeaving;
+    synchronized (this) {
+      nEmptyGroupChecks = peerTable.isEmpty() && myAddress != null ? nEmptyGroupChecks + 1 : 0;
+      isLeaving = nEmptyGroupChecks >= MAX_EMPTY_GROUP_CHECKS;
+      if (isLeaving) {
+        nEmptyGroupChecks = 0;
+      }
+    }
+    if (isLeaving) {
+      actions.disconnect();
+    }
+  }
+
+  public synchronized void resetGroupStatus() {
+    nEmptyGroupChecks = 0;
+  }
+}
@@ -0,0 +1,375 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import net.named_data.jndn.ControlParameters;
+import net.named_data.jndn.Name;
+import net.named_data.nfd.utils.ForwarderManagement;
+import net.named_data.nfd.utils.NfdcFuture;
+import net.named_data.nfd.wifidirect.callback.GenericCallback;
+import net.named_data.nfd.wifidirect.model.Peer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Issues the NFD commands that provision the faces and routes of Wi-Fi Direct peers.
+ * <p>
+ * Each peer has its own lane: its steps (face creation, route updates, face destruction) run
+ * one after another, in the order they were requested, while the lanes of different peers run
+ * at the same time. Commands go through ForwarderManagement (AsyncNfdcHelper on a device), so
+ * a step that registers many prefixes has all of them outstanding at once instead of waiting
+ * for each response in turn.
+ * <p>
+ * Callbacks run on the event thread of the ForwarderManagement and must not block.
+ */
+public class PeerProvisioner {
+  private static final String TAG = "PeerProvisioner";
+  // lane of the routes towards the group's multicast face, never a valid IP address
+  private static final String GROUP_LANE = "group";
+
+  private interface Step {
+    /**
+     * @return a future completed when the step is finished, successfully or not
+     */
+    NfdcFuture<Void> start();
+  }
+
+  private final ForwarderManagement nfdc;
+  private final PeerTable peerTable;
+  private final FaceRouteTable faceRouteTable;
+  private final ForwarderSnapshotCache forwarderSnapshotCache;
+
+  // { peerIp or GROUP_LANE : steps waiting for the running one }, only present while a step runs
+  private final HashMap<String, ArrayDeque<Step>> lanes = new HashMap<>();
+
+  public PeerProvisioner(ForwarderManagement nfdc, PeerTable peerTable, FaceRouteTable faceRouteTable,
+                         ForwarderSnapshotCache forwarderSnapshotCache) {
+    this.nfdc = nfdc;
+    this.peerTable = peerTable;
+    this.faceRouteTable = faceRouteTable;
+    this.forwarderSnapshotCache = forwarderSnapshotCache;
+  }
+
+  /**
+   * Creates the face of a peer whose creation was claimed through PeerTable.claimFaceCreation().
+   *
+   * @param callback called if and only if the face is created and the peer is FACE_READY
+   */
+  public void createFace(final Peer peer, final String faceUri, final GenericCallback callback) {
+    peer.onProvisioningStarted(SystemClock.elapsedRealtime());
+    enqueue(peer.getIpAddress(), new Step() {
+      @Override
+      public NfdcFuture<Void> start() {
+        final NfdcFuture<Void> done = new NfdcFuture<>();
+        // UDP faces rely on NDNLP to recover losses on the P2P link
+        boolean isLpReliabilityEnabled = faceUri.startsWith(Peer.Transport.UDP.getUriPrefix());
+        nfdc.faceCreate(faceUri, isLpReliabilityEnabled).addListener(new NfdcFuture.Listener<Integer>() {
+          @Override
+          public void onComplete(NfdcFuture<Integer> faceCreate) {
+            if (faceCreate.getException() != null) {
+              Log.e(TAG, "Unable to create face " + faceUri + ": " + faceCreate.getException().getMessage());
+              // let a later task claim the face creation again
+              peerTable.onFaceCreationFailed(peer);
+            } else {
+              int faceId = faceCreate.getValue();
+              Log.d(TAG, "Created Face with Face id: " + faceId);
+              if (peerTable.onFaceCreated(peer, faceId)) {
+                // don't wait for the face event notification, the callback may check the face right away
+                faceRouteTable.addFace(faceId, faceUri);
+                if (callback != null) {
+                  callback.doJob();
+                }
+              } else {
+                // the peer went away while its face was being created
+                Log.d(TAG, "Peer " + peer.getIpAddress() + " was removed, destroying its new face");
+                nfdc.faceDestroy(faceId);
+              }
+            }
+            done.complete(null);
+          }
+        });
+        return done;
+      }
+    });
+  }
+
+  /**
+   * Registers and unregisters routes towards the face of the peer. All the commands of one call
+   * are sent at once.
+   *
+   * @param toRegister   { prefix : cost } of the routes to register
+   * @param toUnregister prefixes whose route towards the peer is to be removed
+   * @param onRegistered called if and only if all the registrations succeed, or null
+   */
+  public void updateRoutes(final Peer peer, final Map<Name, Integer> toRegister,
+                           final List<Name> toUnregister, final GenericCallback onRegistered) {
+    enqueue(peer.getIpAddress(), new Step() {
+      @Override
+      public NfdcFuture<Void> start() {
+        if (!peer.hasFace()) {
+          Log.d(TAG, "Peer " + peer.getIpAddress() + " has no face, skipping route update");
+          NfdcFuture<Void> done = new NfdcFuture<>();
+          done.complete(null);
+          return done;
+        }
+        return sendRouteUpdate(peer.getIpAddress(), peer.getFaceId(), toRegister, toUnregister, onRegistered);
+      }
+    });
+  }
+
+  /**
+   * Registers and unregisters routes towards the multicast face of the group. These updates
+   * have a lane of their own, so they are kept in order with each other but not with the
+   * steps of any peer.
+   *
+   * @param groupFaceId  the multicast face
+   * @param toRegister   { prefix : cost } of the routes to register
+   * @param toUnregister prefixes whose route towards the group is to be removed
+   * @param onRegistered called if and only if all the registrations succeed, or null
+   */
+  public void updateGroupRoutes(final int groupFaceId, final Map<Name, Integer> toRegister,
+                                final List<Name> toUnregister, final GenericCallback onRegistered) {
+    enqueue(GROUP_LANE, new Step() {
+      @Override
+      public NfdcFuture<Void> start() {
+        return sendRouteUpdate("the group", groupFaceId, toRegister, toUnregister, onRegistered);
+      }
+    });
+  }
+
+  /**
+   * Moves a peer whose transport change was claimed through Peer.claimTransportChange() to a
+   * face of the given transport, without interrupting its routes: the new face is created and
+   * the routes are registered on it before the peer switches over, and only then is the old
+   * face destroyed, along with its routes. Steps of the peer requested later use the new face.
+   *
+   * @param routes { prefix : cost } of the routes of the peer's current face
+   */
+  public void switchTransport(final Peer peer, final Peer.Transport transport,
+                              final Map<Name, Integer> routes) {
+    enqueue(peer.getIpAddress(), new Step() {
+      @Override
+      public NfdcFuture<Void> start() {
+        final NfdcFuture<Void> done = new NfdcFuture<>();
+        final String peerIp = peer.getIpAddress();
+        final int oldFaceId = peer.getFaceId();
+        if (!peer.hasFace() || peerTable.get(peerIp) != peer) {
+          peer.onTransportChangeFailed(SystemClock.elapsedRealtime());
+          done.complete(null);
+          return done;
+        }
+
+        final String faceUri = transport.getUriPrefix() + peerIp;
+        nfdc.faceCreate(faceUri, transport == Peer.Transport.UDP).addListener(new NfdcFuture.Listener<Integer>() {
+          @Override
+          public void onComplete(NfdcFuture<Integer> faceCreate) {
+            if (faceCreate.getException() != null) {
+              Log.e(TAG, "Unable to create face " + faceUri + ": " + faceCreate.getException().getMessage());
+              peer.onTransportChangeFailed(SystemClock.elapsedRealtime());
+              done.complete(null);
+              return;
+            }
+            final int newFaceId = faceCreate.getValue();
+            faceRouteTable.addFace(newFaceId, faceUri);
+
+            final boolean[] isRegistered = {false};
+            sendRouteUpdate(peerIp, newFaceId, routes, Collections.<Name>emptyList(), new GenericCallback() {
+              @Override
+              public void doJob() {
+                isRegistered[0] = true;
+              }
+            }).addListener(new NfdcFuture.Listener<Void>() {
+              @Override
+              public void onComplete(NfdcFuture<Void> update) {
+                if (!isRegistered[0] || peerTable.get(peerIp) != peer) {
+                  // keep the old face, which still has all the routes
+                  Log.e(TAG, "Unable to move " + peerIp + " to " + transport + ", keeping face " + oldFaceId);
+                  peer.onTransportChangeFailed(SystemClock.elapsedRealtime());
+                  if (newFaceId != oldFaceId) {
+                    nfdc.faceDestroy(newFaceId);
+                  }
+                  done.complete(null);
+                  return;
+                }
+
+                peer.setFaceId(newFaceId);
+                peer.onTransportChanged(transport, SystemClock.elapsedRealtime());
+                forwarderSnapshotCache.requestRefresh();
+                Log.d(TAG, "Moved " + peerIp + " from face " + oldFaceId + " to " + transport +
+                  " face " + newFaceId);
+                if (newFaceId == oldFaceId) {
+                  done.complete(null);
+                  return;
+                }
+                nfdc.faceDestroy(oldFaceId).addListener(new NfdcFuture.Listener<ControlParameters>() {
+                  @Override
+                  public void onComplete(NfdcFuture<ControlParameters> faceDestroy) {
+                    if (faceDestroy.getException() != null) {
+                      Log.e(TAG, "Unable to destroy face " + oldFaceId + ": " +
+                        faceDestroy.getException().getMessage());
+                    }
+                    done.complete(null);
+                  }
+                });
+              }
+            });
+          }
+        });
+        return done;
+      }
+    });
+  }
+
+  /**
+   * Destroys the face of the peer, after any step of the peer requested earlier.
+   */
+  public void destroyFace(final Peer peer) {
+    enqueue(peer.getIpAddress(), new Step() {
+      @Override
+      public NfdcFuture<Void> start() {
+        final NfdcFuture<Void> done = new NfdcFuture<>();
+        final int faceId = peer.getFaceId();
+        if (faceId == -1) {
+          done.complete(null);
+          return done;
+        }
+        nfdc.faceDestroy(faceId).addListener(new NfdcFuture.Listener<ControlParameters>() {
+          @Override
+          public void onComplete(NfdcFuture<ControlParameters> faceDestroy) {
+            if (faceDestroy.getException() != null) {
+              Log.e(TAG, "Unable to destroy face " + faceId + ": " + faceDestroy.getException().getMessage());
+            } else {
+              Log.d(TAG, "Successfully destroyed Face with Face id: " + faceId);
+            }
+            done.complete(null);
+          }
+        });
+        return done;
+      }
+    });
+  }
+
+  private NfdcFuture<Void> sendRouteUpdate(final String target, final int faceId,
+                                           final Map<Name, Integer> toRegister, final List<Name> toUnregister,
+                                           final GenericCallback onRegistered) {
+    final NfdcFuture<Void> done = new NfdcFuture<>();
+    List<NfdcFuture<ControlParameters>> commands = new ArrayList<>(toRegister.size() + toUnregister.size());
+    for (Map.Entry<Name, Integer> route : toRegister.entrySet()) {
+      final Name prefix = route.getKey();
+      NfdcFuture<ControlParameters> command = nfdc.ribRegisterPrefix(prefix, faceId, route.getValue(), true, false);
+      command.addListener(new NfdcFuture.Listener<ControlParameters>() {
+        @Override
+        public void onComplete(NfdcFuture<ControlParameters> register) {
+          if (register.getException() == null) {
+            faceRouteTable.addRoute(prefix.toUri(), faceId);
+          }
+        }
+      });
+      commands.add(command);
+    }
+    for (Name prefix : toUnregister) {
+      commands.add(nfdc.ribUnregisterPrefix(prefix, faceId));
+    }
+
+    NfdcFuture.allOf(commands).addListener(new NfdcFuture.Listener<Void>() {
+      @Override
+      public void onComplete(NfdcFuture<Void> all) {
+        if (all.getException() != null) {
+          Log.e(TAG, "Route update towards " + target + " failed: " +
+            all.getException().getMessage());
+        } else {
+          Log.d(TAG, "Registered " + toRegister.size() + " and unregistered " +
+            toUnregister.size() + " routes towards " + target);
+          if (onRegistered != null) {
+            onRegistered.doJob();
+          }
+        }
+        forwarderSnapshotCache.requestRefresh();
+        done.complete(null);
+      }
+    });
+    return done;
+  }
+
+  private void enqueue(String laneKey, Step step) {
+    synchronized (this) {
+      ArrayDeque<Step> lane = lanes.get(laneKey);
+      if (lane != null) {
+        lane.add(step);
+        return;
+      }
+      lanes.put(laneKey, new ArrayDeque<Step>());
+    }
+    run(laneKey, step);
+  }
+
+  /**
+   * Runs the steps of a lane until one of them does not finish right away; the listener of
+   * that step then runs the rest. Steps that finish synchronously are drained in this loop
+   * rather than through listeners, which would run them recursively.
+   */
+  private void run(final String laneKey, Step step) {
+    while (step != null) {
+      NfdcFuture<Void> done;
+      try {
+        done = step.start();
+      } catch (RuntimeException e) {
+        Log.e(TAG, "Provisioning step for " + laneKey + " failed: " + e.getMessage());
+        done = new NfdcFuture<>();
+        done.complete(null);
+      }
+
+      // whichever of this loop and the listener comes second continues the lane
+      final AtomicBoolean isFirst = new AtomicBoolean(true);
+      done.addListener(new NfdcFuture.Listener<Void>() {
+        @Override
+        public void onComplete(NfdcFuture<Void> future) {
+          if (!isFirst.compareAndSet(true, false)) {
+            run(laneKey, poll(laneKey));
+          }
+        }
+      });
+      if (isFirst.compareAndSet(true, false)) {
+        return;
+      }
+      step = poll(laneKey);
+    }
+  }
+
+  /**
+   * @return the next step of the lane, or null after removing the lane if it has none
+   */
+  private synchronized Step poll(String laneKey) {
+    Step next = lanes.get(laneKey).poll();
+    if (next == null) {
+      lanes.remove(laneKey);
+    }
+    return next;
+  }
+}
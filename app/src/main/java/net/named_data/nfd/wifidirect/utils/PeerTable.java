@@ -0,0 +1,203 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import net.named_data.nfd.wifidirect.model.Peer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the Wi-Fi Direct peers known to NDNController, keyed by WD IP address.
+ * <p>
+ * The registry is shared by the main thread, the executors of NDNController and the localhost
+ * face thread. Lookups never lock, and the peers that have a face are also published as an
+ * immutable list, so the probe and consistency tasks iterate a snapshot for free. A peer only
+ * enters or leaves that list through the transitions below, each of which is atomic.
+ */
+public class PeerTable {
+
+  /**
+   * Creates the peers that enter the table.
+   */
+  public interface PeerFactory {
+    Peer create(String peerIp);
+  }
+
+  private static final PeerFactory DEFAULT_PEER_FACTORY = new PeerFactory() {
+    @Override
+    public Peer create(String peerIp) {
+      return new Peer(peerIp);
+    }
+  };
+
+  private final PeerFactory peerFactory;
+  // { peerIp : peer }
+  private final ConcurrentHashMap<String, Peer> peers = new ConcurrentHashMap<>();
+  // immutable, rebuilt whenever a peer gains or loses its face
+  private volatile List<Peer> peersWithFace = Collections.emptyList();
+
+  public PeerTable() {
+    this(DEFAULT_PEER_FACTORY);
+  }
+
+  /**
+   * @param peerFactory creates the peers, e.g. on the clock of a simulation
+   */
+  public PeerTable(PeerFactory peerFactory) {
+    this.peerFactory = peerFactory;
+  }
+
+  /**
+   * @return the peer in whatever state, or null if the IP address is unknown
+   */
+  public Peer get(String peerIp) {
+    return peers.get(peerIp);
+  }
+
+  /**
+   * @return the face id of the peer, or -1 if the peer has no face (yet)
+   */
+  public int getFaceId(String peerIp) {
+    Peer peer = peers.get(peerIp);
+    return peer != null && peer.hasFace() ? peer.getFaceId() : -1;
+  }
+
+  /**
+   * @return the peer whose face it is, or null if the face is not the face of any peer
+   */
+  public Peer getByFaceId(int faceId) {
+    for (Peer peer : peersWithFace) {
+      if (peer.getFaceId() == faceId) {
+        return peer;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return immutable snapshot of the peers that have a face
+   */
+  public List<Peer> getPeersWithFace() {
+    return peersWithFace;
+  }
+
+  /**
+   * @return snapshot of all peers, including those whose face is not created yet
+   */
+  public List<Peer> getAllPeers() {
+    return new ArrayList<>(peers.values());
+  }
+
+  /**
+   * Claims the creation of a face towards the peer, adding the peer if it is unknown. Only one
+   * caller gets the claim until the creation fails or the face is lost.
+   *
+   * @return the peer, now CONNECTED, or null if its face exists or is already being created
+   */
+  public Peer claimFaceCreation(String peerIp) {
+    Peer peer = peers.get(peerIp);
+    if (peer == null) {
+      Peer newPeer = peerFactory.create(peerIp);
+      peer = peers.putIfAbsent(peerIp, newPeer);
+      if (peer == null) {
+        peer = newPeer;
+      }
+    }
+    return peer.compareAndSetState(Peer.State.DISCOVERED, Peer.State.CONNECTED) ? peer : null;
+  }
+
+  /**
+   * Completes a claimed face creation.
+   *
+   * @return false if the peer was removed or reset meanwhile, so that the face is not used
+   */
+  public boolean onFaceCreated(Peer peer, int faceId) {
+    peer.setFaceId(faceId);
+    if (peers.get(peer.getIpAddress()) != peer ||
+      !peer.compareAndSetState(Peer.State.CONNECTED, Peer.State.FACE_READY)) {
+      return false;
+    }
+    publishPeersWithFace();
+    return true;
+  }
+
+  /**
+   * Gives up a claimed face creation, so that it can be claimed again.
+   */
+  public void onFaceCreationFailed(Peer peer) {
+    peer.compareAndSetState(Peer.State.CONNECTED, Peer.State.DISCOVERED);
+  }
+
+  /**
+   * Replaces a peer whose face was destroyed with a fresh DISCOVERED peer, dropping the
+   * probe state and the prefixes that went away with the face.
+   *
+   * @return the fresh peer, or null if the given peer was already removed or replaced
+   */
+  public Peer onFaceLost(Peer peer) {
+    Peer freshPeer = peerFactory.create(peer.getIpAddress());
+    freshPeer.setDevice(peer.getDevice());
+    if (!peers.replace(peer.getIpAddress(), peer, freshPeer)) {
+      return null;
+    }
+    publishPeersWithFace();
+    return freshPeer;
+  }
+
+  /**
+   * Removes the peer, unless it was replaced by a newer instance meanwhile.
+   *
+   * @return whether this call removed it
+   */
+  public boolean remove(Peer peer) {
+    if (!peers.remove(peer.getIpAddress(), peer)) {
+      return false;
+    }
+    publishPeersWithFace();
+    return true;
+  }
+
+  public void clear() {
+    peers.clear();
+    publishPeersWithFace();
+  }
+
+  public boolean isEmpty() {
+    return peersWithFace.isEmpty();
+  }
+
+  public int size() {
+    return peers.size();
+  }
+
+  // synchronized so that a rebuild started earlier cannot publish after a later one
+  private synchronized void publishPeersWithFace() {
+    List<Peer> list = new ArrayList<>(peers.size());
+    for (Peer peer : peers.values()) {
+      if (peer.hasFace()) {
+        list.add(peer);
+      }
+    }
+    peersWithFace = Collections.unmodifiableList(list);
+  }
+}
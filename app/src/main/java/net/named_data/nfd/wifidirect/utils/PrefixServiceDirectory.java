@@ -0,0 +1,348 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import android.net.wifi.p2p.WifiP2pDevice;
+import android.net.wifi.p2p.WifiP2pManager;
+import android.net.wifi.p2p.nsd.WifiP2pDnsSdServiceInfo;
+import android.net.wifi.p2p.nsd.WifiP2pDnsSdServiceRequest;
+import android.util.Base64;
+import android.util.Log;
+
+import net.named_data.jndn.Name;
+import net.named_data.nfd.wifidirect.model.PrefixBloomFilter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publishes and collects, through Wi-Fi P2P DNS-SD service discovery, which prefixes devices
+ * serve, before any group is formed.
+ * <p>
+ * Each device publishes a service of type SERVICE_TYPE whose TXT record holds a
+ * PrefixBloomFilter of its advertisable prefixes. The records of nearby devices are read while
+ * discovering services, and kept by device address.
+ * <p>
+ * Peer discovery, service discovery and changes to the local service all go through the same
+ * P2P find, and one issued while another is in progress fails with BUSY and restarts the scan.
+ * update() thus starts at most one of them per discovery cycle, and none while the previous
+ * one did not complete: the filter is republished after stopping the running find, and
+ * services are discovered only for devices whose filter is missing, with a backoff.
+ */
+public class PrefixServiceDirectory {
+  private static final String TAG = "PrefixServiceDirectory";
+
+  public static final String SERVICE_TYPE = "_ndn._udp";
+  // records are told apart by their source device, so all devices use the same instance name
+  private static final String SERVICE_INSTANCE = "ndn";
+  // TXT record keys
+  private static final String KEY_VERSION = "v";
+  private static final String KEY_FILTER = "bf";
+  private static final String RECORD_VERSION = "1";
+
+  // delay before discovering services again while some devices have not published a filter,
+  // doubled after each try, and reset when the set of such devices changes
+  private static final long MIN_SERVICE_DISCOVERY_BACKOFF = 10000;
+  private static final long MAX_SERVICE_DISCOVERY_BACKOFF = 320000;
+  // a P2P operation not completed within this delay is given up
+  private static final long OPERATION_TIMEOUT = 30000;
+
+  private WifiP2pManager wifiP2pManager = null;
+  private WifiP2pManager.Channel channel = null;
+  private boolean isRequestAdded = false;
+  private PrefixBloomFilter publishedFilter = null;
+
+  // the P2P operation started by update(), if any
+  private boolean isOperationPending = false;
+  private long operationStartTime = 0;
+
+  // devices without a filter at the last service discovery
+  private Set<String> lastMissingDevices = Collections.emptySet();
+  private long lastServiceDiscoveryTime = 0;
+  private long serviceDiscoveryBackoff = MIN_SERVICE_DISCOVERY_BACKOFF;
+
+  // { deviceAddress : filter of the device }, written by the framework's callbacks
+  private final ConcurrentHashMap<String, PrefixBloomFilter> filtersByDevice = new ConcurrentHashMap<>();
+
+  private final WifiP2pManager.DnsSdTxtRecordListener txtRecordListener =
+    new WifiP2pManager.DnsSdTxtRecordListener() {
+      @Override
+      public void onDnsSdTxtRecordAvailable(String fullDomainName, Map<String, String> txtRecordMap,
+                                            WifiP2pDevice srcDevice) {
+        if (!fullDomainName.contains(SERVICE_TYPE) || !RECORD_VERSION.equals(txtRecordMap.get(KEY_VERSION))) {
+          return;
+        }
+        String encoded = txtRecordMap.get(KEY_FILTER);
+        if (encoded == null) {
+          return;
+        }
+        try {
+          PrefixBloomFilter filter = PrefixBloomFilter.fromBytes(Base64.decode(encoded, Base64.NO_WRAP));
+          filtersByDevice.put(srcDevice.deviceAddress, filter);
+          Log.d(TAG, "Got prefix filter of " + srcDevice.deviceAddress);
+        } catch (IllegalArgumentException e) {
+          Log.e(TAG, "Malformed prefix filter from " + srcDevice.deviceAddress + ": " + e.getMessage());
+        }
+      }
+    };
+
+  /**
+   * Starts listening for the service records of nearby devices.
+   *
+   * @param wifiP2pManager the WifiP2pManager
+   * @param channel        the WifiP2p Channel
+   */
+  public synchronized void start(WifiP2pManager wifiP2pManager, WifiP2pManager.Channel channel) {
+    this.wifiP2pManager = wifiP2pManager;
+    this.channel = channel;
+    publishedFilter = null;
+    isRequestAdded = false;
+    isOperationPending = false;
+    resetServiceDiscovery();
+    wifiP2pManager.setDnsSdResponseListeners(channel, null, txtRecordListener);
+  }
+
+  /**
+   * Runs one discovery cycle: publishes the filter of the given prefixes if it changed, or else
+   * discovers services if some of the given devices have not published a filter and the
+   * backoff elapsed.
+   *
+   * @param devices  the devices currently discovered
+   * @param prefixes the prefixes this device can serve
+   * @param now      the current time, in milliseconds
+   * @return true if a P2P operation was started or is still in progress, in which case the
+   * caller must not start another one, e.g. a peer discovery, in this cycle
+   */
+  public synchronized boolean update(Collection<WifiP2pDevice> devices, Collection<Name> prefixes, long now) {
+    if (wifiP2pManager == null) {
+      return false;
+    }
+    if (isOperationPending) {
+      if (now - operationStartTime < OPERATION_TIMEOUT) {
+        return true;
+      }
+      Log.e(TAG, "P2P operation did not complete, giving up on it");
+      isOperationPending = false;
+    }
+
+    PrefixBloomFilter filter = new PrefixBloomFilter(prefixes);
+    if (!filter.equals(publishedFilter)) {
+      startOperation(now);
+      publish(filter);
+      return true;
+    }
+
+    Set<String> missingDevices = new HashSet<>();
+    for (WifiP2pDevice device : devices) {
+      if (!filtersByDevice.containsKey(device.deviceAddress)) {
+        missingDevices.add(device.deviceAddress);
+      }
+    }
+    if (missingDevices.isEmpty()) {
+      return false;
+    }
+    if (!missingDevices.equals(lastMissingDevices)) {
+      lastMissingDevices = missingDevices;
+      serviceDiscoveryBackoff = MIN_SERVICE_DISCOVERY_BACKOFF;
+    } else if (now - lastServiceDiscoveryTime < serviceDiscoveryBackoff) {
+      return false;
+    } else {
+      serviceDiscoveryBackoff = Math.min(2 * serviceDiscoveryBackoff, MAX_SERVICE_DISCOVERY_BACKOFF);
+    }
+    lastServiceDiscoveryTime = now;
+    startOperation(now);
+    discoverServices();
+    return true;
+  }
+
+  /**
+   * @param deviceAddress the device's P2P MAC address
+   * @return the prefix filter the device published, or null if none was received
+   */
+  public PrefixBloomFilter getFilter(String deviceAddress) {
+    return filtersByDevice.get(deviceAddress);
+  }
+
+  /**
+   * Forgets the filters of devices that are not among the given ones anymore.
+   *
+   * @param devices the devices currently discovered
+   */
+  public void retainDevices(Collection<WifiP2pDevice> devices) {
+    HashMap<String, Boolean> addresses = new HashMap<>();
+    for (WifiP2pDevice device : devices) {
+      addresses.put(device.deviceAddress, Boolean.TRUE);
+    }
+    filtersByDevice.keySet().retainAll(addresses.keySet());
+  }
+
+  /**
+   * Stops publishing and forgets all received filters.
+   */
+  public synchronized void stop() {
+    if (wifiP2pManager != null) {
+      wifiP2pManager.clearLocalServices(channel, null);
+      wifiP2pManager.clearServiceRequests(channel, null);
+    }
+    wifiP2pManager = null;
+    channel = null;
+    publishedFilter = null;
+    isRequestAdded = false;
+    isOperationPending = false;
+    resetServiceDiscovery();
+    filtersByDevice.clear();
+  }
+
+  private void resetServiceDiscovery() {
+    lastMissingDevices = Collections.emptySet();
+    lastServiceDiscoveryTime = 0;
+    serviceDiscoveryBackoff = MIN_SERVICE_DISCOVERY_BACKOFF;
+  }
+
+  private void startOperation(long now) {
+    isOperationPending = true;
+    operationStartTime = now;
+  }
+
+  private synchronized void endOperation() {
+    isOperationPending = false;
+  }
+
+  private void publish(final PrefixBloomFilter filter) {
+    HashMap<String, String> record = new HashMap<>();
+    record.put(KEY_VERSION, RECORD_VERSION);
+    record.put(KEY_FILTER, Base64.encodeToString(filter.toBytes(), Base64.NO_WRAP));
+    final WifiP2pDnsSdServiceInfo serviceInfo = WifiP2pDnsSdServiceInfo.newInstance(
+      SERVICE_INSTANCE, SERVICE_TYPE, record);
+
+    // a device publishes one record, replaced as a whole once the running find is stopped
+    publishedFilter = filter;
+    wifiP2pManager.stopPeerDiscovery(channel, new WifiP2pManager.ActionListener() {
+      @Override
+      public void onSuccess() {
+        clearLocalServices(serviceInfo, filter);
+      }
+
+      @Override
+      public void onFailure(int reason) {
+        // no find was running
+        clearLocalServices(serviceInfo, filter);
+      }
+    });
+  }
+
+  private synchronized void clearLocalServices(final WifiP2pDnsSdServiceInfo serviceInfo,
+                                               final PrefixBloomFilter filter) {
+    if (wifiP2pManager == null || publishedFilter != filter) {
+      return;   // stopped
+    }
+    wifiP2pManager.clearLocalServices(channel, new WifiP2pManager.ActionListener() {
+      @Override
+      public void onSuccess() {
+        addLocalService(serviceInfo, filter);
+      }
+
+      @Override
+      public void onFailure(int reason) {
+        Log.e(TAG, "Unable to clear local services, reason: " +
+          WDBroadcastReceiver.getWifiP2pManagerMessageFromReasonCode(reason));
+        onPublishFailed(filter);
+      }
+    });
+  }
+
+  private synchronized void addLocalService(WifiP2pDnsSdServiceInfo serviceInfo, final PrefixBloomFilter filter) {
+    if (wifiP2pManager == null || publishedFilter != filter) {
+      return;   // stopped
+    }
+    wifiP2pManager.addLocalService(channel, serviceInfo, new WifiP2pManager.ActionListener() {
+      @Override
+      public void onSuccess() {
+        Log.d(TAG, "Published prefix filter");
+        endOperation();
+      }
+
+      @Override
+      public void onFailure(int reason) {
+        Log.e(TAG, "Unable to publish prefix filter, reason: " +
+          WDBroadcastReceiver.getWifiP2pManagerMessageFromReasonCode(reason));
+        onPublishFailed(filter);
+      }
+    });
+  }
+
+  private synchronized void onPublishFailed(PrefixBloomFilter filter) {
+    // publish again in the next cycle
+    if (publishedFilter == filter) {
+      publishedFilter = null;
+    }
+    isOperationPending = false;
+  }
+
+  private void discoverServices() {
+    if (isRequestAdded) {
+      startServiceDiscovery();
+      return;
+    }
+    wifiP2pManager.addServiceRequest(channel, WifiP2pDnsSdServiceRequest.newInstance(SERVICE_TYPE),
+      new WifiP2pManager.ActionListener() {
+        @Override
+        public void onSuccess() {
+          Log.d(TAG, "Added service request for " + SERVICE_TYPE);
+          synchronized (PrefixServiceDirectory.this) {
+            if (wifiP2pManager == null) {
+              return;   // stopped
+            }
+            isRequestAdded = true;
+            startServiceDiscovery();
+          }
+        }
+
+        @Override
+        public void onFailure(int reason) {
+          Log.e(TAG, "Unable to add service request, reason: " +
+            WDBroadcastReceiver.getWifiP2pManagerMessageFromReasonCode(reason));
+          endOperation();
+        }
+      });
+  }
+
+  private void startServiceDiscovery() {
+    wifiP2pManager.discoverServices(channel, new WifiP2pManager.ActionListener() {
+      @Override
+      public void onSuccess() {
+        Log.d(TAG, "Success on discovering services");
+        endOperation();
+      }
+
+      @Override
+      public void onFailure(int reason) {
+        Log.d(TAG, "Fail discover services, reason: " +
+          WDBroadcastReceiver.getWifiP2pManagerMessageFromReasonCode(reason));
+        endOperation();
+      }
+    });
+  }
+}
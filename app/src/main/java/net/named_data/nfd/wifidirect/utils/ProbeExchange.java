@@ -0,0 +1,138 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import net.named_data.jndn.Name;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.nfd.wifidirect.model.AdvertisedPrefixSet;
+import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The probe exchange between two peers, without Android or NFD dependencies, so that the
+ * probe callbacks on devices and the simulation run the same code.
+ * <p>
+ * A probe Interest is named
+ * /localhop/wifidirect/&lt;responderIp&gt;/&lt;requesterIp&gt;/probe/&lt;knownVersion&gt;, where
+ * knownVersion is the version of the responder's advertised prefixes the requester has.
+ */
+public class ProbeExchange {
+  private ProbeExchange() {
+  }
+
+  /**
+   * Returns the name of a probe Interest.
+   *
+   * @param responderIp  IP address of the probed peer
+   * @param requesterIp  IP address of this device
+   * @param knownVersion version of the peer's prefixes this device has
+   */
+  public static Name makeProbeName(String responderIp, String requesterIp, long knownVersion) {
+    return new Name(NDNController.PROBE_PREFIX + "/" + responderIp + "/" + requesterIp + "/probe")
+      .appendVersion(knownVersion);
+  }
+
+  public static String getResponderIp(Name probeName) {
+    return probeName.get(-4).toEscapedString();
+  }
+
+  public static String getRequesterIp(Name probeName) {
+    return probeName.get(-3).toEscapedString();
+  }
+
+  /**
+   * @return the version of the responder's prefixes the requester has
+   * @throws EncodingException if the name is not the name of a probe Interest
+   */
+  public static long getKnownVersion(Name probeName) throws EncodingException {
+    if (probeName.size() != 6) {
+      throw new EncodingException("unexpected number of components");
+    }
+    return probeName.get(-1).toVersion();
+  }
+
+  /**
+   * Responder side: answers with what changed since the version the requester has. A requester
+   * that is not a peer yet (it has no face) is not tracked and gets the full set every time.
+   *
+   * @param requester    the requesting peer, or null if it is not a peer yet
+   * @param prefixes     the prefixes advertised to the requester
+   * @param knownVersion version of our prefixes the requester has
+   */
+  public static ProbeResponse respond(Peer requester, Map<Name, ProbeResponse.PrefixEntry> prefixes,
+                                      long knownVersion) {
+    if (requester != null) {
+      return requester.getPrefixesAdvertisedToPeer().advertise(prefixes, knownVersion);
+    }
+    ProbeResponse response = new AdvertisedPrefixSet().advertise(prefixes, AdvertisedPrefixSet.NO_VERSION);
+    response.setAdvertisementVersion(AdvertisedPrefixSet.NO_VERSION);
+    return response;
+  }
+
+  /**
+   * Requester side: updates what we know of the peer's prefixes from its response, and
+   * collects the route changes towards it. The routes follow that view, so there is no need
+   * to consult the FIB.
+   * <p>
+   * New prefixes are registered one more hop away than from the peer; poisoned prefixes and
+   * those out of radius are no longer routed through the peer. A change, or a delta that does
+   * not apply, marks the peer as changed so that it is probed again soon.
+   *
+   * @param peer         the responding peer
+   * @param response     its response
+   * @param toRegister   receives { prefix : cost } of the routes to register on the peer's face
+   * @param toUnregister receives the prefixes to unregister from the peer's face
+   * @return false if the response is a delta that does not apply; the next probe then asks for
+   * a full snapshot
+   */
+  public static boolean onResponse(Peer peer, ProbeResponse response, Map<Name, Integer> toRegister,
+                                   List<Name> toUnregister) {
+    AdvertisedPrefixSet known = peer.getPrefixesAdvertisedByPeer();
+    if (response.isUnchanged() && response.getAdvertisementVersion() == known.getVersion()) {
+      return true;
+    }
+
+    List<ProbeResponse.PrefixEntry> added = new ArrayList<>();
+    List<Name> removed = new ArrayList<>();
+    if (!known.apply(response, added, removed)) {
+      // the routes towards the peer are stale until the full snapshot, so probe it again soon
+      peer.onPrefixesChanged();
+      return false;
+    }
+    if (!added.isEmpty() || !removed.isEmpty()) {
+      peer.onPrefixesChanged();
+    }
+
+    for (ProbeResponse.PrefixEntry entry : added) {
+      int cost = entry.getRouteCost();
+      if (cost == -1) {
+        removed.add(entry.getPrefix());
+      } else {
+        toRegister.put(entry.getPrefix(), cost);
+      }
+    }
+    toUnregister.addAll(removed);
+    return true;
+  }
+}
@@ -0,0 +1,144 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import net.named_data.nfd.wifidirect.model.Peer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wakes the prober up when the next probe of any peer is due, and at no other time.
+ * <p>
+ * Each peer keeps its own adaptive schedule (see Peer). This class keeps one wakeup pending,
+ * at the earliest next probe time among the peers, and none while there are no peers, so an
+ * idle device is not woken up for probing at all. The schedule is re-armed whenever it may
+ * have moved: after probes are sent, answered or timed out, and when a peer is added.
+ * Timers cannot be cancelled, so a wakeup superseded by an earlier one is ignored when it
+ * fires.
+ * <p>
+ * All methods must be called on the thread of the TaskScheduler.
+ */
+public class ProbeScheduler {
+
+  /**
+   * Sends the probes.
+   */
+  public interface Prober {
+    /**
+     * @return the peers to probe, i.e. those that have a face
+     */
+    List<Peer> getPeers();
+
+    /**
+     * Sends a probe to each of the peers, whose probe is due, and calls Peer.onProbeSent().
+     *
+     * @param duePeers not empty
+     */
+    void sendProbes(List<Peer> duePeers, long now);
+  }
+
+  private final TaskScheduler scheduler;
+  private final Prober prober;
+  private boolean isRunning = false;
+  private long wakeupTime = -1;   // time of the pending wakeup, -1 if none
+
+  public ProbeScheduler(TaskScheduler scheduler, Prober prober) {
+    this.scheduler = scheduler;
+    this.prober = prober;
+  }
+
+  public void start() {
+    isRunning = true;
+    reschedule();
+  }
+
+  /**
+   * Stops probing; the pending wakeup, if any, does nothing when it fires.
+   */
+  public void stop() {
+    isRunning = false;
+    wakeupTime = -1;
+  }
+
+  /**
+   * Arms the wakeup for the earliest next probe, unless one at least as early is pending.
+   * Called after anything that may bring a probe forward, e.g. a new peer.
+   */
+  public void reschedule() {
+    if (!isRunning) {
+      return;
+    }
+    long next = Long.MAX_VALUE;
+    for (Peer peer : prober.getPeers()) {
+      next = Math.min(next, peer.getNextProbeTime());
+    }
+    if (next == Long.MAX_VALUE || (wakeupTime != -1 && wakeupTime <= next)) {
+      return;
+    }
+
+    final long time = next;
+    wakeupTime = time;
+    scheduler.schedule(Math.max(0, time - scheduler.now()), new Runnable() {
+      @Override
+      public void run() {
+        if (wakeupTime != time) {
+          return;   // superseded, or probing stopped
+        }
+        wakeupTime = -1;
+        probeDuePeers();
+      }
+    });
+  }
+
+  /**
+   * Updates the peer's schedule with a response to its probe.
+   */
+  public void onProbeResponse(Peer peer) {
+    peer.onProbeResponse(scheduler.now());
+    reschedule();
+  }
+
+  /**
+   * Updates the peer's schedule with a timeout of its probe.
+   *
+   * @return whether the peer is now considered failed, see Peer.isFailed()
+   */
+  public boolean onProbeTimeout(Peer peer) {
+    long now = scheduler.now();
+    peer.onProbeTimeout(now);
+    reschedule();
+    return peer.isFailed(now);
+  }
+
+  private void probeDuePeers() {
+    long now = scheduler.now();
+    List<Peer> duePeers = new ArrayList<>();
+    for (Peer peer : prober.getPeers()) {
+      if (peer.isProbeDue(now)) {
+        duePeers.add(peer);
+      }
+    }
+    if (!duePeers.isEmpty()) {
+      prober.sendProbes(duePeers, now);
+    }
+    reschedule();
+  }
+}
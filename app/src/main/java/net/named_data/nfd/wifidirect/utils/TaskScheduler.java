@@ -17,19 +17,22 @@
  * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package net.named_data.nfd.wifidirect.runnable;
+package net.named_data.nfd.wifidirect.utils;
 
-import net.named_data.nfd.wifidirect.utils.NDNController;
-
-public class FaceEventProcessRunnable implements Runnable {
-  private static final String TAG = "FaceEventProcess";
+/**
+ * Clock and one-shot timers of the thread that runs the Wi-Fi Direct probing logic.
+ * <p>
+ * On a device, tasks run on the FaceEventLoop thread and time is
+ * SystemClock.elapsedRealtime(); simulations run them on a virtual clock.
+ */
+public interface TaskScheduler {
+  /**
+   * @return current time, in ms
+   */
+  long now();
 
-  @Override
-  public void run() {
-    try {
-      NDNController.getInstance().getLocalHostFace().processEvents();
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
-  }
+  /**
+   * Runs the task once, after the delay in ms.
+   */
+  void schedule(long delay, Runnable task);
 }
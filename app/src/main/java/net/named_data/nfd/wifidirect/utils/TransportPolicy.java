@@ -0,0 +1,80 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.utils;
+
+import net.named_data.nfd.wifidirect.model.Peer;
+
+/**
+ * Which transport the face towards a peer should use, given how the link to it performs.
+ * <p>
+ * Faces start on UDP with NDNLP reliability, which recovers occasional losses hop by hop and
+ * is cheapest for the small probe exchange. A face moves to TCP when the probe loss rate shows
+ * a link too lossy for link-layer retransmissions to keep up, or when the face carries bulk
+ * traffic, e.g. large segmented objects, that benefits from TCP's congestion control. It moves
+ * back to UDP only well below both thresholds, so that the choice does not oscillate.
+ * <p>
+ * Pure function of its inputs, without Android or NFD dependencies.
+ */
+public class TransportPolicy {
+  /**
+   * Probe loss rate above which a UDP face moves to TCP.
+   */
+  public static final double MAX_UDP_LOSS_RATE = 0.25;
+
+  /**
+   * Probe loss rate below which a TCP face may move back to UDP.
+   */
+  public static final double MAX_LOSS_RATE_BACK_TO_UDP = 0.05;
+
+  /**
+   * Traffic, in bytes per second in both directions, above which a UDP face moves to TCP.
+   */
+  public static final double MAX_UDP_THROUGHPUT = 256 * 1024;
+
+  /**
+   * Traffic, in bytes per second in both directions, below which a TCP face may move back
+   * to UDP.
+   */
+  public static final double MAX_THROUGHPUT_BACK_TO_UDP = 32 * 1024;
+
+  private TransportPolicy() {
+  }
+
+  /**
+   * @param current    transport of the peer's face
+   * @param lossRate   probe loss rate of the peer, see Peer.getProbeLossRate()
+   * @param throughput traffic on the peer's face, in bytes per second, or -1 if not measured
+   * @return the transport the peer's face should use
+   */
+  public static Peer.Transport select(Peer.Transport current, double lossRate, double throughput) {
+    switch (current) {
+      case UDP:
+        return lossRate > MAX_UDP_LOSS_RATE || throughput > MAX_UDP_THROUGHPUT ?
+          Peer.Transport.TCP : Peer.Transport.UDP;
+      case TCP:
+        // a face whose traffic is not measured yet stays where it is
+        return lossRate < MAX_LOSS_RATE_BACK_TO_UDP && throughput >= 0 &&
+          throughput < MAX_THROUGHPUT_BACK_TO_UDP ? Peer.Transport.UDP : Peer.Transport.TCP;
+      default:
+        return current;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.utils;
+
+import android.net.wifi.WpsInfo;
+import android.net.wifi.p2p.WifiP2pConfig;
+import android.net.wifi.p2p.WifiP2pManager;
+import android.util.Log;
+
+/**
+ * P2pGroupManager on top of the platform's WifiP2pManager.
+ */
+public class WifiP2pGroupManager implements P2pGroupManager {
+
+  private static final String TAG = "WifiP2pGroupManager";
+
+  private final WifiP2pManager wifiP2pManager;
+  private final WifiP2pManager.Channel channel;
+  private final WifiP2pManager.ConnectionInfoListener connectionInfoListener;
+
+  public WifiP2pGroupManager(WifiP2pManager wifiP2pManager, WifiP2pManager.Channel channel,
+                             WifiP2pManager.ConnectionInfoListener connectionInfoListener) {
+    this.wifiP2pManager = wifiP2pManager;
+    this.channel = channel;
+    this.connectionInfoListener = connectionInfoListener;
+  }
+
+  @Override
+  public void discoverPeers() {
+    wifiP2pManager.discoverPeers(channel, new LoggingActionListener("discover peers"));
+  }
+
+  @Override
+  public void connect(String deviceAddress) {
+    WifiP2pConfig config = new WifiP2pConfig();
+    config.deviceAddress = deviceAddress;
+    config.wps.setup = WpsInfo.PBC;
+    // on success, onReceive() in WDBroadcastReceiver will receive an intent
+    wifiP2pManager.connect(channel, config, new LoggingActionListener("initiate connection"));
+  }
+
+  @Override
+  public void cancelConnect() {
+    wifiP2pManager.cancelConnect(channel, new LoggingActionListener("cancel negotiation"));
+  }
+
+  @Override
+  public void removeGroup() {
+    wifiP2pManager.removeGroup(channel, new LoggingActionListener("remove self from WifiP2p group"));
+  }
+
+  @Override
+  public void requestConnectionInfo() {
+    wifiP2pManager.requestConnectionInfo(channel, connectionInfoListener);
+  }
+
+  private static class LoggingActionListener implements WifiP2pManager.ActionListener {
+    private final String operation;
+
+    LoggingActionListener(String operation) {
+      this.operation = operation;
+    }
+
+    @Override
+    public void onSuccess() {
+      Log.d(TAG, "Success on " + operation);
+    }
+
+    @Override
+    public void onFailure(int reasonCode) {
+      String reasonString = WDBroadcastReceiver
+        .getWifiP2pManagerMessageFromReasonCode(reasonCode);
+      Log.e(TAG, "Unable to " + operation + ", reason: " + reasonString);
+    }
+  }
+}
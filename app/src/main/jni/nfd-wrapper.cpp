@@ -19,10 +19,13 @@
 
 #include "nfd-wrapper.hpp"
 
+#include <core/version.hpp>
 #include <daemon/common/config-file.hpp>
 #include <daemon/common/global.hpp>
 #include <daemon/common/logger.hpp>
 #include <daemon/common/privilege-helper.hpp>
+#include <daemon/fw/face-table.hpp>
+#include <daemon/fw/forwarder.hpp>
 #include <daemon/nfd.hpp>
 #include <daemon/rib/service.hpp>
 
@@ -31,14 +34,128 @@
 
 #include <boost/property_tree/info_parser.hpp>
 
+#include <array>
+#include <atomic>
+#include <condition_variable>
+#include <functional>
 #include <thread>
 #include <mutex>
+#include <type_traits>
 
 NFD_LOG_INIT(NfdWrapper);
 
 namespace nfd {
 
 
+/**
+ * \brief Strategy choices are given as tables.strategy_choice./prefix, where prefix may
+ *        contain dots
+ */
+static const std::string STRATEGY_CHOICE_KEY = "tables.strategy_choice.";
+
+/**
+ * \brief Overlay startNfd/reconfigureNfd parameters onto a configuration
+ *
+ * Keys are paths in the configuration tree, such as tables.cs_max_packets.  The homePath
+ * parameter is not part of the configuration and is skipped.
+ */
+static void
+applyParams(ConfigSection& config, const std::map<std::string, std::string>& params)
+{
+  for (const auto& pair : params) {
+    if (pair.first == "homePath")
+      continue;
+
+    if (pair.first.compare(0, STRATEGY_CHOICE_KEY.size(), STRATEGY_CHOICE_KEY) == 0) {
+      std::string prefix = pair.first.substr(STRATEGY_CHOICE_KEY.size());
+      ConfigSection& strategyChoice = config.get_child("tables.strategy_choice");
+      // '\n' cannot appear in a name URI, so the prefix is a single path element
+      strategyChoice.put(ConfigSection::path_type(prefix, '\n'), pair.second);
+      continue;
+    }
+
+    config.put(pair.first, pair.second);
+  }
+}
+
+/**
+ * \brief Indices of the counter snapshot, see NfdService.COUNTER_* in Java
+ */
+enum {
+  COUNTER_START_TIMESTAMP,
+  COUNTER_CURRENT_TIMESTAMP,
+  COUNTER_N_NAME_TREE_ENTRIES,
+  COUNTER_N_FIB_ENTRIES,
+  COUNTER_N_PIT_ENTRIES,
+  COUNTER_N_MEASUREMENTS_ENTRIES,
+  COUNTER_N_CS_ENTRIES,
+  COUNTER_N_IN_INTERESTS,
+  COUNTER_N_OUT_INTERESTS,
+  COUNTER_N_IN_DATA,
+  COUNTER_N_OUT_DATA,
+  COUNTER_N_IN_NACKS,
+  COUNTER_N_OUT_NACKS,
+  COUNTER_N_SATISFIED_INTERESTS,
+  COUNTER_N_UNSATISFIED_INTERESTS,
+  COUNTER_N_CS_HITS,
+  COUNTER_N_CS_MISSES,
+  N_COUNTERS
+};
+
+/**
+ * \brief Layout of one face in the face counter snapshot, see NfdService.FACE_COUNTER_* in Java
+ */
+enum {
+  FACE_COUNTER_FACE_ID,
+  FACE_COUNTER_N_IN_INTERESTS,
+  FACE_COUNTER_N_OUT_INTERESTS,
+  FACE_COUNTER_N_IN_DATA,
+  FACE_COUNTER_N_OUT_DATA,
+  FACE_COUNTER_N_IN_NACKS,
+  FACE_COUNTER_N_OUT_NACKS,
+  FACE_COUNTER_N_IN_BYTES,
+  FACE_COUNTER_N_OUT_BYTES,
+  FACE_COUNTER_STRIDE
+};
+
+/**
+ * \brief Access to a private data member, legal through explicit template instantiation
+ *
+ * Nfd does not expose its Forwarder and FaceTable, and NFD has no other in-process way to read
+ * their counters.  The members are not part of any API, so this is tied to the NFD version the
+ * app is built against (see Android.mk): a renamed or retyped member fails the instantiations
+ * below, and the static_assert makes an NFD upgrade check that the members still hold the same
+ * objects.
+ */
+static_assert(NFD_VERSION_MAJOR == 0 && NFD_VERSION_MINOR == 7 && NFD_VERSION_PATCH == 1,
+              "Nfd::m_forwarder and Nfd::m_faceTable are read for NFD 0.7.1, check them for this version");
+
+template<typename Tag, typename Tag::type Member>
+struct PrivateMemberAccessor
+{
+  friend typename Tag::type
+  get(Tag)
+  {
+    return Member;
+  }
+};
+
+struct NfdForwarderTag
+{
+  using type = unique_ptr<Forwarder> Nfd::*;
+  friend type get(NfdForwarderTag);
+};
+
+template struct PrivateMemberAccessor<NfdForwarderTag, &Nfd::m_forwarder>;
+
+struct NfdFaceTableTag
+{
+  using type = unique_ptr<FaceTable> Nfd::*;
+  friend type get(NfdFaceTableTag);
+};
+
+template struct PrivateMemberAccessor<NfdFaceTableTag, &Nfd::m_faceTable>;
+
 class Runner
 {
 public:
@@ -112,17 +229,30 @@ public:
     // now, the start procedure can update config if needed
   }
 
+  /**
+   * \brief Create the forwarder and the RIB service
+   * \param configFile where the configuration is saved, so that the forwarder can reload it
+   */
   void
-  finishInit()
+  finishInit(const std::string& configFile)
   {
-    m_nfd.reset(new Nfd(m_config, m_keyChain));
+    m_configFile = configFile;
+    boost::property_tree::write_info(m_configFile, m_config);
+    m_startTimestamp = time::toUnixTimestamp(time::system_clock::now()).count();
+
+    m_nfd.reset(new Nfd(m_configFile, m_keyChain));
     m_ribService.reset(new rib::Service(m_config, m_keyChain));
 
     m_nfd->initialize();
   }
 
+  /**
+   * \brief Run the io_service until stop() is called
+   * \param onReady invoked from within the running io_service, i.e., once all faces are open
+   *                and the management socket accepts connections
+   */
   void
-  run()
+  run(const std::function<void()>& onReady)
   {
     {
       std::unique_lock<std::mutex> lock(m_pointerMutex);
@@ -132,12 +262,14 @@ public:
     setMainIoService(m_io);
     setRibIoService(m_io);
 
+    m_io->post(onReady);
     m_io->run();
     m_io->reset();
 
     m_ribService.reset();
     m_nfd.reset();
 
+    std::unique_lock<std::mutex> lock(m_pointerMutex);
     m_io = nullptr;
   }
 
@@ -157,7 +289,228 @@ public:
     return m_config;
   }
 
+  /**
+   * \brief Apply a partial configuration to the running forwarder
+   *
+   * The update is merged into the configuration on the io_service thread, saved, and the
+   * forwarder reloads it in place (tables, strategy choices, face system, authorizations),
+   * keeping existing faces, routes, and PIT entries.  If the merged configuration is rejected,
+   * the previous configuration is restored.
+   *
+   * \return false if NFD is not running
+   */
+  bool
+  reconfigure(const std::map<std::string, std::string>& update)
+  {
+    std::unique_lock<std::mutex> lock(m_pointerMutex);
+    if (m_io == nullptr) {
+      return false;
+    }
+
+    m_io->post([this, update] {
+        if (m_nfd == nullptr) {
+          return;
+        }
+
+        ConfigSection oldConfig = m_config;
+        try {
+          applyParams(m_config, update);
+          boost::property_tree::write_info(m_configFile, m_config);
+          m_nfd->reloadConfigFile();
+          NFD_LOG_INFO("NFD reconfigured");
+        }
+        catch (const std::exception& e) {
+          NFD_LOG_ERROR("Cannot reconfigure NFD: " << e.what());
+          m_config = oldConfig;
+          try {
+            boost::property_tree::write_info(m_configFile, m_config);
+            m_nfd->reloadConfigFile();
+          }
+          catch (const std::exception& restoreError) {
+            NFD_LOG_ERROR("Cannot restore NFD configuration: " << restoreError.what());
+          }
+        }
+      });
+    return true;
+  }
+
+  /**
+   * \brief Take a snapshot of the forwarder counters on the io_service thread
+   * \param[out] counters array of N_COUNTERS elements, indexed by COUNTER_*
+   * \return false if NFD is not running or did not respond in time
+   */
+  bool
+  readCounters(int64_t* counters)
+  {
+    return readOnIoThread(&Runner::fillCounters, [this, counters] {
+        std::copy(m_counters.begin(), m_counters.end(), counters);
+      });
+  }
+
+  /**
+   * \brief Take a snapshot of the counters of every face on the io_service thread
+   * \param sink invoked as sink(counters, nFaces) while the snapshot is valid, with
+   *             FACE_COUNTER_STRIDE elements per face indexed by FACE_COUNTER_*
+   * \return false if NFD is not running or did not respond in time
+   */
+  template<typename Sink>
+  bool
+  readFaceCounters(const Sink& sink)
+  {
+    return readOnIoThread(&Runner::fillFaceCounters, [this, &sink] {
+        sink(m_faceCounters.data(), m_faceCounters.size() / FACE_COUNTER_STRIDE);
+      });
+  }
+
 private:
+  using Reader = void (Runner::*)();
+
+  /**
+   * \brief Handler that reads a snapshot, allocated in storage owned by the Runner
+   *
+   * Only one read is in flight at a time, except for a handler left behind by a timed out read,
+   * so the storage is reused by every read and the heap is used only while such a handler is
+   * pending.
+   */
+  struct ReadHandler
+  {
+    Runner* runner;
+    Reader reader;
+    uint64_t request;
+
+    void
+    operator()() const
+    {
+      runner->onRead(reader, request);
+    }
+
+    static void*
+    allocate(std::size_t size, Runner& runner)
+    {
+      if (size <= sizeof(runner.m_handlerStorage) && !runner.m_isHandlerStorageInUse.exchange(true)) {
+        return &runner.m_handlerStorage;
+      }
+      return ::operator new(size);
+    }
+
+    static void
+    deallocate(void* pointer, Runner& runner)
+    {
+      if (pointer == &runner.m_handlerStorage) {
+        runner.m_isHandlerStorageInUse = false;
+      }
+      else {
+        ::operator delete(pointer);
+      }
+    }
+
+    friend void*
+    asio_handler_allocate(std::size_t size, ReadHandler* handler)
+    {
+      return allocate(size, *handler->runner);
+    }
+
+    friend void
+    asio_handler_deallocate(void* pointer, std::size_t, ReadHandler* handler)
+    {
+      deallocate(pointer, *handler->runner);
+    }
+  };
+
+  void
+  fillCounters()
+  {
+    const Forwarder& fw = *((*m_nfd).*get(NfdForwarderTag()));
+    const ForwarderCounters& c = fw.getCounters();
+    m_counters[COUNTER_START_TIMESTAMP] = m_startTimestamp;
+    m_counters[COUNTER_CURRENT_TIMESTAMP] = time::toUnixTimestamp(time::system_clock::now()).count();
+    m_counters[COUNTER_N_NAME_TREE_ENTRIES] = fw.getNameTree().size();
+    m_counters[COUNTER_N_FIB_ENTRIES] = fw.getFib().size();
+    m_counters[COUNTER_N_PIT_ENTRIES] = fw.getPit().size();
+    m_counters[COUNTER_N_MEASUREMENTS_ENTRIES] = fw.getMeasurements().size();
+    m_counters[COUNTER_N_CS_ENTRIES] = fw.getCs().size();
+    m_counters[COUNTER_N_IN_INTERESTS] = c.nInInterests;
+    m_counters[COUNTER_N_OUT_INTERESTS] = c.nOutInterests;
+    m_counters[COUNTER_N_IN_DATA] = c.nInData;
+    m_counters[COUNTER_N_OUT_DATA] = c.nOutData;
+    m_counters[COUNTER_N_IN_NACKS] = c.nInNacks;
+    m_counters[COUNTER_N_OUT_NACKS] = c.nOutNacks;
+    m_counters[COUNTER_N_SATISFIED_INTERESTS] = c.nSatisfiedInterests;
+    m_counters[COUNTER_N_UNSATISFIED_INTERESTS] = c.nUnsatisfiedInterests;
+    m_counters[COUNTER_N_CS_HITS] = c.nCsHits;
+    m_counters[COUNTER_N_CS_MISSES] = c.nCsMisses;
+  }
+
+  void
+  fillFaceCounters()
+  {
+    const FaceTable& faceTable = *((*m_nfd).*get(NfdFaceTableTag()));
+    // keeps its capacity, so it only grows when there are more faces than ever before
+    m_faceCounters.clear();
+    for (const face::Face& face : faceTable) {
+      const face::FaceCounters& c = face.getCounters();
+      m_faceCounters.push_back(face.getId());
+      m_faceCounters.push_back(c.nInInterests);
+      m_faceCounters.push_back(c.nOutInterests);
+      m_faceCounters.push_back(c.nInData);
+      m_faceCounters.push_back(c.nOutData);
+      m_faceCounters.push_back(c.nInNacks);
+      m_faceCounters.push_back(c.nOutNacks);
+      m_faceCounters.push_back(c.nInBytes);
+      m_faceCounters.push_back(c.nOutBytes);
+    }
+  }
+
+  /**
+   * \brief Run a reader on the io_service thread and wait up to one second for its result
+   *
+   * The reader fills a buffer of the Runner, which the sink reads before another read starts.
+   */
+  template<typename Sink>
+  bool
+  readOnIoThread(Reader reader, const Sink& sink)
+  {
+    std::lock_guard<std::mutex> readLock(m_readMutex);
+
+    uint64_t request;
+    {
+      std::lock_guard<std::mutex> lock(m_snapshotMutex);
+      request = ++m_lastRequest;
+      m_isSnapshotDone = false;
+    }
+
+    {
+      std::unique_lock<std::mutex> lock(m_pointerMutex);
+      if (m_io == nullptr) {
+        return false;
+      }
+      m_io->post(ReadHandler{this, reader, request});
+    }
+
+    std::unique_lock<std::mutex> lock(m_snapshotMutex);
+    if (!m_snapshotCv.wait_for(lock, std::chrono::seconds(1), [this] { return m_isSnapshotDone; }) ||
+        !m_isSnapshotOk) {
+      return false;
+    }
+    sink();
+    return true;
+  }
+
+  void
+  onRead(Reader reader, uint64_t request)
+  {
+    std::lock_guard<std::mutex> lock(m_snapshotMutex);
+    if (request != m_lastRequest) {
+      return; // the read timed out, and its caller gave up
+    }
+    m_isSnapshotOk = m_nfd != nullptr;
+    if (m_isSnapshotOk) {
+      (this->*reader)();
+    }
+    m_isSnapshotDone = true;
+    m_snapshotCv.notify_one();
+  }
+
   std::mutex m_pointerMutex;
   boost::asio::io_service* m_io;
   ndn::KeyChain m_keyChain;
@@ -165,13 +518,108 @@ private:
   unique_ptr<rib::Service> m_ribService;
 
   nfd::ConfigSection m_config;
+  std::string m_configFile;
+  int64_t m_startTimestamp = 0;
+
+  // one read at a time
+  std::mutex m_readMutex;
+  // guards the snapshot, which is filled on the io_service thread
+  std::mutex m_snapshotMutex;
+  std::condition_variable m_snapshotCv;
+  uint64_t m_lastRequest = 0;
+  bool m_isSnapshotDone = false;
+  bool m_isSnapshotOk = false;
+  std::array<int64_t, N_COUNTERS> m_counters;
+  std::vector<int64_t> m_faceCounters;
+
+  std::aligned_storage<128>::type m_handlerStorage;
+  std::atomic<bool> m_isHandlerStorageInUse{false};
 };
 
-static unique_ptr<Runner> g_runner;
+/**
+ * \brief The running NFD, guarded by g_runnerMutex
+ *
+ * JNI calls work on a snapshot taken with getRunner(), so the NFD thread can drop g_runner
+ * after stop while a call is still in progress; the last snapshot releases the Runner.
+ */
+static shared_ptr<Runner> g_runner;
+static std::mutex g_runnerMutex;
 static std::map<std::string, std::string> g_params;
 
+static shared_ptr<Runner>
+getRunner()
+{
+  std::lock_guard<std::mutex> lock(g_runnerMutex);
+  return g_runner;
+}
+
+static void
+setRunner(shared_ptr<Runner> runner)
+{
+  std::lock_guard<std::mutex> lock(g_runnerMutex);
+  g_runner = std::move(runner);
+}
+
+/**
+ * \brief Whether NFD is initialized and its io_service is running
+ */
+static std::atomic<bool> g_isReady(false);
+
+static JavaVM* g_jvm = nullptr;
+static jclass g_serviceClass = nullptr;
+static jmethodID g_onNfdReady = nullptr;
+
+/**
+ * \brief Call NfdService.onNfdReady() from the NFD thread
+ */
+static void
+notifyReady()
+{
+  g_isReady = true;
+  NFD_LOG_INFO("NFD is ready");
+
+  if (g_jvm == nullptr || g_onNfdReady == nullptr) {
+    return;
+  }
+
+  JNIEnv* env = nullptr;
+  if (g_jvm->AttachCurrentThread(&env, nullptr) != JNI_OK) {
+    NFD_LOG_ERROR("Cannot attach the NFD thread to the JVM");
+    return;
+  }
+  env->CallStaticVoidMethod(g_serviceClass, g_onNfdReady);
+  if (env->ExceptionCheck()) {
+    env->ExceptionDescribe();
+    env->ExceptionClear();
+  }
+  g_jvm->DetachCurrentThread();
+}
+
 } // namespace nfd
 
+JNIEXPORT jint JNICALL
+JNI_OnLoad(JavaVM* vm, void*)
+{
+  JNIEnv* env = nullptr;
+  if (vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION_1_6) != JNI_OK) {
+    return JNI_ERR;
+  }
+
+  jclass serviceClass = env->FindClass("net/named_data/nfd/service/NfdService");
+  if (serviceClass == nullptr) {
+    return JNI_ERR;
+  }
+  nfd::g_serviceClass = reinterpret_cast<jclass>(env->NewGlobalRef(serviceClass));
+  nfd::g_onNfdReady = env->GetStaticMethodID(serviceClass, "onNfdReady", "()V");
+  env->DeleteLocalRef(serviceClass);
+  if (nfd::g_onNfdReady == nullptr) {
+    return JNI_ERR;
+  }
+
+  nfd::g_jvm = vm;
+  return JNI_VERSION_1_6;
+}
+
 
 std::map<std::string, std::string>
 getParams(JNIEnv* env, jobject jParams)
@@ -217,7 +665,7 @@ getParams(JNIEnv* env, jobject jParams)
 JNIEXPORT void JNICALL
 Java_net_named_1data_nfd_service_NfdService_startNfd(JNIEnv* env, jclass, jobject jParams)
 {
-  if (nfd::g_runner.get() == nullptr) {
+  if (nfd::getRunner() == nullptr) {
     nfd::g_params = getParams(env, jParams);
 
     // set/update HOME environment variable
@@ -229,17 +677,13 @@ Java_net_named_1data_nfd_service_NfdService_startNfd(JNIEnv* env, jclass, jobjec
 
         NFD_LOG_INFO("Starting NFD...");
         try {
-          nfd::g_runner.reset(new nfd::Runner());
+          auto runner = std::make_shared<nfd::Runner>();
+          nfd::setRunner(runner);
           // update config
-          for (const auto& pair : nfd::g_params) {
-            if (pair.first == "homePath")
-              continue;
-
-            nfd::g_runner->getConfig().put(pair.first, pair.second);
-          }
-          nfd::g_runner->finishInit();
+          nfd::applyParams(runner->getConfig(), nfd::g_params);
+          runner->finishInit(nfd::g_params["homePath"] + "/nfd.conf");
 
-          nfd::g_runner->run();
+          runner->run(&nfd::notifyReady);
         }
         catch (const std::exception& e) {
           NFD_LOG_FATAL(boost::diagnostic_information(e));
@@ -251,7 +695,8 @@ Java_net_named_1data_nfd_service_NfdService_startNfd(JNIEnv* env, jclass, jobjec
           NFD_LOG_FATAL("Unknown fatal error");
         }
 
-        nfd::g_runner.reset();
+        nfd::g_isReady = false;
+        nfd::setRunner(nullptr);
         nfd::resetGlobalIoService();
         NFD_LOG_INFO("NFD stopped");
       });
@@ -262,9 +707,11 @@ Java_net_named_1data_nfd_service_NfdService_startNfd(JNIEnv* env, jclass, jobjec
 JNIEXPORT void JNICALL
 Java_net_named_1data_nfd_service_NfdService_stopNfd(JNIEnv*, jclass)
 {
-  if (nfd::g_runner.get() != nullptr) {
+  auto runner = nfd::getRunner();
+  if (runner != nullptr) {
     NFD_LOG_INFO("Stopping NFD...");
-    nfd::g_runner->stop();
+    nfd::g_isReady = false;
+    runner->stop();
     // do not block anything
   }
 }
@@ -272,5 +719,49 @@ Java_net_named_1data_nfd_service_NfdService_stopNfd(JNIEnv*, jclass)
 JNIEXPORT jboolean JNICALL
 Java_net_named_1data_nfd_service_NfdService_isNfdRunning(JNIEnv*, jclass)
 {
-  return nfd::g_runner.get() != nullptr;
+  return nfd::g_isReady;
+}
+
+JNIEXPORT jboolean JNICALL
+Java_net_named_1data_nfd_service_NfdService_reconfigureNfd(JNIEnv* env, jclass, jobject jParams)
+{
+  auto runner = nfd::getRunner();
+  if (!nfd::g_isReady || runner == nullptr) {
+    return false;
+  }
+  return runner->reconfigure(getParams(env, jParams));
+}
+
+JNIEXPORT jboolean JNICALL
+Java_net_named_1data_nfd_service_NfdService_getNfdCounters(JNIEnv* env, jclass, jlongArray jCounters)
+{
+  auto runner = nfd::getRunner();
+  if (!nfd::g_isReady || runner == nullptr || env->GetArrayLength(jCounters) < nfd::N_COUNTERS) {
+    return false;
+  }
+
+  int64_t counters[nfd::N_COUNTERS];
+  if (!runner->readCounters(counters)) {
+    return false;
+  }
+  static_assert(sizeof(jlong) == sizeof(int64_t), "jlong must be 64-bit");
+  env->SetLongArrayRegion(jCounters, 0, nfd::N_COUNTERS, reinterpret_cast<const jlong*>(counters));
+  return true;
+}
+
+JNIEXPORT jint JNICALL
+Java_net_named_1data_nfd_service_NfdService_getFaceCounters(JNIEnv* env, jclass, jlongArray jCounters)
+{
+  auto runner = nfd::getRunner();
+  if (!nfd::g_isReady || runner == nullptr) {
+    return -1;
+  }
+
+  jsize nFaces = -1;
+  runner->readFaceCounters([env, jCounters, &nFaces] (const int64_t* counters, size_t nSnapshotFaces) {
+      nFaces = std::min<jsize>(nSnapshotFaces, env->GetArrayLength(jCounters) / nfd::FACE_COUNTER_STRIDE);
+      env->SetLongArrayRegion(jCounters, 0, nFaces * nfd::FACE_COUNTER_STRIDE,
+                              reinterpret_cast<const jlong*>(counters));
+    });
+  return nFaces;
 }
@@ -51,6 +51,30 @@ Java_net_named_1data_nfd_service_NfdService_stopNfd(JNIEnv*, jclass);
 JNIEXPORT jboolean JNICALL
 Java_net_named_1data_nfd_service_NfdService_isNfdRunning(JNIEnv*, jclass);
 
+/*
+ * Class:     net_named_data_nfd_service_NfdService
+ * Method:    reconfigureNfd
+ * Signature: (Ljava/util/Map;)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_net_named_1data_nfd_service_NfdService_reconfigureNfd(JNIEnv*, jclass, jobject);
+
+/*
+ * Class:     net_named_data_nfd_service_NfdService
+ * Method:    getNfdCounters
+ * Signature: ([J)Z
+ */
+JNIEXPORT jboolean JNICALL
+Java_net_named_1data_nfd_service_NfdService_getNfdCounters(JNIEnv*, jclass, jlongArray);
+
+/*
+ * Class:     net_named_data_nfd_service_NfdService
+ * Method:    getFaceCounters
+ * Signature: ([J)I
+ */
+JNIEXPORT jint JNICALL
+Java_net_named_1data_nfd_service_NfdService_getFaceCounters(JNIEnv*, jclass, jlongArray);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,97 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.model;
+
+import net.named_data.jndn.Name;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdvertisedPrefixSetTest {
+
+  private final AdvertisedPrefixSet responder = new AdvertisedPrefixSet(new Random(1));
+  private final AdvertisedPrefixSet requester = new AdvertisedPrefixSet(new Random(2));
+  private final List<ProbeResponse.PrefixEntry> added = new ArrayList<>();
+  private final List<Name> removed = new ArrayList<>();
+
+  private static Map<Name, ProbeResponse.PrefixEntry> prefixes(String... uris) {
+    HashMap<Name, ProbeResponse.PrefixEntry> map = new HashMap<>();
+    for (String uri : uris) {
+      map.put(new Name(uri), new ProbeResponse.PrefixEntry(new Name(uri), 0, 0));
+    }
+    return map;
+  }
+
+  @Test
+  public void testDeltaAgainstKnownVersion() {
+    assertTrue(requester.apply(responder.advertise(prefixes("/a", "/b"), requester.getVersion()), added, removed));
+    assertEquals(responder.getVersion(), requester.getVersion());
+
+    added.clear();
+    ProbeResponse delta = responder.advertise(prefixes("/a", "/c"), requester.getVersion());
+    assertFalse(delta.isFullSnapshot());
+
+    assertTrue(requester.apply(delta, added, removed));
+    assertEquals(Collections.singletonList(new ProbeResponse.PrefixEntry(new Name("/c"), 0, 0)), added);
+    assertEquals(Collections.singletonList(new Name("/b")), removed);
+    assertEquals(prefixes("/a", "/c").keySet(), requester.getPrefixes());
+    assertEquals(responder.getVersion(), requester.getVersion());
+  }
+
+  @Test
+  public void testFailedDeltaFallsBackToFullSnapshot() {
+    requester.apply(responder.advertise(prefixes("/a", "/b"), requester.getVersion()), added, removed);
+    long knownVersion = requester.getVersion();
+
+    // the response carrying /c is lost, so the next delta is against a version the requester
+    // does not have
+    responder.advertise(prefixes("/a", "/b", "/c"), knownVersion);
+    ProbeResponse delta = responder.advertise(prefixes("/a", "/c", "/d"), responder.getVersion());
+    added.clear();
+    assertFalse(requester.apply(delta, added, removed));
+    assertTrue(added.isEmpty());
+    assertTrue(removed.isEmpty());
+    assertEquals(AdvertisedPrefixSet.NO_VERSION, requester.getVersion());
+    assertEquals(prefixes("/a", "/b").keySet(), requester.getPrefixes());
+
+    ProbeResponse snapshot = responder.advertise(prefixes("/a", "/c", "/d"), requester.getVersion());
+    assertTrue(snapshot.isFullSnapshot());
+    assertTrue(requester.apply(snapshot, added, removed));
+    HashSet<Name> addedPrefixes = new HashSet<>();
+    for (ProbeResponse.PrefixEntry entry : added) {
+      addedPrefixes.add(entry.getPrefix());
+    }
+    assertEquals(prefixes("/c", "/d").keySet(), addedPrefixes);
+    assertEquals(Collections.singletonList(new Name("/b")), removed);
+    assertEquals(prefixes("/a", "/c", "/d").keySet(), requester.getPrefixes());
+    assertEquals(responder.getVersion(), requester.getVersion());
+  }
+}
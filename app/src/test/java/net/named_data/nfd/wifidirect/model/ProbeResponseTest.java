@@ -0,0 +1,83 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.model;
+
+import net.named_data.jndn.Name;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProbeResponseTest {
+
+  @Test
+  public void testFullSnapshotRoundTrip() throws Exception {
+    ProbeResponse response = new ProbeResponse();
+    response.setAdvertisementVersion(1234567);
+    response.addPrefix(new Name("/a/b"), 0, 0);
+    response.addPrefix(new Name("/c"), 3, 2);
+    response.addPrefix(new Name("/d"), 0, ProbeResponse.INFINITE_HOP_COUNT);
+
+    ProbeResponse decoded = ProbeResponse.wireDecode(response.wireEncode().buf());
+
+    assertTrue(decoded.isFullSnapshot());
+    assertEquals(1234567, decoded.getAdvertisementVersion());
+    assertEquals(response.getPrefixes(), decoded.getPrefixes());
+    assertEquals(Collections.<Name>emptyList(), decoded.getRemovedPrefixes());
+    assertEquals(-1, decoded.getPrefixes().get(2).getRouteCost());
+  }
+
+  @Test
+  public void testDeltaRoundTrip() throws Exception {
+    ProbeResponse response = new ProbeResponse();
+    response.setBaseVersion(41);
+    response.setAdvertisementVersion(42);
+    response.addPrefix(new Name("/a"), 1, 1);
+    response.addRemovedPrefix(new Name("/b"));
+    response.addRemovedPrefix(new Name("/c/d"));
+
+    ProbeResponse decoded = ProbeResponse.wireDecode(response.wireEncode().buf());
+
+    assertFalse(decoded.isFullSnapshot());
+    assertFalse(decoded.isUnchanged());
+    assertEquals(41, decoded.getBaseVersion());
+    assertEquals(42, decoded.getAdvertisementVersion());
+    assertEquals(response.getPrefixes(), decoded.getPrefixes());
+    assertEquals(Arrays.asList(new Name("/b"), new Name("/c/d")), decoded.getRemovedPrefixes());
+  }
+
+  @Test
+  public void testUnchangedRoundTrip() throws Exception {
+    ProbeResponse response = new ProbeResponse();
+    response.setBaseVersion(42);
+    response.setAdvertisementVersion(42);
+
+    ProbeResponse decoded = ProbeResponse.wireDecode(response.wireEncode().buf());
+
+    assertTrue(decoded.isUnchanged());
+    assertTrue(decoded.getPrefixes().isEmpty());
+    assertTrue(decoded.getRemovedPrefixes().isEmpty());
+  }
+}
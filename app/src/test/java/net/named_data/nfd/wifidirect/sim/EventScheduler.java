@@ -0,0 +1,109 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import net.named_data.nfd.wifidirect.utils.TaskScheduler;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Discrete-event scheduler with a virtual clock, in ms.
+ * <p>
+ * Events run one at a time, in order of time and, at equal times, in order of scheduling, and
+ * all randomness of a simulation comes from one seeded Random, so that a run is repeatable.
+ */
+public class EventScheduler implements TaskScheduler {
+
+  private static class Event implements Comparable<Event> {
+    final long time;
+    final long sequence;
+    final Runnable runnable;
+
+    Event(long time, long sequence, Runnable runnable) {
+      this.time = time;
+      this.sequence = sequence;
+      this.runnable = runnable;
+    }
+
+    @Override
+    public int compareTo(Event other) {
+      if (time != other.time) {
+        return time < other.time ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  private final PriorityQueue<Event> events = new PriorityQueue<>();
+  private final Random random;
+  private long now = 0;
+  private long nextSequence = 0;
+
+  public EventScheduler(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * @return the virtual time, in ms since the start of the simulation
+   */
+  @Override
+  public long now() {
+    return now;
+  }
+
+  public Random getRandom() {
+    return random;
+  }
+
+  /**
+   * Runs the runnable after the delay, in ms; a negative delay is treated as 0.
+   */
+  @Override
+  public void schedule(long delay, Runnable runnable) {
+    events.add(new Event(now + Math.max(0, delay), nextSequence++, runnable));
+  }
+
+  /**
+   * Runs the runnable every period, in ms, starting after the first delay.
+   */
+  public void schedulePeriodic(long firstDelay, final long period, final Runnable runnable) {
+    schedule(firstDelay, new Runnable() {
+      @Override
+      public void run() {
+        runnable.run();
+        schedule(period, this);
+      }
+    });
+  }
+
+  /**
+   * Runs the events up to the given time, included, then sets the clock to it.
+   */
+  public void runUntil(long time) {
+    while (!events.isEmpty() && events.peek().time <= time) {
+      Event event = events.poll();
+      now = event.time;
+      event.runnable.run();
+    }
+    now = Math.max(now, time);
+  }
+}
@@ -0,0 +1,249 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import com.intel.jndn.management.ManagementException;
+import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.FibEntry;
+import com.intel.jndn.management.types.NextHopRecord;
+import com.intel.jndn.management.types.RibEntry;
+import com.intel.jndn.management.types.Route;
+
+import net.named_data.jndn.ControlParameters;
+import net.named_data.jndn.Name;
+import net.named_data.nfd.utils.ForwarderManagement;
+import net.named_data.nfd.utils.NfdcFuture;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory forwarder of one virtual device, answering management commands after a fixed
+ * processing delay, as the local NFD does.
+ * <p>
+ * The FIB is the RIB with one nexthop per route; child inheritance and capture are ignored,
+ * since the Wi-Fi Direct code does not depend on them. Every command and dataset request is
+ * counted.
+ */
+public class SimulatedForwarder implements ForwarderManagement {
+  // time NFD takes to process a command or produce a dataset, in ms
+  private static final int PROCESSING_DELAY = 2;
+  private static final int FIRST_FACE_ID = 256;
+
+  private final EventScheduler scheduler;
+  // { faceId : remote uri }
+  private final LinkedHashMap<Integer, String> faces = new LinkedHashMap<>();
+  // { prefix : { faceId : cost } }
+  private final LinkedHashMap<Name, LinkedHashMap<Integer, Integer>> rib = new LinkedHashMap<>();
+  private final int appFaceId;
+  private int nextFaceId = FIRST_FACE_ID;
+  private long numCommands = 0;
+
+  public SimulatedForwarder(EventScheduler scheduler) {
+    this.scheduler = scheduler;
+    this.appFaceId = nextFaceId++;
+    faces.put(appFaceId, "internal://");
+  }
+
+  /**
+   * @return the face of the local applications, as the localhost face of the app on a device
+   */
+  public int getAppFaceId() {
+    return appFaceId;
+  }
+
+  /**
+   * Registers a prefix served by a local application, as a producer on the device would.
+   * This is not a management command of the Wi-Fi Direct code, so it is not counted.
+   */
+  public void addProducer(Name prefix) {
+    addRoute(prefix, appFaceId, 0);
+  }
+
+  /**
+   * @return whether any route of the prefix goes over a face other than the local application
+   */
+  public boolean hasRemoteRoute(Name prefix) {
+    Map<Integer, Integer> routes = rib.get(prefix);
+    if (routes == null) {
+      return false;
+    }
+    for (int faceId : routes.keySet()) {
+      if (faceId != appFaceId) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int getNumRoutes() {
+    int numRoutes = 0;
+    for (Map<Integer, Integer> routes : rib.values()) {
+      numRoutes += routes.size();
+    }
+    return numRoutes;
+  }
+
+  /**
+   * @return number of commands and dataset requests received so far
+   */
+  public long getNumCommands() {
+    return numCommands;
+  }
+
+  @Override
+  public NfdcFuture<List<FaceStatus>> faceList() {
+    List<FaceStatus> faceStatuses = new ArrayList<>(faces.size());
+    for (Map.Entry<Integer, String> face : faces.entrySet()) {
+      FaceStatus faceStatus = new FaceStatus();
+      faceStatus.setFaceId(face.getKey());
+      faceStatus.setRemoteUri(face.getValue());
+      faceStatuses.add(faceStatus);
+    }
+    return respond(faceStatuses);
+  }
+
+  @Override
+  public NfdcFuture<List<FibEntry>> fibList() {
+    List<FibEntry> fibEntries = new ArrayList<>(rib.size());
+    for (Map.Entry<Name, LinkedHashMap<Integer, Integer>> entry : rib.entrySet()) {
+      List<NextHopRecord> nextHopRecords = new ArrayList<>(entry.getValue().size());
+      for (Map.Entry<Integer, Integer> route : entry.getValue().entrySet()) {
+        NextHopRecord nextHopRecord = new NextHopRecord();
+        nextHopRecord.setFaceId(route.getKey());
+        nextHopRecord.setCost(route.getValue());
+        nextHopRecords.add(nextHopRecord);
+      }
+      FibEntry fibEntry = new FibEntry();
+      fibEntry.setPrefix(entry.getKey());
+      fibEntry.setNextHopRecords(nextHopRecords);
+      fibEntries.add(fibEntry);
+    }
+    return respond(fibEntries);
+  }
+
+  @Override
+  public NfdcFuture<List<RibEntry>> ribList() {
+    List<RibEntry> ribEntries = new ArrayList<>(rib.size());
+    for (Map.Entry<Name, LinkedHashMap<Integer, Integer>> entry : rib.entrySet()) {
+      List<Route> routes = new ArrayList<>(entry.getValue().size());
+      for (Map.Entry<Integer, Integer> one : entry.getValue().entrySet()) {
+        Route route = new Route();
+        route.setFaceId(one.getKey());
+        route.setCost(one.getValue());
+        routes.add(route);
+      }
+      RibEntry ribEntry = new RibEntry();
+      ribEntry.setName(entry.getKey());
+      ribEntry.setRoutes(routes);
+      ribEntries.add(ribEntry);
+    }
+    return respond(ribEntries);
+  }
+
+  @Override
+  public NfdcFuture<Integer> faceCreate(String faceUri) {
+    return faceCreate(faceUri, false);
+  }
+
+  @Override
+  public NfdcFuture<Integer> faceCreate(String faceUri, boolean isLpReliabilityEnabled) {
+    // losses on the medium are not modeled per face, so reliability changes nothing here
+    for (Map.Entry<Integer, String> face : faces.entrySet()) {
+      if (face.getValue().equals(faceUri)) {
+        return respond(face.getKey());
+      }
+    }
+    int faceId = nextFaceId++;
+    faces.put(faceId, faceUri);
+    return respond(faceId);
+  }
+
+  @Override
+  public NfdcFuture<ControlParameters> faceDestroy(int faceId) {
+    if (faces.remove(faceId) != null) {
+      List<Name> emptied = new ArrayList<>();
+      for (Map.Entry<Name, LinkedHashMap<Integer, Integer>> entry : rib.entrySet()) {
+        if (entry.getValue().remove(faceId) != null && entry.getValue().isEmpty()) {
+          emptied.add(entry.getKey());
+        }
+      }
+      for (Name prefix : emptied) {
+        rib.remove(prefix);
+      }
+    }
+    return respond(new ControlParameters().setFaceId(faceId));
+  }
+
+  @Override
+  public NfdcFuture<ControlParameters> ribRegisterPrefix(Name prefix, int faceId, int cost,
+                                                         boolean isChildInherit, boolean isCapture) {
+    if (!faces.containsKey(faceId)) {
+      return fail("Face " + faceId + " does not exist");
+    }
+    addRoute(prefix, faceId, cost);
+    return respond(new ControlParameters().setName(prefix).setFaceId(faceId));
+  }
+
+  @Override
+  public NfdcFuture<ControlParameters> ribUnregisterPrefix(Name prefix, int faceId) {
+    Map<Integer, Integer> routes = rib.get(prefix);
+    if (routes != null && routes.remove(faceId) != null && routes.isEmpty()) {
+      rib.remove(prefix);
+    }
+    return respond(new ControlParameters().setName(prefix).setFaceId(faceId));
+  }
+
+  private void addRoute(Name prefix, int faceId, int cost) {
+    LinkedHashMap<Integer, Integer> routes = rib.get(prefix);
+    if (routes == null) {
+      routes = new LinkedHashMap<>();
+      rib.put(prefix, routes);
+    }
+    routes.put(faceId, cost);
+  }
+
+  private <T> NfdcFuture<T> respond(final T value) {
+    numCommands++;
+    final NfdcFuture<T> future = new NfdcFuture<>();
+    scheduler.schedule(PROCESSING_DELAY, new Runnable() {
+      @Override
+      public void run() {
+        future.complete(value);
+      }
+    });
+    return future;
+  }
+
+  private <T> NfdcFuture<T> fail(final String message) {
+    numCommands++;
+    final NfdcFuture<T> future = new NfdcFuture<>();
+    scheduler.schedule(PROCESSING_DELAY, new Runnable() {
+      @Override
+      public void run() {
+        future.completeExceptionally(new ManagementException(message));
+      }
+    });
+    return future;
+  }
+}
@@ -0,0 +1,129 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import net.named_data.nfd.wifidirect.utils.NeighborResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A simulated Wi-Fi Direct group: its owner, and the members it handed out addresses to.
+ * <p>
+ * It is also the neighbor table of every member, since a member's ARP cache on the P2P
+ * interface holds exactly the other members of the group.
+ */
+public class SimulatedGroup implements NeighborResolver {
+  private static final String SUBNET = "192.168.49.";
+  private static final String OWNER_IP = SUBNET + "1";
+
+  private final String ownerAddress;
+  // { deviceAddress : member }, owner included once any client joined
+  private final LinkedHashMap<String, SimulatedP2pGroupManager> members = new LinkedHashMap<>();
+  private final HashMap<String, String> ipByAddress = new HashMap<>();
+  private final HashMap<String, String> addressByIp = new HashMap<>();
+  private int nextHost = 2;
+
+  /**
+   * @param ownerAddress device address of the group owner
+   */
+  public SimulatedGroup(String ownerAddress) {
+    this.ownerAddress = ownerAddress;
+  }
+
+  public String getOwnerAddress() {
+    return ownerAddress;
+  }
+
+  public String getOwnerIp() {
+    return OWNER_IP;
+  }
+
+  public boolean isFormed() {
+    return !members.isEmpty();
+  }
+
+  public boolean isMember(String deviceAddress) {
+    return members.containsKey(deviceAddress);
+  }
+
+  /**
+   * Adds a member, forming the group with its owner if it is the first client. Every member
+   * that the join affects is notified, as a connection change broadcast would.
+   */
+  void join(SimulatedP2pGroupManager member, SimulatedP2pGroupManager owner) {
+    if (members.containsKey(member.getDeviceAddress())) {
+      return;
+    }
+    if (members.isEmpty()) {
+      add(owner, OWNER_IP);
+      owner.onConnectionChanged();
+    }
+    add(member, SUBNET + nextHost++);
+    member.onConnectionChanged();
+  }
+
+  /**
+   * Removes a member; if it is the owner, the group is torn down and all members are notified.
+   */
+  void leave(SimulatedP2pGroupManager member) {
+    if (!members.containsKey(member.getDeviceAddress())) {
+      return;
+    }
+    List<SimulatedP2pGroupManager> left = new ArrayList<>();
+    if (member.getDeviceAddress().equals(ownerAddress)) {
+      left.addAll(members.values());
+      members.clear();
+      ipByAddress.clear();
+      addressByIp.clear();
+    } else {
+      members.remove(member.getDeviceAddress());
+      addressByIp.remove(ipByAddress.remove(member.getDeviceAddress()));
+      left.add(member);
+    }
+    for (SimulatedP2pGroupManager one : left) {
+      one.onConnectionChanged();
+    }
+  }
+
+  @Override
+  public String getMac(String ip) {
+    return addressByIp.get(ip);
+  }
+
+  @Override
+  public String getP2pIp(String deviceAddress) {
+    return ipByAddress.get(deviceAddress);
+  }
+
+  @Override
+  public void invalidate() {
+    // always up to date
+  }
+
+  private void add(SimulatedP2pGroupManager member, String ip) {
+    members.put(member.getDeviceAddress(), member);
+    ipByAddress.put(member.getDeviceAddress(), ip);
+    addressByIp.put(ip, member.getDeviceAddress());
+  }
+}
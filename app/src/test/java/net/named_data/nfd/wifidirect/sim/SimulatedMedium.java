@@ -0,0 +1,99 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import java.util.Random;
+
+/**
+ * The shared Wi-Fi Direct channel of a simulated group: every packet is lost with a fixed
+ * probability, or delivered after a base latency plus a uniformly distributed jitter.
+ * <p>
+ * Only probe traffic goes over the medium, and it is counted as it is sent.
+ */
+public class SimulatedMedium {
+  private final EventScheduler scheduler;
+  private final double lossRate;
+  private final int latency;
+  private final int jitter;
+
+  private long numProbeInterests = 0;
+  private long numProbeData = 0;
+  private long numBytes = 0;
+  private long numLost = 0;
+
+  /**
+   * @param lossRate probability, in [0, 1], that a packet is lost
+   * @param latency  one-way delay of every packet, in ms
+   * @param jitter   largest additional random delay, in ms
+   */
+  public SimulatedMedium(EventScheduler scheduler, double lossRate, int latency, int jitter) {
+    this.scheduler = scheduler;
+    this.lossRate = lossRate;
+    this.latency = latency;
+    this.jitter = jitter;
+  }
+
+  /**
+   * Sends a probe Interest of the given encoded size.
+   *
+   * @param onDelivered run on arrival, unless the Interest is lost
+   */
+  public void sendProbeInterest(int size, Runnable onDelivered) {
+    numProbeInterests++;
+    send(size, onDelivered);
+  }
+
+  /**
+   * Sends the Data answering a probe, of the given encoded size.
+   *
+   * @param onDelivered run on arrival, unless the Data is lost
+   */
+  public void sendProbeData(int size, Runnable onDelivered) {
+    numProbeData++;
+    send(size, onDelivered);
+  }
+
+  public long getNumProbeInterests() {
+    return numProbeInterests;
+  }
+
+  public long getNumProbeData() {
+    return numProbeData;
+  }
+
+  public long getNumBytes() {
+    return numBytes;
+  }
+
+  public long getNumLost() {
+    return numLost;
+  }
+
+  private void send(int size, Runnable onDelivered) {
+    numBytes += size;
+    Random random = scheduler.getRandom();
+    if (random.nextDouble() < lossRate) {
+      numLost++;
+      return;
+    }
+    scheduler.schedule(latency + (jitter > 0 ? random.nextInt(jitter + 1) : 0), onDelivered);
+  }
+}
@@ -0,0 +1,137 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import net.named_data.nfd.wifidirect.utils.P2pGroupManager;
+
+import java.util.Map;
+
+/**
+ * P2pGroupManager of one virtual device, joining a SimulatedGroup after a random negotiation
+ * delay.
+ */
+public class SimulatedP2pGroupManager implements P2pGroupManager {
+
+  /**
+   * Receives what WifiP2pManager.ConnectionInfoListener receives on a device.
+   */
+  public interface ConnectionInfoListener {
+    /**
+     * @param myIp         address of this device in the group, or null if not in a group
+     * @param groupOwnerIp address of the group owner, or null if not in a group
+     */
+    void onConnectionInfoAvailable(boolean isGroupOwner, String myIp, String groupOwnerIp);
+  }
+
+  // group negotiation takes this long, plus up to as much again
+  private static final int MIN_NEGOTIATION_DELAY = 1000;  // in ms
+
+  private final EventScheduler scheduler;
+  private final SimulatedGroup group;
+  // { deviceAddress : manager } of all virtual devices in range
+  private final Map<String, SimulatedP2pGroupManager> devices;
+  private final String deviceAddress;
+  private ConnectionInfoListener listener = null;
+  private boolean isNegotiating = false;
+  private long numDiscoveries = 0;
+
+  public SimulatedP2pGroupManager(EventScheduler scheduler, SimulatedGroup group,
+                                  Map<String, SimulatedP2pGroupManager> devices, String deviceAddress) {
+    this.scheduler = scheduler;
+    this.group = group;
+    this.devices = devices;
+    this.deviceAddress = deviceAddress;
+  }
+
+  public void setConnectionInfoListener(ConnectionInfoListener listener) {
+    this.listener = listener;
+  }
+
+  public String getDeviceAddress() {
+    return deviceAddress;
+  }
+
+  public long getNumDiscoveries() {
+    return numDiscoveries;
+  }
+
+  @Override
+  public void discoverPeers() {
+    // all devices are always in range, so there is nothing to find
+    numDiscoveries++;
+  }
+
+  @Override
+  public void connect(String deviceAddress) {
+    final SimulatedP2pGroupManager owner = devices.get(deviceAddress);
+    if (owner == null || !deviceAddress.equals(group.getOwnerAddress()) || isNegotiating) {
+      return;
+    }
+    isNegotiating = true;
+    scheduler.schedule(MIN_NEGOTIATION_DELAY + scheduler.getRandom().nextInt(MIN_NEGOTIATION_DELAY + 1),
+      new Runnable() {
+        @Override
+        public void run() {
+          if (isNegotiating) {
+            isNegotiating = false;
+            group.join(SimulatedP2pGroupManager.this, owner);
+          }
+        }
+      });
+  }
+
+  @Override
+  public void cancelConnect() {
+    isNegotiating = false;
+  }
+
+  @Override
+  public void removeGroup() {
+    group.leave(this);
+  }
+
+  @Override
+  public void requestConnectionInfo() {
+    scheduler.schedule(0, new Runnable() {
+      @Override
+      public void run() {
+        deliverConnectionInfo();
+      }
+    });
+  }
+
+  void onConnectionChanged() {
+    // as WDBroadcastReceiver does on WIFI_P2P_CONNECTION_CHANGED_ACTION
+    requestConnectionInfo();
+  }
+
+  private void deliverConnectionInfo() {
+    if (listener == null) {
+      return;
+    }
+    if (group.isMember(deviceAddress)) {
+      listener.onConnectionInfoAvailable(deviceAddress.equals(group.getOwnerAddress()),
+        group.getP2pIp(deviceAddress), group.getOwnerIp());
+    } else {
+      listener.onConnectionInfoAvailable(false, null, null);
+    }
+  }
+}
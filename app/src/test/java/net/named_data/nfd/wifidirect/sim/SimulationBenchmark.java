@@ -0,0 +1,155 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import net.named_data.jndn.Name;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures how the Wi-Fi Direct probe exchange scales with the size of the group, on a plain
+ * JVM. See VirtualPeer for which parts of the app are simulated.
+ * <p>
+ * For each group size, one device owns the group, every device produces one prefix, and all
+ * of them start at once. Reported per size: the time until every device has a route to every
+ * other device's prefix, the management commands sent to the forwarders per second, and the
+ * probe packets and bytes per second, over the whole run.
+ * <p>
+ * Usage: ./gradlew :app:runWifiDirectSimulation --args="[--loss RATE] [--latency MS]
+ * [--jitter MS] [--seed N] [--duration SECONDS]"
+ */
+public class SimulationBenchmark {
+  private static final int[] GROUP_SIZES = {2, 5, 10, 20, 30, 40, 50};
+  private static final int CHECK_INTERVAL = 100;   // in ms, granularity of the convergence time
+
+  private static class Result {
+    long convergenceTime = -1;
+    long numCommands = 0;
+    long numProbeInterests = 0;
+    long numProbeData = 0;
+    long numBytes = 0;
+    long numLost = 0;
+  }
+
+  public static void main(String[] args) {
+    double lossRate = 0.0;
+    int latency = 5;
+    int jitter = 5;
+    long seed = 1;
+    int duration = 120;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--loss":
+          lossRate = Double.parseDouble(args[i + 1]);
+          break;
+        case "--latency":
+          latency = Integer.parseInt(args[i + 1]);
+          break;
+        case "--jitter":
+          jitter = Integer.parseInt(args[i + 1]);
+          break;
+        case "--seed":
+          seed = Long.parseLong(args[i + 1]);
+          break;
+        case "--duration":
+          duration = Integer.parseInt(args[i + 1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+
+    System.out.printf(Locale.US, "loss=%.3f latency=%dms jitter=%dms seed=%d duration=%ds%n",
+      lossRate, latency, jitter, seed, duration);
+    System.out.printf(Locale.US, "%6s %14s %12s %14s %12s %12s %10s %8s%n", "peers", "convergence_s",
+      "commands/s", "commands/s/pr", "interests/s", "data/s", "kB/s", "lost");
+    for (int groupSize : GROUP_SIZES) {
+      Result result = run(groupSize, lossRate, latency, jitter, seed, duration * 1000L);
+      double seconds = duration;
+      System.out.printf(Locale.US, "%6d %14s %12.1f %14.2f %12.1f %12.1f %10.2f %8d%n",
+        groupSize,
+        result.convergenceTime == -1 ? "-" : String.format(Locale.US, "%.1f", result.convergenceTime / 1000.0),
+        result.numCommands / seconds,
+        result.numCommands / seconds / groupSize,
+        result.numProbeInterests / seconds,
+        result.numProbeData / seconds,
+        result.numBytes / seconds / 1000,
+        result.numLost);
+    }
+  }
+
+  private static Result run(int groupSize, double lossRate, int latency, int jitter, long seed, long duration) {
+    EventScheduler scheduler = new EventScheduler(seed);
+    SimulatedMedium medium = new SimulatedMedium(scheduler, lossRate, latency, jitter);
+    SimulatedGroup group = new SimulatedGroup(toDeviceAddress(0));
+    Map<String, SimulatedP2pGroupManager> managers = new HashMap<>();
+    Map<String, VirtualPeer> devices = new HashMap<>();
+
+    List<VirtualPeer> peers = new ArrayList<>(groupSize);
+    List<Name> prefixes = new ArrayList<>(groupSize);
+    for (int i = 0; i < groupSize; i++) {
+      String deviceAddress = toDeviceAddress(i);
+      SimulatedP2pGroupManager manager = new SimulatedP2pGroupManager(scheduler, group, managers, deviceAddress);
+      managers.put(deviceAddress, manager);
+      VirtualPeer peer = new VirtualPeer(scheduler, medium, group, manager, devices, new Name("/sim/device" + i));
+      devices.put(deviceAddress, peer);
+      peers.add(peer);
+      prefixes.add(peer.getProducerPrefix());
+    }
+    for (VirtualPeer peer : peers) {
+      peer.start();
+    }
+
+    Result result = new Result();
+    for (long time = CHECK_INTERVAL; time <= duration; time += CHECK_INTERVAL) {
+      scheduler.runUntil(time);
+      if (result.convergenceTime == -1 && isConverged(peers, prefixes)) {
+        result.convergenceTime = time;
+      }
+    }
+
+    for (VirtualPeer peer : peers) {
+      result.numCommands += peer.getForwarder().getNumCommands();
+    }
+    result.numProbeInterests = medium.getNumProbeInterests();
+    result.numProbeData = medium.getNumProbeData();
+    result.numBytes = medium.getNumBytes();
+    result.numLost = medium.getNumLost();
+    return result;
+  }
+
+  private static boolean isConverged(List<VirtualPeer> peers, List<Name> prefixes) {
+    for (VirtualPeer peer : peers) {
+      if (!peer.hasRoutesTo(prefixes)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String toDeviceAddress(int index) {
+    return String.format(Locale.US, "02:00:00:00:%02x:%02x", index >> 8, index & 0xff);
+  }
+}
@@ -0,0 +1,484 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.named_data.nfd.wifidirect.sim;
+
+import com.intel.jndn.management.types.FaceStatus;
+import com.intel.jndn.management.types.FibEntry;
+import com.intel.jndn.management.types.RibEntry;
+
+import net.named_data.jndn.ControlParameters;
+import net.named_data.jndn.Interest;
+import net.named_data.jndn.Name;
+import net.named_data.jndn.encoding.EncodingException;
+import net.named_data.jndn.util.Blob;
+import net.named_data.nfd.utils.NfdcFuture;
+import net.named_data.nfd.wifidirect.model.Peer;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
+import net.named_data.nfd.wifidirect.utils.FaceRouteTable;
+import net.named_data.nfd.wifidirect.utils.ForwarderSnapshotCache;
+import net.named_data.nfd.wifidirect.utils.NDNController;
+import net.named_data.nfd.wifidirect.utils.PeerConsistency;
+import net.named_data.nfd.wifidirect.utils.PeerTable;
+import net.named_data.nfd.wifidirect.utils.ProbeExchange;
+import net.named_data.nfd.wifidirect.utils.ProbeScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One simulated device taking part in the Wi-Fi Direct probe exchange.
+ * <p>
+ * The protocol itself is the shipped code: ProbeExchange builds and answers probes and turns
+ * responses into route changes, Peer and ProbeScheduler schedule the probes and detect
+ * failures, ForwarderSnapshotCache.Snapshot decides what is advertised, and ProbeResponse is
+ * the wire format. Peers are kept in a PeerTable, NFD's faces and routes in a FaceRouteTable,
+ * and PeerConsistency runs the face and route checks, the group status check and the removal
+ * of failed peers, on the same periods as on a device.
+ * <p>
+ * What is not covered is how NDNController, the runnables and PeerProvisioner carry out these
+ * decisions, since they are bound to Android: this class issues the commands itself, with all
+ * route changes of a response sent at once. Measurements therefore reflect the protocol, not
+ * the threading of the app.
+ */
+public class VirtualPeer implements SimulatedP2pGroupManager.ConnectionInfoListener {
+  private static final int PROBE_PACKET_OVERHEAD = 48;   // in bytes, signature and MetaInfo of a Data
+
+  private final EventScheduler scheduler;
+  private final SimulatedMedium medium;
+  private final SimulatedGroup group;
+  private final SimulatedP2pGroupManager p2pGroupManager;
+  private final SimulatedForwarder forwarder;
+  // { deviceAddress : device } of all virtual devices in range
+  private final Map<String, VirtualPeer> devices;
+  private final Name producerPrefix;
+
+  private String myIp = null;
+  private boolean isGroupOwner = false;
+  private final PeerTable peerTable;
+  // kept up to date by the commands below, as face event notifications do on a device
+  private final FaceRouteTable faceRouteTable = new FaceRouteTable();
+  private final PeerConsistency peerConsistency;
+  // { peerIp : token of the outstanding probe }
+  private final HashMap<String, Object> outstandingProbes = new HashMap<>();
+
+  // cached FIB and faces, refreshed like ForwarderSnapshotCache does
+  private ForwarderSnapshotCache.Snapshot snapshot = ForwarderSnapshotCache.Snapshot.create(
+    -ForwarderSnapshotCache.MAX_AGE - 1, Collections.<FibEntry>emptyList(),
+    Collections.<FaceStatus>emptyList(), Collections.<Peer>emptyList(), -1);
+  private boolean isRefreshRunning = false;
+  private boolean isRefreshPending = false;
+
+  private final ProbeScheduler probeScheduler;
+
+  private final PeerConsistency.Actions actions = new PeerConsistency.Actions() {
+    @Override
+    public void createFace(String peerIp) {
+      VirtualPeer.this.createFace(peerIp);
+    }
+
+    @Override
+    public void registerPeerLocalhop(String peerIp) {
+      VirtualPeer.this.registerPeerLocalhop(peerIp);
+    }
+
+    @Override
+    public void registerOwnLocalhop() {
+      if (myIp != null) {
+        registerLocalhop(new Name(NDNController.PROBE_PREFIX + "/" + myIp), forwarder.getAppFaceId(), null);
+      }
+    }
+
+    @Override
+    public void destroyFace(Peer peer) {
+      outstandingProbes.remove(peer.getIpAddress());
+      if (peer.hasFace()) {
+        forwarder.faceDestroy(peer.getFaceId());
+        faceRouteTable.removeFace(peer.getFaceId());
+        requestRefresh();
+      }
+    }
+
+    @Override
+    public void withdrawGroupRoutes(Peer peer) {
+      // there is no group face in the simulation
+    }
+
+    @Override
+    public void disconnect() {
+      p2pGroupManager.removeGroup();
+    }
+  };
+
+  public VirtualPeer(EventScheduler scheduler, SimulatedMedium medium, SimulatedGroup group,
+                     SimulatedP2pGroupManager p2pGroupManager, Map<String, VirtualPeer> devices,
+                     Name producerPrefix) {
+    this.scheduler = scheduler;
+    this.medium = medium;
+    this.group = group;
+    this.p2pGroupManager = p2pGroupManager;
+    this.forwarder = new SimulatedForwarder(scheduler);
+    this.devices = devices;
+    this.producerPrefix = producerPrefix;
+    p2pGroupManager.setConnectionInfoListener(this);
+    forwarder.addProducer(producerPrefix);
+    peerTable = new PeerTable(new PeerTable.PeerFactory() {
+      @Override
+      public Peer create(String peerIp) {
+        return new Peer(peerIp, VirtualPeer.this.scheduler.now(), VirtualPeer.this.scheduler.getRandom());
+      }
+    });
+    peerConsistency = new PeerConsistency(peerTable, faceRouteTable, actions);
+    probeScheduler = new ProbeScheduler(scheduler, new ProbeScheduler.Prober() {
+      @Override
+      public List<Peer> getPeers() {
+        return peerTable.getPeersWithFace();
+      }
+
+      @Override
+      public void sendProbes(List<Peer> duePeers, long now) {
+        probe(duePeers, now);
+      }
+    });
+  }
+
+  public Name getProducerPrefix() {
+    return producerPrefix;
+  }
+
+  public SimulatedForwarder getForwarder() {
+    return forwarder;
+  }
+
+  public int getNumPeers() {
+    return peerTable.size();
+  }
+
+  /**
+   * Starts the periodic tasks, as NDNController.start() does, and joins the group unless
+   * this device owns it.
+   */
+  public void start() {
+    scheduler.schedulePeriodic(100, NDNController.DISCOVER_PEERS_DELAY, new Runnable() {
+      @Override
+      public void run() {
+        p2pGroupManager.discoverPeers();
+        if (myIp == null && !p2pGroupManager.getDeviceAddress().equals(group.getOwnerAddress())) {
+          p2pGroupManager.connect(group.getOwnerAddress());
+        }
+      }
+    });
+    probeScheduler.start();
+    scheduler.schedulePeriodic(300, NDNController.FACE_AND_ROUTE_FULL_RESYNC_DELAY, new Runnable() {
+      @Override
+      public void run() {
+        resyncFacesAndRoutes();
+      }
+    });
+    scheduler.schedulePeriodic(300, NDNController.GROUP_STATUS_CONSISTENCY_CHECK_DELAY, new Runnable() {
+      @Override
+      public void run() {
+        peerConsistency.checkGroupStatus(myIp);
+      }
+    });
+  }
+
+  /**
+   * @return whether this device has a route over the group to every given prefix but its own
+   */
+  public boolean hasRoutesTo(Collection<Name> prefixes) {
+    for (Name prefix : prefixes) {
+      if (!prefix.equals(producerPrefix) && !forwarder.hasRemoteRoute(prefix)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void onConnectionInfoAvailable(boolean isGroupOwner, String myIp, String groupOwnerIp) {
+    if (myIp == null) {
+      if (this.myIp != null) {
+        this.myIp = null;
+        this.isGroupOwner = false;
+        for (Peer peer : peerTable.getAllPeers()) {
+          peerConsistency.dropPeer(peer);
+        }
+      }
+      return;
+    }
+
+    this.myIp = myIp;
+    this.isGroupOwner = isGroupOwner;
+    actions.registerOwnLocalhop();
+    // a group owner learns of its clients when they first probe it
+    if (!isGroupOwner) {
+      createFace(groupOwnerIp);
+    }
+  }
+
+  /**
+   * As NDNController.createFace() and PeerProvisioner.createFace(), followed by the
+   * registration of the peer's localhop prefix.
+   */
+  private void createFace(final String peerIp) {
+    final Peer peer = peerTable.claimFaceCreation(peerIp);
+    if (peer == null) {
+      return;
+    }
+    peer.onProvisioningStarted(scheduler.now());
+
+    final String faceUri = NDNController.URI_TRANSPORT_PREFIX + peerIp;
+    forwarder.faceCreate(faceUri).addListener(new NfdcFuture.Listener<Integer>() {
+      @Override
+      public void onComplete(NfdcFuture<Integer> faceCreate) {
+        if (faceCreate.getException() != null) {
+          peerTable.onFaceCreationFailed(peer);
+          return;
+        }
+        int faceId = faceCreate.getValue();
+        if (!peerTable.onFaceCreated(peer, faceId)) {
+          forwarder.faceDestroy(faceId);
+          return;
+        }
+        faceRouteTable.addFace(faceId, faceUri);
+        requestRefresh();
+        probeScheduler.reschedule();
+        registerPeerLocalhop(peerIp);
+      }
+    });
+  }
+
+  /**
+   * As NDNController.registerPeerLocalhop().
+   */
+  private void registerPeerLocalhop(String peerIp) {
+    final Peer peer = peerTable.get(peerIp);
+    if (peer == null || !peer.hasFace()) {
+      return;
+    }
+    registerLocalhop(new Name(NDNController.PROBE_PREFIX + "/" + peerIp), peer.getFaceId(), peer);
+  }
+
+  /**
+   * @param peer the peer to mark ROUTED once the prefix is registered, or null
+   */
+  private void registerLocalhop(final Name prefix, final int faceId, final Peer peer) {
+    forwarder.ribRegisterPrefix(prefix, faceId, 0, true, false)
+      .addListener(new NfdcFuture.Listener<ControlParameters>() {
+        @Override
+        public void onComplete(NfdcFuture<ControlParameters> register) {
+          if (register.getException() != null) {
+            return;
+          }
+          faceRouteTable.addRoute(prefix.toUri(), faceId);
+          if (peer != null) {
+            peer.onRouted(scheduler.now());
+          }
+        }
+      });
+  }
+
+  /**
+   * As FaceAndRouteConsistencyRunnable with a full resync.
+   */
+  private void resyncFacesAndRoutes() {
+    final NfdcFuture<List<FaceStatus>> faceList = forwarder.faceList();
+    final NfdcFuture<List<RibEntry>> ribList = forwarder.ribList();
+    NfdcFuture.allOf(Arrays.asList(faceList, ribList)).addListener(new NfdcFuture.Listener<Void>() {
+      @Override
+      public void onComplete(NfdcFuture<Void> all) {
+        if (all.getException() != null) {
+          return;
+        }
+        faceRouteTable.reset(faceList.getValue(), ribList.getValue());
+        peerConsistency.checkFacesAndRoutes(myIp, true);
+      }
+    });
+  }
+
+  /**
+   * Requester side, as ProbeRunnable: probes the peers whose probe is due.
+   */
+  private void probe(List<Peer> duePeers, long now) {
+    if (myIp == null) {
+      return;
+    }
+    for (final Peer peer : duePeers) {
+      final String peerIp = peer.getIpAddress();
+      final VirtualPeer target = devices.get(group.getMac(peerIp));
+      if (target == null) {
+        continue;
+      }
+
+      final long knownVersion = peer.getPrefixesAdvertisedByPeer().getVersion();
+      final Name name = ProbeExchange.makeProbeName(peerIp, myIp, knownVersion);
+      Interest interest = new Interest(name);
+      interest.setMustBeFresh(true);
+      interest.setInterestLifetimeMilliseconds(peer.getProbeLifetime());
+
+      final Object token = new Object();
+      outstandingProbes.put(peerIp, token);
+      peer.onProbeSent(now);
+      medium.sendProbeInterest(interest.wireEncode().size(), new Runnable() {
+        @Override
+        public void run() {
+          target.onProbeInterest(VirtualPeer.this, name, token);
+        }
+      });
+
+      scheduler.schedule(peer.getProbeLifetime(), new Runnable() {
+        @Override
+        public void run() {
+          if (outstandingProbes.get(peerIp) != token) {
+            return;
+          }
+          outstandingProbes.remove(peerIp);
+          if (probeScheduler.onProbeTimeout(peer)) {
+            peerConsistency.removePeer(peer, isGroupOwner);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Responder side, as ProbeOnInterest.
+   */
+  private void onProbeInterest(final VirtualPeer sender, Name name, final Object token) {
+    if (myIp == null) {
+      return;
+    }
+    long knownVersion;
+    try {
+      knownVersion = ProbeExchange.getKnownVersion(name);
+    } catch (EncodingException e) {
+      return;
+    }
+    String senderIp = ProbeExchange.getRequesterIp(name);
+    Peer peer = peerTable.get(senderIp);
+    if (peer == null) {
+      createFace(senderIp);
+    }
+
+    ProbeResponse response = ProbeExchange.respond(peer,
+      getSnapshot().getAdvertisedPrefixes(peer != null ? peer.getFaceId() : -1), knownVersion);
+
+    final Blob content = response.wireEncode();
+    final String responderIp = myIp;
+    int size = name.wireEncode().size() + content.size() + PROBE_PACKET_OVERHEAD;
+    medium.sendProbeData(size, new Runnable() {
+      @Override
+      public void run() {
+        sender.onProbeData(responderIp, content, token);
+      }
+    });
+  }
+
+  /**
+   * Requester side, as ProbeOnData.
+   */
+  private void onProbeData(String peerIp, Blob content, Object token) {
+    if (outstandingProbes.get(peerIp) != token) {
+      return;   // timed out already, or the peer is gone
+    }
+    outstandingProbes.remove(peerIp);
+    Peer peer = peerTable.get(peerIp);
+    if (peer == null || !peer.hasFace()) {
+      return;
+    }
+
+    ProbeResponse response;
+    try {
+      response = ProbeResponse.wireDecode(content.buf());
+    } catch (EncodingException e) {
+      return;
+    }
+
+    Map<Name, Integer> toRegister = new LinkedHashMap<>();
+    List<Name> toUnregister = new ArrayList<>();
+    if (ProbeExchange.onResponse(peer, response, toRegister, toUnregister)) {
+      updateRoutes(peer, toRegister, toUnregister);
+    }
+    probeScheduler.onProbeResponse(peer);
+  }
+
+  /**
+   * As PeerProvisioner.updateRoutes(): all the commands at once, then a snapshot refresh.
+   */
+  private void updateRoutes(Peer peer, Map<Name, Integer> toRegister, List<Name> toUnregister) {
+    if (toRegister.isEmpty() && toUnregister.isEmpty()) {
+      return;
+    }
+    List<NfdcFuture<ControlParameters>> commands = new ArrayList<>();
+    for (Map.Entry<Name, Integer> route : toRegister.entrySet()) {
+      commands.add(forwarder.ribRegisterPrefix(route.getKey(), peer.getFaceId(), route.getValue(), true, false));
+    }
+    for (Name prefix : toUnregister) {
+      commands.add(forwarder.ribUnregisterPrefix(prefix, peer.getFaceId()));
+    }
+    NfdcFuture.allOf(commands).addListener(new NfdcFuture.Listener<Void>() {
+      @Override
+      public void onComplete(NfdcFuture<Void> all) {
+        requestRefresh();
+      }
+    });
+  }
+
+  /**
+   * As ForwarderSnapshotCache.get(): the latest snapshot, with a refresh requested if it is
+   * older than ForwarderSnapshotCache.MAX_AGE.
+   */
+  private ForwarderSnapshotCache.Snapshot getSnapshot() {
+    if (scheduler.now() - snapshot.getTimestamp() > ForwarderSnapshotCache.MAX_AGE) {
+      requestRefresh();
+    }
+    return snapshot;
+  }
+
+  private void requestRefresh() {
+    if (isRefreshRunning) {
+      isRefreshPending = true;
+      return;
+    }
+    isRefreshRunning = true;
+    final NfdcFuture<List<FibEntry>> fibList = forwarder.fibList();
+    final NfdcFuture<List<FaceStatus>> faceList = forwarder.faceList();
+    NfdcFuture.allOf(Arrays.asList(fibList, faceList)).addListener(new NfdcFuture.Listener<Void>() {
+      @Override
+      public void onComplete(NfdcFuture<Void> all) {
+        snapshot = ForwarderSnapshotCache.Snapshot.create(scheduler.now(), fibList.getValue(),
+          faceList.getValue(), peerTable.getAllPeers(), -1);
+
+        isRefreshRunning = false;
+        if (isRefreshPending) {
+          isRefreshPending = false;
+          requestRefresh();
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,119 @@
+/* -*- Mode:jde; c-file-style:"gnu"; indent-tabs-mode:nil; -*- */
+/**
+ * Copyright (c) 2015-2017 Regents of the University of California
+ * <p>
+ * This file is part of NFD (Named Data Networking Forwarding Daemon) Android.
+ * See AUTHORS.md for complete list of NFD Android authors and contributors.
+ * <p>
+ * NFD Android is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation,
+ * either version 3 of the License, or (at your option) any later version.
+ * <p>
+ * NFD Android is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+ * PURPOSE.  See the GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License along with
+ * NFD Android, e.g., in COPYING.md file.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.named_data.nfd.wifidirect.utils;
+
+import com.intel.jndn.management.types.FibEntry;
+import com.intel.jndn.management.types.NextHopRecord;
+
+import net.named_data.jndn.Name;
+import net.named_data.nfd.wifidirect.model.ProbeResponse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AdvertisementPolicyTest {
+
+  private static final int APP_FACE_ID = 1;
+  private static final int GROUP_FACE_ID = 5;
+  private static final int PEER_FACE_ID = 10;
+  private static final int OTHER_PEER_FACE_ID = 11;
+
+  private final List<FibEntry> fib = new ArrayList<>();
+
+  private void addRoute(String prefix, int... faceIdsAndCosts) {
+    List<NextHopRecord> nextHopRecords = new ArrayList<>();
+    for (int i = 0; i < faceIdsAndCosts.length; i += 2) {
+      NextHopRecord nextHopRecord = new NextHopRecord();
+      nextHopRecord.setFaceId(faceIdsAndCosts[i]);
+      nextHopRecord.setCost(faceIdsAndCosts[i + 1]);
+      nextHopRecords.add(nextHopRecord);
+    }
+    FibEntry fibEntry = new FibEntry();
+    fibEntry.setPrefix(new Name(prefix));
+    fibEntry.setNextHopRecords(nextHopRecords);
+    fib.add(fibEntry);
+  }
+
+  private Map<Name, ProbeResponse.PrefixEntry> advertiseToPeer() {
+    IntSet liveFaceIds = new IntSet(new int[]{APP_FACE_ID, GROUP_FACE_ID, PEER_FACE_ID, OTHER_PEER_FACE_ID}, 4);
+    IntSet peerFaceIds = new IntSet(new int[]{GROUP_FACE_ID, PEER_FACE_ID, OTHER_PEER_FACE_ID}, 3);
+    return AdvertisementPolicy.computeAdvertisedPrefixes(new FibTrie(fib, liveFaceIds), peerFaceIds,
+      PEER_FACE_ID, GROUP_FACE_ID);
+  }
+
+  @Test
+  public void testLocalAndRelayedPrefixes() {
+    addRoute("/local", APP_FACE_ID, 0);
+    addRoute("/relayed", OTHER_PEER_FACE_ID, 2);
+
+    Map<Name, ProbeResponse.PrefixEntry> advertised = advertiseToPeer();
+
+    assertEquals(new ProbeResponse.PrefixEntry(new Name("/local"), 0, 0), advertised.get(new Name("/local")));
+    assertEquals(new ProbeResponse.PrefixEntry(new Name("/relayed"), 2, 2), advertised.get(new Name("/relayed")));
+    assertEquals(3, advertised.get(new Name("/relayed")).getRouteCost());
+  }
+
+  @Test
+  public void testSplitHorizon() {
+    // the cheaper nexthop is through the peer itself, so the other one is advertised
+    addRoute("/both", PEER_FACE_ID, 1, OTHER_PEER_FACE_ID, 3);
+
+    assertEquals(new ProbeResponse.PrefixEntry(new Name("/both"), 3, 3), advertiseToPeer().get(new Name("/both")));
+  }
+
+  @Test
+  public void testPoisonedReverse() {
+    addRoute("/through-peer", PEER_FACE_ID, 2);
+    addRoute("/through-group", GROUP_FACE_ID, 1);
+
+    Map<Name, ProbeResponse.PrefixEntry> advertised = advertiseToPeer();
+
+    ProbeResponse.PrefixEntry throughPeer = advertised.get(new Name("/through-peer"));
+    assertEquals(ProbeResponse.INFINITE_HOP_COUNT, throughPeer.getHopCount());
+    assertEquals(-1, throughPeer.getRouteCost());
+    assertEquals(ProbeResponse.INFINITE_HOP_COUNT, advertised.get(new Name("/through-group")).getHopCount());
+  }
+
+  @Test
+  public void testMaxRadius() {
+    addRoute("/edge", OTHER_PEER_FACE_ID, ProbeResponse.MAX_RADIUS - 1);
+    addRoute("/beyond", OTHER_PEER_FACE_ID, ProbeResponse.MAX_RADIUS);
+
+    Map<Name, ProbeResponse.PrefixEntry> advertised = advertiseToPeer();
+
+    assertEquals(ProbeResponse.MAX_RADIUS - 1, advertised.get(new Name("/edge")).getHopCount());
+    assertEquals(ProbeResponse.MAX_RADIUS, advertised.get(new Name("/edge")).getRouteCost());
+    assertFalse(advertised.containsKey(new Name("/beyond")));
+  }
+
+  @Test
+  public void testScopePrefixesNotAdvertised() {
+    addRoute("/localhop/nfd", APP_FACE_ID, 0);
+    addRoute("/localhost/nfd", APP_FACE_ID, 0);
+
+    assertEquals(0, advertiseToPeer().size());
+  }
+}